@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.social.facebook.api.PagedList;
+import org.springframework.social.facebook.api.Post;
+import org.springframework.social.facebook.api.Post.PostType;
+import org.springframework.social.facebook.api.impl.json.FacebookModule;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Compares the streaming {@link Post} deserialization used by {@link FeedTemplate} with the former approach of
+ * reading the page as a tree, adding the post type to each node and re-parsing its String form.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FeedDeserializationBenchmark {
+
+	@Param({ "feed", "feedPage1", "feedPage2", "feedPage3", "post-list" })
+	public String fixture;
+
+	private ObjectMapper objectMapper;
+
+	private PagedListReader pagedListReader;
+
+	private ObjectReader statusReader;
+
+	private byte[] json;
+
+	@Setup
+	public void setUp() throws IOException {
+		objectMapper = new ObjectMapper();
+		objectMapper.registerModule(new FacebookModule());
+		pagedListReader = new PagedListReader(objectMapper);
+		statusReader = objectMapper.readerFor(Post.class).withAttribute(FacebookModule.POST_TYPE_ATTRIBUTE, PostType.STATUS);
+		json = ModelDeserializationBenchmark.fixture(fixture);
+	}
+
+	@Benchmark
+	public List<Post> treeRoundTrip() throws IOException {
+		JsonNode jsonNode = objectMapper.readTree(json);
+		List<Post> posts = new ArrayList<Post>();
+		for (Iterator<JsonNode> iterator = jsonNode.get("data").iterator(); iterator.hasNext();) {
+			ObjectNode node = (ObjectNode) iterator.next();
+			String postType = node.has("type") ? node.get("type").textValue() : "post";
+			node.put("postType", postType);
+			node.put("type", postType);
+			posts.add(objectMapper.readerFor(Post.class).<Post>readValue(node.toString()));
+		}
+		return posts;
+	}
+
+	@Benchmark
+	public PagedList<Post> streaming() throws IOException {
+		JsonParser parser = objectMapper.getFactory().createParser(json);
+		try {
+			return pagedListReader.read(parser, Post.class);
+		} finally {
+			parser.close();
+		}
+	}
+
+	@Benchmark
+	public PagedList<Post> streamingWithPostType() throws IOException {
+		JsonParser parser = objectMapper.getFactory().createParser(json);
+		try {
+			return pagedListReader.read(parser, statusReader);
+		} finally {
+			parser.close();
+		}
+	}
+
+}
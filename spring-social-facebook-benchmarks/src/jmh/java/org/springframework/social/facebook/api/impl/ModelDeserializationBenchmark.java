@@ -0,0 +1,133 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api.impl;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.social.facebook.api.Album;
+import org.springframework.social.facebook.api.Comment;
+import org.springframework.social.facebook.api.Event;
+import org.springframework.social.facebook.api.Group;
+import org.springframework.social.facebook.api.Page;
+import org.springframework.social.facebook.api.PagedList;
+import org.springframework.social.facebook.api.Photo;
+import org.springframework.social.facebook.api.Post;
+import org.springframework.social.facebook.api.User;
+import org.springframework.social.facebook.api.Video;
+import org.springframework.social.facebook.api.impl.json.FacebookModule;
+import org.springframework.util.StreamUtils;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Measures the deserialization of each model type through the {@link FacebookModule} mixins, both as a single object
+ * and as a page of connections read by {@link PagedListReader}, from the fixtures of the API tests.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModelDeserializationBenchmark {
+
+	/**
+	 * The model types, with the fixtures of one object and of a page of objects of that type.
+	 */
+	public enum Model {
+		USER(User.class, "full-profile", "user-profiles"),
+		PAGE(Page.class, "page-with-extra-data", "places-list"),
+		POST(Post.class, "post", "feed"),
+		COMMENT(Comment.class, "comment", "comments"),
+		ALBUM(Album.class, "album", "albums"),
+		PHOTO(Photo.class, "photo", "photos"),
+		VIDEO(Video.class, "video", "videos"),
+		EVENT(Event.class, "full-event", "event-list"),
+		GROUP(Group.class, "group", "group-list");
+
+		private final Class<?> type;
+
+		private final String objectFixture;
+
+		private final String pageFixture;
+
+		Model(Class<?> type, String objectFixture, String pageFixture) {
+			this.type = type;
+			this.objectFixture = objectFixture;
+			this.pageFixture = pageFixture;
+		}
+
+	}
+
+	@Param
+	public Model model;
+
+	private ObjectMapper objectMapper;
+
+	private ObjectReader reader;
+
+	private PagedListReader pagedListReader;
+
+	private byte[] object;
+
+	private byte[] page;
+
+	@Setup
+	public void setUp() throws IOException {
+		objectMapper = new ObjectMapper();
+		objectMapper.registerModule(new FacebookModule());
+		reader = objectMapper.readerFor(model.type);
+		pagedListReader = new PagedListReader(objectMapper);
+		object = fixture(model.objectFixture);
+		page = fixture(model.pageFixture);
+	}
+
+	@Benchmark
+	public Object object() throws IOException {
+		return reader.readValue(object);
+	}
+
+	@Benchmark
+	public PagedList<Object> page() throws IOException {
+		JsonParser parser = objectMapper.getFactory().createParser(page);
+		try {
+			return pagedListReader.read(parser, reader);
+		} finally {
+			parser.close();
+		}
+	}
+
+	static byte[] fixture(String name) throws IOException {
+		ClassPathResource resource = new ClassPathResource("org/springframework/social/facebook/api/" + name + ".json");
+		return StreamUtils.copyToByteArray(resource.getInputStream());
+	}
+
+}
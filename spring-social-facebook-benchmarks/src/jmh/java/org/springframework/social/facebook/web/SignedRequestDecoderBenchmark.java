@@ -0,0 +1,182 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.web;
+
+import java.io.IOException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+
+/**
+ * Compares {@link SignedRequestDecoder} with the decoder it replaced, kept below as {@link LegacySignedRequestDecoder},
+ * on a deauthorization request bound to a Map and to a bean, and on a forged request.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class SignedRequestDecoderBenchmark {
+
+	private static final String SECRET = "888e92659dae96040216a257576b092a";
+
+	private static final String SIGNED_REQUEST = "T4PCp840PHnhgQwMgCSZODpDGqhLC4mFGaNG8oHW7WU.eyJhbGdvcml0aG0iOiJITUFDLVNIQTI1NiIsImlzc3VlZF9hdCI6MTMzNTg5NDc5NiwidXNlciI6eyJjb3VudHJ5IjoidXMiLCJsb2NhbGUiOiJlbl9VUyJ9LCJ1c2VyX2lkIjoiNzM4MTQwNTc5In0";
+
+	private static final String FORGED_REQUEST = "T4PCp840PHnhgQwMgCSZODpDGqhLC4mFGaNG8oHW7WU.eyJhbGdvcml0aG0iOiJITUFDLVNIQTI1NiIsImlzc3VlZF9hdCI6MTMzNTg5NDc5NiwidXNlciI6eyJjb3VudHJ5IjoidXMiLCJsb2NhbGUiOiJlbl9VUyJ9LCJ1c2VyX2lkIjoiNzM4MTQwNTc4In0";
+
+	private final SignedRequestDecoder decoder = new SignedRequestDecoder(SECRET);
+
+	private final LegacySignedRequestDecoder legacyDecoder = new LegacySignedRequestDecoder(SECRET);
+
+	@Benchmark
+	public Map<?, ?> mapLegacy() throws SignedRequestException {
+		return legacyDecoder.decodeSignedRequest(SIGNED_REQUEST, Map.class);
+	}
+
+	@Benchmark
+	public Map<?, ?> map() throws SignedRequestException {
+		return decoder.decodeSignedRequest(SIGNED_REQUEST, Map.class);
+	}
+
+	@Benchmark
+	public Deauthorization beanLegacy() throws SignedRequestException {
+		return legacyDecoder.decodeSignedRequest(SIGNED_REQUEST, Deauthorization.class);
+	}
+
+	@Benchmark
+	public Deauthorization bean() throws SignedRequestException {
+		return decoder.decodeSignedRequest(SIGNED_REQUEST, Deauthorization.class);
+	}
+
+	@Benchmark
+	public Object forgedLegacy() {
+		try {
+			return legacyDecoder.decodeSignedRequest(FORGED_REQUEST, Map.class);
+		} catch (SignedRequestException e) {
+			return e;
+		}
+	}
+
+	@Benchmark
+	public Object forged() {
+		try {
+			return decoder.decodeSignedRequest(FORGED_REQUEST, Map.class);
+		} catch (SignedRequestException e) {
+			return e;
+		}
+	}
+
+	public static class Deauthorization {
+
+		public String algorithm;
+
+		public long issuedAt;
+
+		public String userId;
+
+		public Map<String, String> user;
+
+	}
+
+	/**
+	 * The decoder as it was before verifying first and binding in a single pass.
+	 */
+	static class LegacySignedRequestDecoder {
+
+		private final String secret;
+
+		private final ObjectMapper objectMapper;
+
+		LegacySignedRequestDecoder(String secret) {
+			this.secret = secret;
+			this.objectMapper = new ObjectMapper();
+			this.objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+			this.objectMapper.setPropertyNamingStrategy(PropertyNamingStrategy.SNAKE_CASE);
+		}
+
+		<T> T decodeSignedRequest(String signedRequest, Class<T> type) throws SignedRequestException {
+			String[] split = signedRequest.split("\\.");
+			String encodedSignature = split[0];
+			String payload = split[1];
+			String decoded = base64DecodeToString(payload);
+			byte[] signature = base64DecodeToBytes(encodedSignature);
+			try {
+				T data = objectMapper.readValue(decoded, type);
+				String algorithm = objectMapper.readTree(decoded).get("algorithm").textValue();
+				if (algorithm == null || !algorithm.equals("HMAC-SHA256")) {
+					throw new SignedRequestException("Unknown encryption algorithm: " + algorithm);
+				}
+				byte[] expectedSignature = encrypt(payload, secret);
+				if (!Arrays.equals(expectedSignature, signature)) {
+					throw new SignedRequestException("Invalid signature.");
+				}
+				return data;
+			} catch (IOException e) {
+				throw new SignedRequestException("Error parsing payload.", e);
+			}
+		}
+
+		private String padForBase64(String base64) {
+			return base64 + "===".substring(0, (4 - base64.length() % 4) % 4);
+		}
+
+		private byte[] base64DecodeToBytes(String in) {
+			return Base64.getDecoder().decode(padForBase64(in.replace('_', '/').replace('-', '+')).getBytes());
+		}
+
+		private String base64DecodeToString(String in) {
+			return new String(base64DecodeToBytes(in));
+		}
+
+		private byte[] encrypt(String base, String key) {
+			try {
+				SecretKeySpec secretKeySpec = new SecretKeySpec(key.getBytes(), "HMACSHA256");
+				Mac mac = Mac.getInstance("HMACSHA256");
+				mac.init(secretKeySpec);
+				return mac.doFinal(base.getBytes());
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e);
+			} catch (InvalidKeyException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.stub;
+
+/**
+ * The Graph API errors that {@link GraphApiStubServer} can inject, with the HTTP status and error body Facebook
+ * responds with.
+ */
+public enum GraphApiError {
+
+	/**
+	 * An unknown error, which may be temporary.
+	 */
+	UNKNOWN(1, 500, "OAuthException", "An unknown error occurred"),
+
+	/**
+	 * The service is temporarily unavailable.
+	 */
+	SERVICE(2, 503, "OAuthException", "An unexpected error has occurred. Please retry your request later."),
+
+	/**
+	 * The app reached its request limit.
+	 */
+	APP_RATE_LIMIT(4, 403, "OAuthException", "(#4) Application request limit reached"),
+
+	/**
+	 * The user (access token) reached its request limit.
+	 */
+	USER_RATE_LIMIT(17, 403, "OAuthException", "(#17) User request limit reached"),
+
+	/**
+	 * The access token is invalid or expired.
+	 */
+	INVALID_ACCESS_TOKEN(190, 400, "OAuthException", "Invalid OAuth access token.");
+
+	private final int code;
+
+	private final int status;
+
+	private final String type;
+
+	private final String message;
+
+	private GraphApiError(int code, int status, String type, String message) {
+		this.code = code;
+		this.status = status;
+		this.type = type;
+		this.message = message;
+	}
+
+	/**
+	 * @return the Graph API error code.
+	 */
+	public int getCode() {
+		return code;
+	}
+
+	/**
+	 * @return the HTTP status of the error response.
+	 */
+	public int getStatus() {
+		return status;
+	}
+
+	/**
+	 * @return the error type.
+	 */
+	public String getType() {
+		return type;
+	}
+
+	/**
+	 * @return the error message.
+	 */
+	public String getMessage() {
+		return message;
+	}
+
+	/**
+	 * @param code a Graph API error code.
+	 * @return the error with the given code.
+	 * @throws IllegalArgumentException if no error has this code.
+	 */
+	public static GraphApiError valueOf(int code) {
+		for (GraphApiError error : values()) {
+			if (error.code == code) {
+				return error;
+			}
+		}
+		throw new IllegalArgumentException("No injectable Graph API error with code " + code);
+	}
+
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.stub;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.social.facebook.api.Facebook;
+import org.springframework.social.facebook.api.PagedList;
+import org.springframework.social.facebook.api.PagingParameters;
+import org.springframework.social.facebook.api.Post;
+import org.springframework.social.facebook.api.impl.FacebookClientFactory;
+import org.springframework.util.Assert;
+
+/**
+ * <p>
+ * Drives the Facebook templates from several threads against a {@link GraphApiStubServer} for a while, then reports the
+ * throughput and latency percentiles of each operation. Run it with the loadTest Gradle task of this module, e.g.
+ * <code>./gradlew :spring-social-facebook-test-support:loadTest -PloadTest.threads=16</code>.
+ * </p>
+ * <p>
+ * {@link #main(String[])} reads its settings from the loadTest.threads, loadTest.warmup and loadTest.duration (in
+ * seconds), loadTest.latency (the stub's latency range in milliseconds, e.g. "1-5"), loadTest.errorRate (the share
+ * of requests answered with a random injected error) and loadTest.appCallLimit (the app's call limit per minute, 0
+ * for none) system properties.
+ * </p>
+ */
+public class GraphApiLoadTest {
+
+	private static final Operation[] OPERATIONS = {
+		new Operation("me") {
+			void run(Facebook facebook) {
+				facebook.userOperations().getUserProfile();
+			}
+		},
+		new Operation("feed") {
+			void run(Facebook facebook) {
+				facebook.feedOperations().getFeed();
+			}
+		},
+		new Operation("feed (pages of 2)") {
+			void run(Facebook facebook) {
+				PagedList<Post> page = facebook.feedOperations().getFeed(new PagingParameters(2, null, null, null));
+				while (page.getNextPage() != null) {
+					page = facebook.feedOperations().getFeed(page.getNextPage());
+				}
+			}
+		},
+		new Operation("friends") {
+			void run(Facebook facebook) {
+				facebook.friendOperations().getFriendProfiles();
+			}
+		},
+		new Operation("albums") {
+			void run(Facebook facebook) {
+				facebook.mediaOperations().getAlbums();
+			}
+		},
+		new Operation("likes") {
+			void run(Facebook facebook) {
+				facebook.likeOperations().getPagesLiked();
+			}
+		},
+		new Operation("comments") {
+			void run(Facebook facebook) {
+				facebook.commentOperations().getComments("123456789_987654321");
+			}
+		}
+	};
+
+	private final GraphApiStubServer server;
+
+	private final FacebookClientFactory clientFactory;
+
+	private int threads = 8;
+
+	private long warmupNanos = TimeUnit.SECONDS.toNanos(5);
+
+	private long durationNanos = TimeUnit.SECONDS.toNanos(30);
+
+	/**
+	 * @param server the started stub server, to which the fixtures of the operations are added.
+	 * @param clientFactory the factory of the templates driven by the threads.
+	 */
+	public GraphApiLoadTest(GraphApiStubServer server, FacebookClientFactory clientFactory) {
+		this.server = server;
+		this.clientFactory = clientFactory;
+		clientFactory.setGraphApiUrl(server.getGraphApiUrl());
+		server.addFixture("me", "full-profile");
+		server.addFixture("{id}/feed", "feed");
+		server.addFixture("{id}/friends", "user-profiles");
+		server.addFixture("{id}/albums", "albums");
+		server.addFixture("{id}/likes", "new-user-likes");
+		server.addFixture("{id}/comments", "comments");
+	}
+
+	/**
+	 * @param threads the number of threads driving the templates, each with its own access token. Defaults to 8.
+	 */
+	public void setThreads(int threads) {
+		Assert.isTrue(threads > 0, "threads must be positive");
+		this.threads = threads;
+	}
+
+	/**
+	 * @param warmup how long the operations run before being measured. Defaults to 5 seconds.
+	 * @param duration how long the operations are measured. Defaults to 30 seconds.
+	 * @param unit the unit of warmup and duration.
+	 */
+	public void setDuration(long warmup, long duration, TimeUnit unit) {
+		Assert.isTrue(warmup >= 0 && duration > 0, "The warm-up must not be negative and the duration must be positive");
+		this.warmupNanos = unit.toNanos(warmup);
+		this.durationNanos = unit.toNanos(duration);
+	}
+
+	/**
+	 * Runs the operations in turn from each thread until the warm-up and the measured duration are over.
+	 * @return the measures of each operation.
+	 * @throws InterruptedException if interrupted while waiting for the threads.
+	 */
+	public Report run() throws InterruptedException {
+		final long start = System.nanoTime();
+		final long measureStart = start + warmupNanos;
+		final long end = measureStart + durationNanos;
+		final Measures[] measures = new Measures[threads];
+		final CountDownLatch done = new CountDownLatch(threads);
+		for (int i = 0; i < threads; i++) {
+			final int index = i;
+			measures[i] = new Measures();
+			final Facebook facebook = clientFactory.getFacebook("load-test-token-" + i);
+			Thread thread = new Thread(new Runnable() {
+				public void run() {
+					try {
+						for (int next = index; ; next++) {
+							Operation operation = OPERATIONS[next % OPERATIONS.length];
+							long operationStart = System.nanoTime();
+							if (operationStart >= end) {
+								return;
+							}
+							String error = null;
+							try {
+								operation.run(facebook);
+							} catch (RuntimeException e) {
+								error = e.getClass().getSimpleName();
+							}
+							if (operationStart >= measureStart) {
+								measures[index].record(next % OPERATIONS.length, System.nanoTime() - operationStart, error);
+							}
+						}
+					} finally {
+						done.countDown();
+					}
+				}
+			}, "graph-api-load-test-" + i);
+			thread.setDaemon(true);
+			thread.start();
+		}
+		done.await();
+		return new Report(threads, durationNanos, measures);
+	}
+
+	/**
+	 * Starts a stub server and runs a load test against it with the settings of the loadTest system properties,
+	 * printing its report.
+	 * @param args ignored.
+	 * @throws InterruptedException if interrupted while running the load test.
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		int threads = Integer.getInteger("loadTest.threads", 8);
+		// Keep one pooled connection per thread instead of reconnecting for most requests
+		if (System.getProperty("http.maxConnections") == null) {
+			System.setProperty("http.maxConnections", String.valueOf(threads));
+		}
+		String[] latency = System.getProperty("loadTest.latency", "1-5").split("-");
+		double errorRate = Double.parseDouble(System.getProperty("loadTest.errorRate", "0"));
+		int appCallLimit = Integer.getInteger("loadTest.appCallLimit", 0);
+
+		GraphApiStubServer server = new GraphApiStubServer();
+		server.start();
+		try {
+			server.setLatency(Long.parseLong(latency[0]), Long.parseLong(latency[latency.length - 1]), TimeUnit.MILLISECONDS);
+			server.setErrorRate(errorRate, GraphApiError.values());
+			server.setAppCallLimit(appCallLimit, 1, TimeUnit.MINUTES);
+			GraphApiLoadTest loadTest = new GraphApiLoadTest(server, new FacebookClientFactory(null, null));
+			loadTest.setThreads(threads);
+			loadTest.setDuration(Long.getLong("loadTest.warmup", 5), Long.getLong("loadTest.duration", 30), TimeUnit.SECONDS);
+			System.out.println("Running " + threads + " threads against " + server.getGraphApiUrl() + " (latency "
+					+ latency[0] + "-" + latency[latency.length - 1] + " ms, error rate " + errorRate + ", app call limit "
+					+ appCallLimit + "/min)");
+			System.out.print(loadTest.run());
+			System.out.println("Stub server requests: " + server.getRequestCount() + ", injected errors: " + server.getErrorCount());
+		} finally {
+			server.stop();
+		}
+	}
+
+	/**
+	 * The measures of the operations, by operation.
+	 */
+	public static class Report {
+
+		private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+		private final String[] names = new String[OPERATIONS.length + 1];
+
+		private final long[][] latencies = new long[OPERATIONS.length + 1][];
+
+		private final double seconds;
+
+		private final int threads;
+
+		private final Map<String, Integer> errors = new TreeMap<String, Integer>();
+
+		Report(int threads, long durationNanos, Measures[] measures) {
+			this.threads = threads;
+			this.seconds = durationNanos / 1e9;
+			int total = 0;
+			for (int operation = 0; operation < OPERATIONS.length; operation++) {
+				names[operation] = OPERATIONS[operation].name;
+				latencies[operation] = merge(measures, operation);
+				total += latencies[operation].length;
+			}
+			names[OPERATIONS.length] = "total";
+			long[] all = new long[total];
+			int position = 0;
+			for (int operation = 0; operation < OPERATIONS.length; operation++) {
+				System.arraycopy(latencies[operation], 0, all, position, latencies[operation].length);
+				position += latencies[operation].length;
+			}
+			Arrays.sort(all);
+			latencies[OPERATIONS.length] = all;
+			for (Measures threadMeasures : measures) {
+				for (Map.Entry<String, Integer> error : threadMeasures.errors.entrySet()) {
+					Integer count = errors.get(error.getKey());
+					errors.put(error.getKey(), count != null ? count + error.getValue() : error.getValue());
+				}
+			}
+		}
+
+		/**
+		 * @return the number of operations run while measuring, including the failed ones.
+		 */
+		public long getOperationCount() {
+			return latencies[OPERATIONS.length].length;
+		}
+
+		/**
+		 * @return the number of operations run per second while measuring.
+		 */
+		public double getThroughput() {
+			return getOperationCount() / seconds;
+		}
+
+		/**
+		 * @param percentile a percentile, between 0 (excluded) and 100.
+		 * @param unit the unit of the result.
+		 * @return the latency of all the operations at that percentile.
+		 */
+		public double getLatency(double percentile, TimeUnit unit) {
+			return percentile(latencies[OPERATIONS.length], percentile) / (double) unit.toNanos(1);
+		}
+
+		/**
+		 * @return the number of failed operations by exception class name.
+		 */
+		public Map<String, Integer> getErrors() {
+			return errors;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder report = new StringBuilder();
+			report.append(String.format(Locale.ROOT, "%-20s %9s %10s %9s %9s %9s %9s %9s%n", "operation", "count", "ops/s",
+					"p50 (ms)", "p90", "p99", "p99.9", "max"));
+			for (int operation = 0; operation < names.length; operation++) {
+				long[] sorted = latencies[operation];
+				report.append(String.format(Locale.ROOT, "%-20s %9d %10.1f", names[operation], sorted.length, sorted.length / seconds));
+				for (double percentile : PERCENTILES) {
+					report.append(String.format(Locale.ROOT, " %9.2f", percentile(sorted, percentile) / 1e6));
+				}
+				report.append(String.format(Locale.ROOT, " %9.2f%n", (sorted.length > 0 ? sorted[sorted.length - 1] : 0) / 1e6));
+			}
+			report.append(String.format(Locale.ROOT, "%d threads, %.0f s measured, errors: %s%n", threads, seconds, errors));
+			return report.toString();
+		}
+
+		private static long[] merge(Measures[] measures, int operation) {
+			int size = 0;
+			for (Measures threadMeasures : measures) {
+				size += threadMeasures.counts[operation];
+			}
+			long[] merged = new long[size];
+			int position = 0;
+			for (Measures threadMeasures : measures) {
+				System.arraycopy(threadMeasures.latencies[operation], 0, merged, position, threadMeasures.counts[operation]);
+				position += threadMeasures.counts[operation];
+			}
+			Arrays.sort(merged);
+			return merged;
+		}
+
+		/**
+		 * Nearest-rank percentile of sorted latencies.
+		 */
+		private static long percentile(long[] sorted, double percentile) {
+			if (sorted.length == 0) {
+				return 0;
+			}
+			int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+			return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+		}
+
+	}
+
+	private abstract static class Operation {
+
+		private final String name;
+
+		Operation(String name) {
+			this.name = name;
+		}
+
+		abstract void run(Facebook facebook);
+
+	}
+
+	/**
+	 * The latencies and errors recorded by one thread, in growing arrays so as not to box each latency.
+	 */
+	private static class Measures {
+
+		private final long[][] latencies = new long[OPERATIONS.length][1024];
+
+		private final int[] counts = new int[OPERATIONS.length];
+
+		private final Map<String, Integer> errors = new TreeMap<String, Integer>();
+
+		void record(int operation, long latencyNanos, String error) {
+			if (counts[operation] == latencies[operation].length) {
+				latencies[operation] = Arrays.copyOf(latencies[operation], counts[operation] * 2);
+			}
+			latencies[operation][counts[operation]++] = latencyNanos;
+			if (error != null) {
+				Integer count = errors.get(error);
+				errors.put(error, count != null ? count + 1 : 1);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,547 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.stub;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.Assert;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.StringUtils;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * <p>
+ * An embedded HTTP server standing in for the Graph API in tests and load tests, which cannot be run against
+ * graph.facebook.com. Templates are pointed at it with {@link org.springframework.social.facebook.api.impl.FacebookTemplate#setGraphApiUrl(String)}
+ * and {@link #getGraphApiUrl()}.
+ * </p>
+ * <p>
+ * The server answers the requests whose path matches a registered fixture with its JSON, whatever the API version in
+ * the path. Fixtures with a "data" array are paged like Graph API connections: the "limit" parameter (or the default
+ * page size) sets the size of a page, which starts at the "after" cursor or "offset" parameter, and the "paging"
+ * object links to the next and previous pages. Requests that do not match any fixture get a "not found" error.
+ * </p>
+ * <p>
+ * Each response can be delayed by a random latency, replaced by an injected {@link GraphApiError} (at random or on
+ * demand), and report the app's usage in an X-App-Usage header once a call limit is set, rejecting calls with an
+ * {@link GraphApiError#APP_RATE_LIMIT} error when the limit is reached.
+ * </p>
+ */
+@Slf4j
+public class GraphApiStubServer implements Closeable {
+
+	/**
+	 * The package of the JSON fixtures of the Facebook API tests, which are bundled with this module.
+	 */
+	public static final String FIXTURE_LOCATION = "org/springframework/social/facebook/api/";
+
+	private static final Pattern VERSION = Pattern.compile("v\\d+\\.\\d+");
+
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+	private final int port;
+
+	private final List<Fixture> fixtures = new CopyOnWriteArrayList<Fixture>();
+
+	private final Queue<GraphApiError> pendingErrors = new ConcurrentLinkedQueue<GraphApiError>();
+
+	private final AtomicLong requestCount = new AtomicLong();
+
+	private final AtomicLong errorCount = new AtomicLong();
+
+	private final Object usageMonitor = new Object();
+
+	private volatile int defaultPageSize = 25;
+
+	private volatile long minLatencyNanos;
+
+	private volatile long maxLatencyNanos;
+
+	private volatile double errorRate;
+
+	private volatile GraphApiError[] randomErrors = new GraphApiError[0];
+
+	private int appCallLimit;
+
+	private long usageWindowNanos = TimeUnit.HOURS.toNanos(1);
+
+	private long usageWindowStart;
+
+	private long usageWindowCalls;
+
+	private HttpServer server;
+
+	private ExecutorService executor;
+
+	/**
+	 * Creates a server listening on a free port of the loopback interface once started.
+	 */
+	public GraphApiStubServer() {
+		this(0);
+	}
+
+	/**
+	 * @param port the port of the loopback interface the server listens on once started, or 0 for a free one.
+	 */
+	public GraphApiStubServer(int port) {
+		this.port = port;
+	}
+
+	/**
+	 * Starts the server, which then handles each request on its own thread.
+	 * @throws UncheckedIOException if the server cannot listen on its port.
+	 */
+	public synchronized void start() {
+		Assert.state(server == null, "The server is already started");
+		// Without TCP_NODELAY, small responses wait for the client's delayed ACK (~40ms), which dwarfs the latency
+		// under test. The JDK server reads this setting once, when the first server is created.
+		if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+		try {
+			server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not start the Graph API stub server", e);
+		}
+		executor = Executors.newCachedThreadPool(new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "graph-api-stub-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		server.setExecutor(executor);
+		server.createContext("/", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				GraphApiStubServer.this.handle(exchange);
+			}
+		});
+		server.start();
+	}
+
+	/**
+	 * Stops the server, closing its connections.
+	 */
+	public synchronized void stop() {
+		if (server != null) {
+			server.stop(0);
+			executor.shutdownNow();
+			server = null;
+			executor = null;
+		}
+	}
+
+	public void close() {
+		stop();
+	}
+
+	/**
+	 * @return the port the server listens on.
+	 */
+	public synchronized int getPort() {
+		Assert.state(server != null, "The server is not started");
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * @return the root URL of the stubbed Graph API, to set on the templates under test.
+	 */
+	public String getGraphApiUrl() {
+		return "http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + getPort() + "/";
+	}
+
+	/**
+	 * Answers the GET requests to the given path with one of the JSON fixtures of the Facebook API tests.
+	 * @param path the path of the requests, without the API version, where a segment in braces matches any segment (e.g. "{id}/feed").
+	 * @param fixture the name of the fixture in {@link #FIXTURE_LOCATION}, without its ".json" extension (e.g. "feed").
+	 */
+	public void addFixture(String path, String fixture) {
+		addFixture(HttpMethod.GET, path, new ClassPathResource(FIXTURE_LOCATION + fixture + ".json"));
+	}
+
+	/**
+	 * Answers the requests to the given path with the given JSON resource. Fixtures are matched in the order they were
+	 * added.
+	 * @param method the method of the requests.
+	 * @param path the path of the requests, without the API version, where a segment in braces matches any segment (e.g. "{id}/feed").
+	 * @param resource the JSON response.
+	 * @throws UncheckedIOException if the resource cannot be read.
+	 */
+	public void addFixture(HttpMethod method, String path, Resource resource) {
+		try {
+			byte[] body = FileCopyUtils.copyToByteArray(resource.getInputStream());
+			fixtures.add(new Fixture(method.name(), StringUtils.tokenizeToStringArray(path, "/"), body, OBJECT_MAPPER.readTree(body)));
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not read the fixture " + resource, e);
+		}
+	}
+
+	/**
+	 * @param defaultPageSize the number of items per page of the paged fixtures when the request has no "limit". Defaults to 25.
+	 */
+	public void setDefaultPageSize(int defaultPageSize) {
+		Assert.isTrue(defaultPageSize > 0, "defaultPageSize must be positive");
+		this.defaultPageSize = defaultPageSize;
+	}
+
+	/**
+	 * Delays each response by a random latency between the given bounds. There is no latency by default.
+	 * @param minimum the minimum latency.
+	 * @param maximum the maximum latency.
+	 * @param unit the unit of the latencies.
+	 */
+	public void setLatency(long minimum, long maximum, TimeUnit unit) {
+		Assert.isTrue(minimum >= 0 && maximum >= minimum, "The latency bounds must be positive and ordered");
+		this.minLatencyNanos = unit.toNanos(minimum);
+		this.maxLatencyNanos = unit.toNanos(maximum);
+	}
+
+	/**
+	 * Answers a share of the requests with one of the given errors, picked at random. No errors are injected by default.
+	 * @param errorRate the share of the requests answered with an error, between 0 and 1.
+	 * @param errors the errors to inject.
+	 */
+	public void setErrorRate(double errorRate, GraphApiError... errors) {
+		Assert.isTrue(errorRate >= 0 && errorRate <= 1, "errorRate must be between 0 and 1");
+		Assert.isTrue(errorRate == 0 || errors.length > 0, "At least one error must be given");
+		this.randomErrors = errors.clone();
+		this.errorRate = errorRate;
+	}
+
+	/**
+	 * Answers the next request with the given error, before any random one.
+	 * @param error the error to inject.
+	 */
+	public void failNext(GraphApiError error) {
+		pendingErrors.add(error);
+	}
+
+	/**
+	 * Limits the number of calls of the app per window, reporting the share of the limit used in the X-App-Usage header
+	 * of the responses and answering the calls over the limit with an {@link GraphApiError#APP_RATE_LIMIT} error until the
+	 * window ends. The calls are not limited, nor the header sent, by default.
+	 * @param calls the number of calls allowed per window, or 0 to lift the limit.
+	 * @param window the length of a window.
+	 * @param unit the unit of the window.
+	 */
+	public void setAppCallLimit(int calls, long window, TimeUnit unit) {
+		Assert.isTrue(calls >= 0, "calls must not be negative");
+		Assert.isTrue(window > 0, "window must be positive");
+		synchronized (usageMonitor) {
+			this.appCallLimit = calls;
+			this.usageWindowNanos = unit.toNanos(window);
+			this.usageWindowStart = System.nanoTime();
+			this.usageWindowCalls = 0;
+		}
+	}
+
+	/**
+	 * @return the number of requests received.
+	 */
+	public long getRequestCount() {
+		return requestCount.get();
+	}
+
+	/**
+	 * @return the number of requests answered with an injected or rate limit error.
+	 */
+	public long getErrorCount() {
+		return errorCount.get();
+	}
+
+	/**
+	 * Clears the counters and the pending errors.
+	 */
+	public void reset() {
+		requestCount.set(0);
+		errorCount.set(0);
+		pendingErrors.clear();
+		synchronized (usageMonitor) {
+			usageWindowStart = System.nanoTime();
+			usageWindowCalls = 0;
+		}
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			requestCount.incrementAndGet();
+			StreamUtils.drain(exchange.getRequestBody());
+			delay();
+
+			long usage = recordCall();
+			if (usage >= 0) {
+				exchange.getResponseHeaders().set("X-App-Usage", usageHeader((int) Math.min(100, usage)));
+			}
+			GraphApiError error = usage > 100 ? GraphApiError.APP_RATE_LIMIT : nextError();
+			if (error != null) {
+				errorCount.incrementAndGet();
+				respond(exchange, error.getStatus(), errorBody(error.getCode(), error.getType(), error.getMessage()));
+				return;
+			}
+
+			URI uri = exchange.getRequestURI();
+			String[] segments = StringUtils.tokenizeToStringArray(uri.getPath(), "/");
+			int first = segments.length > 0 && VERSION.matcher(segments[0]).matches() ? 1 : 0;
+			Fixture fixture = findFixture(exchange.getRequestMethod(), segments, first);
+			if (fixture == null) {
+				String alias = segments.length > first ? segments[first] : "";
+				respond(exchange, 404, errorBody(803, "OAuthException", "(#803) Some of the aliases you requested do not exist: " + alias));
+				return;
+			}
+			respond(exchange, 200, page(fixture, uri));
+		} catch (RuntimeException e) {
+			log.warn("Could not answer {} {}", exchange.getRequestMethod(), exchange.getRequestURI(), e);
+			respond(exchange, 500, errorBody(GraphApiError.UNKNOWN.getCode(), "OAuthException", GraphApiError.UNKNOWN.getMessage()));
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void delay() {
+		long latency = minLatencyNanos < maxLatencyNanos ? ThreadLocalRandom.current().nextLong(minLatencyNanos, maxLatencyNanos + 1) : maxLatencyNanos;
+		if (latency > 0) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(latency);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * @return the share of the call limit used by the calls of the current window, including this one, in percent
+	 *         rounded up (so that it is over 100 once the limit is exceeded), or -1 if the calls are not limited.
+	 */
+	private long recordCall() {
+		synchronized (usageMonitor) {
+			if (appCallLimit <= 0) {
+				return -1;
+			}
+			long now = System.nanoTime();
+			if (now - usageWindowStart >= usageWindowNanos) {
+				usageWindowStart = now;
+				usageWindowCalls = 0;
+			}
+			usageWindowCalls++;
+			return (usageWindowCalls * 100L + appCallLimit - 1) / appCallLimit;
+		}
+	}
+
+	private String usageHeader(int usage) {
+		ObjectNode header = OBJECT_MAPPER.createObjectNode();
+		header.put("call_count", usage);
+		header.put("total_cputime", usage);
+		header.put("total_time", usage);
+		if (usage >= 100) {
+			long remainingNanos;
+			synchronized (usageMonitor) {
+				remainingNanos = usageWindowNanos - (System.nanoTime() - usageWindowStart);
+			}
+			header.put("estimated_time_to_regain_access", Math.max(1, TimeUnit.NANOSECONDS.toMinutes(remainingNanos)));
+		}
+		return header.toString();
+	}
+
+	private GraphApiError nextError() {
+		GraphApiError error = pendingErrors.poll();
+		if (error != null) {
+			return error;
+		}
+		GraphApiError[] errors = randomErrors;
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		if (errorRate > 0 && random.nextDouble() < errorRate) {
+			return errors[random.nextInt(errors.length)];
+		}
+		return null;
+	}
+
+	private Fixture findFixture(String method, String[] segments, int first) {
+		for (Fixture fixture : fixtures) {
+			if (fixture.matches(method, segments, first)) {
+				return fixture;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Slices the page requested by the "limit" and "after", "before" or "offset" parameters out of the "data" array of a
+	 * fixture, which is answered as is if it has none. The cursors are the Base64 encoded positions of the items.
+	 */
+	private byte[] page(Fixture fixture, URI uri) throws IOException {
+		JsonNode data = fixture.json.get("data");
+		if (data == null || !data.isArray()) {
+			return fixture.body;
+		}
+		MultiValueMap<String, String> parameters = UriComponentsBuilder.fromUri(uri).build(true).getQueryParams();
+		int limit = intParameter(parameters, "limit", defaultPageSize);
+		int offset;
+		if (parameters.containsKey("after")) {
+			offset = decodeCursor(parameters.getFirst("after")) + 1;
+		} else if (parameters.containsKey("before")) {
+			offset = Math.max(0, decodeCursor(parameters.getFirst("before")) - limit);
+		} else {
+			offset = intParameter(parameters, "offset", 0);
+		}
+		int end = Math.min(data.size(), offset + limit);
+
+		ObjectNode page = OBJECT_MAPPER.createObjectNode();
+		Iterator<Map.Entry<String, JsonNode>> fields = fixture.json.fields();
+		while (fields.hasNext()) {
+			Map.Entry<String, JsonNode> field = fields.next();
+			if (!"data".equals(field.getKey()) && !"paging".equals(field.getKey())) {
+				page.set(field.getKey(), field.getValue());
+			}
+		}
+		ArrayNode items = page.putArray("data");
+		for (int i = offset; i < end; i++) {
+			items.add(data.get(i));
+		}
+		if (offset < end) {
+			ObjectNode paging = page.putObject("paging");
+			ObjectNode cursors = paging.putObject("cursors");
+			cursors.put("before", encodeCursor(offset));
+			cursors.put("after", encodeCursor(end - 1));
+			if (offset > 0) {
+				paging.put("previous", pageUrl(uri, "before", encodeCursor(offset)));
+			}
+			if (end < data.size()) {
+				paging.put("next", pageUrl(uri, "after", encodeCursor(end - 1)));
+			}
+		}
+		return OBJECT_MAPPER.writeValueAsBytes(page);
+	}
+
+	private String pageUrl(URI uri, String cursorName, String cursor) {
+		return UriComponentsBuilder.fromHttpUrl(getGraphApiUrl())
+				.replacePath(uri.getRawPath())
+				.query(uri.getRawQuery())
+				.replaceQueryParam("offset")
+				.replaceQueryParam("after")
+				.replaceQueryParam("before")
+				.queryParam(cursorName, cursor)
+				.build(true)
+				.toUriString();
+	}
+
+	private static int intParameter(MultiValueMap<String, String> parameters, String name, int defaultValue) {
+		String value = parameters.getFirst(name);
+		return value != null ? Integer.parseInt(value) : defaultValue;
+	}
+
+	private static String encodeCursor(int position) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(String.valueOf(position).getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static int decodeCursor(String cursor) {
+		String decoded = UriUtils.decode(cursor, StandardCharsets.UTF_8);
+		return Integer.parseInt(new String(Base64.getUrlDecoder().decode(decoded), StandardCharsets.UTF_8));
+	}
+
+	private static byte[] errorBody(int code, String type, String message) throws IOException {
+		ObjectNode body = OBJECT_MAPPER.createObjectNode();
+		ObjectNode error = body.putObject("error");
+		error.put("message", message);
+		error.put("type", type);
+		error.put("code", code);
+		error.put("fbtrace_id", "GraphApiStubServer");
+		return OBJECT_MAPPER.writeValueAsBytes(body);
+	}
+
+	private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+		exchange.sendResponseHeaders(status, body.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(body);
+		out.flush();
+	}
+
+	private static final class Fixture {
+
+		private final String method;
+
+		private final String[] segments;
+
+		private final byte[] body;
+
+		private final JsonNode json;
+
+		Fixture(String method, String[] segments, byte[] body, JsonNode json) {
+			this.method = method;
+			this.segments = segments;
+			this.body = body;
+			this.json = json;
+		}
+
+		boolean matches(String requestMethod, String[] requestSegments, int first) {
+			if (!method.equals(requestMethod) || requestSegments.length - first != segments.length) {
+				return false;
+			}
+			for (int i = 0; i < segments.length; i++) {
+				if (!isVariable(segments[i]) && !segments[i].equals(requestSegments[first + i])) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private static boolean isVariable(String segment) {
+			return segment.startsWith("{") && segment.endsWith("}");
+		}
+
+	}
+
+}
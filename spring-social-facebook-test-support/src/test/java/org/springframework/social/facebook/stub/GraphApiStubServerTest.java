@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.stub;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.social.InvalidAuthorizationException;
+import org.springframework.social.RateLimitExceededException;
+import org.springframework.social.ResourceNotFoundException;
+import org.springframework.social.ServerException;
+import org.springframework.social.UncategorizedApiException;
+import org.springframework.social.facebook.api.Facebook;
+import org.springframework.social.facebook.api.PagedList;
+import org.springframework.social.facebook.api.PagingParameters;
+import org.springframework.social.facebook.api.Post;
+import org.springframework.social.facebook.api.User;
+import org.springframework.social.facebook.api.impl.FacebookClientFactory;
+import org.springframework.web.client.RestTemplate;
+
+public class GraphApiStubServerTest {
+
+	private GraphApiStubServer server;
+
+	private FacebookClientFactory clientFactory;
+
+	private Facebook facebook;
+
+	@Before
+	public void setup() {
+		server = new GraphApiStubServer();
+		server.start();
+		server.addFixture("me", "full-profile");
+		server.addFixture("{id}/feed", "feed");
+		clientFactory = new FacebookClientFactory(null, null);
+		clientFactory.setGraphApiUrl(server.getGraphApiUrl());
+		facebook = clientFactory.getFacebook("someAccessToken");
+	}
+
+	@After
+	public void tearDown() {
+		server.stop();
+	}
+
+	@Test
+	public void servesFixtures() {
+		User user = facebook.userOperations().getUserProfile();
+		assertEquals("123456789", user.getId());
+		assertEquals(1, server.getRequestCount());
+	}
+
+	@Test
+	public void pagesFixtures() {
+		PagedList<Post> first = facebook.feedOperations().getFeed(new PagingParameters(2, null, null, null));
+		assertEquals(2, first.size());
+		assertNull(first.getPreviousPage());
+
+		PagedList<Post> second = facebook.feedOperations().getFeed(first.getNextPage());
+		assertEquals(2, second.size());
+		assertNotEquals(first.get(1).getId(), second.get(0).getId());
+
+		PagedList<Post> last = facebook.feedOperations().getFeed(second.getNextPage());
+		assertEquals(1, last.size());
+		assertNull(last.getNextPage());
+
+		PagedList<Post> previous = facebook.feedOperations().getFeed(last.getPreviousPage());
+		assertEquals(second.get(0).getId(), previous.get(0).getId());
+		assertEquals(5, facebook.feedOperations().getFeed().size());
+	}
+
+	@Test
+	public void injectsErrors() {
+		server.failNext(GraphApiError.UNKNOWN);
+		server.failNext(GraphApiError.SERVICE);
+		server.failNext(GraphApiError.APP_RATE_LIMIT);
+		server.failNext(GraphApiError.USER_RATE_LIMIT);
+		server.failNext(GraphApiError.INVALID_ACCESS_TOKEN);
+
+		assertFetchFails(UncategorizedApiException.class);
+		assertFetchFails(ServerException.class);
+		assertFetchFails(RateLimitExceededException.class);
+		assertFetchFails(RateLimitExceededException.class);
+		assertFetchFails(InvalidAuthorizationException.class);
+		assertEquals("123456789", facebook.userOperations().getUserProfile().getId());
+		assertEquals(5, server.getErrorCount());
+	}
+
+	@Test(expected = ResourceNotFoundException.class)
+	public void unknownPath() {
+		facebook.fetchObject("123/unknown", User.class);
+	}
+
+	@Test
+	public void limitsAppCalls() {
+		server.setAppCallLimit(2, 1, TimeUnit.MINUTES);
+		ResponseEntity<String> response = new RestTemplate().getForEntity(server.getGraphApiUrl() + "v8.0/me", String.class);
+		assertEquals("{\"call_count\":50,\"total_cputime\":50,\"total_time\":50}", response.getHeaders().getFirst("X-App-Usage"));
+		facebook.userOperations().getUserProfile();
+		assertFetchFails(RateLimitExceededException.class);
+	}
+
+	@Test
+	public void delaysResponses() {
+		server.setLatency(50, 60, TimeUnit.MILLISECONDS);
+		long start = System.nanoTime();
+		facebook.userOperations().getUserProfile();
+		assertThat(System.nanoTime() - start, greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50)));
+	}
+
+	@Test
+	public void loadTest() throws InterruptedException {
+		GraphApiLoadTest loadTest = new GraphApiLoadTest(server, clientFactory);
+		loadTest.setThreads(2);
+		loadTest.setDuration(0, 500, TimeUnit.MILLISECONDS);
+		GraphApiLoadTest.Report report = loadTest.run();
+		assertThat(report.getOperationCount(), greaterThan(0L));
+		assertTrue(report.getErrors().isEmpty());
+		assertThat(report.getLatency(99, TimeUnit.MILLISECONDS), greaterThan(0.0));
+		assertThat(report.toString(), containsString("feed (pages of 2)"));
+	}
+
+	private void assertFetchFails(Class<? extends Exception> exceptionType) {
+		try {
+			facebook.userOperations().getUserProfile();
+			fail("Expected " + exceptionType.getSimpleName());
+		} catch (Exception e) {
+			assertThat(e, instanceOf(exceptionType));
+		}
+	}
+
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.web;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Hands real time updates to the {@link UpdateHandler}s on a bounded pool of worker threads, so that
+ * {@link RealTimeUpdateController} can acknowledge Facebook's request without waiting for the handlers.
+ * <p>
+ * At most {@code queueCapacity} updates wait for a worker. Once the queue is full, the update is handled on the
+ * calling (servlet) thread, which delays the response to Facebook and so slows deliveries down to the pace the
+ * handlers can sustain instead of dropping updates. Updates received after {@link #shutdown(long, TimeUnit)} are
+ * handled on the calling thread too, so that no acknowledged update is lost.
+ * </p>
+ * <p>
+ * Queue depth and handler latency are exposed for monitoring.
+ * </p>
+ */
+public class AsyncUpdateDispatcher implements DisposableBean {
+
+	private final List<UpdateHandler> updateHandlers;
+
+	private final ThreadPoolExecutor executor;
+
+	private final LongAdder dispatchedCount = new LongAdder();
+
+	private final LongAdder handledCount = new LongAdder();
+
+	private final LongAdder failedCount = new LongAdder();
+
+	private final LongAdder totalHandlerNanos = new LongAdder();
+
+	private final AtomicLong maxHandlerNanos = new AtomicLong();
+
+	/**
+	 * Constructs an AsyncUpdateDispatcher.
+	 * @param updateHandlers the {@link UpdateHandler}s to hand each update to, in order.
+	 * @param parallelism the number of worker threads handling updates.
+	 * @param queueCapacity the maximum number of updates waiting for a worker.
+	 */
+	public AsyncUpdateDispatcher(List<UpdateHandler> updateHandlers, int parallelism, int queueCapacity) {
+		this.updateHandlers = updateHandlers;
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("facebook-realtime-");
+		threadFactory.setDaemon(true);
+		this.executor = new ThreadPoolExecutor(parallelism, parallelism, 60L, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(queueCapacity), threadFactory, new CallerRunsAlwaysPolicy());
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Queues an update to be handed to the update handlers.
+	 * @param subscription The subscription name.
+	 * @param update the update received from Facebook.
+	 */
+	public void dispatch(String subscription, RealTimeUpdate update) {
+		dispatch(subscription, update, null);
+	}
+
+	/**
+	 * Queues an update to be handed to the update handlers.
+	 * @param subscription The subscription name.
+	 * @param update the update received from Facebook.
+	 * @param completionCallback called once every handler has been called, even if some of them failed. May be null.
+	 */
+	public void dispatch(final String subscription, final RealTimeUpdate update, final Runnable completionCallback) {
+		dispatchedCount.increment();
+		executor.execute(new Runnable() {
+			public void run() {
+				try {
+					handle(subscription, update);
+				} finally {
+					if (completionCallback != null) {
+						completionCallback.run();
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * @return the number of updates waiting for a worker.
+	 */
+	public int getQueueDepth() {
+		return executor.getQueue().size();
+	}
+
+	/**
+	 * @return the number of updates currently being handled.
+	 */
+	public int getActiveCount() {
+		return executor.getActiveCount();
+	}
+
+	/**
+	 * @return the number of updates received since this dispatcher was created.
+	 */
+	public long getDispatchedCount() {
+		return dispatchedCount.sum();
+	}
+
+	/**
+	 * @return the number of handler invocations that completed, successfully or not.
+	 */
+	public long getHandledCount() {
+		return handledCount.sum();
+	}
+
+	/**
+	 * @return the number of handler invocations that threw an exception.
+	 */
+	public long getFailedCount() {
+		return failedCount.sum();
+	}
+
+	/**
+	 * @param unit the unit of the returned latency
+	 * @return the mean time spent in a single {@link UpdateHandler#handleUpdate(String, RealTimeUpdate)} call.
+	 */
+	public long getMeanHandlerLatency(TimeUnit unit) {
+		long handled = handledCount.sum();
+		return handled == 0 ? 0 : unit.convert(totalHandlerNanos.sum() / handled, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @param unit the unit of the returned latency
+	 * @return the longest time spent in a single {@link UpdateHandler#handleUpdate(String, RealTimeUpdate)} call.
+	 */
+	public long getMaxHandlerLatency(TimeUnit unit) {
+		return unit.convert(maxHandlerNanos.get(), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Stops accepting updates and waits up to the given time for the queued ones to be handled.
+	 * @param timeout the maximum time to wait
+	 * @param unit the unit of the timeout
+	 * @return true if all queued updates were handled, false if the timeout elapsed first.
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+		executor.shutdown();
+		return executor.awaitTermination(timeout, unit);
+	}
+
+	public void destroy() throws Exception {
+		if (!shutdown(30, TimeUnit.SECONDS)) {
+			logger.warn(getQueueDepth() + " real time updates were still queued when shutting down.");
+			executor.shutdownNow();
+		}
+	}
+
+	private void handle(String subscription, RealTimeUpdate update) {
+		for (UpdateHandler handler : updateHandlers) {
+			long start = System.nanoTime();
+			try {
+				handler.handleUpdate(subscription, update);
+			} catch (RuntimeException e) {
+				failedCount.increment();
+				logger.error("Update handler failed to handle " + update.getObject() + " update for '" + subscription + "'.", e);
+			} finally {
+				recordLatency(System.nanoTime() - start);
+			}
+		}
+	}
+
+	private void recordLatency(long nanos) {
+		handledCount.increment();
+		totalHandlerNanos.add(nanos);
+		long max = maxHandlerNanos.get();
+		while (nanos > max && !maxHandlerNanos.compareAndSet(max, nanos)) {
+			max = maxHandlerNanos.get();
+		}
+	}
+
+	/**
+	 * Runs rejected updates on the calling thread. Unlike {@link ThreadPoolExecutor.CallerRunsPolicy}, which silently
+	 * discards them once the executor is shut down, it also runs those received while shutting down.
+	 */
+	private static class CallerRunsAlwaysPolicy implements RejectedExecutionHandler {
+
+		public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+			task.run();
+		}
+
+	}
+
+	private final static Log logger = LogFactory.getLog(AsyncUpdateDispatcher.class);
+
+}
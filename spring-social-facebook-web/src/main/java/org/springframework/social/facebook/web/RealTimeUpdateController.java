@@ -17,6 +17,10 @@ package org.springframework.social.facebook.web;
 
 import static org.springframework.web.bind.annotation.RequestMethod.*;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
 import java.util.List;
 import java.util.Map;
 
@@ -36,6 +40,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 
 /**
  * A Spring MVC controller that handles callbacks from Facebook's Real-Time Update API.
@@ -47,6 +52,11 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  * </ul>
  * 
  * Note that these requests are performed by Facebook and are not typically linked to or otherwise called in a web application.
+ * <p>
+ * By default, updates are handed to the {@link UpdateHandler}s before Facebook's request is answered.
+ * When constructed with an {@link AsyncUpdateDispatcher}, updates are queued instead and the request is answered immediately.
+ * Adding a {@link RealTimeUpdateJournal} keeps queued updates from being lost if the application stops before handling them.
+ * </p>
  * @author Craig Walls
  */
 @Controller
@@ -57,8 +67,14 @@ public class RealTimeUpdateController {
 	
 	private List<UpdateHandler> updateHandlers;
 
+	private AsyncUpdateDispatcher dispatcher;
+
+	private RealTimeUpdateJournal journal;
+
 	private String applicationSecret;
 
+	private final ThreadLocal<Mac> macs = new ThreadLocal<Mac>();
+
 	/**
 	 * Constructs a RealTimeUpdateController.
 	 * @param tokens A map of subscription names to verification tokens.
@@ -72,6 +88,36 @@ public class RealTimeUpdateController {
 		this.applicationSecret = applicationSecret;
 	}
 
+	/**
+	 * Constructs a RealTimeUpdateController that answers Facebook as soon as an update has been verified and queued.
+	 * @param tokens A map of subscription names to verification tokens.
+	 * @param dispatcher the {@link AsyncUpdateDispatcher} handing updates to the {@link UpdateHandler}s.
+	 * @param applicationSecret the application's Facebook App Secret
+	 */
+	public RealTimeUpdateController(Map<String, String> tokens, AsyncUpdateDispatcher dispatcher, String applicationSecret) {
+		this.tokens = tokens;
+		this.dispatcher = dispatcher;
+		this.applicationSecret = applicationSecret;
+	}
+
+	/**
+	 * Constructs a RealTimeUpdateController that records each verified update in a journal before answering Facebook,
+	 * and acknowledges it once handled. Updates recovered from the journal are dispatched right away.
+	 * @param tokens A map of subscription names to verification tokens.
+	 * @param dispatcher the {@link AsyncUpdateDispatcher} handing updates to the {@link UpdateHandler}s.
+	 * @param journal the {@link RealTimeUpdateJournal} recording updates until they are handled.
+	 * @param applicationSecret the application's Facebook App Secret
+	 * @throws IOException if a recovered update cannot be read
+	 */
+	public RealTimeUpdateController(Map<String, String> tokens, AsyncUpdateDispatcher dispatcher, RealTimeUpdateJournal journal, String applicationSecret) throws IOException {
+		this(tokens, dispatcher, applicationSecret);
+		this.journal = journal;
+		for (RealTimeUpdateJournal.JournalEntry entry : journal.getRecoveredEntries()) {
+			RealTimeUpdate update = UPDATE_READER.readValue(entry.getPayload());
+			dispatcher.dispatch(entry.getSubscription(), update, acknowledgement(entry.getSequence()));
+		}
+	}
+
 	/**
 	 * Handles subscription verification callback from Facebook.
 	 * @param subscription The subscription name.
@@ -90,6 +136,7 @@ public class RealTimeUpdateController {
 	
 	/**
 	 * Receives an update from Facebook's real-time API.
+	 * The signature is verified before the payload is parsed, so that forged requests cost as little as possible.
 	 * @param subscription The subscription name.
 	 * @param payload The request body payload.
 	 * @param signature The SHA1 signature of the request.
@@ -99,36 +146,58 @@ public class RealTimeUpdateController {
 	@RequestMapping(value="/{subscription}", method=POST)
 	public @ResponseBody String receiveUpdate(
 			@PathVariable("subscription") String subscription,
-			@RequestBody String payload,
+			@RequestBody byte[] payload,
 			@RequestHeader(X_HUB_SIGNATURE) String signature) throws Exception {
 
-		// Can only read body once and we need it as a raw String to calculate the signature.
-		// Therefore, use Jackson ObjectMapper to give us a RealTimeUpdate object from that raw String.
-		RealTimeUpdate update = new ObjectMapper().readValue(payload, RealTimeUpdate.class);		
-		if (verifySignature(payload, signature)) {
-			logger.debug("Received " + update.getObject() + " update for '" + subscription + "'.");
+		// The signature is calculated on the raw body, so read it as bytes and bind it once verified.
+		if (!verifySignature(payload, signature)) {
+			logger.warn("Received an update, but signature was invalid. Not delegating to handlers.");
+			return "";
+		}
+		RealTimeUpdate update = UPDATE_READER.readValue(payload);
+		logger.debug("Received " + update.getObject() + " update for '" + subscription + "'.");
+		if (journal != null) {
+			long sequence = journal.append(subscription, payload);
+			dispatcher.dispatch(subscription, update, acknowledgement(sequence));
+		} else if (dispatcher != null) {
+			dispatcher.dispatch(subscription, update);
+		} else {
 			for (UpdateHandler handler : updateHandlers) {
 				handler.handleUpdate(subscription, update);
 			}
-		} else {
-			logger.warn("Received an update, but signature was invalid. Not delegating to handlers.");
 		}
 		return "";
 	}
 
-	private boolean verifySignature(String payload, String signature) throws Exception {
+	private Runnable acknowledgement(final long sequence) {
+		return new Runnable() {
+			public void run() {
+				journal.acknowledge(sequence);
+			}
+		};
+	}
+
+	private boolean verifySignature(byte[] payload, String signature) throws GeneralSecurityException {
 		if (!signature.startsWith("sha1=")) {
 			return false;
 		}
-		String expected = signature.substring(5);		
-		Mac mac = Mac.getInstance(HMAC_SHA1_ALGORITHM);
-		SecretKeySpec signingKey = new SecretKeySpec(applicationSecret.getBytes(), HMAC_SHA1_ALGORITHM);
-		mac.init(signingKey);
-		byte[] rawHmac = mac.doFinal(payload.getBytes());
-		String actual = new String(Hex.encode(rawHmac));
-		return expected.equals(actual);
+		byte[] expected = signature.substring(5).getBytes(StandardCharsets.US_ASCII);
+		byte[] actual = new String(Hex.encode(getMac().doFinal(payload))).getBytes(StandardCharsets.US_ASCII);
+		return MessageDigest.isEqual(expected, actual);
 	}
 
+	private Mac getMac() throws GeneralSecurityException {
+		Mac mac = macs.get();
+		if (mac == null) {
+			mac = Mac.getInstance(HMAC_SHA1_ALGORITHM);
+			mac.init(new SecretKeySpec(applicationSecret.getBytes(), HMAC_SHA1_ALGORITHM));
+			macs.set(mac);
+		}
+		return mac;
+	}
+
+	private static final ObjectReader UPDATE_READER = new ObjectMapper().readerFor(RealTimeUpdate.class);
+
 	private static final String HMAC_SHA1_ALGORITHM = "HmacSHA1";
 
 	private static final String X_HUB_SIGNATURE = "X-Hub-Signature";
@@ -0,0 +1,548 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.web;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * <p>
+ * Append-only local journal of the real time updates received from Facebook, so that updates acknowledged to Facebook
+ * but not yet handled when the node stops are handled once it restarts.
+ * </p>
+ * <p>
+ * Each verified update is appended, with its subscription and raw payload, to the current segment file through a
+ * {@link FileChannel}. {@link #append(String, byte[])} only returns once the record has been forced to disk, but a single
+ * background thread forces all the records written since its previous pass at once (group commit), so a burst of
+ * deliveries costs one fsync per pass rather than one per update.
+ * </p>
+ * <p>
+ * Once handled, an update is {@link #acknowledge(long) acknowledged} with a record that is not forced: after a crash,
+ * an update may be handled again, but never lost. Segments are rotated once they reach the configured size, and deleted
+ * once every update they hold, and in all the segments before them, has been acknowledged.
+ * </p>
+ * <p>
+ * On opening, the updates that were never acknowledged are copied to a new segment, the older segments are deleted, and
+ * the updates are made available from {@link #getRecoveredEntries()} to be handled again. A record partially written
+ * when the node stopped is detected by its checksum and discarded.
+ * </p>
+ */
+public class RealTimeUpdateJournal implements Closeable, DisposableBean {
+
+	/**
+	 * The default maximum size of a segment file, in bytes.
+	 */
+	public static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+
+	private static final String SEGMENT_SUFFIX = ".wal";
+
+	private static final byte UPDATE_RECORD = 1;
+
+	private static final byte ACK_RECORD = 2;
+
+	private static final int RECORD_HEADER_SIZE = 8;
+
+	private final File directory;
+
+	private final long segmentSize;
+
+	private final long commitIntervalMillis;
+
+	private final Object writeLock = new Object();
+
+	private final Object commitLock = new Object();
+
+	private final TreeMap<Long, Segment> segments = new TreeMap<Long, Segment>();
+
+	private final Map<Long, Segment> pendingSegments = new HashMap<Long, Segment>();
+
+	private final List<JournalEntry> recoveredEntries;
+
+	private final Thread committer;
+
+	private Segment currentSegment;
+
+	private long lastSequence;
+
+	private long writtenSequence;
+
+	private long committedSequence;
+
+	private IOException commitFailure;
+
+	private volatile boolean closed;
+
+	/**
+	 * Opens a journal in the given directory with the default segment size, forcing records to disk as soon as possible.
+	 * @param directory the directory holding the segment files, created if needed.
+	 * @throws IOException if the journal cannot be read or written.
+	 */
+	public RealTimeUpdateJournal(File directory) throws IOException {
+		this(directory, DEFAULT_SEGMENT_SIZE, 0);
+	}
+
+	/**
+	 * Opens a journal in the given directory.
+	 * @param directory the directory holding the segment files, created if needed.
+	 * @param segmentSize the size, in bytes, after which a new segment file is started.
+	 * @param commitIntervalMillis how long the committer waits for more records before forcing them to disk. Longer
+	 *            intervals mean fewer fsyncs under load but more latency for each {@link #append(String, byte[])}.
+	 * @throws IOException if the journal cannot be read or written.
+	 */
+	public RealTimeUpdateJournal(File directory, long segmentSize, long commitIntervalMillis) throws IOException {
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.commitIntervalMillis = commitIntervalMillis;
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Unable to create journal directory " + directory);
+		}
+		this.recoveredEntries = Collections.unmodifiableList(recover());
+		this.committer = new Thread(new Runnable() {
+			public void run() {
+				commitLoop();
+			}
+		}, "facebook-realtime-journal");
+		this.committer.setDaemon(true);
+		this.committer.start();
+	}
+
+	/**
+	 * @return the updates that had not been acknowledged when the journal was last closed, in the order they were received.
+	 *         They are still pending and must be acknowledged once handled.
+	 */
+	public List<JournalEntry> getRecoveredEntries() {
+		return recoveredEntries;
+	}
+
+	/**
+	 * Appends an update to the journal and waits until it has been forced to disk.
+	 * @param subscription the subscription the update was received for.
+	 * @param payload the update's verified raw payload.
+	 * @return the sequence number to acknowledge the update with once handled.
+	 * @throws IOException if the update could not be written or forced to disk.
+	 */
+	public long append(String subscription, byte[] payload) throws IOException {
+		long sequence;
+		synchronized (writeLock) {
+			ensureOpen();
+			sequence = ++lastSequence;
+			writeUpdate(sequence, subscription, payload);
+			synchronized (commitLock) {
+				writtenSequence = sequence;
+				commitLock.notifyAll();
+			}
+		}
+		awaitCommit(sequence);
+		return sequence;
+	}
+
+	/**
+	 * Records that an update has been handled, deleting the segments that no longer hold pending updates.
+	 * Failures are logged: the update is then handled again after a restart.
+	 * @param sequence the sequence number returned by {@link #append(String, byte[])}.
+	 */
+	public void acknowledge(long sequence) {
+		synchronized (writeLock) {
+			Segment segment = pendingSegments.remove(sequence);
+			if (segment == null || closed) {
+				return;
+			}
+			segment.pending--;
+			try {
+				ByteBuffer record = newRecord(ACK_RECORD, sequence, 0);
+				write(record);
+				compact();
+			} catch (IOException e) {
+				logger.error("Unable to acknowledge real time update " + sequence + "; it will be handled again after a restart.", e);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of updates appended but not yet acknowledged.
+	 */
+	public int getPendingCount() {
+		synchronized (writeLock) {
+			return pendingSegments.size();
+		}
+	}
+
+	/**
+	 * @return the number of segment files currently held by the journal.
+	 */
+	public int getSegmentCount() {
+		synchronized (writeLock) {
+			return segments.size();
+		}
+	}
+
+	/**
+	 * Forces pending records to disk and closes the journal. Unacknowledged updates are recovered when it is reopened.
+	 */
+	public void close() throws IOException {
+		synchronized (writeLock) {
+			if (closed) {
+				return;
+			}
+			try {
+				currentSegment.channel.force(false);
+			} finally {
+				closed = true;
+				synchronized (commitLock) {
+					commitLock.notifyAll();
+				}
+				for (Segment segment : segments.values()) {
+					segment.channel.close();
+				}
+			}
+		}
+		try {
+			committer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public void destroy() throws IOException {
+		close();
+	}
+
+	// recovery
+
+	private List<JournalEntry> recover() throws IOException {
+		File[] files = directory.listFiles();
+		List<File> segmentFiles = new ArrayList<File>();
+		if (files != null) {
+			for (File file : files) {
+				if (file.getName().endsWith(SEGMENT_SUFFIX)) {
+					segmentFiles.add(file);
+				}
+			}
+		}
+		Collections.sort(segmentFiles);
+
+		long lastSegmentId = 0;
+		Map<Long, JournalEntry> unacknowledged = new LinkedHashMap<Long, JournalEntry>();
+		for (File file : segmentFiles) {
+			lastSegmentId = Math.max(lastSegmentId, segmentId(file));
+			readSegment(file, unacknowledged);
+		}
+
+		currentSegment = openSegment(lastSegmentId + 1);
+		List<JournalEntry> recovered = new ArrayList<JournalEntry>();
+		for (JournalEntry entry : unacknowledged.values()) {
+			long sequence = ++lastSequence;
+			writeUpdate(sequence, entry.getSubscription(), entry.getPayload());
+			recovered.add(new JournalEntry(sequence, entry.getSubscription(), entry.getPayload()));
+		}
+		currentSegment.channel.force(true);
+		writtenSequence = lastSequence;
+		committedSequence = lastSequence;
+		for (File file : segmentFiles) {
+			if (!file.delete()) {
+				throw new IOException("Unable to delete compacted journal segment " + file);
+			}
+		}
+		if (!recovered.isEmpty()) {
+			logger.info("Recovered " + recovered.size() + " unacknowledged real time updates from " + directory);
+		}
+		return recovered;
+	}
+
+	private void readSegment(File file, Map<Long, JournalEntry> unacknowledged) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			CRC32 crc = new CRC32();
+			while (true) {
+				int length;
+				int checksum;
+				byte[] body;
+				try {
+					length = in.readInt();
+					checksum = in.readInt();
+					if (length < 9 || length > file.length()) {
+						logger.warn("Discarding corrupt tail of journal segment " + file);
+						return;
+					}
+					body = new byte[length];
+					in.readFully(body);
+				} catch (EOFException e) {
+					return;
+				}
+				crc.reset();
+				crc.update(body, 0, body.length);
+				if ((int) crc.getValue() != checksum) {
+					logger.warn("Discarding torn record at the tail of journal segment " + file);
+					return;
+				}
+				ByteBuffer record = ByteBuffer.wrap(body);
+				byte type = record.get();
+				long sequence = record.getLong();
+				lastSequence = Math.max(lastSequence, sequence);
+				if (type == UPDATE_RECORD) {
+					byte[] subscription = new byte[record.getShort() & 0xFFFF];
+					record.get(subscription);
+					byte[] payload = Arrays.copyOfRange(body, record.position(), body.length);
+					unacknowledged.put(sequence, new JournalEntry(sequence, new String(subscription, StandardCharsets.UTF_8), payload));
+				} else if (type == ACK_RECORD) {
+					unacknowledged.remove(sequence);
+				}
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	// writing
+
+	private void writeUpdate(long sequence, String subscription, byte[] payload) throws IOException {
+		byte[] subscriptionBytes = subscription.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer record = newRecord(UPDATE_RECORD, sequence, 2 + subscriptionBytes.length + payload.length);
+		record.putShort((short) subscriptionBytes.length);
+		record.put(subscriptionBytes);
+		record.put(payload);
+		if (currentSegment.size > 0 && currentSegment.size + record.capacity() > segmentSize) {
+			rotate();
+		}
+		write(record);
+		currentSegment.pending++;
+		pendingSegments.put(sequence, currentSegment);
+	}
+
+	private ByteBuffer newRecord(byte type, long sequence, int dataLength) {
+		ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + 9 + dataLength);
+		record.position(RECORD_HEADER_SIZE);
+		record.put(type);
+		record.putLong(sequence);
+		return record;
+	}
+
+	private void write(ByteBuffer record) throws IOException {
+		int bodyLength = record.capacity() - RECORD_HEADER_SIZE;
+		CRC32 crc = new CRC32();
+		crc.update(record.array(), RECORD_HEADER_SIZE, bodyLength);
+		record.putInt(0, bodyLength);
+		record.putInt(4, (int) crc.getValue());
+		record.rewind();
+		while (record.hasRemaining()) {
+			currentSegment.channel.write(record);
+		}
+		currentSegment.size += record.capacity();
+	}
+
+	private void rotate() throws IOException {
+		// everything written to the previous segment is durable before any record lands in the next one
+		currentSegment.channel.force(false);
+		currentSegment = openSegment(currentSegment.id + 1);
+	}
+
+	private void compact() throws IOException {
+		Iterator<Segment> iterator = segments.values().iterator();
+		while (iterator.hasNext()) {
+			Segment segment = iterator.next();
+			if (segment == currentSegment || segment.pending > 0) {
+				return;
+			}
+			iterator.remove();
+			segment.channel.close();
+			if (!segment.file.delete()) {
+				logger.warn("Unable to delete acknowledged journal segment " + segment.file);
+			}
+		}
+	}
+
+	private Segment openSegment(long id) throws IOException {
+		File file = new File(directory, String.format("%020d%s", id, SEGMENT_SUFFIX));
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+		Segment segment = new Segment(id, file, channel);
+		segments.put(id, segment);
+		return segment;
+	}
+
+	private long segmentId(File file) {
+		String name = file.getName();
+		return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+	}
+
+	private void ensureOpen() throws IOException {
+		if (closed) {
+			throw new IOException("The real time update journal is closed");
+		}
+	}
+
+	// group commit
+
+	private void awaitCommit(long sequence) throws IOException {
+		synchronized (commitLock) {
+			while (committedSequence < sequence) {
+				if (commitFailure != null) {
+					throw new IOException("Unable to force the real time update journal to disk", commitFailure);
+				}
+				if (closed) {
+					// close() forces the current segment before returning
+					return;
+				}
+				try {
+					commitLock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while waiting for the journal to be forced to disk", e);
+				}
+			}
+		}
+	}
+
+	private void commitLoop() {
+		while (true) {
+			synchronized (commitLock) {
+				while (!closed && committedSequence >= writtenSequence) {
+					try {
+						commitLock.wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				if (closed) {
+					return;
+				}
+			}
+			if (commitIntervalMillis > 0) {
+				try {
+					Thread.sleep(commitIntervalMillis);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+			FileChannel channel;
+			long target;
+			synchronized (writeLock) {
+				if (closed) {
+					return;
+				}
+				channel = currentSegment.channel;
+				target = lastSequence;
+			}
+			IOException failure = null;
+			try {
+				channel.force(false);
+			} catch (ClosedChannelException e) {
+				// the segment was rotated, and so forced, or the journal closed
+			} catch (IOException e) {
+				failure = e;
+				logger.error("Unable to force the real time update journal to disk", e);
+			}
+			synchronized (commitLock) {
+				if (failure != null) {
+					commitFailure = failure;
+				} else {
+					committedSequence = Math.max(committedSequence, target);
+				}
+				commitLock.notifyAll();
+			}
+			if (failure != null) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * An update read back from the journal.
+	 */
+	public static class JournalEntry {
+
+		private final long sequence;
+
+		private final String subscription;
+
+		private final byte[] payload;
+
+		JournalEntry(long sequence, String subscription, byte[] payload) {
+			this.sequence = sequence;
+			this.subscription = subscription;
+			this.payload = payload;
+		}
+
+		/**
+		 * @return the sequence number to acknowledge the update with once handled.
+		 */
+		public long getSequence() {
+			return sequence;
+		}
+
+		/**
+		 * @return the subscription the update was received for.
+		 */
+		public String getSubscription() {
+			return subscription;
+		}
+
+		/**
+		 * @return the update's raw payload, as received from Facebook.
+		 */
+		public byte[] getPayload() {
+			return payload;
+		}
+
+	}
+
+	private static class Segment {
+
+		private final long id;
+
+		private final File file;
+
+		private final FileChannel channel;
+
+		private long size;
+
+		private int pending;
+
+		Segment(long id, File file, FileChannel channel) {
+			this.id = id;
+			this.file = file;
+			this.channel = channel;
+		}
+
+	}
+
+	private final static Log logger = LogFactory.getLog(RealTimeUpdateJournal.class);
+
+}
@@ -16,34 +16,54 @@
 package org.springframework.social.facebook.web;
 
 import java.io.IOException;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
 import java.util.Base64;
 import java.util.Map;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.JsonParserDelegate;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.PropertyNamingStrategy;
 
 /**
  * Utility class for extracting the payload of a signed request sent by Facebook.
+ * The signature is verified first, on the raw bytes of the payload and in constant time, so that forged requests are
+ * rejected before their payload is decoded. The payload is then bound in a single streaming pass, during which the
+ * algorithm is picked up. Each thread reuses its own {@link Mac}; instances are thread-safe.
  * @author Craig Walls
  */
 public class SignedRequestDecoder {
 	
-	private String secret;
+	private final ThreadLocal<Mac> mac;
 
-	private ObjectMapper objectMapper;
+	private final ObjectMapper objectMapper;
 
 	/**
 	 * @param secret the application secret used in creating and verifying the signature of the signed request.
 	 */
 	public SignedRequestDecoder(String secret) {
-		this.secret = secret;
+		final SecretKeySpec secretKeySpec = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_SHA256_MAC_NAME);
+		this.mac = new ThreadLocal<Mac>() {
+			@Override
+			protected Mac initialValue() {
+				try {
+					Mac mac = Mac.getInstance(HMAC_SHA256_MAC_NAME);
+					mac.init(secretKeySpec);
+					return mac;
+				} catch (GeneralSecurityException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		};
 		this.objectMapper = new ObjectMapper();
 		this.objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
 		this.objectMapper.setPropertyNamingStrategy(PropertyNamingStrategy.SNAKE_CASE);
@@ -69,53 +89,107 @@ public class SignedRequestDecoder {
 	 * @throws SignedRequestException if there is an error decoding the signed request
 	 */
 	public <T> T decodeSignedRequest(String signedRequest, Class<T> type) throws SignedRequestException {
-		String[] split = signedRequest.split("\\.");
-		String encodedSignature = split[0];
-		String payload = split[1];		
-		String decoded = base64DecodeToString(payload);		
-		byte[] signature = base64DecodeToBytes(encodedSignature);
+		byte[] request = signedRequest.getBytes(StandardCharsets.US_ASCII);
+		int dot = indexOf(request, '.', 0);
+		if (dot < 0) {
+			throw new SignedRequestException("Invalid signed request.");
+		}
+		int payloadEnd = indexOf(request, '.', dot + 1);
+		if (payloadEnd < 0) {
+			payloadEnd = request.length;
+		}
+		ByteBuffer signature;
+		ByteBuffer payload;
+		try {
+			signature = BASE64.decode(ByteBuffer.wrap(request, 0, dot));
+			payload = BASE64.decode(ByteBuffer.wrap(request, dot + 1, payloadEnd - dot - 1));
+		} catch (IllegalArgumentException e) {
+			throw new SignedRequestException("Invalid signed request.", e);
+		}
+
+		Mac mac = this.mac.get();
+		mac.update(request, dot + 1, payloadEnd - dot - 1);
+		if (!MessageDigest.isEqual(mac.doFinal(), toArray(signature))) {
+			throw new SignedRequestException("Invalid signature.");
+		}
+
+		T data;
+		AlgorithmCapturingParser parser = null;
 		try {
-			T data = objectMapper.readValue(decoded, type);			
-			String algorithm = objectMapper.readTree(decoded).get("algorithm").textValue();
-			if (algorithm == null || !algorithm.equals("HMAC-SHA256")) {
-				throw new SignedRequestException("Unknown encryption algorithm: " + algorithm);
-			}			
-			byte[] expectedSignature = encrypt(payload, secret);
-			if (!Arrays.equals(expectedSignature, signature)) {
-				throw new SignedRequestException("Invalid signature.");
-			}			
-			return data;
+			parser = new AlgorithmCapturingParser(objectMapper.getFactory().createParser(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining()));
+			data = objectMapper.readValue(parser, type);
 		} catch (IOException e) {
 			throw new SignedRequestException("Error parsing payload.", e);
+		} finally {
+			closeQuietly(parser);
+		}
+		String algorithm = parser.algorithm;
+		if (algorithm == null || !algorithm.equals("HMAC-SHA256")) {
+			throw new SignedRequestException("Unknown encryption algorithm: " + algorithm);
 		}
+		return data;
 	}
 
-	private String padForBase64(String base64) {
-		return base64 + PADDING.substring(0, (4-base64.length() % 4) % 4);
+	private static int indexOf(byte[] bytes, char c, int from) {
+		for (int i = from; i < bytes.length; i++) {
+			if (bytes[i] == c) {
+				return i;
+			}
+		}
+		return -1;
 	}
 
-	private byte[] base64DecodeToBytes(String in) {
-		return Base64.getDecoder().decode(padForBase64(in.replace('_', '/').replace('-', '+')).getBytes());
+	private static byte[] toArray(ByteBuffer buffer) {
+		if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0 && buffer.remaining() == buffer.array().length) {
+			return buffer.array();
+		}
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.duplicate().get(bytes);
+		return bytes;
 	}
 
-	private String base64DecodeToString(String in) {
-		return new String(base64DecodeToBytes(in));
+	private static void closeQuietly(JsonParser parser) {
+		if (parser != null) {
+			try {
+				parser.close();
+			} catch (IOException e) {
+				// nothing to release: the parser reads from memory
+			}
+		}
 	}
 
-	private byte[] encrypt(String base, String key) {
-		try {
-			SecretKeySpec secretKeySpec = new SecretKeySpec(key.getBytes(), HMAC_SHA256_MAC_NAME);
-			Mac mac = Mac.getInstance(HMAC_SHA256_MAC_NAME);
-			mac.init(secretKeySpec);
-			return mac.doFinal(base.getBytes());
-		} catch (NoSuchAlgorithmException e) {
-			throw new IllegalStateException(e);
-		} catch (InvalidKeyException e) {
-			throw new IllegalStateException(e);
+	/**
+	 * Picks up the top-level "algorithm" field while the payload is being bound, whatever the type it is bound to.
+	 */
+	private static class AlgorithmCapturingParser extends JsonParserDelegate {
+
+		private String algorithm;
+
+		AlgorithmCapturingParser(JsonParser parser) {
+			super(parser);
+		}
+
+		@Override
+		public JsonToken nextToken() throws IOException {
+			JsonToken token = delegate.nextToken();
+			if (token == JsonToken.VALUE_STRING) {
+				JsonStreamContext context = delegate.getParsingContext();
+				if (context.inObject() && context.getParent().inRoot() && "algorithm".equals(context.getCurrentName())) {
+					algorithm = delegate.getText();
+				}
+			}
+			return token;
 		}
+
+		@Override
+		public JsonToken nextValue() throws IOException {
+			JsonToken token = nextToken();
+			return token == JsonToken.FIELD_NAME ? nextToken() : token;
+		}
+
 	}
-	
-	private static final String PADDING = "===";
+
+	private static final Base64.Decoder BASE64 = Base64.getUrlDecoder();
 
 	private static final String HMAC_SHA256_MAC_NAME = "HMACSHA256";
 
@@ -28,6 +28,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 import org.springframework.core.io.ClassPathResource;
@@ -199,6 +201,109 @@ public class RealTimeUpdateControllerTest {
 		assertEquals(0, updates.size());
 	}
 
+	@Test
+	public void receiveUpdate_async() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		TestUpdateHandler handler = new TestUpdateHandler() {
+			@Override
+			public void handleUpdate(String subscription, RealTimeUpdate update) {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				super.handleUpdate(subscription, update);
+			}
+		};
+		List<UpdateHandler> handlers = new ArrayList<UpdateHandler>();
+		handlers.add(handler);
+		AsyncUpdateDispatcher dispatcher = new AsyncUpdateDispatcher(handlers, 1, 10);
+		RealTimeUpdateController controller = new RealTimeUpdateController(new HashMap<String, String>(), dispatcher, "shhhhh!!!!");
+		MockMvc mockMvc = 
+				standaloneSetup(controller)
+				.build();
+		for (int i = 0; i < 2; i++) {
+			mockMvc.perform(post("/realtime/facebook/foo")
+								.contentType(APPLICATION_JSON)
+								.content(jsonFromFile("rtupdate-simple"))
+								.header("X-Hub-Signature", "sha1=765aa709e93724268969ad0cd922d6e0acbb3f35"))
+				.andExpect(status().isOk())
+				.andExpect(content().string(""));
+		}
+
+		// answered while the first update is still being handled and the second one is queued
+		assertEquals(2, dispatcher.getDispatchedCount());
+		assertEquals(0, handler.getUpdates().size());
+
+		release.countDown();
+		assertTrue(dispatcher.shutdown(5, TimeUnit.SECONDS));
+		assertEquals(0, dispatcher.getQueueDepth());
+		assertEquals(2, dispatcher.getHandledCount());
+		assertEquals(0, dispatcher.getFailedCount());
+		assertTrue(dispatcher.getMaxHandlerLatency(TimeUnit.NANOSECONDS) > 0);
+		assertEquals(2, handler.getUpdates().get("foo").size());
+	}
+
+	@Test
+	public void receiveUpdate_async_badSignature() throws Exception {
+		TestUpdateHandler handler = new TestUpdateHandler();
+		List<UpdateHandler> handlers = new ArrayList<UpdateHandler>();
+		handlers.add(handler);
+		AsyncUpdateDispatcher dispatcher = new AsyncUpdateDispatcher(handlers, 1, 10);
+		RealTimeUpdateController controller = new RealTimeUpdateController(new HashMap<String, String>(), dispatcher, "shhhhh!!!!");
+		MockMvc mockMvc = 
+				standaloneSetup(controller)
+				.build();
+		mockMvc.perform(post("/realtime/facebook/foo")
+							.contentType(APPLICATION_JSON)
+							.content("not even json")
+							.header("X-Hub-Signature", "sha1=765aa709e93724268969ad0cd922d6e0acbb3f35"))
+			.andExpect(content().string(""));
+		assertTrue(dispatcher.shutdown(5, TimeUnit.SECONDS));
+		assertEquals(0, dispatcher.getDispatchedCount());
+		assertEquals(0, handler.getUpdates().size());
+	}
+
+	@Test
+	public void asyncDispatch_failingHandlerDoesNotStopOthers() throws Exception {
+		TestUpdateHandler handler = new TestUpdateHandler();
+		List<UpdateHandler> handlers = new ArrayList<UpdateHandler>();
+		handlers.add(new UpdateHandler() {
+			public void handleUpdate(String subscription, RealTimeUpdate update) {
+				throw new IllegalStateException("boom");
+			}
+		});
+		handlers.add(handler);
+		AsyncUpdateDispatcher dispatcher = new AsyncUpdateDispatcher(handlers, 2, 10);
+		dispatcher.dispatch("foo", new RealTimeUpdate());
+		assertTrue(dispatcher.shutdown(5, TimeUnit.SECONDS));
+		assertEquals(2, dispatcher.getHandledCount());
+		assertEquals(1, dispatcher.getFailedCount());
+		assertEquals(1, handler.getUpdates().get("foo").size());
+	}
+
+	@Test
+	public void receiveUpdate_async_afterDestroy() throws Exception {
+		TestUpdateHandler handler = new TestUpdateHandler();
+		List<UpdateHandler> handlers = new ArrayList<UpdateHandler>();
+		handlers.add(handler);
+		AsyncUpdateDispatcher dispatcher = new AsyncUpdateDispatcher(handlers, 1, 10);
+		dispatcher.destroy();
+		RealTimeUpdateController controller = new RealTimeUpdateController(new HashMap<String, String>(), dispatcher, "shhhhh!!!!");
+		MockMvc mockMvc = 
+				standaloneSetup(controller)
+				.build();
+		mockMvc.perform(post("/realtime/facebook/foo")
+							.contentType(APPLICATION_JSON)
+							.content(jsonFromFile("rtupdate-simple"))
+							.header("X-Hub-Signature", "sha1=765aa709e93724268969ad0cd922d6e0acbb3f35"))
+			.andExpect(status().isOk());
+
+		// handled on the request thread before answering
+		assertEquals(1, dispatcher.getHandledCount());
+		assertEquals(1, handler.getUpdates().get("foo").size());
+	}
+
 	private String jsonFromFile(String filename) throws IOException {
 		ClassPathResource resource = new ClassPathResource(filename + ".json", getClass());
 		return StreamUtils.copyToString(resource.getInputStream(), Charset.forName("UTF-8"));
@@ -207,11 +312,11 @@ public class RealTimeUpdateControllerTest {
 	private static class TestUpdateHandler implements UpdateHandler {
 		private MultiValueMap<String, RealTimeUpdate> updates = new LinkedMultiValueMap<String, RealTimeUpdate>();
 		
-		public void handleUpdate(String subscription, RealTimeUpdate update) {
+		public synchronized void handleUpdate(String subscription, RealTimeUpdate update) {
 			updates.add(subscription, update);
 		}
 
-		public MultiValueMap<String, RealTimeUpdate> getUpdates() {
+		public synchronized MultiValueMap<String, RealTimeUpdate> getUpdates() {
 			return updates;
 		}
 	}
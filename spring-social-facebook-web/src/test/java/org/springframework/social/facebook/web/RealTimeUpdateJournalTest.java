@@ -0,0 +1,159 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.web;
+
+import static org.junit.Assert.*;
+import static org.springframework.http.MediaType.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.social.facebook.web.RealTimeUpdateJournal.JournalEntry;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.util.StreamUtils;
+
+public class RealTimeUpdateJournalTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void unacknowledgedUpdatesAreRecovered() throws Exception {
+		File directory = folder.newFolder();
+		RealTimeUpdateJournal journal = new RealTimeUpdateJournal(directory);
+		long first = journal.append("foo", bytes("{\"object\":\"user\"}"));
+		journal.append("bar", bytes("{\"object\":\"page\"}"));
+		journal.append("foo", bytes("{\"object\":\"permissions\"}"));
+		journal.acknowledge(first);
+		assertEquals(2, journal.getPendingCount());
+		journal.close();
+
+		journal = new RealTimeUpdateJournal(directory);
+		List<JournalEntry> recovered = journal.getRecoveredEntries();
+		assertEquals(2, recovered.size());
+		assertEquals("bar", recovered.get(0).getSubscription());
+		assertEquals("{\"object\":\"page\"}", new String(recovered.get(0).getPayload(), StandardCharsets.UTF_8));
+		assertEquals("foo", recovered.get(1).getSubscription());
+		assertEquals("{\"object\":\"permissions\"}", new String(recovered.get(1).getPayload(), StandardCharsets.UTF_8));
+		assertEquals(2, journal.getPendingCount());
+		assertEquals(1, journal.getSegmentCount());
+
+		for (JournalEntry entry : recovered) {
+			journal.acknowledge(entry.getSequence());
+		}
+		journal.close();
+		journal = new RealTimeUpdateJournal(directory);
+		assertTrue(journal.getRecoveredEntries().isEmpty());
+		journal.close();
+	}
+
+	@Test
+	public void acknowledgedSegmentsAreCompacted() throws Exception {
+		File directory = folder.newFolder();
+		RealTimeUpdateJournal journal = new RealTimeUpdateJournal(directory, 256, 0);
+		List<Long> sequences = new ArrayList<Long>();
+		for (int i = 0; i < 20; i++) {
+			sequences.add(journal.append("foo", bytes("{\"object\":\"user\",\"entry\":[{\"id\":" + i + "}]}")));
+		}
+		assertTrue(journal.getSegmentCount() > 1);
+		assertEquals(journal.getSegmentCount(), directory.list().length);
+
+		// acknowledging out of order only compacts once the oldest segments are fully acknowledged
+		Collections.reverse(sequences);
+		for (Long sequence : sequences.subList(0, 19)) {
+			journal.acknowledge(sequence);
+		}
+		assertTrue(journal.getSegmentCount() > 1);
+		journal.acknowledge(sequences.get(19));
+		assertEquals(1, journal.getSegmentCount());
+		assertEquals(1, directory.list().length);
+		assertEquals(0, journal.getPendingCount());
+		journal.close();
+	}
+
+	@Test
+	public void tornRecordIsDiscarded() throws Exception {
+		File directory = folder.newFolder();
+		RealTimeUpdateJournal journal = new RealTimeUpdateJournal(directory);
+		journal.append("foo", bytes("{\"object\":\"user\"}"));
+		journal.close();
+
+		File segment = directory.listFiles()[0];
+		FileOutputStream out = new FileOutputStream(segment, true);
+		out.write(new byte[] { 0, 0, 0, 40, 1, 2, 3, 4, 1, 0, 0 });
+		out.close();
+
+		journal = new RealTimeUpdateJournal(directory);
+		assertEquals(1, journal.getRecoveredEntries().size());
+		assertEquals("foo", journal.getRecoveredEntries().get(0).getSubscription());
+		journal.close();
+	}
+
+	@Test
+	public void controllerJournalsAndReplaysUpdates() throws Exception {
+		File directory = folder.newFolder();
+		RealTimeUpdateJournal journal = new RealTimeUpdateJournal(directory);
+		byte[] payload = StreamUtils.copyToByteArray(new ClassPathResource("rtupdate-simple.json", getClass()).getInputStream());
+		journal.append("pending", payload);
+		journal.close();
+
+		final List<String> handled = Collections.synchronizedList(new ArrayList<String>());
+		List<UpdateHandler> handlers = new ArrayList<UpdateHandler>();
+		handlers.add(new UpdateHandler() {
+			public void handleUpdate(String subscription, RealTimeUpdate update) {
+				handled.add(subscription + ":" + update.getObject());
+			}
+		});
+		journal = new RealTimeUpdateJournal(directory);
+		AsyncUpdateDispatcher dispatcher = new AsyncUpdateDispatcher(handlers, 1, 10);
+		RealTimeUpdateController controller = new RealTimeUpdateController(new HashMap<String, String>(), dispatcher, journal, "shhhhh!!!!");
+		MockMvc mockMvc = standaloneSetup(controller).build();
+		mockMvc.perform(post("/realtime/facebook/foo")
+							.contentType(APPLICATION_JSON)
+							.content(payload)
+							.header("X-Hub-Signature", "sha1=765aa709e93724268969ad0cd922d6e0acbb3f35"))
+			.andExpect(status().isOk());
+
+		assertTrue(dispatcher.shutdown(5, TimeUnit.SECONDS));
+		assertEquals(2, handled.size());
+		assertEquals("pending:user", handled.get(0));
+		assertEquals("foo:user", handled.get(1));
+		assertEquals(0, journal.getPendingCount());
+		journal.close();
+
+		journal = new RealTimeUpdateJournal(directory);
+		assertTrue(journal.getRecoveredEntries().isEmpty());
+		journal.close();
+	}
+
+	private byte[] bytes(String json) {
+		return json.getBytes(StandardCharsets.UTF_8);
+	}
+
+}
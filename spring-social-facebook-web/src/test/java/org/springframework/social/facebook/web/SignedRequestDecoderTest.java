@@ -35,7 +35,7 @@ public class SignedRequestDecoderTest {
 	public void decodeSignedRequest_jsonError() throws Exception {
 		try {
 			SignedRequestDecoder decoder = new SignedRequestDecoder("secret");
-			decoder.decodeSignedRequest("vlXgu64BQGFSQrY0ZcJBZASMvYvTHu9GQ0YM9rjPSso.fyJhbGdvcml0aG0iOiJITUFDLVNIQTI1NiIsIjAiOiJwYXlsb2FkIn0");
+			decoder.decodeSignedRequest("SMq4kSagfEYtcEOaSVhqTG3ITnXR5uCZjr3NZfgJMUA.fyJhbGdvcml0aG0iOiJITUFDLVNIQTI1NiIsIjAiOiJwYXlsb2FkIn0");
 		} catch (SignedRequestException e) {
 			assertEquals("Error parsing payload.", e.getMessage());
 			throw e;
@@ -53,6 +53,39 @@ public class SignedRequestDecoderTest {
 		}		
 	}
 
+	@Test(expected=SignedRequestException.class)
+	public void decodeSignedRequest_tamperedPayload() throws Exception {
+		try {
+			SignedRequestDecoder decoder = new SignedRequestDecoder("secret");
+			decoder.decodeSignedRequest("vlXgu64BQGFSQrY0ZcJBZASMvYvTHu9GQ0YM9rjPSso.fyJhbGdvcml0aG0iOiJITUFDLVNIQTI1NiIsIjAiOiJwYXlsb2FkIn0");
+		} catch (SignedRequestException e) {
+			assertEquals("Invalid signature.", e.getMessage());
+			throw e;
+		}
+	}
+
+	@Test(expected=SignedRequestException.class)
+	public void decodeSignedRequest_missingAlgorithm() throws Exception {
+		try {
+			SignedRequestDecoder decoder = new SignedRequestDecoder("secret");
+			decoder.decodeSignedRequest("rmvDiOFDHapaNWjkVoWjWXJG_do7yXXfKzawgjkCm1A.eyIwIjoicGF5bG9hZCJ9");
+		} catch (SignedRequestException e) {
+			assertEquals("Unknown encryption algorithm: null", e.getMessage());
+			throw e;
+		}
+	}
+
+	@Test(expected=SignedRequestException.class)
+	public void decodeSignedRequest_malformed() throws Exception {
+		try {
+			SignedRequestDecoder decoder = new SignedRequestDecoder("secret");
+			decoder.decodeSignedRequest("vlXgu64BQGFSQrY0ZcJBZASMvYvTHu9GQ0YM9rjPSso");
+		} catch (SignedRequestException e) {
+			assertEquals("Invalid signed request.", e.getMessage());
+			throw e;
+		}
+	}
+
 	@Test(expected=SignedRequestException.class)
 	public void decodeSignedRequest_unknownAlgorithm() throws Exception {
 		try {
@@ -15,6 +15,16 @@
  */
 package org.springframework.social.facebook.api;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
 import org.springframework.social.ApiException;
 import org.springframework.social.InsufficientPermissionException;
 import org.springframework.social.MissingAuthorizationException;
@@ -50,6 +60,80 @@ public interface EventOperations {
 	 * @throws ApiException if there is an error while communicating with Facebook.
 	 */
 	byte[] getEventImage(String eventId, ImageType imageType);
+
+	/**
+	 * Streams an event's image into the given output stream without buffering it in memory. The stream is left open.
+	 * Implementations written before this method was introduced buffer the image returned by
+	 * {@link #getEventImage(String, ImageType)}.
+	 * @param eventId the event ID
+	 * @param imageType the image type (eg., small, normal, large. square)
+	 * @param out the stream to write the image to
+	 * @return the number of bytes written.
+	 * @throws ApiException if there is an error while communicating with Facebook.
+	 */
+	default long getEventImage(String eventId, ImageType imageType, OutputStream out) {
+		byte[] image = getEventImage(eventId, imageType);
+		try {
+			out.write(image);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return image.length;
+	}
+
+	/**
+	 * Streams an event's image into the given channel without buffering it in memory. The channel is left open.
+	 * Implementations written before this method was introduced buffer the image returned by
+	 * {@link #getEventImage(String, ImageType)}.
+	 * @param eventId the event ID
+	 * @param imageType the image type (eg., small, normal, large. square)
+	 * @param channel the channel to write the image to
+	 * @return the number of bytes written.
+	 * @throws ApiException if there is an error while communicating with Facebook.
+	 */
+	default long getEventImage(String eventId, ImageType imageType, WritableByteChannel channel) {
+		return getEventImage(eventId, imageType, Channels.newOutputStream(channel));
+	}
+
+	/**
+	 * Streams an event's image into the given file, replacing its content.
+	 * Implementations written before this method was introduced buffer the image returned by
+	 * {@link #getEventImage(String, ImageType)}.
+	 * @param eventId the event ID
+	 * @param imageType the image type (eg., small, normal, large. square)
+	 * @param file the file to write the image to
+	 * @return the number of bytes written.
+	 * @throws ApiException if there is an error while communicating with Facebook.
+	 */
+	default long getEventImage(String eventId, ImageType imageType, Path file) {
+		try (OutputStream out = Files.newOutputStream(file)) {
+			return getEventImage(eventId, imageType, out);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Opens an event's image for reading. The caller must close the returned stream.
+	 * Implementations written before this method was introduced buffer the image returned by
+	 * {@link #getEventImage(String, ImageType)}.
+	 * @param eventId the event ID
+	 * @param imageType the image type (eg., small, normal, large. square)
+	 * @return a stream of the event's image.
+	 * @throws ApiException if there is an error while communicating with Facebook.
+	 */
+	default InputStream openEventImage(String eventId, ImageType imageType) {
+		return new ByteArrayInputStream(getEventImage(eventId, imageType));
+	}
+
+	/**
+	 * Retrieves the URL an event's image is served from, without downloading the image.
+	 * @param eventId the event ID
+	 * @param imageType the image type (eg., small, normal, large. square)
+	 * @return the URL of the event's image.
+	 * @throws ApiException if there is an error while communicating with Facebook.
+	 */
+	String getEventImageUrl(String eventId, ImageType imageType);
 	
 	/**
 	 * Retrieves the list of an event's invitees.
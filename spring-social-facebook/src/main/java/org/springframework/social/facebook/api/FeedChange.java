@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api;
+
+/**
+ * A post created since the previous synchronization of a feed.
+ */
+public class FeedChange {
+
+	private final Type type;
+
+	private final Post post;
+
+	public FeedChange(Type type, Post post) {
+		this.type = type;
+		this.post = post;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public Post getPost() {
+		return post;
+	}
+
+	public enum Type {
+
+		/**
+		 * The post was created since the previous synchronization, or the feed is synchronized for the first time.
+		 */
+		CREATED
+
+	}
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * How far the posts of an owner's feed edge have been synchronized: the latest creation time seen, and the IDs of the
+ * posts created at that very time, which are not reported again by the next synchronization.
+ */
+@SuppressWarnings("serial")
+public class FeedCheckpoint implements Serializable {
+
+	private final String ownerId;
+
+	private final String edge;
+
+	private final Date createdTime;
+
+	private final Set<String> postIds;
+
+	/**
+	 * @param ownerId the ID of the feed owner.
+	 * @param edge the feed edge (e.g. "feed", "posts" or "tagged").
+	 * @param createdTime the latest creation time of the synchronized posts.
+	 * @param postIds the IDs of the synchronized posts created at createdTime.
+	 */
+	public FeedCheckpoint(String ownerId, String edge, Date createdTime, Set<String> postIds) {
+		this.ownerId = ownerId;
+		this.edge = edge;
+		this.createdTime = new Date(createdTime.getTime());
+		this.postIds = Collections.unmodifiableSet(new LinkedHashSet<String>(postIds));
+	}
+
+	public String getOwnerId() {
+		return ownerId;
+	}
+
+	public String getEdge() {
+		return edge;
+	}
+
+	public Date getCreatedTime() {
+		return new Date(createdTime.getTime());
+	}
+
+	public Set<String> getPostIds() {
+		return postIds;
+	}
+
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api;
+
+/**
+ * Persists the {@link FeedCheckpoint}s of a feed synchronization, so that it resumes where it stopped, including after
+ * a restart. Implementations must be thread-safe when owners are synchronized concurrently.
+ */
+public interface FeedCheckpointStore {
+
+	/**
+	 * @param ownerId the ID of the feed owner.
+	 * @param edge the feed edge.
+	 * @return the last checkpoint saved for the owner's edge, or null if it was never synchronized.
+	 */
+	FeedCheckpoint load(String ownerId, String edge);
+
+	/**
+	 * Saves the checkpoint of an owner's edge, replacing the previous one.
+	 * @param checkpoint the checkpoint.
+	 */
+	void save(FeedCheckpoint checkpoint);
+
+}
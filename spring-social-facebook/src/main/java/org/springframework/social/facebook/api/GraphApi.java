@@ -15,13 +15,39 @@
  */
 package org.springframework.social.facebook.api;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.springframework.social.ResourceNotFoundException;
+import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
+import org.springframework.util.StringUtils;
+
+import com.fasterxml.jackson.databind.JsonNode;
 
 /**
  * Defines low-level operations against Facebook's Graph API
  * @author Craig Walls
  */
 public interface GraphApi {
+
+	/**
+	 * The maximum number of IDs Facebook accepts in a single request of {@link #fetchObjects(Collection, Class, String...)}.
+	 */
+	int MAX_IDS_PER_REQUEST = 50;
 	
 	/**
 	 * Fetches an object, extracting it into the given Java type
@@ -55,6 +81,32 @@ public interface GraphApi {
 	 */
 	<T> T fetchObject(String objectId, Class<T> type, MultiValueMap<String, String> queryParameters);
 
+	/**
+	 * Fetches several objects by ID, extracting them into the given Java type.
+	 * The IDs are requested {@link #MAX_IDS_PER_REQUEST} at a time, concurrently if an executor is configured.
+	 * Implementations written before this method was introduced fetch the objects one at a time with
+	 * {@link #fetchObject(String, Class, String...)}, reporting the IDs Facebook does not find as missing.
+	 * Requires appropriate permission to fetch the objects.
+	 * @param objectIds the Facebook objects' IDs
+	 * @param type the Java type to fetch
+	 * @param fields the fields to include in the response.
+	 * @param <T> The Java type to bind the Facebook objects to
+	 * @return the Java objects representing the requested Facebook objects, keyed by ID. The IDs of the objects that do
+	 *         not exist or may not be seen are available from {@link GraphObjectMap#getMissingIds()}.
+	 */
+	default <T> GraphObjectMap<T> fetchObjects(Collection<String> objectIds, Class<T> type, String... fields) {
+		Map<String, T> objects = new LinkedHashMap<String, T>();
+		Set<String> missingIds = new LinkedHashSet<String>();
+		for (String objectId : new LinkedHashSet<String>(objectIds)) {
+			try {
+				objects.put(objectId, fetchObject(objectId, type, fields));
+			} catch (ResourceNotFoundException e) {
+				missingIds.add(objectId);
+			}
+		}
+		return new GraphObjectMap<T>(objects, missingIds);
+	}
+
 	/**
 	 * Fetches connections, extracting them into a collection of the given Java type 
 	 * Requires appropriate permission to fetch the object connection.
@@ -92,6 +144,52 @@ public interface GraphApi {
 	 */
 	<T> PagedList<T> fetchConnections(String objectId, String connectionName, Class<T> type, MultiValueMap<String, String> queryParameters, String... fields);
 
+	/**
+	 * Streams connections, extracting them into the given Java type.
+	 * Pages are fetched lazily as the stream is consumed, so only the current page is held in memory
+	 * and short-circuiting the stream stops further requests.
+	 * Requires appropriate permission to fetch the object connection.
+	 * @param objectId the ID of the object to retrieve the connections for.
+	 * @param connectionName the connection name.
+	 * @param type the Java type of each connection.
+	 * @param fields the fields to include in the response.
+	 * @param <T> The Java type to bind the Facebook object to
+	 * @return a stream of Java objects representing the Facebook objects in the connections.
+	 */
+	default <T> Stream<T> streamConnections(String objectId, String connectionName, Class<T> type, String... fields) {
+		MultiValueMap<String, String> queryParameters = new LinkedMultiValueMap<String, String>();
+		if (fields.length > 0) {
+			queryParameters.set("fields", StringUtils.arrayToCommaDelimitedString(fields));
+		}
+		return streamConnections(objectId, connectionName, type, queryParameters);
+	}
+
+	/**
+	 * Streams connections, extracting them into the given Java type.
+	 * Pages are fetched lazily as the stream is consumed, so only the current page is held in memory
+	 * and short-circuiting the stream stops further requests.
+	 * Requires appropriate permission to fetch the object connection.
+	 * @param objectId the ID of the object to retrieve the connections for.
+	 * @param connectionName the connection name.
+	 * @param type the Java type of each connection.
+	 * @param queryParameters query parameters to include in the request
+	 * @param <T> The Java type to bind the Facebook object to
+	 * @return a stream of Java objects representing the Facebook objects in the connections.
+	 */
+	default <T> Stream<T> streamConnections(String objectId, String connectionName, Class<T> type, MultiValueMap<String, String> queryParameters) {
+		return streamConnections(fetchConnections(objectId, connectionName, type, queryParameters), type);
+	}
+
+	/**
+	 * Streams the elements of the given page followed by those of all the pages after it.
+	 * Useful to walk a connection fetched through one of the higher-level operations, such as {@link FeedOperations#getFeed()}.
+	 * @param firstPage the page to start from.
+	 * @param type the Java type of each connection.
+	 * @param <T> The Java type to bind the Facebook object to
+	 * @return a stream of Java objects representing the Facebook objects in the connections.
+	 */
+	<T> Stream<T> streamConnections(PagedList<T> firstPage, Class<T> type);
+
 	/**
 	 * Fetches an image as an array of bytes.
 	 * @param objectId the object ID
@@ -111,6 +209,147 @@ public interface GraphApi {
 	 */
 	byte[] fetchImage(String objectId, String connectionName, Integer width, Integer height);
 
+	/**
+	 * Streams an image into the given output stream without buffering it in memory.
+	 * The stream is left open.
+	 * Implementations written before this method was introduced buffer the image returned by
+	 * {@link #fetchImage(String, String, ImageType)}.
+	 * @param objectId the object ID
+	 * @param connectionName the connection name
+	 * @param imageType the type of image to retrieve (eg., small, normal, large, or square)
+	 * @param out the stream to write the image to
+	 * @return the number of bytes written.
+	 */
+	default long fetchImage(String objectId, String connectionName, ImageType imageType, OutputStream out) {
+		byte[] image = fetchImage(objectId, connectionName, imageType);
+		try {
+			out.write(image);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return image.length;
+	}
+
+	/**
+	 * Streams an image into the given output stream without buffering it in memory.
+	 * The stream is left open.
+	 * Implementations written before this method was introduced buffer the image returned by
+	 * {@link #fetchImage(String, String, Integer, Integer)}.
+	 * @param objectId the object ID
+	 * @param connectionName the connection name
+	 * @param width desired width of the image (optional)
+	 * @param height desired height of the image (optional)
+	 * @param out the stream to write the image to
+	 * @return the number of bytes written.
+	 */
+	default long fetchImage(String objectId, String connectionName, Integer width, Integer height, OutputStream out) {
+		byte[] image = fetchImage(objectId, connectionName, width, height);
+		try {
+			out.write(image);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return image.length;
+	}
+
+	/**
+	 * Streams an image into the given channel without buffering it in memory.
+	 * The channel is left open.
+	 * Implementations written before this method was introduced buffer the image returned by
+	 * {@link #fetchImage(String, String, ImageType)}.
+	 * @param objectId the object ID
+	 * @param connectionName the connection name
+	 * @param imageType the type of image to retrieve (eg., small, normal, large, or square)
+	 * @param channel the channel to write the image to
+	 * @return the number of bytes written.
+	 */
+	default long fetchImage(String objectId, String connectionName, ImageType imageType, WritableByteChannel channel) {
+		return fetchImage(objectId, connectionName, imageType, Channels.newOutputStream(channel));
+	}
+
+	/**
+	 * Streams an image into the given file, replacing its content, without buffering it in memory.
+	 * Implementations written before this method was introduced buffer the image returned by
+	 * {@link #fetchImage(String, String, ImageType)}.
+	 * @param objectId the object ID
+	 * @param connectionName the connection name
+	 * @param imageType the type of image to retrieve (eg., small, normal, large, or square)
+	 * @param file the file to write the image to
+	 * @return the number of bytes written.
+	 */
+	default long fetchImage(String objectId, String connectionName, ImageType imageType, Path file) {
+		try (OutputStream out = Files.newOutputStream(file)) {
+			return fetchImage(objectId, connectionName, imageType, out);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Opens an image for reading. The caller must close the returned stream to release the connection.
+	 * Implementations written before this method was introduced buffer the image returned by
+	 * {@link #fetchImage(String, String, ImageType)}.
+	 * @param objectId the object ID
+	 * @param connectionName the connection name
+	 * @param imageType the type of image to retrieve (eg., small, normal, large, or square)
+	 * @return a stream of the image's bytes.
+	 */
+	default InputStream openImage(String objectId, String connectionName, ImageType imageType) {
+		return new ByteArrayInputStream(fetchImage(objectId, connectionName, imageType));
+	}
+
+	/**
+	 * Opens an image for reading. The caller must close the returned stream to release the connection.
+	 * Implementations written before this method was introduced buffer the image returned by
+	 * {@link #fetchImage(String, String, Integer, Integer)}.
+	 * @param objectId the object ID
+	 * @param connectionName the connection name
+	 * @param width desired width of the image (optional)
+	 * @param height desired height of the image (optional)
+	 * @return a stream of the image's bytes.
+	 */
+	default InputStream openImage(String objectId, String connectionName, Integer width, Integer height) {
+		return new ByteArrayInputStream(fetchImage(objectId, connectionName, width, height));
+	}
+
+	/**
+	 * Fetches the URL an image is served from (typically on Facebook's CDN) without downloading the image.
+	 * @param objectId the object ID
+	 * @param connectionName the connection name
+	 * @param imageType the type of image to retrieve (eg., small, normal, large, or square)
+	 * @return the image's URL.
+	 */
+	default String fetchImageUrl(String objectId, String connectionName, ImageType imageType) {
+		MultiValueMap<String, String> queryParameters = new LinkedMultiValueMap<String, String>();
+		if (imageType != null) {
+			queryParameters.set("type", imageType.toString().toLowerCase());
+		}
+		queryParameters.set("redirect", "false");
+		JsonNode picture = fetchObject(objectId + "/" + connectionName, JsonNode.class, queryParameters);
+		return picture.path("data").path("url").textValue();
+	}
+
+	/**
+	 * Fetches the URL an image is served from (typically on Facebook's CDN) without downloading the image.
+	 * @param objectId the object ID
+	 * @param connectionName the connection name
+	 * @param width desired width of the image (optional)
+	 * @param height desired height of the image (optional)
+	 * @return the image's URL.
+	 */
+	default String fetchImageUrl(String objectId, String connectionName, Integer width, Integer height) {
+		MultiValueMap<String, String> queryParameters = new LinkedMultiValueMap<String, String>();
+		if (width != null) {
+			queryParameters.set("width", width.toString());
+		}
+		if (height != null) {
+			queryParameters.set("height", height.toString());
+		}
+		queryParameters.set("redirect", "false");
+		JsonNode picture = fetchObject(objectId + "/" + connectionName, JsonNode.class, queryParameters);
+		return picture.path("data").path("url").textValue();
+	}
+
 	/**
 	 * Publishes data to an object's connection.
 	 * Requires appropriate permission to publish to the object connection.
@@ -166,6 +405,13 @@ public interface GraphApi {
 	 */
 	void delete(String objectId, String connectionName, MultiValueMap<String, String> data);
 
+	/**
+	 * Creates a new batch into which Graph API requests can be queued and then sent to Facebook
+	 * in as few HTTP round trips as possible.
+	 * @return a new, empty {@link GraphBatch}.
+	 */
+	GraphBatch batch();
+
 	/**
 	 * @return The application namespace associated with this GraphApi instance. Useful for interacting with Facebook's OpenGraph actions.
 	 * 			May be null if no namespace was specified.
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.util.MultiValueMap;
+
+/**
+ * Collects Graph API requests so that they can be sent to Facebook as a single batch request.
+ * Each queued request returns a future that is completed once {@link #execute()} has been called.
+ * Requests are sent in chunks of at most {@link #MAX_BATCH_SIZE} requests per HTTP round trip.
+ * Errors reported by Facebook for an individual request complete that request's future exceptionally
+ * without affecting the other requests in the batch.
+ * Instances are not thread-safe and are intended to be used once.
+ */
+public interface GraphBatch {
+
+	/**
+	 * The maximum number of requests Facebook accepts in a single batch request.
+	 */
+	int MAX_BATCH_SIZE = 50;
+
+	/**
+	 * Queues the fetching of an object.
+	 * @param objectId the Facebook object's ID
+	 * @param type the Java type to fetch
+	 * @param fields the fields to include in the response.
+	 * @param <T> The Java type to bind the Facebook object to
+	 * @return a future for the Java object representing the requested Facebook object.
+	 */
+	<T> CompletableFuture<T> fetchObject(String objectId, Class<T> type, String... fields);
+
+	/**
+	 * Queues the fetching of an object.
+	 * @param objectId the Facebook object's ID
+	 * @param type the Java type to fetch
+	 * @param queryParameters query parameters to include in the request
+	 * @param <T> The Java type to bind the Facebook object to
+	 * @return a future for the Java object representing the requested Facebook object.
+	 */
+	<T> CompletableFuture<T> fetchObject(String objectId, Class<T> type, MultiValueMap<String, String> queryParameters);
+
+	/**
+	 * Queues the fetching of an object's connections.
+	 * @param objectId the ID of the object to retrieve the connections for.
+	 * @param connectionName the connection name.
+	 * @param type the Java type of each connection.
+	 * @param fields the fields to include in the response.
+	 * @param <T> The Java type to bind the Facebook object to
+	 * @return a future for the list of Java objects representing the Facebook objects in the connections.
+	 */
+	<T> CompletableFuture<PagedList<T>> fetchConnections(String objectId, String connectionName, Class<T> type, String... fields);
+
+	/**
+	 * Queues the fetching of an object's connections.
+	 * @param objectId the ID of the object to retrieve the connections for.
+	 * @param connectionName the connection name.
+	 * @param type the Java type of each connection.
+	 * @param queryParameters query parameters to include in the request
+	 * @param <T> The Java type to bind the Facebook object to
+	 * @return a future for the list of Java objects representing the Facebook objects in the connections.
+	 */
+	<T> CompletableFuture<PagedList<T>> fetchConnections(String objectId, String connectionName, Class<T> type, MultiValueMap<String, String> queryParameters);
+
+	/**
+	 * Queues the publishing of data to an object's connection.
+	 * The data is sent form-encoded, so binary attachments such as photos or videos are not supported.
+	 * @param objectId the object ID to publish to.
+	 * @param connectionName the connection name to publish to.
+	 * @param data the data to publish to the connection.
+	 * @return a future for the ID of the newly published object.
+	 */
+	CompletableFuture<String> publish(String objectId, String connectionName, MultiValueMap<String, Object> data);
+
+	/**
+	 * Queues the deletion of an object.
+	 * @param objectId the object ID
+	 * @return a future that completes once the object has been deleted.
+	 */
+	CompletableFuture<Void> delete(String objectId);
+
+	/**
+	 * Queues the deletion of an object connection.
+	 * @param objectId the object ID
+	 * @param connectionName the connection name
+	 * @return a future that completes once the object connection has been deleted.
+	 */
+	CompletableFuture<Void> delete(String objectId, String connectionName);
+
+	/**
+	 * @return the number of requests queued and not yet executed.
+	 */
+	int size();
+
+	/**
+	 * Sends all queued requests to Facebook, completing their futures.
+	 * Requests are sent in batches of at most {@link #MAX_BATCH_SIZE}. If a batch request itself fails, the
+	 * futures of the requests it contained and of the requests of the following batches, which are not sent,
+	 * are completed exceptionally and the exception is rethrown.
+	 */
+	void execute();
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Objects fetched by ID, in the order their IDs were requested. The IDs Facebook did not return an object for are
+ * available from {@link #getMissingIds()} rather than failing the whole fetch.
+ * @param <T> the Java type of the objects
+ */
+public class GraphObjectMap<T> extends LinkedHashMap<String, T> {
+	private static final long serialVersionUID = 1L;
+
+	private final Set<String> missingIds;
+
+	public GraphObjectMap(Map<String, T> objects, Set<String> missingIds) {
+		super(objects);
+		this.missingIds = Collections.unmodifiableSet(new LinkedHashSet<String>(missingIds));
+	}
+
+	/**
+	 * The requested IDs that do not exist or that the access token may not see.
+	 * @return the missing IDs. Empty if all the objects were found.
+	 */
+	public Set<String> getMissingIds() {
+		return missingIds;
+	}
+
+}
@@ -15,6 +15,18 @@
  */
 package org.springframework.social.facebook.api;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
@@ -29,6 +41,12 @@ import org.springframework.social.MissingAuthorizationException;
  */
 public interface MediaOperations {
 
+	/**
+	 * The default size of the chunks sent by a chunked video upload when Facebook does not give the range of the next
+	 * chunk (4 MB).
+	 */
+	int DEFAULT_VIDEO_CHUNK_SIZE = 4 * 1024 * 1024;
+
 	/**
 	 * Retrieves a list of albums belonging to the authenticated user.
 	 * Requires "user_photos" permission.
@@ -128,6 +146,85 @@ public interface MediaOperations {
 	 */
 	byte[] getAlbumImage(String albumId, ImageType imageType);
 
+	/**
+	 * Streams an album's image into the given output stream without buffering it in memory. The stream is left open.
+	 * Implementations written before this method was introduced buffer the image returned by
+	 * {@link #getAlbumImage(String, ImageType)}.
+	 * @param albumId the album ID
+	 * @param imageType the image type (eg., small, normal, large. square)
+	 * @param out the stream to write the image to
+	 * @return the number of bytes written.
+	 * @throws ApiException if there is an error while communicating with Facebook.
+	 * @throws InsufficientPermissionException if the album is not public and if the user has not granted "user_photos" permission.
+	 */
+	default long getAlbumImage(String albumId, ImageType imageType, OutputStream out) {
+		byte[] image = getAlbumImage(albumId, imageType);
+		try {
+			out.write(image);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return image.length;
+	}
+
+	/**
+	 * Streams an album's image into the given channel without buffering it in memory. The channel is left open.
+	 * Implementations written before this method was introduced buffer the image returned by
+	 * {@link #getAlbumImage(String, ImageType)}.
+	 * @param albumId the album ID
+	 * @param imageType the image type (eg., small, normal, large. square)
+	 * @param channel the channel to write the image to
+	 * @return the number of bytes written.
+	 * @throws ApiException if there is an error while communicating with Facebook.
+	 * @throws InsufficientPermissionException if the album is not public and if the user has not granted "user_photos" permission.
+	 */
+	default long getAlbumImage(String albumId, ImageType imageType, WritableByteChannel channel) {
+		return getAlbumImage(albumId, imageType, Channels.newOutputStream(channel));
+	}
+
+	/**
+	 * Streams an album's image into the given file, replacing its content.
+	 * Implementations written before this method was introduced buffer the image returned by
+	 * {@link #getAlbumImage(String, ImageType)}.
+	 * @param albumId the album ID
+	 * @param imageType the image type (eg., small, normal, large. square)
+	 * @param file the file to write the image to
+	 * @return the number of bytes written.
+	 * @throws ApiException if there is an error while communicating with Facebook.
+	 * @throws InsufficientPermissionException if the album is not public and if the user has not granted "user_photos" permission.
+	 */
+	default long getAlbumImage(String albumId, ImageType imageType, Path file) {
+		try (OutputStream out = Files.newOutputStream(file)) {
+			return getAlbumImage(albumId, imageType, out);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Opens an album's image for reading. The caller must close the returned stream.
+	 * Implementations written before this method was introduced buffer the image returned by
+	 * {@link #getAlbumImage(String, ImageType)}.
+	 * @param albumId the album ID
+	 * @param imageType the image type (eg., small, normal, large. square)
+	 * @return a stream of the album's image.
+	 * @throws ApiException if there is an error while communicating with Facebook.
+	 * @throws InsufficientPermissionException if the album is not public and if the user has not granted "user_photos" permission.
+	 */
+	default InputStream openAlbumImage(String albumId, ImageType imageType) {
+		return new ByteArrayInputStream(getAlbumImage(albumId, imageType));
+	}
+
+	/**
+	 * Retrieves the URL an album's image is served from, without downloading the image.
+	 * @param albumId the album ID
+	 * @param imageType the image type (eg., small, normal, large. square)
+	 * @return the URL of the album's image.
+	 * @throws ApiException if there is an error while communicating with Facebook.
+	 * @throws InsufficientPermissionException if the album is not public and if the user has not granted "user_photos" permission.
+	 */
+	String getAlbumImageUrl(String albumId, ImageType imageType);
+
 	/**
 	 * Retrieves data for up to 25 photos from a specific album or that a user is tagged in.
 	 * If the objectId parameter is the ID of an album, the photos returned are the photos from that album.
@@ -183,6 +280,85 @@ public interface MediaOperations {
 	 * @throws InsufficientPermissionException if the photo is not public and if the user has not granted "user_photos" permission.
 	 */
 	byte[] getPhotoImage(String photoId, ImageType imageType);
+
+	/**
+	 * Streams a photo's image into the given output stream without buffering it in memory. The stream is left open.
+	 * Implementations written before this method was introduced buffer the image returned by
+	 * {@link #getPhotoImage(String, ImageType)}.
+	 * @param photoId the photo ID
+	 * @param imageType the image type (eg., small, normal, large. square)
+	 * @param out the stream to write the image to
+	 * @return the number of bytes written.
+	 * @throws ApiException if there is an error while communicating with Facebook.
+	 * @throws InsufficientPermissionException if the photo is not public and if the user has not granted "user_photos" permission.
+	 */
+	default long getPhotoImage(String photoId, ImageType imageType, OutputStream out) {
+		byte[] image = getPhotoImage(photoId, imageType);
+		try {
+			out.write(image);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return image.length;
+	}
+
+	/**
+	 * Streams a photo's image into the given channel without buffering it in memory. The channel is left open.
+	 * Implementations written before this method was introduced buffer the image returned by
+	 * {@link #getPhotoImage(String, ImageType)}.
+	 * @param photoId the photo ID
+	 * @param imageType the image type (eg., small, normal, large. square)
+	 * @param channel the channel to write the image to
+	 * @return the number of bytes written.
+	 * @throws ApiException if there is an error while communicating with Facebook.
+	 * @throws InsufficientPermissionException if the photo is not public and if the user has not granted "user_photos" permission.
+	 */
+	default long getPhotoImage(String photoId, ImageType imageType, WritableByteChannel channel) {
+		return getPhotoImage(photoId, imageType, Channels.newOutputStream(channel));
+	}
+
+	/**
+	 * Streams a photo's image into the given file, replacing its content.
+	 * Implementations written before this method was introduced buffer the image returned by
+	 * {@link #getPhotoImage(String, ImageType)}.
+	 * @param photoId the photo ID
+	 * @param imageType the image type (eg., small, normal, large. square)
+	 * @param file the file to write the image to
+	 * @return the number of bytes written.
+	 * @throws ApiException if there is an error while communicating with Facebook.
+	 * @throws InsufficientPermissionException if the photo is not public and if the user has not granted "user_photos" permission.
+	 */
+	default long getPhotoImage(String photoId, ImageType imageType, Path file) {
+		try (OutputStream out = Files.newOutputStream(file)) {
+			return getPhotoImage(photoId, imageType, out);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Opens a photo's image for reading. The caller must close the returned stream.
+	 * Implementations written before this method was introduced buffer the image returned by
+	 * {@link #getPhotoImage(String, ImageType)}.
+	 * @param photoId the photo ID
+	 * @param imageType the image type (eg., small, normal, large. square)
+	 * @return a stream of the photo's image.
+	 * @throws ApiException if there is an error while communicating with Facebook.
+	 * @throws InsufficientPermissionException if the photo is not public and if the user has not granted "user_photos" permission.
+	 */
+	default InputStream openPhotoImage(String photoId, ImageType imageType) {
+		return new ByteArrayInputStream(getPhotoImage(photoId, imageType));
+	}
+
+	/**
+	 * Retrieves the URL a photo's image is served from, without downloading the image.
+	 * @param photoId the photo ID
+	 * @param imageType the image type (eg., small, normal, large. square)
+	 * @return the URL of the photo's image.
+	 * @throws ApiException if there is an error while communicating with Facebook.
+	 * @throws InsufficientPermissionException if the photo is not public and if the user has not granted "user_photos" permission.
+	 */
+	String getPhotoImageUrl(String photoId, ImageType imageType);
 	
 	/**
 	 * Uploads a photo to an album created specifically for the application.
@@ -233,6 +409,30 @@ public interface MediaOperations {
 	 * @throws MissingAuthorizationException if FacebookTemplate was not created with an access token.
 	 */
 	String postPhoto(String albumId, Resource photo, String caption);
+
+	/**
+	 * Uploads several photos to a specific album, running up to the given number of uploads at a time.
+	 * A failing upload does not stop the others: each photo gets its own result.
+	 * Implementations written before this method was introduced upload the photos one after the other with
+	 * {@link #postPhoto(String, Resource, String)}.
+	 * Requires "publish_actions" permission.
+	 * @param albumId the ID of the album to upload the photos to.
+	 * @param photos the photos to upload.
+	 * @param concurrency the maximum number of photos uploaded at a time.
+	 * @return the result of each upload, in the order of the given photos.
+	 * @throws MissingAuthorizationException if FacebookTemplate was not created with an access token.
+	 */
+	default List<PhotoUploadResult> postPhotos(String albumId, List<PhotoUpload> photos, int concurrency) {
+		List<PhotoUploadResult> results = new ArrayList<PhotoUploadResult>(photos.size());
+		for (PhotoUpload photo : photos) {
+			try {
+				results.add(new PhotoUploadResult(photo, postPhoto(albumId, photo.getPhoto(), photo.getCaption()), null));
+			} catch (RuntimeException e) {
+				results.add(new PhotoUploadResult(photo, null, e));
+			}
+		}
+		return results;
+	}
 	
 	/**
 	 * Retrieves a list of up to 25 videos that the authenticated user is tagged in.
@@ -325,6 +525,78 @@ public interface MediaOperations {
 	 * @throws MissingAuthorizationException if FacebookTemplate was not created with an access token.
 	 */
 	String postVideo(Resource video, String title, String description);
+
+	/**
+	 * Uploads a video for the authenticated user in chunks, using Facebook's resumable upload protocol.
+	 * Each chunk is read from disk as it is sent and retried on transient failures, so large videos neither need to fit in memory nor restart from scratch on a network error.
+	 * Note that the video will not be immediately available after uploading, as Facebook performs some post-upload processing on the video.
+	 * Requires "publish_actions" permission.
+	 * The video is uploaded with {@link #startVideoUpload(Path)}, {@link #transferVideo(VideoUploadSession, Path, VideoUploadListener)}
+	 * and {@link #finishVideoUpload(VideoUploadSession, String, String)}.
+	 * @param video the video file
+	 * @param title the video title
+	 * @param description the video description
+	 * @param listener notified after each transferred chunk (may be null)
+	 * @return the ID of the video.
+	 * @throws ApiException if there is an error while communicating with Facebook.
+	 * @throws InsufficientPermissionException if the user has not granted "publish_actions" permission.
+	 * @throws MissingAuthorizationException if FacebookTemplate was not created with an access token.
+	 */
+	default String postVideo(Path video, String title, String description, VideoUploadListener listener) {
+		VideoUploadSession session = startVideoUpload(video);
+		session = transferVideo(session, video, listener);
+		return finishVideoUpload(session, title, description);
+	}
+
+	/**
+	 * Starts a chunked video upload, sending chunks of {@link #DEFAULT_VIDEO_CHUNK_SIZE} bytes when Facebook does not
+	 * give the range of the next chunk.
+	 * Requires "publish_actions" permission.
+	 * @param video the video file
+	 * @return the upload session to transfer the video with.
+	 * @throws ApiException if there is an error while communicating with Facebook.
+	 * @throws InsufficientPermissionException if the user has not granted "publish_actions" permission.
+	 * @throws MissingAuthorizationException if FacebookTemplate was not created with an access token.
+	 */
+	default VideoUploadSession startVideoUpload(Path video) {
+		return startVideoUpload(video, DEFAULT_VIDEO_CHUNK_SIZE);
+	}
+
+	/**
+	 * Starts a chunked video upload.
+	 * Requires "publish_actions" permission.
+	 * @param video the video file
+	 * @param chunkSize the number of bytes sent per chunk when Facebook does not give the range of the next chunk
+	 * @return the upload session to transfer the video with.
+	 * @throws ApiException if there is an error while communicating with Facebook.
+	 * @throws InsufficientPermissionException if the user has not granted "publish_actions" permission.
+	 * @throws MissingAuthorizationException if FacebookTemplate was not created with an access token.
+	 */
+	VideoUploadSession startVideoUpload(Path video, int chunkSize);
+
+	/**
+	 * Transfers the remainder of a video, starting at the session's start offset. Pass a persisted session to resume an interrupted upload.
+	 * Chunks are sent one after the other, as Facebook tells the range of each chunk in its response to the previous one.
+	 * @param session the upload session, as returned by {@link #startVideoUpload(Path)} or passed to the listener
+	 * @param video the video file the upload was started for
+	 * @param listener notified after each transferred chunk (may be null)
+	 * @return the upload session once all of the video has been transferred.
+	 * @throws ApiException if there is an error while communicating with Facebook, after retrying the failing chunk,
+	 * 			or if Facebook does not move the upload forward after several chunks.
+	 * @throws MissingAuthorizationException if FacebookTemplate was not created with an access token.
+	 */
+	VideoUploadSession transferVideo(VideoUploadSession session, Path video, VideoUploadListener listener);
+
+	/**
+	 * Finishes a chunked video upload once all of the video has been transferred.
+	 * @param session the upload session returned by {@link #transferVideo(VideoUploadSession, Path, VideoUploadListener)}
+	 * @param title the video title
+	 * @param description the video description
+	 * @return the ID of the video.
+	 * @throws ApiException if there is an error while communicating with Facebook.
+	 * @throws MissingAuthorizationException if FacebookTemplate was not created with an access token.
+	 */
+	String finishVideoUpload(VideoUploadSession session, String title, String description);
 	
 	/**
 	 * Tags a video with the given user ID.
@@ -15,6 +15,9 @@
  */
 package org.springframework.social.facebook.api;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
@@ -101,6 +104,60 @@ public interface PageOperations {
 	 * @throws MissingAuthorizationException if FacebookTemplate was not created with an access token.
 	 */
 	String postPhoto(String pageId, String albumId, Resource photo, String caption);
+
+	/**
+	 * Posts several photos to a page's album as the page administrator, running up to the given number of uploads at a time.
+	 * The page access token is looked up once for all photos. A failing upload does not stop the others: each photo gets its own result.
+	 * Implementations written before this method was introduced upload the photos one after the other with
+	 * {@link #postPhoto(String, String, Resource, String)}.
+	 * Requires that the application is granted "manage_pages" permission and that the authenticated user be an administrator of the page.
+	 * @param pageId the page ID
+	 * @param albumId the album ID
+	 * @param photos the photos to upload.
+	 * @param concurrency the maximum number of photos uploaded at a time.
+	 * @return the result of each upload, in the order of the given photos.
+	 * @throws ApiException if there is an error while looking up the page access token.
+	 * @throws PageAdministrationException if the user is not a page administrator.
+	 * @throws MissingAuthorizationException if FacebookTemplate was not created with an access token.
+	 */
+	default List<PhotoUploadResult> postPhotos(String pageId, String albumId, List<PhotoUpload> photos, int concurrency) {
+		List<PhotoUploadResult> results = new ArrayList<PhotoUploadResult>(photos.size());
+		for (PhotoUpload photo : photos) {
+			try {
+				results.add(new PhotoUploadResult(photo, postPhoto(pageId, albumId, photo.getPhoto(), photo.getCaption()), null));
+			} catch (RuntimeException e) {
+				results.add(new PhotoUploadResult(photo, null, e));
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Uploads several photos to a page without publishing them, running up to the given number of uploads at a time.
+	 * The staged photos can then be published together in a single post with {@link #postStagedPhotos(String, String, List)}.
+	 * Requires that the application is granted "manage_pages" permission and that the authenticated user be an administrator of the page.
+	 * @param pageId the page ID
+	 * @param photos the photos to upload.
+	 * @param concurrency the maximum number of photos uploaded at a time.
+	 * @return the result of each upload, in the order of the given photos.
+	 * @throws ApiException if there is an error while looking up the page access token.
+	 * @throws PageAdministrationException if the user is not a page administrator.
+	 * @throws MissingAuthorizationException if FacebookTemplate was not created with an access token.
+	 */
+	List<PhotoUploadResult> stagePhotos(String pageId, List<PhotoUpload> photos, int concurrency);
+
+	/**
+	 * Publishes photos staged with {@link #stagePhotos(String, List, int)} in a single post to a page's feed.
+	 * Requires that the application is granted "manage_pages" permission and that the authenticated user be an administrator of the page.
+	 * @param pageId the page ID
+	 * @param message the message of the post (may be null).
+	 * @param photoIds the IDs of the staged photos to attach to the post.
+	 * @return the ID of the post.
+	 * @throws ApiException if there is an error while communicating with Facebook.
+	 * @throws PageAdministrationException if the user is not a page administrator.
+	 * @throws MissingAuthorizationException if FacebookTemplate was not created with an access token.
+	 */
+	String postStagedPhotos(String pageId, String message, List<String> photoIds);
 	
 	/**
 	 * Searches for pages that match a given query.
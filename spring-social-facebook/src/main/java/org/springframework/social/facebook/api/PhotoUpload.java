@@ -0,0 +1,55 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api;
+
+import org.springframework.core.io.Resource;
+
+/**
+ * Describes one photo of a bulk upload.
+ * @see MediaOperations#postPhotos(String, java.util.List, int)
+ * @see PageOperations#postPhotos(String, String, java.util.List, int)
+ */
+public class PhotoUpload {
+
+	private final Resource photo;
+
+	private final String caption;
+
+	/**
+	 * @param photo A {@link Resource} for the photo data. The given Resource must implement the getFilename() method.
+	 */
+	public PhotoUpload(Resource photo) {
+		this(photo, null);
+	}
+
+	/**
+	 * @param photo A {@link Resource} for the photo data. The given Resource must implement the getFilename() method.
+	 * @param caption A caption describing the photo (may be null).
+	 */
+	public PhotoUpload(Resource photo, String caption) {
+		this.photo = photo;
+		this.caption = caption;
+	}
+
+	public Resource getPhoto() {
+		return photo;
+	}
+
+	public String getCaption() {
+		return caption;
+	}
+
+}
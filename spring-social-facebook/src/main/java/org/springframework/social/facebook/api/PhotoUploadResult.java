@@ -0,0 +1,57 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api;
+
+/**
+ * Outcome of uploading one photo of a bulk upload: either the ID of the photo or the exception it failed with.
+ */
+public class PhotoUploadResult {
+
+	private final PhotoUpload upload;
+
+	private final String photoId;
+
+	private final RuntimeException failure;
+
+	public PhotoUploadResult(PhotoUpload upload, String photoId, RuntimeException failure) {
+		this.upload = upload;
+		this.photoId = photoId;
+		this.failure = failure;
+	}
+
+	public PhotoUpload getUpload() {
+		return upload;
+	}
+
+	/**
+	 * @return the ID of the uploaded photo, or null if the upload failed.
+	 */
+	public String getPhotoId() {
+		return photoId;
+	}
+
+	/**
+	 * @return the exception the upload failed with, or null if it succeeded.
+	 */
+	public RuntimeException getFailure() {
+		return failure;
+	}
+
+	public boolean isSuccessful() {
+		return failure == null;
+	}
+
+}
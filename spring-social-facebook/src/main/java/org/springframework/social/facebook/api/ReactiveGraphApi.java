@@ -0,0 +1,133 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+import org.springframework.util.MultiValueMap;
+
+/**
+ * Non-blocking counterpart of the low-level operations of {@link GraphApi}.
+ * Every operation returns immediately with a future that is completed once Facebook has responded.
+ * Errors reported by Facebook complete the future exceptionally with the same exceptions {@link GraphApi} would throw.
+ */
+public interface ReactiveGraphApi {
+
+	/**
+	 * Fetches an object.
+	 * @param objectId the Facebook object's ID
+	 * @param type the Java type to fetch
+	 * @param fields the fields to include in the response.
+	 * @param <T> The Java type to bind the Facebook object to
+	 * @return a future for the Java object representing the requested Facebook object.
+	 */
+	<T> CompletableFuture<T> fetchObject(String objectId, Class<T> type, String... fields);
+
+	/**
+	 * Fetches an object.
+	 * @param objectId the Facebook object's ID
+	 * @param type the Java type to fetch
+	 * @param queryParameters query parameters to include in the request
+	 * @param <T> The Java type to bind the Facebook object to
+	 * @return a future for the Java object representing the requested Facebook object.
+	 */
+	<T> CompletableFuture<T> fetchObject(String objectId, Class<T> type, MultiValueMap<String, String> queryParameters);
+
+	/**
+	 * Fetches the first page of an object's connections.
+	 * @param objectId the ID of the object to retrieve the connections for.
+	 * @param connectionName the connection name.
+	 * @param type the Java type of each connection.
+	 * @param fields the fields to include in the response.
+	 * @param <T> The Java type to bind the Facebook object to
+	 * @return a future for the list of Java objects representing the Facebook objects in the connections.
+	 */
+	<T> CompletableFuture<PagedList<T>> fetchConnections(String objectId, String connectionName, Class<T> type, String... fields);
+
+	/**
+	 * Fetches the first page of an object's connections.
+	 * @param objectId the ID of the object to retrieve the connections for.
+	 * @param connectionName the connection name.
+	 * @param type the Java type of each connection.
+	 * @param queryParameters query parameters to include in the request
+	 * @param <T> The Java type to bind the Facebook object to
+	 * @return a future for the list of Java objects representing the Facebook objects in the connections.
+	 */
+	<T> CompletableFuture<PagedList<T>> fetchConnections(String objectId, String connectionName, Class<T> type, MultiValueMap<String, String> queryParameters);
+
+	/**
+	 * Fetches the page following the given one.
+	 * @param page the current page
+	 * @param type the Java type of each connection.
+	 * @param <T> The Java type to bind the Facebook object to
+	 * @return a future for the next page, completed with null if the given page is the last one.
+	 */
+	<T> CompletableFuture<PagedList<T>> fetchNextPagedConnections(PagedList<T> page, Class<T> type);
+
+	/**
+	 * Walks all the pages of an object's connections, handing each page to the given handler.
+	 * The next page is only requested once the stage returned by the handler for the current page has completed,
+	 * so a slow consumer is never handed more than one page at a time and no more than one request is in flight.
+	 * Like {@link GraphApi#streamConnections(String, String, Class, String...)}, the walk goes on past empty pages and only
+	 * ends on the page without a next page.
+	 * @param objectId the ID of the object to retrieve the connections for.
+	 * @param connectionName the connection name.
+	 * @param type the Java type of each connection.
+	 * @param pageHandler called with each non-empty page; its stage completes with true to request the next page, or false to stop.
+	 * @param fields the fields to include in the response.
+	 * @param <T> The Java type to bind the Facebook object to
+	 * @return a future completed once the last page has been handled, or exceptionally if a request or the handler fails.
+	 */
+	<T> CompletableFuture<Void> forEachConnectionPage(String objectId, String connectionName, Class<T> type,
+			Function<? super PagedList<T>, ? extends CompletionStage<Boolean>> pageHandler, String... fields);
+
+	/**
+	 * Publishes data to an object's connection.
+	 * @param objectId the object ID to publish to.
+	 * @param connectionName the connection name to publish to.
+	 * @param data the data to publish to the connection.
+	 * @return a future for the ID of the newly published object.
+	 */
+	CompletableFuture<String> publish(String objectId, String connectionName, MultiValueMap<String, Object> data);
+
+	/**
+	 * Deletes an object.
+	 * @param objectId the object ID
+	 * @return a future completed once the object has been deleted.
+	 */
+	CompletableFuture<Void> delete(String objectId);
+
+	/**
+	 * Deletes an object connection.
+	 * @param objectId the object ID
+	 * @param connectionName the connection name
+	 * @return a future completed once the connection has been deleted.
+	 */
+	CompletableFuture<Void> delete(String objectId, String connectionName);
+
+	/**
+	 * @return The application namespace associated with this instance. May be null if no namespace was specified.
+	 */
+	String getApplicationNamespace();
+
+	/**
+	 * @return the base graph api url
+	 */
+	String getBaseGraphApiUrl();
+
+}
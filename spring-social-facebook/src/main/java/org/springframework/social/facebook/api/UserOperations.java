@@ -15,6 +15,15 @@
  */
 package org.springframework.social.facebook.api;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 
 import org.springframework.social.ApiException;
@@ -152,6 +161,120 @@ public interface UserOperations {
 	 */
 	byte[] getUserProfileImage(String userId, Integer width, Integer height);
 
+	/**
+	 * Streams the user's profile image into the given output stream without buffering it in
+	 * memory. The stream is left open.
+	 * Implementations written before this method was introduced buffer the image returned by
+	 * {@link #getUserProfileImage(String, ImageType)}.
+	 *
+	 * @param userId
+	 *            the Facebook user ID.
+	 * @param imageType
+	 *            the image type (eg., small, normal, large. square)
+	 * @param out
+	 *            the stream to write the image to
+	 * @return the number of bytes written.
+	 * @throws ApiException
+	 *             if there is an error while communicating with Facebook.
+	 */
+	default long getUserProfileImage(String userId, ImageType imageType, OutputStream out) {
+		byte[] image = getUserProfileImage(userId, imageType);
+		try {
+			out.write(image);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return image.length;
+	}
+
+	/**
+	 * Streams the user's profile image into the given channel without buffering it in memory.
+	 * The channel is left open.
+	 * Implementations written before this method was introduced buffer the image returned by
+	 * {@link #getUserProfileImage(String, ImageType)}.
+	 *
+	 * @param userId
+	 *            the Facebook user ID.
+	 * @param imageType
+	 *            the image type (eg., small, normal, large. square)
+	 * @param channel
+	 *            the channel to write the image to
+	 * @return the number of bytes written.
+	 * @throws ApiException
+	 *             if there is an error while communicating with Facebook.
+	 */
+	default long getUserProfileImage(String userId, ImageType imageType, WritableByteChannel channel) {
+		return getUserProfileImage(userId, imageType, Channels.newOutputStream(channel));
+	}
+
+	/**
+	 * Streams the user's profile image into the given file, replacing its content.
+	 * Implementations written before this method was introduced buffer the image returned by
+	 * {@link #getUserProfileImage(String, ImageType)}.
+	 *
+	 * @param userId
+	 *            the Facebook user ID.
+	 * @param imageType
+	 *            the image type (eg., small, normal, large. square)
+	 * @param file
+	 *            the file to write the image to
+	 * @return the number of bytes written.
+	 * @throws ApiException
+	 *             if there is an error while communicating with Facebook.
+	 */
+	default long getUserProfileImage(String userId, ImageType imageType, Path file) {
+		try (OutputStream out = Files.newOutputStream(file)) {
+			return getUserProfileImage(userId, imageType, out);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Opens the user's profile image for reading. The caller must close the returned stream.
+	 * Implementations written before this method was introduced buffer the image returned by
+	 * {@link #getUserProfileImage(String, ImageType)}.
+	 *
+	 * @param userId
+	 *            the Facebook user ID.
+	 * @param imageType
+	 *            the image type (eg., small, normal, large. square)
+	 * @return a stream of the user's profile image.
+	 * @throws ApiException
+	 *             if there is an error while communicating with Facebook.
+	 */
+	default InputStream openUserProfileImage(String userId, ImageType imageType) {
+		return new ByteArrayInputStream(getUserProfileImage(userId, imageType));
+	}
+
+	/**
+	 * Retrieves the URL the user's profile image is served from, without downloading the image.
+	 *
+	 * @param userId
+	 *            the Facebook user ID.
+	 * @param imageType
+	 *            the image type (eg., small, normal, large. square)
+	 * @return the URL of the user's profile image.
+	 * @throws ApiException
+	 *             if there is an error while communicating with Facebook.
+	 */
+	String getUserProfileImageUrl(String userId, ImageType imageType);
+
+	/**
+	 * Retrieves the URL the user's profile image is served from, without downloading the image.
+	 *
+	 * @param userId
+	 *            the Facebook user ID.
+	 * @param width
+	 *            the desired image width
+	 * @param height
+	 *            the desired image height
+	 * @return the URL of the user's profile image.
+	 * @throws ApiException
+	 *             if there is an error while communicating with Facebook.
+	 */
+	String getUserProfileImageUrl(String userId, Integer width, Integer height);
+
 	/**
 	 * Retrieves a list of permissions that the application has been granted for the authenticated
 	 * user.
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api;
+
+/**
+ * Callback notified of the progress of a chunked video upload.
+ * @see MediaOperations#transferVideo(VideoUploadSession, java.nio.file.Path, VideoUploadListener)
+ */
+public interface VideoUploadListener {
+
+	/**
+	 * Called after each chunk Facebook acknowledged. The session may be persisted to resume the upload later.
+	 * @param session the state of the upload after the chunk, whose start offset is the number of bytes transferred so far.
+	 */
+	void chunkTransferred(VideoUploadSession session);
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api;
+
+import java.io.Serializable;
+
+/**
+ * State of a chunked video upload, as returned by each phase of the upload.
+ * Persisting it after each transferred chunk allows an interrupted upload to be resumed with
+ * {@link MediaOperations#transferVideo(VideoUploadSession, java.nio.file.Path, VideoUploadListener)}.
+ */
+@SuppressWarnings("serial")
+public class VideoUploadSession implements Serializable {
+
+	private final String videoId;
+
+	private final String uploadSessionId;
+
+	private final long fileSize;
+
+	private final long startOffset;
+
+	private final long endOffset;
+
+	private final int chunkSize;
+
+	/**
+	 * Constructs a VideoUploadSession.
+	 * @param videoId The ID of the video being uploaded.
+	 * @param uploadSessionId The upload session ID returned by the start phase.
+	 * @param fileSize The size of the video file, in bytes.
+	 * @param startOffset The offset of the next chunk to transfer.
+	 * @param endOffset The offset Facebook expects the next chunk to end at.
+	 * @param chunkSize The size of the chunks sent when Facebook does not give the range of the next chunk.
+	 */
+	public VideoUploadSession(String videoId, String uploadSessionId, long fileSize, long startOffset, long endOffset, int chunkSize) {
+		this.videoId = videoId;
+		this.uploadSessionId = uploadSessionId;
+		this.fileSize = fileSize;
+		this.startOffset = startOffset;
+		this.endOffset = endOffset;
+		this.chunkSize = chunkSize;
+	}
+
+	public String getVideoId() {
+		return videoId;
+	}
+
+	public String getUploadSessionId() {
+		return uploadSessionId;
+	}
+
+	public long getFileSize() {
+		return fileSize;
+	}
+
+	/**
+	 * @return the offset of the next chunk to transfer, which is also the number of bytes transferred so far.
+	 */
+	public long getStartOffset() {
+		return startOffset;
+	}
+
+	public long getEndOffset() {
+		return endOffset;
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * @return true once all of the video has been transferred and the upload can be finished.
+	 */
+	public boolean isTransferComplete() {
+		return startOffset >= fileSize;
+	}
+
+	/**
+	 * @param startOffset the offset of the next chunk to transfer.
+	 * @param endOffset the offset Facebook expects the next chunk to end at.
+	 * @return a copy of this session moved to the given offsets.
+	 */
+	public VideoUploadSession withOffsets(long startOffset, long endOffset) {
+		return new VideoUploadSession(videoId, uploadSessionId, fileSize, startOffset, endOffset, chunkSize);
+	}
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Snapshot of the rate limit usage Facebook reports in the X-App-Usage, X-Page-Usage and
+ * X-Business-Use-Case-Usage response headers. Percentages are of the limit Facebook throttles at.
+ */
+public class ApiUsage {
+
+	/**
+	 * Usage reported when Facebook has not reported any yet.
+	 */
+	public static final ApiUsage NONE = new ApiUsage(0, 0, 0, 0);
+
+	private final int callCount;
+
+	private final int totalCputime;
+
+	private final int totalTime;
+
+	private final int estimatedTimeToRegainAccess;
+
+	public ApiUsage(int callCount, int totalCputime, int totalTime, int estimatedTimeToRegainAccess) {
+		this.callCount = callCount;
+		this.totalCputime = totalCputime;
+		this.totalTime = totalTime;
+		this.estimatedTimeToRegainAccess = estimatedTimeToRegainAccess;
+	}
+
+	/**
+	 * @return the percentage of the allowed number of calls made.
+	 */
+	public int getCallCount() {
+		return callCount;
+	}
+
+	/**
+	 * @return the percentage of the allowed CPU time used.
+	 */
+	public int getTotalCputime() {
+		return totalCputime;
+	}
+
+	/**
+	 * @return the percentage of the allowed total time used.
+	 */
+	public int getTotalTime() {
+		return totalTime;
+	}
+
+	/**
+	 * @return the number of minutes before a throttled app, page or business can make calls again, 0 if not throttled.
+	 */
+	public int getEstimatedTimeToRegainAccess() {
+		return estimatedTimeToRegainAccess;
+	}
+
+	/**
+	 * @return the highest of the call count, CPU time and total time percentages, Facebook throttling once any of them reaches 100.
+	 */
+	public int getUtilization() {
+		return Math.max(callCount, Math.max(totalCputime, totalTime));
+	}
+
+	/**
+	 * @param other another usage snapshot.
+	 * @return the usage closest to being throttled of this one and the given one.
+	 */
+	ApiUsage max(ApiUsage other) {
+		if (other.estimatedTimeToRegainAccess != estimatedTimeToRegainAccess) {
+			return other.estimatedTimeToRegainAccess > estimatedTimeToRegainAccess ? other : this;
+		}
+		return other.getUtilization() > getUtilization() ? other : this;
+	}
+
+	/**
+	 * @param usage a usage object such as the value of the X-App-Usage header or one entry of the X-Business-Use-Case-Usage header.
+	 * @return the parsed usage.
+	 */
+	static ApiUsage fromJson(JsonNode usage) {
+		return new ApiUsage(usage.path("call_count").asInt(), usage.path("total_cputime").asInt(),
+				usage.path("total_time").asInt(), usage.path("estimated_time_to_regain_access").asInt());
+	}
+
+	@Override
+	public String toString() {
+		return "call_count=" + callCount + ", total_cputime=" + totalCputime + ", total_time=" + totalTime
+				+ ", estimated_time_to_regain_access=" + estimatedTimeToRegainAccess;
+	}
+
+}
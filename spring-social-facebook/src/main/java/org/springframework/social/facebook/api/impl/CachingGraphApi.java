@@ -0,0 +1,292 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api.impl;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.springframework.social.facebook.api.GraphApi;
+import org.springframework.social.facebook.api.GraphBatch;
+import org.springframework.social.facebook.api.GraphObjectMap;
+import org.springframework.social.facebook.api.ImageType;
+import org.springframework.social.facebook.api.PagedList;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StringUtils;
+
+/**
+ * <p>
+ * {@link GraphApi} decorator serving {@link #fetchObject(String, Class, String...)} and its variants from a
+ * {@link GraphObjectCache}; {@link #fetchObjects(Collection, Class, String...)} only asks Facebook for the objects
+ * that are not cached. All other operations are passed to the decorated {@link GraphApi}; publishing to, posting
+ * to or deleting an object also removes it from the cache.
+ * </p>
+ * <p>
+ * Objects are cached per scope, which should identify what the access token is allowed to see (e.g. the user ID or
+ * the token itself) when the cache is shared between the decorators of several tokens. The same fields requested in a
+ * different order share a cache entry.
+ * </p>
+ */
+public class CachingGraphApi implements GraphApi {
+
+	private final GraphApi graphApi;
+
+	private final GraphObjectCache cache;
+
+	private final String scope;
+
+	/**
+	 * @param graphApi the {@link GraphApi} to decorate.
+	 * @param cache the cache to serve objects from.
+	 * @param scope the scope the objects fetched through this decorator are cached in. May be null if the cache is not
+	 *            shared with decorators of other access tokens.
+	 */
+	public CachingGraphApi(GraphApi graphApi, GraphObjectCache cache, String scope) {
+		this.graphApi = graphApi;
+		this.cache = cache;
+		this.scope = scope;
+	}
+
+	/**
+	 * @return the cache objects are served from.
+	 */
+	public GraphObjectCache getCache() {
+		return cache;
+	}
+
+	public <T> T fetchObject(final String objectId, final Class<T> type) {
+		return cache.get(key(objectId, type, new LinkedMultiValueMap<String, String>()), new Supplier<T>() {
+			public T get() {
+				return graphApi.fetchObject(objectId, type);
+			}
+		});
+	}
+
+	public <T> T fetchObject(final String objectId, final Class<T> type, final String... fields) {
+		return cache.get(key(objectId, type, fieldParameters(fields)), new Supplier<T>() {
+			public T get() {
+				return graphApi.fetchObject(objectId, type, fields);
+			}
+		});
+	}
+
+	public <T> T fetchObject(final String objectId, final Class<T> type, final MultiValueMap<String, String> queryParameters) {
+		return cache.get(key(objectId, type, queryParameters(queryParameters)), new Supplier<T>() {
+			public T get() {
+				return graphApi.fetchObject(objectId, type, queryParameters);
+			}
+		});
+	}
+
+	public <T> GraphObjectMap<T> fetchObjects(Collection<String> objectIds, Class<T> type, String... fields) {
+		MultiValueMap<String, String> parameters = fieldParameters(fields);
+		Map<String, T> cached = new HashMap<String, T>();
+		List<String> uncachedIds = new ArrayList<String>();
+		for (String objectId : new LinkedHashSet<String>(objectIds)) {
+			T object = cache.getIfPresent(key(objectId, type, parameters));
+			if (object != null) {
+				cached.put(objectId, object);
+			} else {
+				uncachedIds.add(objectId);
+			}
+		}
+		if (uncachedIds.isEmpty()) {
+			return new GraphObjectMap<T>(ordered(objectIds, cached), Collections.<String>emptySet());
+		}
+
+		GraphObjectMap<T> fetched = graphApi.fetchObjects(uncachedIds, type, fields);
+		for (Map.Entry<String, T> entry : fetched.entrySet()) {
+			cache.put(key(entry.getKey(), type, parameters), entry.getValue());
+			cached.put(entry.getKey(), entry.getValue());
+		}
+		return new GraphObjectMap<T>(ordered(objectIds, cached), fetched.getMissingIds());
+	}
+
+	public <T> PagedList<T> fetchConnections(String objectId, String connectionName, Class<T> type, String... fields) {
+		return graphApi.fetchConnections(objectId, connectionName, type, fields);
+	}
+
+	public <T> PagedList<T> fetchConnections(String objectId, String connectionName, Class<T> type, MultiValueMap<String, String> queryParameters) {
+		return graphApi.fetchConnections(objectId, connectionName, type, queryParameters);
+	}
+
+	public <T> PagedList<T> fetchConnections(String objectId, String connectionName, Class<T> type, MultiValueMap<String, String> queryParameters, String... fields) {
+		return graphApi.fetchConnections(objectId, connectionName, type, queryParameters, fields);
+	}
+
+	public <T> Stream<T> streamConnections(String objectId, String connectionName, Class<T> type, String... fields) {
+		return graphApi.streamConnections(objectId, connectionName, type, fields);
+	}
+
+	public <T> Stream<T> streamConnections(String objectId, String connectionName, Class<T> type, MultiValueMap<String, String> queryParameters) {
+		return graphApi.streamConnections(objectId, connectionName, type, queryParameters);
+	}
+
+	public <T> Stream<T> streamConnections(PagedList<T> firstPage, Class<T> type) {
+		return graphApi.streamConnections(firstPage, type);
+	}
+
+	public byte[] fetchImage(String objectId, String connectionName, ImageType imageType) {
+		return graphApi.fetchImage(objectId, connectionName, imageType);
+	}
+
+	public byte[] fetchImage(String objectId, String connectionName, Integer width, Integer height) {
+		return graphApi.fetchImage(objectId, connectionName, width, height);
+	}
+
+	public long fetchImage(String objectId, String connectionName, ImageType imageType, OutputStream out) {
+		return graphApi.fetchImage(objectId, connectionName, imageType, out);
+	}
+
+	public long fetchImage(String objectId, String connectionName, Integer width, Integer height, OutputStream out) {
+		return graphApi.fetchImage(objectId, connectionName, width, height, out);
+	}
+
+	public long fetchImage(String objectId, String connectionName, ImageType imageType, WritableByteChannel channel) {
+		return graphApi.fetchImage(objectId, connectionName, imageType, channel);
+	}
+
+	public long fetchImage(String objectId, String connectionName, ImageType imageType, Path file) {
+		return graphApi.fetchImage(objectId, connectionName, imageType, file);
+	}
+
+	public InputStream openImage(String objectId, String connectionName, ImageType imageType) {
+		return graphApi.openImage(objectId, connectionName, imageType);
+	}
+
+	public InputStream openImage(String objectId, String connectionName, Integer width, Integer height) {
+		return graphApi.openImage(objectId, connectionName, width, height);
+	}
+
+	public String fetchImageUrl(String objectId, String connectionName, ImageType imageType) {
+		return graphApi.fetchImageUrl(objectId, connectionName, imageType);
+	}
+
+	public String fetchImageUrl(String objectId, String connectionName, Integer width, Integer height) {
+		return graphApi.fetchImageUrl(objectId, connectionName, width, height);
+	}
+
+	public String publish(String objectId, String connectionName, MultiValueMap<String, Object> data) {
+		try {
+			return graphApi.publish(objectId, connectionName, data);
+		} finally {
+			cache.invalidate(scope, objectId);
+		}
+	}
+
+	public void post(String objectId, MultiValueMap<String, Object> data) {
+		try {
+			graphApi.post(objectId, data);
+		} finally {
+			cache.invalidate(scope, objectId);
+		}
+	}
+
+	public void post(String objectId, String connectionName, MultiValueMap<String, Object> data) {
+		try {
+			graphApi.post(objectId, connectionName, data);
+		} finally {
+			cache.invalidate(scope, objectId);
+		}
+	}
+
+	public void delete(String objectId) {
+		try {
+			graphApi.delete(objectId);
+		} finally {
+			cache.invalidate(scope, objectId);
+		}
+	}
+
+	public void delete(String objectId, String connectionName) {
+		try {
+			graphApi.delete(objectId, connectionName);
+		} finally {
+			cache.invalidate(scope, objectId);
+		}
+	}
+
+	public void delete(String objectId, String connectionName, MultiValueMap<String, String> data) {
+		try {
+			graphApi.delete(objectId, connectionName, data);
+		} finally {
+			cache.invalidate(scope, objectId);
+		}
+	}
+
+	public GraphBatch batch() {
+		return graphApi.batch();
+	}
+
+	public String getApplicationNamespace() {
+		return graphApi.getApplicationNamespace();
+	}
+
+	public String getBaseGraphApiUrl() {
+		return graphApi.getBaseGraphApiUrl();
+	}
+
+	private MultiValueMap<String, String> fieldParameters(String... fields) {
+		MultiValueMap<String, String> parameters = new LinkedMultiValueMap<String, String>();
+		if (fields.length > 0) {
+			String[] sortedFields = fields.clone();
+			Arrays.sort(sortedFields);
+			parameters.set("fields", StringUtils.arrayToCommaDelimitedString(sortedFields));
+		}
+		return parameters;
+	}
+
+	/**
+	 * Copies query parameters into a key, with the requested fields sorted as by {@link #fieldParameters(String...)}.
+	 */
+	private MultiValueMap<String, String> queryParameters(MultiValueMap<String, String> queryParameters) {
+		MultiValueMap<String, String> parameters = new LinkedMultiValueMap<String, String>(queryParameters);
+		List<String> fields = parameters.remove("fields");
+		if (fields != null) {
+			parameters.putAll(fieldParameters(StringUtils.tokenizeToStringArray(StringUtils.collectionToCommaDelimitedString(fields), ",")));
+		}
+		return parameters;
+	}
+
+	private <T> Map<String, T> ordered(Collection<String> objectIds, Map<String, T> objects) {
+		Map<String, T> ordered = new LinkedHashMap<String, T>();
+		for (String objectId : objectIds) {
+			T object = objects.get(objectId);
+			if (object != null) {
+				ordered.put(objectId, object);
+			}
+		}
+		return ordered;
+	}
+
+	private GraphObjectCache.Key key(String objectId, Class<?> type, MultiValueMap<String, String> parameters) {
+		return new GraphObjectCache.Key(scope, objectId, type, parameters);
+	}
+
+}
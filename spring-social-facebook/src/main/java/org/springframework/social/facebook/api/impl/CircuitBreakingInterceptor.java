@@ -0,0 +1,575 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api.impl;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.social.ServerDownException;
+import org.springframework.social.ServerOverloadedException;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * <p>
+ * Isolates the Graph API endpoint families from one another so that a degraded one (e.g. search or a page's feed)
+ * cannot hold all the threads and connections of the app.
+ * </p>
+ * <p>
+ * Requests are grouped by the connection type they target ({@code /{id}/feed} belongs to "feed"), or else by
+ * {@link #OBJECT_FAMILY} for objects, {@link #SEARCH_FAMILY} for searches and {@link #BATCH_FAMILY} for batches.
+ * Each family has:
+ * </p>
+ * <ul>
+ * <li>a bulkhead, limiting how many of its requests are sent at the same time. A request that finds it full waits up
+ * to the configured maximum wait and is then rejected with a {@link ServerOverloadedException}.</li>
+ * <li>a circuit breaker, which opens once the failure rate of its last requests reaches the threshold. A failure is an
+ * I/O error, a 5xx response or, if configured, a request slower than the slow call duration. While open, requests are
+ * rejected at once with a {@link ServerDownException}. When the open duration has elapsed, a few probe requests are let
+ * through (half open): the circuit closes if they all succeed and opens again as soon as one fails.</li>
+ * </ul>
+ * <p>
+ * A request holds its slot of the bulkhead until its response is closed, so that reading the body counts towards
+ * its duration and an error while reading it counts as a failure.
+ * </p>
+ * <p>
+ * It should be registered before a {@link RetryingInterceptor}, so that a request and its retries hold a single slot
+ * of the bulkhead, e.g. in {@link FacebookClientFactory#setInterceptors(java.util.List)}.
+ * </p>
+ */
+@Slf4j
+public class CircuitBreakingInterceptor implements ClientHttpRequestInterceptor {
+
+	/**
+	 * The family of the requests to an object rather than one of its connections.
+	 */
+	public static final String OBJECT_FAMILY = "object";
+
+	/**
+	 * The family of search requests.
+	 */
+	public static final String SEARCH_FAMILY = "search";
+
+	/**
+	 * The family of batch requests.
+	 */
+	public static final String BATCH_FAMILY = "batch";
+
+	private static final Pattern VERSION = Pattern.compile("v\\d+\\.\\d+");
+
+	/**
+	 * The states of a circuit breaker.
+	 */
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private final int maxConcurrentCalls;
+
+	private final int failureRateThreshold;
+
+	private final long openDurationNanos;
+
+	private final Map<String, Integer> maxConcurrentCallsPerFamily = new ConcurrentHashMap<String, Integer>();
+
+	private final ConcurrentMap<String, Endpoint> endpoints = new ConcurrentHashMap<String, Endpoint>();
+
+	private volatile long maxWaitNanos;
+
+	private volatile int slidingWindowSize = 20;
+
+	private volatile int minimumCalls = 10;
+
+	private volatile int halfOpenProbes = 3;
+
+	private volatile long slowCallNanos;
+
+	/**
+	 * @param maxConcurrentCalls the number of requests of an endpoint family that may be sent at the same time.
+	 * @param failureRateThreshold the percentage of failed requests from which a circuit opens.
+	 * @param openDuration how long an open circuit rejects requests before probing the endpoint family again.
+	 * @param unit the unit of openDuration.
+	 */
+	public CircuitBreakingInterceptor(int maxConcurrentCalls, int failureRateThreshold, long openDuration, TimeUnit unit) {
+		Assert.isTrue(maxConcurrentCalls > 0, "maxConcurrentCalls must be positive");
+		Assert.isTrue(failureRateThreshold > 0 && failureRateThreshold <= 100, "failureRateThreshold must be between 1 and 100");
+		this.maxConcurrentCalls = maxConcurrentCalls;
+		this.failureRateThreshold = failureRateThreshold;
+		this.openDurationNanos = unit.toNanos(openDuration);
+	}
+
+	/**
+	 * Overrides the number of requests of the given endpoint family that may be sent at the same time. Must be set
+	 * before the first request of that family.
+	 * @param family an endpoint family, e.g. "feed" or {@link #SEARCH_FAMILY}.
+	 * @param maxConcurrentCalls the number of requests of that family that may be sent at the same time.
+	 */
+	public void setMaxConcurrentCalls(String family, int maxConcurrentCalls) {
+		Assert.isTrue(maxConcurrentCalls > 0, "maxConcurrentCalls must be positive");
+		maxConcurrentCallsPerFamily.put(family, maxConcurrentCalls);
+	}
+
+	/**
+	 * @param maxWait how long a request waits for a full bulkhead before being rejected. Defaults to 0: no wait.
+	 * @param unit the unit of maxWait.
+	 */
+	public void setMaxWait(long maxWait, TimeUnit unit) {
+		this.maxWaitNanos = unit.toNanos(maxWait);
+	}
+
+	/**
+	 * @param slidingWindowSize the number of most recent requests the failure rate is computed on. Defaults to 20. Must
+	 *            be set before the first request.
+	 */
+	public void setSlidingWindowSize(int slidingWindowSize) {
+		Assert.isTrue(slidingWindowSize > 0, "slidingWindowSize must be positive");
+		this.slidingWindowSize = slidingWindowSize;
+	}
+
+	/**
+	 * @param minimumCalls the number of requests a family must have sent before its circuit may open. Defaults to 10.
+	 */
+	public void setMinimumCalls(int minimumCalls) {
+		this.minimumCalls = minimumCalls;
+	}
+
+	/**
+	 * @param halfOpenProbes the number of requests let through by a half open circuit. Defaults to 3.
+	 */
+	public void setHalfOpenProbes(int halfOpenProbes) {
+		Assert.isTrue(halfOpenProbes > 0, "halfOpenProbes must be positive");
+		this.halfOpenProbes = halfOpenProbes;
+	}
+
+	/**
+	 * @param slowCallDuration the duration from which a successful request counts as a failure. Defaults to 0: the
+	 *            duration of requests is not considered.
+	 * @param unit the unit of slowCallDuration.
+	 */
+	public void setSlowCallDuration(long slowCallDuration, TimeUnit unit) {
+		this.slowCallNanos = unit.toNanos(slowCallDuration);
+	}
+
+	/**
+	 * @return the endpoint families requests were sent to.
+	 */
+	public Set<String> getEndpointFamilies() {
+		return Collections.unmodifiableSet(new TreeSet<String>(endpoints.keySet()));
+	}
+
+	/**
+	 * @param family an endpoint family.
+	 * @return the state of the family's circuit breaker.
+	 */
+	public State getState(String family) {
+		Endpoint endpoint = endpoints.get(family);
+		return endpoint != null ? endpoint.getState() : State.CLOSED;
+	}
+
+	/**
+	 * @param family an endpoint family.
+	 * @return the percentage of failures among the family's most recent requests.
+	 */
+	public int getFailureRate(String family) {
+		Endpoint endpoint = endpoints.get(family);
+		return endpoint != null ? endpoint.getFailureRate() : 0;
+	}
+
+	/**
+	 * @param family an endpoint family.
+	 * @return the number of requests of the family being sent.
+	 */
+	public int getActiveCallCount(String family) {
+		Endpoint endpoint = endpoints.get(family);
+		return endpoint != null ? endpoint.maxConcurrentCalls - endpoint.bulkhead.availablePermits() : 0;
+	}
+
+	/**
+	 * @param family an endpoint family.
+	 * @return the number of requests of the family that succeeded.
+	 */
+	public long getSuccessCount(String family) {
+		Endpoint endpoint = endpoints.get(family);
+		return endpoint != null ? endpoint.successCount.sum() : 0;
+	}
+
+	/**
+	 * @param family an endpoint family.
+	 * @return the number of requests of the family that failed.
+	 */
+	public long getFailureCount(String family) {
+		Endpoint endpoint = endpoints.get(family);
+		return endpoint != null ? endpoint.failureCount.sum() : 0;
+	}
+
+	/**
+	 * @param family an endpoint family.
+	 * @return the number of requests of the family rejected because its circuit was open.
+	 */
+	public long getShortCircuitedCount(String family) {
+		Endpoint endpoint = endpoints.get(family);
+		return endpoint != null ? endpoint.shortCircuitedCount.sum() : 0;
+	}
+
+	/**
+	 * @param family an endpoint family.
+	 * @return the number of requests of the family rejected because its bulkhead was full.
+	 */
+	public long getRejectedCount(String family) {
+		Endpoint endpoint = endpoints.get(family);
+		return endpoint != null ? endpoint.rejectedCount.sum() : 0;
+	}
+
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+		Endpoint endpoint = endpoint(endpointFamily(request));
+		long generation = endpoint.acquire();
+		long start = System.nanoTime();
+		ClientHttpResponse response = null;
+		try {
+			response = execution.execute(request, body);
+			boolean serverError = HttpStatus.Series.resolve(response.getRawStatusCode()) == HttpStatus.Series.SERVER_ERROR;
+			return new GuardedClientHttpResponse(response, endpoint, generation, start, serverError);
+		} catch (IOException e) {
+			if (response != null) {
+				response.close();
+			}
+			endpoint.release(generation, true);
+			throw e;
+		} catch (RuntimeException e) {
+			if (response != null) {
+				response.close();
+			}
+			endpoint.release(generation, false);
+			throw e;
+		}
+	}
+
+	/**
+	 * Determines the endpoint family of a request from its path: the connection type, or one of {@link #OBJECT_FAMILY},
+	 * {@link #SEARCH_FAMILY} and {@link #BATCH_FAMILY}. The path is read after the API version, which may follow a
+	 * prefix of the Graph API URL (see {@link FacebookTemplate#setGraphApiUrl(String)}).
+	 * @param request the request.
+	 * @return the endpoint family of the request.
+	 */
+	protected String endpointFamily(HttpRequest request) {
+		String[] segments = StringUtils.tokenizeToStringArray(request.getURI().getPath(), "/");
+		int first = 0;
+		for (int i = 0; i < segments.length; i++) {
+			if (VERSION.matcher(segments[i]).matches()) {
+				first = i + 1;
+				break;
+			}
+		}
+		if (segments.length <= first) {
+			return BATCH_FAMILY;
+		}
+		if (segments.length == first + 1) {
+			return SEARCH_FAMILY.equals(segments[first]) ? SEARCH_FAMILY : OBJECT_FAMILY;
+		}
+		return segments[first + 1];
+	}
+
+	private Endpoint endpoint(String family) {
+		Endpoint endpoint = endpoints.get(family);
+		if (endpoint == null) {
+			Integer familyMaxConcurrentCalls = maxConcurrentCallsPerFamily.get(family);
+			endpoint = new Endpoint(family, familyMaxConcurrentCalls != null ? familyMaxConcurrentCalls : maxConcurrentCalls, slidingWindowSize);
+			Endpoint existing = endpoints.putIfAbsent(family, endpoint);
+			if (existing != null) {
+				endpoint = existing;
+			}
+		}
+		return endpoint;
+	}
+
+	/**
+	 * Releases the slot of its request in the bulkhead and records the outcome of the request once closed.
+	 */
+	private class GuardedClientHttpResponse implements ClientHttpResponse {
+
+		private final ClientHttpResponse response;
+
+		private final Endpoint endpoint;
+
+		private final long generation;
+
+		private final long start;
+
+		private boolean failed;
+
+		private boolean closed;
+
+		GuardedClientHttpResponse(ClientHttpResponse response, Endpoint endpoint, long generation, long start, boolean failed) {
+			this.response = response;
+			this.endpoint = endpoint;
+			this.generation = generation;
+			this.start = start;
+			this.failed = failed;
+		}
+
+		public HttpStatus getStatusCode() throws IOException {
+			return response.getStatusCode();
+		}
+
+		public int getRawStatusCode() throws IOException {
+			return response.getRawStatusCode();
+		}
+
+		public String getStatusText() throws IOException {
+			return response.getStatusText();
+		}
+
+		public HttpHeaders getHeaders() {
+			return response.getHeaders();
+		}
+
+		public InputStream getBody() throws IOException {
+			try {
+				InputStream body = response.getBody();
+				return body != null ? new GuardedInputStream(body) : null;
+			} catch (IOException e) {
+				failed = true;
+				throw e;
+			}
+		}
+
+		public void close() {
+			try {
+				response.close();
+			} finally {
+				if (!closed) {
+					closed = true;
+					long slowCall = slowCallNanos;
+					endpoint.release(generation, failed || (slowCall > 0 && System.nanoTime() - start >= slowCall));
+				}
+			}
+		}
+
+		/**
+		 * Marks the request as failed when reading its body fails.
+		 */
+		private class GuardedInputStream extends FilterInputStream {
+
+			GuardedInputStream(InputStream in) {
+				super(in);
+			}
+
+			@Override
+			public int read() throws IOException {
+				try {
+					return super.read();
+				} catch (IOException e) {
+					failed = true;
+					throw e;
+				}
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				try {
+					return super.read(b, off, len);
+				} catch (IOException e) {
+					failed = true;
+					throw e;
+				}
+			}
+
+			@Override
+			public long skip(long n) throws IOException {
+				try {
+					return super.skip(n);
+				} catch (IOException e) {
+					failed = true;
+					throw e;
+				}
+			}
+
+		}
+
+	}
+
+	/**
+	 * The bulkhead and circuit breaker of an endpoint family. The outcomes of the last requests are kept in a ring
+	 * buffer; the generation changes with each state transition so that requests sent in a previous state do not count.
+	 */
+	private class Endpoint {
+
+		private final String family;
+
+		private final int maxConcurrentCalls;
+
+		private final Semaphore bulkhead;
+
+		private final boolean[] outcomes;
+
+		private final LongAdder successCount = new LongAdder();
+
+		private final LongAdder failureCount = new LongAdder();
+
+		private final LongAdder shortCircuitedCount = new LongAdder();
+
+		private final LongAdder rejectedCount = new LongAdder();
+
+		private State state = State.CLOSED;
+
+		private long generation;
+
+		private long openedAt;
+
+		private int recorded;
+
+		private int failures;
+
+		private int next;
+
+		private int probesSent;
+
+		private int probesSucceeded;
+
+		Endpoint(String family, int maxConcurrentCalls, int slidingWindowSize) {
+			this.family = family;
+			this.maxConcurrentCalls = maxConcurrentCalls;
+			this.bulkhead = new Semaphore(maxConcurrentCalls);
+			this.outcomes = new boolean[slidingWindowSize];
+		}
+
+		synchronized State getState() {
+			return state;
+		}
+
+		synchronized int getFailureRate() {
+			return recorded > 0 ? failures * 100 / recorded : 0;
+		}
+
+		/**
+		 * Takes a slot in the bulkhead if the circuit lets the request through, returning the current generation.
+		 */
+		long acquire() throws InterruptedIOException {
+			long acquiredGeneration = permit();
+			boolean acquired;
+			try {
+				acquired = bulkhead.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				cancelProbe(acquiredGeneration);
+				throw new InterruptedIOException("Interrupted while waiting for the " + family + " bulkhead");
+			}
+			if (!acquired) {
+				cancelProbe(acquiredGeneration);
+				rejectedCount.increment();
+				throw new ServerOverloadedException("facebook", "Too many concurrent requests to the " + family + " endpoints");
+			}
+			return acquiredGeneration;
+		}
+
+		void release(long acquiredGeneration, boolean failed) {
+			bulkhead.release();
+			if (failed) {
+				failureCount.increment();
+			} else {
+				successCount.increment();
+			}
+			record(acquiredGeneration, failed);
+		}
+
+		private synchronized long permit() {
+			if (state == State.OPEN && System.nanoTime() - openedAt >= openDurationNanos) {
+				transition(State.HALF_OPEN);
+			}
+			if (state == State.OPEN || (state == State.HALF_OPEN && probesSent >= halfOpenProbes)) {
+				shortCircuitedCount.increment();
+				throw new ServerDownException("facebook", "The circuit of the " + family + " endpoints is open");
+			}
+			if (state == State.HALF_OPEN) {
+				probesSent++;
+			}
+			return generation;
+		}
+
+		private synchronized void cancelProbe(long acquiredGeneration) {
+			if (state == State.HALF_OPEN && acquiredGeneration == generation) {
+				probesSent--;
+			}
+		}
+
+		private synchronized void record(long acquiredGeneration, boolean failed) {
+			if (acquiredGeneration != generation) {
+				return;
+			}
+			if (state == State.HALF_OPEN) {
+				if (failed) {
+					transition(State.OPEN);
+				} else if (++probesSucceeded >= halfOpenProbes) {
+					transition(State.CLOSED);
+				}
+				return;
+			}
+			if (recorded == outcomes.length) {
+				if (outcomes[next]) {
+					failures--;
+				}
+			} else {
+				recorded++;
+			}
+			outcomes[next] = failed;
+			if (failed) {
+				failures++;
+			}
+			next = (next + 1) % outcomes.length;
+			if (recorded >= minimumCalls && failures * 100 >= failureRateThreshold * recorded) {
+				transition(State.OPEN);
+			}
+		}
+
+		private void transition(State newState) {
+			log.debug("Circuit of the {} endpoints going from {} to {}", family, state, newState);
+			state = newState;
+			generation++;
+			probesSent = 0;
+			probesSucceeded = 0;
+			if (newState == State.OPEN) {
+				openedAt = System.nanoTime();
+			}
+			if (newState == State.CLOSED) {
+				recorded = 0;
+				failures = 0;
+				next = 0;
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.Assert;
+
+/**
+ * <p>
+ * {@link ClientHttpRequestFactory} decorator that buffers the body of error responses only, so that
+ * {@link FacebookErrorHandler} can read it in full while successful responses (including large images) stream
+ * straight from the connection into Jackson or the caller.
+ * </p>
+ * <p>
+ * At most {@link #getMaxErrorBodySize()} bytes of an error body are kept; anything beyond is discarded.
+ * </p>
+ */
+public class ErrorBufferingClientHttpRequestFactory implements ClientHttpRequestFactory {
+
+	/**
+	 * The default maximum number of bytes buffered from an error response.
+	 */
+	public static final int DEFAULT_MAX_ERROR_BODY_SIZE = 64 * 1024;
+
+	private final ClientHttpRequestFactory requestFactory;
+
+	private final int maxErrorBodySize;
+
+	/**
+	 * Creates a factory buffering up to {@link #DEFAULT_MAX_ERROR_BODY_SIZE} bytes of each error response.
+	 * @param requestFactory the request factory to decorate.
+	 */
+	public ErrorBufferingClientHttpRequestFactory(ClientHttpRequestFactory requestFactory) {
+		this(requestFactory, DEFAULT_MAX_ERROR_BODY_SIZE);
+	}
+
+	/**
+	 * @param requestFactory the request factory to decorate.
+	 * @param maxErrorBodySize the maximum number of bytes buffered from an error response.
+	 */
+	public ErrorBufferingClientHttpRequestFactory(ClientHttpRequestFactory requestFactory, int maxErrorBodySize) {
+		Assert.notNull(requestFactory, "requestFactory must not be null");
+		Assert.isTrue(maxErrorBodySize >= 0, "maxErrorBodySize must not be negative");
+		this.requestFactory = requestFactory;
+		this.maxErrorBodySize = maxErrorBodySize;
+	}
+
+	/**
+	 * @return the maximum number of bytes buffered from an error response.
+	 */
+	public int getMaxErrorBodySize() {
+		return maxErrorBodySize;
+	}
+
+	public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+		return new ErrorBufferingClientHttpRequest(requestFactory.createRequest(uri, httpMethod));
+	}
+
+	/**
+	 * Decorates the given request factory unless it already buffers error responses.
+	 */
+	static ClientHttpRequestFactory decorate(ClientHttpRequestFactory requestFactory) {
+		if (requestFactory instanceof ErrorBufferingClientHttpRequestFactory) {
+			return requestFactory;
+		}
+		return new ErrorBufferingClientHttpRequestFactory(requestFactory);
+	}
+
+	private class ErrorBufferingClientHttpRequest implements ClientHttpRequest {
+
+		private final ClientHttpRequest request;
+
+		ErrorBufferingClientHttpRequest(ClientHttpRequest request) {
+			this.request = request;
+		}
+
+		public HttpMethod getMethod() {
+			return request.getMethod();
+		}
+
+		public String getMethodValue() {
+			return request.getMethodValue();
+		}
+
+		public URI getURI() {
+			return request.getURI();
+		}
+
+		public HttpHeaders getHeaders() {
+			return request.getHeaders();
+		}
+
+		public OutputStream getBody() throws IOException {
+			return request.getBody();
+		}
+
+		public ClientHttpResponse execute() throws IOException {
+			ClientHttpResponse response = request.execute();
+			if (HttpStatus.Series.valueOf(response.getRawStatusCode()) == HttpStatus.Series.SUCCESSFUL) {
+				return response;
+			}
+			return new ErrorBufferingClientHttpResponse(response, maxErrorBodySize);
+		}
+
+	}
+
+	/**
+	 * Makes the body of the given error response readable several times, unless it already is.
+	 */
+	static ClientHttpResponse bufferError(ClientHttpResponse response) {
+		if (response instanceof ErrorBufferingClientHttpResponse) {
+			return response;
+		}
+		return new ErrorBufferingClientHttpResponse(response, DEFAULT_MAX_ERROR_BODY_SIZE);
+	}
+
+	private static class ErrorBufferingClientHttpResponse implements ClientHttpResponse {
+
+		private final ClientHttpResponse response;
+
+		private final int maxErrorBodySize;
+
+		private byte[] body;
+
+		ErrorBufferingClientHttpResponse(ClientHttpResponse response, int maxErrorBodySize) {
+			this.response = response;
+			this.maxErrorBodySize = maxErrorBodySize;
+		}
+
+		public HttpStatus getStatusCode() throws IOException {
+			return response.getStatusCode();
+		}
+
+		public int getRawStatusCode() throws IOException {
+			return response.getRawStatusCode();
+		}
+
+		public String getStatusText() throws IOException {
+			return response.getStatusText();
+		}
+
+		public HttpHeaders getHeaders() {
+			return response.getHeaders();
+		}
+
+		public InputStream getBody() throws IOException {
+			if (body == null) {
+				body = readBody();
+			}
+			return new ByteArrayInputStream(body);
+		}
+
+		public void close() {
+			response.close();
+		}
+
+		private byte[] readBody() throws IOException {
+			InputStream in = response.getBody();
+			if (in == null) {
+				return new byte[0];
+			}
+			ByteArrayOutputStream out = new ByteArrayOutputStream(Math.min(maxErrorBodySize, 1024));
+			byte[] buffer = new byte[4096];
+			int remaining = maxErrorBodySize;
+			int read;
+			while (remaining > 0 && (read = in.read(buffer, 0, Math.min(buffer.length, remaining))) != -1) {
+				out.write(buffer, 0, read);
+				remaining -= read;
+			}
+			return out.toByteArray();
+		}
+
+	}
+
+}
@@ -17,6 +17,11 @@ package org.springframework.social.facebook.api.impl;
 
 import static org.springframework.social.facebook.api.impl.PagedListUtils.*;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+
 import org.springframework.social.facebook.api.Event;
 import org.springframework.social.facebook.api.EventInvitee;
 import org.springframework.social.facebook.api.EventOperations;
@@ -48,6 +53,26 @@ class EventTemplate implements EventOperations {
 		return graphApi.fetchImage(eventId, "picture", imageType);
 	}
 
+	public long getEventImage(String eventId, ImageType imageType, OutputStream out) {
+		return graphApi.fetchImage(eventId, "picture", imageType, out);
+	}
+
+	public long getEventImage(String eventId, ImageType imageType, WritableByteChannel channel) {
+		return graphApi.fetchImage(eventId, "picture", imageType, channel);
+	}
+
+	public long getEventImage(String eventId, ImageType imageType, Path file) {
+		return graphApi.fetchImage(eventId, "picture", imageType, file);
+	}
+
+	public InputStream openEventImage(String eventId, ImageType imageType) {
+		return graphApi.openImage(eventId, "picture", imageType);
+	}
+
+	public String getEventImageUrl(String eventId, ImageType imageType) {
+		return graphApi.fetchImageUrl(eventId, "picture", imageType);
+	}
+
 	public PagedList<EventInvitee> getInvited(String eventId) {
 		return graphApi.fetchConnections(eventId, "invited", EventInvitee.class);
 	}
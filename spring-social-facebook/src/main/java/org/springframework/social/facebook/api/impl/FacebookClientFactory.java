@@ -0,0 +1,215 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.http.nio.client.HttpAsyncClient;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.social.facebook.api.Facebook;
+import org.springframework.social.facebook.api.impl.json.FacebookModule;
+import org.springframework.social.facebook.security.AppSecretProofCalculator;
+import org.springframework.social.support.ClientHttpRequestFactorySelector;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * <p>
+ * Creates {@link FacebookTemplate}s that share one HTTP client and one Jackson configuration.
+ * </p>
+ * <p>
+ * Every {@link FacebookTemplate} created with one of its public constructors builds its own
+ * {@link ClientHttpRequestFactory} (and so its own connection pool when Apache HttpComponents is
+ * on the classpath) and its own {@link ObjectMapper}, whose deserializer caches are then lost with
+ * the template. Applications serving many users should instead create a single factory and obtain
+ * a template per access token from it: such templates only carry their access token and, if an app
+ * secret is set, the matching appsecret_proof, calculated by a single {@link AppSecretProofCalculator}
+ * that caches the proofs of recently used tokens.
+ * </p>
+ * <p>
+ * The factory is thread-safe once configured.
+ * </p>
+ */
+public class FacebookClientFactory {
+
+	private final String appId;
+
+	private final String appSecret;
+
+	private final ClientHttpRequestFactory requestFactory;
+
+	private final ObjectMapper objectMapper;
+
+	private final MappingJackson2HttpMessageConverter jsonMessageConverter;
+
+	private final PagedListReader pagedListReader;
+
+	private final AppSecretProofCalculator appSecretProofCalculator;
+
+	private String applicationNamespace;
+
+	private String apiVersion = Facebook.DEFAULT_API_VERSION;
+
+	private String graphApiUrl = FacebookTemplate.DEFAULT_GRAPH_API_URL;
+
+	private List<ClientHttpRequestInterceptor> interceptors = Collections.emptyList();
+
+	/**
+	 * Creates a factory using the default {@link ClientHttpRequestFactory} (Apache HttpComponents if
+	 * available on the classpath, the JDK's HTTP client otherwise).
+	 *
+	 * @param appId
+	 *            the application's App ID, may be null.
+	 * @param appSecret
+	 *            the application's App Secret, used to sign requests with an appsecret_proof. May be
+	 *            null.
+	 */
+	public FacebookClientFactory(final String appId, final String appSecret) {
+		this(appId, appSecret, ClientHttpRequestFactorySelector.getRequestFactory());
+	}
+
+	/**
+	 * Creates a factory whose templates all send their requests through the given
+	 * {@link ClientHttpRequestFactory}, typically one backed by a pooled HTTP client.
+	 *
+	 * @param appId
+	 *            the application's App ID, may be null.
+	 * @param appSecret
+	 *            the application's App Secret, used to sign requests with an appsecret_proof. May be
+	 *            null.
+	 * @param requestFactory
+	 *            the request factory shared by all templates.
+	 */
+	public FacebookClientFactory(final String appId, final String appSecret,
+			final ClientHttpRequestFactory requestFactory) {
+		this.appId = appId;
+		this.appSecret = appSecret;
+		// Buffer error responses only so that the error handler can read them in full while
+		// successful responses stream straight from the connection
+		this.requestFactory = ErrorBufferingClientHttpRequestFactory.decorate(requestFactory);
+		this.objectMapper = new ObjectMapper();
+		this.objectMapper.registerModule(new FacebookModule());
+		this.jsonMessageConverter = new MappingJackson2HttpMessageConverter(objectMapper);
+		this.pagedListReader = new PagedListReader(objectMapper);
+		this.appSecretProofCalculator = appSecret != null ? new AppSecretProofCalculator(appSecret) : null;
+	}
+
+	/**
+	 * @param applicationNamespace
+	 *            the application namespace given to the created templates.
+	 */
+	public void setApplicationNamespace(final String applicationNamespace) {
+		this.applicationNamespace = applicationNamespace;
+	}
+
+	/**
+	 * @param apiVersion
+	 *            the Graph API version used by the created templates. See
+	 *            {@link FacebookTemplate#setApiVersion(String)}.
+	 */
+	public void setApiVersion(final String apiVersion) {
+		this.apiVersion = apiVersion;
+	}
+
+	/**
+	 * @param graphApiUrl
+	 *            the root URL of the Graph API used by the created templates. See
+	 *            {@link FacebookTemplate#setGraphApiUrl(String)}.
+	 */
+	public void setGraphApiUrl(final String graphApiUrl) {
+		this.graphApiUrl = graphApiUrl;
+	}
+
+	/**
+	 * @param interceptors
+	 *            interceptors added to the requests of every created template after its own (access
+	 *            token and appsecret_proof) ones, such as a {@link RateLimitingInterceptor} shared by
+	 *            the whole app.
+	 */
+	public void setInterceptors(final List<ClientHttpRequestInterceptor> interceptors) {
+		this.interceptors = new ArrayList<>(interceptors);
+	}
+
+	/**
+	 * Creates a template for the given access token that shares this factory's HTTP client and
+	 * Jackson configuration.
+	 *
+	 * @param accessToken
+	 *            the access token to authorize requests with.
+	 * @return a new {@link FacebookTemplate}
+	 */
+	public FacebookTemplate getFacebook(final String accessToken) {
+		FacebookTemplate facebook = new FacebookTemplate(accessToken, applicationNamespace, appId,
+				appSecret, this);
+		facebook.setApiVersion(apiVersion);
+		facebook.setGraphApiUrl(graphApiUrl);
+		return facebook;
+	}
+
+	/**
+	 * Creates a non-blocking template for the given access token that shares this factory's Jackson configuration.
+	 *
+	 * @param accessToken
+	 *            the access token to authorize requests with.
+	 * @param httpClient
+	 *            the Apache HttpAsyncClient, typically shared by all reactive templates. It is not closed when the
+	 *            template is destroyed.
+	 * @return a new {@link ReactiveFacebookTemplate}
+	 */
+	public ReactiveFacebookTemplate getReactiveFacebook(final String accessToken, final HttpAsyncClient httpClient) {
+		ReactiveFacebookTemplate facebook = new ReactiveFacebookTemplate(accessToken, applicationNamespace,
+				appSecret, httpClient, this);
+		facebook.setApiVersion(apiVersion);
+		facebook.setGraphApiUrl(graphApiUrl);
+		return facebook;
+	}
+
+	/**
+	 * @return the {@link ObjectMapper}, configured with {@link FacebookModule}, shared by all
+	 *         created templates.
+	 */
+	public ObjectMapper getObjectMapper() {
+		return objectMapper;
+	}
+
+	/**
+	 * @return the {@link ClientHttpRequestFactory} shared by all created templates.
+	 */
+	public ClientHttpRequestFactory getRequestFactory() {
+		return requestFactory;
+	}
+
+	MappingJackson2HttpMessageConverter getJsonMessageConverter() {
+		return jsonMessageConverter;
+	}
+
+	PagedListReader getPagedListReader() {
+		return pagedListReader;
+	}
+
+	List<ClientHttpRequestInterceptor> getInterceptors() {
+		return interceptors;
+	}
+
+	AppSecretProofCalculator getAppSecretProofCalculator() {
+		return appSecretProofCalculator;
+	}
+
+}
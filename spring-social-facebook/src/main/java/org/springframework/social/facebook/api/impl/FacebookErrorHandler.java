@@ -17,10 +17,9 @@ package org.springframework.social.facebook.api.impl;
 
 import static org.springframework.social.facebook.api.FacebookErrors.*;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -36,12 +35,15 @@ import org.springframework.social.RevokedAuthorizationException;
 import org.springframework.social.ServerException;
 import org.springframework.social.UncategorizedApiException;
 import org.springframework.social.facebook.api.FacebookError;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.client.DefaultResponseErrorHandler;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
 
 /**
  * Subclass of {@link DefaultResponseErrorHandler} that handles errors from Facebook's
@@ -52,6 +54,7 @@ class FacebookErrorHandler extends DefaultResponseErrorHandler {
 
 	private static final String FACEBOOK_PROVIDER_ID = "facebook";
 	private final static Log logger = LogFactory.getLog(FacebookErrorHandler.class);
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
 
 	@Override
 	public void handleError(ClientHttpResponse response) throws IOException {
@@ -95,51 +98,111 @@ class FacebookErrorHandler extends DefaultResponseErrorHandler {
 	}
 	
 	private FacebookError extractErrorFromResponse(ClientHttpResponse response) throws IOException {
-		String json = readResponseJson(response);
+		JsonParser parser = createParser(response.getBody());
 		try {
-			ObjectMapper mapper = new ObjectMapper(new JsonFactory());
-			JsonNode jsonNode = mapper.readValue(json, JsonNode.class);
-			if (jsonNode.has("error")) {
-				JsonNode errorNode = jsonNode.get("error");
-				Integer code = errorNode.has("code") ? errorNode.get("code").intValue() : null;
-				String type = errorNode.has("type") ? errorNode.get("type").asText() : null;
-				String message = errorNode.has("message") ? errorNode.get("message").asText() : null;
-				Integer subcode = errorNode.has("error_subcode") ? errorNode.get("error_subcode").intValue() : null;
-				String userMessage = errorNode.has("error_user_msg") ? errorNode.get("error_user_msg").asText() : null;
-				String userTitle = errorNode.has("error_user_title") ? errorNode.get("error_user_title").asText() : null;
-				
-				FacebookError error = new FacebookError(code, type, message, subcode, userMessage, userTitle);
-				if (logger.isDebugEnabled()) {
-					logger.debug("Facebook error: ");
-					logger.debug("   CODE        : " + error.getCode());
-					logger.debug("   TYPE        : " + error.getType());
-					logger.debug("   SUBCODE     : " + error.getSubcode());
-					logger.debug("   MESSAGE     : " + error.getMessage());
-					logger.debug("   USER TITLE  : " + error.getUserTitle());
-					logger.debug("   USER MESSAGE: " + error.getUserMessage());
-				}
-				return error;
+			if (parser.nextToken() == null) {
+				throw MismatchedInputException.from(parser, FacebookError.class, "No content to map due to end-of-input");
 			}
+			return readError(parser);
 		} catch (JsonParseException e) {
 			return null;
+		} finally {
+			parser.close();
+		}
+	}
+
+	/**
+	 * Extracts the error details from a Graph API response body.
+	 * @param jsonNode the parsed response body
+	 * @return the error, or null if the response body does not describe an error
+	 */
+	FacebookError extractError(JsonNode jsonNode) {
+		if (jsonNode == null) {
+			return null;
+		}
+		try (JsonParser parser = jsonNode.traverse()) {
+			parser.nextToken();
+			return readError(parser);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Streams the error details out of a Graph API response body, skipping everything else.
+	 * @param parser a parser at the first token of the response body
+	 * @return the error, or null if the response body does not describe an error
+	 */
+	private FacebookError readError(JsonParser parser) throws IOException {
+		if (parser.currentToken() != JsonToken.START_OBJECT) {
+			return null;
+		}
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			parser.nextToken();
+			if ("error".equals(field)) {
+				return logError(readErrorFields(parser));
+			}
+			parser.skipChildren();
 		}
 		return null;
 	}
 
-	private String readResponseJson(ClientHttpResponse response) throws IOException {
-		String json = readFully(response.getBody());
+	private FacebookError readErrorFields(JsonParser parser) throws IOException {
+		Integer code = null;
+		String type = null;
+		String message = null;
+		Integer subcode = null;
+		String userMessage = null;
+		String userTitle = null;
+		if (parser.currentToken() == JsonToken.START_OBJECT) {
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String field = parser.getCurrentName();
+				parser.nextToken();
+				if ("code".equals(field)) {
+					code = parser.getValueAsInt();
+				} else if ("type".equals(field)) {
+					type = parser.getValueAsString();
+				} else if ("message".equals(field)) {
+					message = parser.getValueAsString();
+				} else if ("error_subcode".equals(field)) {
+					subcode = parser.getValueAsInt();
+				} else if ("error_user_msg".equals(field)) {
+					userMessage = parser.getValueAsString();
+				} else if ("error_user_title".equals(field)) {
+					userTitle = parser.getValueAsString();
+				} else {
+					parser.skipChildren();
+				}
+			}
+		} else {
+			parser.skipChildren();
+		}
+		return new FacebookError(code, type, message, subcode, userMessage, userTitle);
+	}
+
+	private FacebookError logError(FacebookError error) {
 		if (logger.isDebugEnabled()) {
-			logger.debug("Error from Facebook: " + json);
+			logger.debug("Facebook error: ");
+			logger.debug("   CODE        : " + error.getCode());
+			logger.debug("   TYPE        : " + error.getType());
+			logger.debug("   SUBCODE     : " + error.getSubcode());
+			logger.debug("   MESSAGE     : " + error.getMessage());
+			logger.debug("   USER TITLE  : " + error.getUserTitle());
+			logger.debug("   USER MESSAGE: " + error.getUserMessage());
 		}
-		return json;
+		return error;
 	}
-	
-	private String readFully(InputStream in) throws IOException {
-		BufferedReader reader = new BufferedReader(new InputStreamReader(in));
-		StringBuilder sb = new StringBuilder();
-		while (reader.ready()) {
-			sb.append(reader.readLine());
+
+	/**
+	 * Creates a parser streaming the response body, which is only buffered when it is logged.
+	 */
+	private JsonParser createParser(InputStream body) throws IOException {
+		if (logger.isDebugEnabled()) {
+			byte[] json = StreamUtils.copyToByteArray(body);
+			logger.debug("Error from Facebook: " + new String(json, StandardCharsets.UTF_8));
+			return JSON_FACTORY.createParser(json);
 		}
-		return sb.toString();
+		return JSON_FACTORY.createParser(body);
 	}
 }
@@ -15,13 +15,36 @@
  */
 package org.springframework.social.facebook.api.impl;
 
-import static org.springframework.social.facebook.api.impl.PagedListUtils.getPagedListParameters;
-
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
@@ -29,15 +52,19 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.social.NotAuthorizedException;
-import org.springframework.social.UncategorizedApiException;
+import org.springframework.social.ResourceNotFoundException;
 import org.springframework.social.facebook.api.AchievementOperations;
 import org.springframework.social.facebook.api.CommentOperations;
 import org.springframework.social.facebook.api.EventOperations;
 import org.springframework.social.facebook.api.Facebook;
 import org.springframework.social.facebook.api.FeedOperations;
 import org.springframework.social.facebook.api.FriendOperations;
+import org.springframework.social.facebook.api.GraphBatch;
+import org.springframework.social.facebook.api.GraphObjectMap;
 import org.springframework.social.facebook.api.GroupOperations;
 import org.springframework.social.facebook.api.ImageType;
 import org.springframework.social.facebook.api.LikeOperations;
@@ -45,7 +72,6 @@ import org.springframework.social.facebook.api.MediaOperations;
 import org.springframework.social.facebook.api.OpenGraphOperations;
 import org.springframework.social.facebook.api.PageOperations;
 import org.springframework.social.facebook.api.PagedList;
-import org.springframework.social.facebook.api.PagingParameters;
 import org.springframework.social.facebook.api.SocialContextOperations;
 import org.springframework.social.facebook.api.TestUserOperations;
 import org.springframework.social.facebook.api.UserOperations;
@@ -53,17 +79,18 @@ import org.springframework.social.facebook.api.impl.json.FacebookModule;
 import org.springframework.social.facebook.security.FacebookAppSecretProofInterceptor;
 import org.springframework.social.oauth2.AbstractOAuth2ApiBinding;
 import org.springframework.social.oauth2.OAuth2Version;
-import org.springframework.social.support.ClientHttpRequestFactorySelector;
 import org.springframework.social.support.URIBuilder;
+import org.springframework.util.Assert;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.ResponseErrorHandler;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestOperations;
 import org.springframework.web.client.RestTemplate;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.type.CollectionType;
-import com.fasterxml.jackson.databind.type.TypeFactory;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -83,43 +110,38 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class FacebookTemplate extends AbstractOAuth2ApiBinding implements Facebook {
 
+	/**
+	 * The root URL of the Graph API, to which the API version and the request paths are appended.
+	 */
+	public static final String DEFAULT_GRAPH_API_URL = "https://graph.facebook.com/";
+
+	private static final int IMAGE_BUFFER_SIZE = 8192;
+
 	private final String appId;
 
 	private final String appSecret;
 
 	private final String accessToken;
 
-	private AchievementOperations achievementOperations;
-
-	private UserOperations userOperations;
-
-	private FriendOperations friendOperations;
+	private final FacebookClientFactory clientFactory;
 
-	private FeedOperations feedOperations;
+	private volatile SubApis subApis;
 
-	private GroupOperations groupOperations;
-
-	private CommentOperations commentOperations;
-
-	private LikeOperations likeOperations;
-
-	private EventOperations eventOperations;
-
-	private MediaOperations mediaOperations;
+	private ObjectMapper objectMapper;
 
-	private PageOperations pageOperations;
+	private PagedListReader pagedListReader;
 
-	private OpenGraphOperations openGraphOperations;
+	private ClientHttpRequestFactory requestFactory;
 
-	private SocialContextOperations socialContextOperations;
+	private final String applicationNamespace;
 
-	private TestUserOperations testUserOperations;
+	private String apiVersion = DEFAULT_API_VERSION;
 
-	private ObjectMapper objectMapper;
+	private String graphApiUrl = DEFAULT_GRAPH_API_URL;
 
-	private final String applicationNamespace;
+	private Executor connectionPrefetchExecutor;
 
-	private String apiVersion = DEFAULT_API_VERSION;
+	private Executor objectFetchExecutor;
 
 	/**
 	 * Create a new instance of FacebookTemplate. This constructor creates the FacebookTemplate
@@ -144,23 +166,71 @@ public class FacebookTemplate extends AbstractOAuth2ApiBinding implements Facebo
 
 	public FacebookTemplate(final String accessToken, final String applicationNamespace,
 			final String appId, final String appSecret) {
+		this(accessToken, applicationNamespace, appId, appSecret, null);
+	}
+
+	/**
+	 * Creates a FacebookTemplate sharing the HTTP client and Jackson configuration of the given
+	 * {@link FacebookClientFactory}. See {@link FacebookClientFactory#getFacebook(String)}.
+	 */
+	FacebookTemplate(final String accessToken, final String applicationNamespace,
+			final String appId, final String appSecret, final FacebookClientFactory clientFactory) {
 		super(accessToken);
 		this.appSecret = appSecret;
 		this.accessToken = accessToken;
 		this.applicationNamespace = applicationNamespace;
 		this.appId = appId;
-		initialize();
-
-		if (appSecret != null) {
-			setAppSecretInterceptor(getRestTemplate());
+		this.clientFactory = clientFactory;
+		if (clientFactory != null) {
+			objectMapper = clientFactory.getObjectMapper();
+			pagedListReader = clientFactory.getPagedListReader();
+			replaceJsonMessageConverter(clientFactory.getJsonMessageConverter());
+			// the factory's request factory already buffers error responses
+			replaceRequestFactory(clientFactory.getRequestFactory());
 		}
+		else {
+			objectMapper = DefaultJson.OBJECT_MAPPER;
+			pagedListReader = new PagedListReader(objectMapper);
+			setRequestFactory(unwrapRequestFactory());
+		}
+		addInterceptors();
+	}
+
+	/**
+	 * Creates a view of the given template acting with another access token (e.g. a page access
+	 * token). The view shares the parent's request factory, message converters and configuration, so
+	 * creating one does not set up another HTTP client. See {@link #forAccessToken(String)}.
+	 *
+	 * @param parent
+	 *            the template to share the HTTP client and configuration of.
+	 * @param accessToken
+	 *            the access token to authorize the view's requests with.
+	 */
+	protected FacebookTemplate(final FacebookTemplate parent, final String accessToken) {
+		super(accessToken);
+		this.appSecret = parent.appSecret;
+		this.accessToken = accessToken;
+		this.applicationNamespace = parent.applicationNamespace;
+		this.appId = parent.appId;
+		this.clientFactory = parent.clientFactory;
+		this.apiVersion = parent.apiVersion;
+		this.graphApiUrl = parent.graphApiUrl;
+		this.connectionPrefetchExecutor = parent.connectionPrefetchExecutor;
+		this.objectFetchExecutor = parent.objectFetchExecutor;
+		this.objectMapper = parent.objectMapper;
+		this.pagedListReader = parent.pagedListReader;
+		getRestTemplate().setMessageConverters(parent.getRestTemplate().getMessageConverters());
+		getRestTemplate().setErrorHandler(parent.getRestTemplate().getErrorHandler());
+		replaceRequestFactory(parent.requestFactory);
+		addInterceptors();
 	}
 
 	@Override
 	public void setRequestFactory(final ClientHttpRequestFactory requestFactory) {
-		// Wrap the request factory with a BufferingClientHttpRequestFactory so that the error
-		// handler can do repeat reads on the response.getBody()
-		super.setRequestFactory(ClientHttpRequestFactorySelector.bufferRequests(requestFactory));
+		// Buffer error responses only so that the error handler can read them in full while
+		// successful responses stream straight from the connection
+		this.requestFactory = ErrorBufferingClientHttpRequestFactory.decorate(requestFactory);
+		super.setRequestFactory(this.requestFactory);
 	}
 
 	/**
@@ -174,54 +244,130 @@ public class FacebookTemplate extends AbstractOAuth2ApiBinding implements Facebo
 		this.apiVersion = apiVersion;
 	}
 
+	/**
+	 * Set the root URL of the Graph API (defaults to {@link #DEFAULT_GRAPH_API_URL}), e.g. to send
+	 * the requests to a proxy or to a local stub of the Graph API in tests.
+	 *
+	 * @param graphApiUrl
+	 *            the root URL, to which the API version and the request paths are appended.
+	 */
+	public void setGraphApiUrl(final String graphApiUrl) {
+		Assert.hasText(graphApiUrl, "graphApiUrl must not be empty");
+		this.graphApiUrl = graphApiUrl.endsWith("/") ? graphApiUrl : graphApiUrl + "/";
+	}
+
+	/**
+	 * Set the executor used by {@link #streamConnections(PagedList, Class)} and its variants to fetch the next page of
+	 * connections in the background while the current one is consumed. If null (the default), pages are fetched on demand
+	 * by the consuming thread.
+	 *
+	 * @param connectionPrefetchExecutor
+	 *            the executor fetching pages ahead.
+	 */
+	public void setConnectionPrefetchExecutor(final Executor connectionPrefetchExecutor) {
+		this.connectionPrefetchExecutor = connectionPrefetchExecutor;
+	}
+
+	/**
+	 * Set the executor used by {@link #fetchObjects(Collection, Class, String...)} to fetch
+	 * several batches of IDs concurrently. If null (the default), the batches are fetched one
+	 * after the other by the calling thread.
+	 *
+	 * @param objectFetchExecutor
+	 *            the executor fetching batches of IDs.
+	 */
+	public void setObjectFetchExecutor(final Executor objectFetchExecutor) {
+		this.objectFetchExecutor = objectFetchExecutor;
+	}
+
+	/**
+	 * Set the delay before the first retry of a video chunk that failed to upload (defaults to 500
+	 * milliseconds). The delay doubles on each following retry of the same chunk.
+	 *
+	 * @param interval
+	 *            the delay before the first retry, 0 to retry immediately.
+	 * @param unit
+	 *            the unit of interval.
+	 */
+	public void setVideoChunkRetryInterval(final long interval, final TimeUnit unit) {
+		((MediaTemplate) getSubApis().mediaOperations).setChunkRetryInterval(interval, unit);
+	}
+
+	/**
+	 * Set the executor running the concurrent uploads of {@link MediaOperations#postPhotos(String, List, int)},
+	 * {@link PageOperations#postPhotos(String, String, List, int)} and
+	 * {@link PageOperations#stagePhotos(String, List, int)}. If null (the default), the uploads run on a pool of
+	 * {@value PhotoUploads#DEFAULT_THREADS} daemon threads shared by all templates.
+	 *
+	 * @param photoUploadExecutor
+	 *            the executor uploading photos.
+	 */
+	public void setPhotoUploadExecutor(final Executor photoUploadExecutor) {
+		((MediaTemplate) getSubApis().mediaOperations).setPhotoUploadExecutor(photoUploadExecutor);
+		((PageTemplate) getSubApis().pageOperations).setPhotoUploadExecutor(photoUploadExecutor);
+	}
+
+	/**
+	 * Set the cache of the page accounts (and their access tokens) used by {@link #pageOperations()}
+	 * to act as the pages the user administers. Defaults to a {@link PageAccountCache} holding up to
+	 * 1000 accounts for an hour. The cache is specific to this template's access token and should not
+	 * be shared with other templates.
+	 *
+	 * @param pageAccountCache
+	 *            the page account cache.
+	 */
+	public void setPageAccountCache(final PageAccountCache pageAccountCache) {
+		((PageTemplate) getSubApis().pageOperations).setAccountCache(pageAccountCache);
+	}
+
 	@Override
 	public AchievementOperations achievementOperations() {
-		return achievementOperations;
+		return getSubApis().achievementOperations;
 	}
 
 	@Override
 	public UserOperations userOperations() {
-		return userOperations;
+		return getSubApis().userOperations;
 	}
 
 	@Override
 	public LikeOperations likeOperations() {
-		return likeOperations;
+		return getSubApis().likeOperations;
 	}
 
 	@Override
 	public FriendOperations friendOperations() {
-		return friendOperations;
+		return getSubApis().friendOperations;
 	}
 
 	@Override
 	public FeedOperations feedOperations() {
-		return feedOperations;
+		return getSubApis().feedOperations;
 	}
 
 	@Override
 	public GroupOperations groupOperations() {
-		return groupOperations;
+		return getSubApis().groupOperations;
 	}
 
 	@Override
 	public CommentOperations commentOperations() {
-		return commentOperations;
+		return getSubApis().commentOperations;
 	}
 
 	@Override
 	public EventOperations eventOperations() {
-		return eventOperations;
+		return getSubApis().eventOperations;
 	}
 
 	@Override
 	public MediaOperations mediaOperations() {
-		return mediaOperations;
+		return getSubApis().mediaOperations;
 	}
 
 	@Override
 	public PageOperations pageOperations() {
-		return pageOperations;
+		return getSubApis().pageOperations;
 	}
 
 	@Override
@@ -231,12 +377,12 @@ public class FacebookTemplate extends AbstractOAuth2ApiBinding implements Facebo
 
 	@Override
 	public OpenGraphOperations openGraphOperations() {
-		return openGraphOperations;
+		return getSubApis().openGraphOperations;
 	}
 
 	@Override
 	public SocialContextOperations socialContextOperations() {
-		return socialContextOperations;
+		return getSubApis().socialContextOperations;
 	}
 
 	@Override
@@ -246,7 +392,7 @@ public class FacebookTemplate extends AbstractOAuth2ApiBinding implements Facebo
 
 	@Override
 	public TestUserOperations testUserOperations() {
-		return testUserOperations;
+		return getSubApis().testUserOperations;
 	}
 
 	// low-level Graph API operations
@@ -285,6 +431,68 @@ public class FacebookTemplate extends AbstractOAuth2ApiBinding implements Facebo
 		return getRestTemplate().getForObject(uri, type);
 	}
 
+	@Override
+	public <T> GraphObjectMap<T> fetchObjects(final Collection<String> objectIds,
+			final Class<T> type, final String... fields) {
+
+		List<String> ids = new ArrayList<>(new LinkedHashSet<>(objectIds));
+		List<List<String>> chunks = new ArrayList<>();
+		for (int i = 0; i < ids.size(); i += MAX_IDS_PER_REQUEST) {
+			chunks.add(ids.subList(i, Math.min(ids.size(), i + MAX_IDS_PER_REQUEST)));
+		}
+
+		log.debug("Fetching {} {} objects in {} requests", ids.size(), type.getSimpleName(),
+				chunks.size());
+
+		// all chunks but the first are fetched by the executor while the calling thread fetches
+		// the first one
+		List<CompletableFuture<Map<String, T>>> pending = new ArrayList<>();
+		if (objectFetchExecutor != null) {
+			for (final List<String> chunk : chunks.subList(Math.min(1, chunks.size()), chunks.size())) {
+				pending.add(CompletableFuture.supplyAsync(new Supplier<Map<String, T>>() {
+					@Override
+					public Map<String, T> get() {
+						return fetchObjectChunk(chunk, type, fields);
+					}
+				}, objectFetchExecutor));
+			}
+		}
+
+		Map<String, T> fetched = new HashMap<>();
+		try {
+			for (int i = 0; i < chunks.size(); i++) {
+				if (i == 0 || objectFetchExecutor == null) {
+					fetched.putAll(fetchObjectChunk(chunks.get(i), type, fields));
+				}
+				else {
+					fetched.putAll(pending.get(i - 1).join());
+				}
+			}
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		} finally {
+			for (CompletableFuture<Map<String, T>> future : pending) {
+				future.cancel(false);
+			}
+		}
+
+		Map<String, T> objects = new LinkedHashMap<>();
+		Set<String> missingIds = new LinkedHashSet<>();
+		for (String id : ids) {
+			T object = fetched.get(id);
+			if (object != null) {
+				objects.put(id, object);
+			}
+			else {
+				missingIds.add(id);
+			}
+		}
+		return new GraphObjectMap<>(objects, missingIds);
+	}
+
 	@Override
 	public <T> PagedList<T> fetchConnections(final String objectId, final String connectionType,
 			final Class<T> type, final String... fields) {
@@ -311,9 +519,7 @@ public class FacebookTemplate extends AbstractOAuth2ApiBinding implements Facebo
 				: "";
 		URIBuilder uriBuilder = URIBuilder.fromUri(getBaseGraphApiUrl() + objectId + connectionPath)
 				.queryParams(queryParameters);
-		JsonNode jsonNode = getRestTemplate().getForObject(uriBuilder.build(), JsonNode.class);
-
-		return pagify(type, jsonNode);
+		return fetchPagedList(uriBuilder.build(), type);
 	}
 
 	public <T> PagedList<T> fetchPagedConnections(final String objectId,
@@ -329,9 +535,7 @@ public class FacebookTemplate extends AbstractOAuth2ApiBinding implements Facebo
 				: "";
 		URIBuilder uriBuilder = URIBuilder.fromUri(getBaseGraphApiUrl() + objectId + connectionPath)
 				.queryParams(queryParameters);
-		JsonNode jsonNode = getRestTemplate().getForObject(uriBuilder.build(), JsonNode.class);
-
-		return pagify(type, jsonNode);
+		return fetchPagedList(uriBuilder.build(), type);
 	}
 
 	@Override
@@ -345,6 +549,35 @@ public class FacebookTemplate extends AbstractOAuth2ApiBinding implements Facebo
 		return fetchPagedConnections(objectId, connectionType, type, queryParameters);
 	}
 
+	@Override
+	public <T> Stream<T> streamConnections(final String objectId, final String connectionType,
+			final Class<T> type, final String... fields) {
+		MultiValueMap<String, String> queryParameters = new LinkedMultiValueMap<>();
+
+		if (fields.length > 0) {
+			String joinedFields = join(fields);
+			queryParameters.set("fields", joinedFields);
+		}
+
+		return streamConnections(objectId, connectionType, type, queryParameters);
+	}
+
+	@Override
+	public <T> Stream<T> streamConnections(final String objectId, final String connectionType,
+			final Class<T> type, final MultiValueMap<String, String> queryParameters) {
+		return new PagedListIterator<>(this, new Callable<PagedList<T>>() {
+			@Override
+			public PagedList<T> call() {
+				return fetchConnections(objectId, connectionType, type, queryParameters);
+			}
+		}, type, connectionPrefetchExecutor).stream();
+	}
+
+	@Override
+	public <T> Stream<T> streamConnections(final PagedList<T> firstPage, final Class<T> type) {
+		return new PagedListIterator<>(this, firstPage, type, connectionPrefetchExecutor).stream();
+	}
+
 	/**
 	 * Fetches the next {@link org.springframework.social.facebook.api.PagedList PagedList} of the
 	 * current one.
@@ -366,8 +599,7 @@ public class FacebookTemplate extends AbstractOAuth2ApiBinding implements Facebo
 		if (null != page && null != page.getNextPage()
 				&& !"".equals(page.getNextPage().getFullUrl().trim())) {
 			URIBuilder uriBuilder = URIBuilder.fromUri(page.getNextPage().getFullUrl());
-			JsonNode jsonNode = getRestTemplate().getForObject(uriBuilder.build(), JsonNode.class);
-			return pagify(type, jsonNode);
+			return fetchPagedList(uriBuilder.build(), type);
 		}
 		return null;
 	}
@@ -393,39 +625,28 @@ public class FacebookTemplate extends AbstractOAuth2ApiBinding implements Facebo
 		if (null != page && null != page.getPreviousPage()
 				&& !"".equals(page.getPreviousPage().getFullUrl().trim())) {
 			URIBuilder uriBuilder = URIBuilder.fromUri(page.getPreviousPage().getFullUrl());
-			JsonNode jsonNode = getRestTemplate().getForObject(uriBuilder.build(), JsonNode.class);
-			return pagify(type, jsonNode);
+			return fetchPagedList(uriBuilder.build(), type);
 		}
 		return null;
 	}
 
-	private <T> PagedList<T> pagify(final Class<T> type, final JsonNode jsonNode) {
-		List<T> data = deserializeDataList(jsonNode.get("data"), type);
-		if (!jsonNode.has("paging")) {
-			return new PagedList<>(data, null, null);
-		}
-
-		JsonNode pagingNode = jsonNode.get("paging");
-		PagingParameters previousPage = getPagedListParameters(pagingNode, "previous");
-		PagingParameters nextPage = getPagedListParameters(pagingNode, "next");
-
-		Integer totalCount = null;
-		if (jsonNode.has("summary")) {
-			JsonNode summaryNode = jsonNode.get("summary");
-			if (summaryNode.has("total_count")) {
-				totalCount = summaryNode.get("total_count").intValue();
-			}
-		}
+	private <T> PagedList<T> fetchPagedList(final URI uri, final Class<T> type) {
+		return getRestTemplate().execute(uri, HttpMethod.GET,
+				getRestTemplate().acceptHeaderRequestCallback(JsonNode.class),
+				pagedListReader.responseExtractor(uri, type));
+	}
 
-		return new PagedList<>(data, previousPage, nextPage, totalCount);
+	@Override
+	public GraphBatch batch() {
+		return new GraphBatchTemplate(this, getRestTemplate(), objectMapper, pagedListReader);
 	}
 
 	@Override
 	public String getBaseGraphApiUrl() {
 		if (apiVersion != null) {
-			return "https://graph.facebook.com/v" + apiVersion + "/";
+			return graphApiUrl + "v" + apiVersion + "/";
 		}
-		return "https://graph.facebook.com/";
+		return graphApiUrl;
 	}
 
 	@Override
@@ -440,8 +661,87 @@ public class FacebookTemplate extends AbstractOAuth2ApiBinding implements Facebo
 		return fetchImage(objectId, connectionType, null, width, height);
 	}
 
+	@Override
+	public long fetchImage(final String objectId, final String connectionType,
+			final ImageType type, final OutputStream out) {
+		return streamImage(imageUri(objectId, connectionType, type, null, null),
+				new ImageCopier() {
+					public long copy(final InputStream image) throws IOException {
+						return copyImage(image, Channels.newChannel(out));
+					}
+				});
+	}
+
+	@Override
+	public long fetchImage(final String objectId, final String connectionType,
+			final Integer width, final Integer height, final OutputStream out) {
+		return streamImage(imageUri(objectId, connectionType, null, width, height),
+				new ImageCopier() {
+					public long copy(final InputStream image) throws IOException {
+						return copyImage(image, Channels.newChannel(out));
+					}
+				});
+	}
+
+	@Override
+	public long fetchImage(final String objectId, final String connectionType,
+			final ImageType type, final WritableByteChannel channel) {
+		return streamImage(imageUri(objectId, connectionType, type, null, null),
+				new ImageCopier() {
+					public long copy(final InputStream image) throws IOException {
+						return copyImage(image, channel);
+					}
+				});
+	}
+
+	@Override
+	public long fetchImage(final String objectId, final String connectionType,
+			final ImageType type, final Path file) {
+		return streamImage(imageUri(objectId, connectionType, type, null, null),
+				new ImageCopier() {
+					public long copy(final InputStream image) throws IOException {
+						ReadableByteChannel source = Channels.newChannel(image);
+						FileChannel target = FileChannel.open(file, StandardOpenOption.CREATE,
+								StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+						try {
+							long position = 0;
+							long transferred;
+							while ((transferred = target.transferFrom(source, position,
+									Long.MAX_VALUE - position)) > 0) {
+								position += transferred;
+							}
+							return position;
+						} finally {
+							target.close();
+						}
+					}
+				});
+	}
+
+	@Override
+	public InputStream openImage(final String objectId, final String connectionType,
+			final ImageType type) {
+		return openImage(imageUri(objectId, connectionType, type, null, null));
+	}
+
+	@Override
+	public InputStream openImage(final String objectId, final String connectionType,
+			final Integer width, final Integer height) {
+		return openImage(imageUri(objectId, connectionType, null, width, height));
+	}
+
 	private byte[] fetchImage(final String objectId, final String connectionType,
 			final ImageType type, final Integer width, final Integer height) {
+		URI uri = imageUri(objectId, connectionType, type, width, height);
+		ResponseEntity<byte[]> response = getRestTemplate().getForEntity(uri, byte[].class);
+		if (response.getStatusCode() == HttpStatus.FOUND) {
+			throw redirectNotFollowed();
+		}
+		return response.getBody();
+	}
+
+	private URI imageUri(final String objectId, final String connectionType,
+			final ImageType type, final Integer width, final Integer height) {
 		URIBuilder uriBuilder = URIBuilder
 				.fromUri(getBaseGraphApiUrl() + objectId + "/" + connectionType);
 		if (type != null) {
@@ -453,14 +753,68 @@ public class FacebookTemplate extends AbstractOAuth2ApiBinding implements Facebo
 		if (height != null) {
 			uriBuilder.queryParam("height", height.toString());
 		}
-		URI uri = uriBuilder.build();
-		ResponseEntity<byte[]> response = getRestTemplate().getForEntity(uri, byte[].class);
-		if (response.getStatusCode() == HttpStatus.FOUND) {
-			throw new UnsupportedOperationException(
-					"Attempt to fetch image resulted in a redirect which could not be followed. Add Apache HttpComponents HttpClient to the classpath "
-							+ "to be able to follow redirects.");
+		return uriBuilder.build();
+	}
+
+	private long streamImage(final URI uri, final ImageCopier copier) {
+		Long written = getRestTemplate().execute(uri, HttpMethod.GET, null,
+				new ResponseExtractor<Long>() {
+					public Long extractData(final ClientHttpResponse response) throws IOException {
+						if (response.getStatusCode() == HttpStatus.FOUND) {
+							throw redirectNotFollowed();
+						}
+						return copier.copy(response.getBody());
+					}
+				});
+		return written != null ? written : 0;
+	}
+
+	private InputStream openImage(final URI uri) {
+		ClientHttpResponse response = null;
+		try {
+			response = getRestTemplate().getRequestFactory().createRequest(uri, HttpMethod.GET)
+					.execute();
+			ResponseErrorHandler errorHandler = getRestTemplate().getErrorHandler();
+			if (errorHandler.hasError(response)) {
+				errorHandler.handleError(response);
+			}
+			if (response.getStatusCode() == HttpStatus.FOUND) {
+				throw redirectNotFollowed();
+			}
+			return new ResponseInputStream(response);
+		} catch (IOException e) {
+			if (response != null) {
+				response.close();
+			}
+			throw new ResourceAccessException("I/O error on GET request for \"" + uri + "\": "
+					+ e.getMessage(), e);
+		} catch (RuntimeException e) {
+			if (response != null) {
+				response.close();
+			}
+			throw e;
 		}
-		return response.getBody();
+	}
+
+	private static long copyImage(final InputStream image, final WritableByteChannel target)
+			throws IOException {
+		ReadableByteChannel source = Channels.newChannel(image);
+		ByteBuffer buffer = ByteBuffer.allocate(IMAGE_BUFFER_SIZE);
+		long written = 0;
+		while (source.read(buffer) != -1) {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				written += target.write(buffer);
+			}
+			buffer.clear();
+		}
+		return written;
+	}
+
+	private static UnsupportedOperationException redirectNotFollowed() {
+		return new UnsupportedOperationException(
+				"Attempt to fetch image resulted in a redirect which could not be followed. Add Apache HttpComponents HttpClient to the classpath "
+						+ "to be able to follow redirects.");
 	}
 
 	@Override
@@ -528,67 +882,132 @@ public class FacebookTemplate extends AbstractOAuth2ApiBinding implements Facebo
 
 	private void setAppSecretInterceptor(final RestTemplate restTemplate) {
 		List<ClientHttpRequestInterceptor> interceptors = restTemplate.getInterceptors();
-		interceptors.add(new FacebookAppSecretProofInterceptor(accessToken, appSecret));
+		if (clientFactory != null) {
+			interceptors.add(new FacebookAppSecretProofInterceptor(accessToken,
+					clientFactory.getAppSecretProofCalculator()));
+		}
+		else {
+			interceptors.add(new FacebookAppSecretProofInterceptor(accessToken, appSecret));
+		}
 		restTemplate.setInterceptors(interceptors);
 	}
 
 	@Override
 	protected MappingJackson2HttpMessageConverter getJsonMessageConverter() {
-		MappingJackson2HttpMessageConverter converter = super.getJsonMessageConverter();
-		objectMapper = new ObjectMapper();
-		objectMapper.registerModule(new FacebookModule());
-		converter.setObjectMapper(objectMapper);
-		return converter;
+		// called by the superclass constructor: templates sharing a client factory or a parent
+		// replace it afterwards, so it must not cost a new ObjectMapper
+		return DefaultJson.MESSAGE_CONVERTER;
 	}
 
 	// private helpers
-	private void initialize() {
-		// Wrap the request factory with a BufferingClientHttpRequestFactory so that the error
-		// handler can do repeat reads on the response.getBody()
-		super.setRequestFactory(ClientHttpRequestFactorySelector
-				.bufferRequests(getRestTemplate().getRequestFactory()));
-		initSubApis();
-	}
-
-	private void initSubApis() {
-		achievementOperations = new AchievementTemplate(this);
-		openGraphOperations = new OpenGraphTemplate(this);
-		userOperations = new UserTemplate(this, getRestTemplate());
-		friendOperations = new FriendTemplate(this, getRestTemplate());
-		feedOperations = new FeedTemplate(this, getRestTemplate(), objectMapper);
-		commentOperations = new CommentTemplate(this);
-		likeOperations = new LikeTemplate(this);
-		eventOperations = new EventTemplate(this);
-		mediaOperations = new MediaTemplate(this, getRestTemplate());
-		groupOperations = new GroupTemplate(this);
-		pageOperations = new PageTemplate(this);
-		testUserOperations = new TestUserTemplate(this, getRestTemplate(), appId);
-		socialContextOperations = new SocialContextTemplate(this, getRestTemplate());
+	/**
+	 * Creates a view of this template for another access token (e.g. a page access token), sharing
+	 * this template's HTTP client and configuration.
+	 */
+	FacebookTemplate forAccessToken(final String accessToken) {
+		return new FacebookTemplate(this, accessToken);
 	}
 
-	@SuppressWarnings("unchecked")
-	private <T> List<T> deserializeDataList(final JsonNode jsonNode, final Class<T> elementType) {
-		try {
-			CollectionType listType = TypeFactory.defaultInstance()
-					.constructCollectionType(List.class, elementType);
-			return (List<T>) objectMapper.readerFor(listType).readValue(jsonNode.toString()); // TODO:
-																								// EXTREMELY
-																								// HACKY--TEMPORARY
-																								// UNTIL
-																								// I
-																								// FIGURE
-																								// OUT
-																								// HOW
-																								// JACKSON
-																								// 2
-																								// DOES
-																								// THIS
+	ObjectMapper getObjectMapper() {
+		return objectMapper;
+	}
+
+	private void addInterceptors() {
+		if (appSecret != null) {
+			setAppSecretInterceptor(getRestTemplate());
+		}
+		if (clientFactory != null && !clientFactory.getInterceptors().isEmpty()) {
+			List<ClientHttpRequestInterceptor> interceptors = getRestTemplate().getInterceptors();
+			interceptors.addAll(clientFactory.getInterceptors());
+			getRestTemplate().setInterceptors(interceptors);
+		}
+	}
+
+	private void replaceJsonMessageConverter(final MappingJackson2HttpMessageConverter converter) {
+		List<HttpMessageConverter<?>> converters = getRestTemplate().getMessageConverters();
+		for (int i = 0; i < converters.size(); i++) {
+			if (converters.get(i) instanceof MappingJackson2HttpMessageConverter) {
+				converters.set(i, converter);
+			}
+		}
+	}
+
+	/**
+	 * Replaces the request factory created by the superclass constructor with a shared one, closing
+	 * the HTTP client behind the replaced factory.
+	 */
+	private void replaceRequestFactory(final ClientHttpRequestFactory sharedRequestFactory) {
+		ClientHttpRequestFactory createdRequestFactory = unwrapRequestFactory();
+		this.requestFactory = sharedRequestFactory;
+		super.setRequestFactory(sharedRequestFactory);
+		if (createdRequestFactory instanceof DisposableBean) {
+			try {
+				((DisposableBean) createdRequestFactory).destroy();
+			} catch (Exception e) {
+				log.debug("Failed to close the replaced request factory", e);
+			}
+		}
+	}
+
+	/**
+	 * Returns the request factory of this template's {@link RestTemplate} without the intercepting
+	 * wrapper the RestTemplate returns once it has interceptors. Only safe while the RestTemplate
+	 * is not used yet.
+	 */
+	private ClientHttpRequestFactory unwrapRequestFactory() {
+		RestTemplate restTemplate = getRestTemplate();
+		List<ClientHttpRequestInterceptor> interceptors = new ArrayList<>(restTemplate.getInterceptors());
+		restTemplate.setInterceptors(Collections.<ClientHttpRequestInterceptor> emptyList());
+		ClientHttpRequestFactory requestFactory = restTemplate.getRequestFactory();
+		restTemplate.setInterceptors(interceptors);
+		return requestFactory;
+	}
+
+	/**
+	 * Creates the operations on first use, so that views created for a single request (see
+	 * {@link #forAccessToken(String)}) only create the ones they use.
+	 */
+	private SubApis getSubApis() {
+		SubApis apis = subApis;
+		if (apis == null) {
+			synchronized (this) {
+				apis = subApis;
+				if (apis == null) {
+					apis = new SubApis();
+					subApis = apis;
+				}
+			}
+		}
+		return apis;
+	}
+
+	/**
+	 * Fetches the objects of the given IDs in a single request. Facebook fails the whole request
+	 * when one of the IDs does not exist, so the IDs are then split in halves until the missing
+	 * ones are isolated.
+	 */
+	private <T> Map<String, T> fetchObjectChunk(final List<String> ids, final Class<T> type,
+			final String... fields) {
+
+		URIBuilder uriBuilder = URIBuilder.fromUri(getBaseGraphApiUrl()).queryParam("ids",
+				join(ids.toArray(new String[ids.size()])));
+		if (fields.length > 0) {
+			uriBuilder.queryParam("fields", join(fields));
 		}
-		catch (IOException e) {
-			log.error("Error deserializing data from Facebook: {}", e.getMessage());
 
-			throw new UncategorizedApiException("facebook",
-					"Error deserializing data from Facebook: " + e.getMessage(), e);
+		try {
+			return getRestTemplate().execute(uriBuilder.build(), HttpMethod.GET,
+					getRestTemplate().acceptHeaderRequestCallback(JsonNode.class),
+					pagedListReader.objectMapResponseExtractor(type));
+		} catch (ResourceNotFoundException e) {
+			if (ids.size() == 1) {
+				log.debug("{} '{}' not found", type.getSimpleName(), ids.get(0));
+				return Collections.emptyMap();
+			}
+			Map<String, T> objects = new HashMap<>();
+			objects.putAll(fetchObjectChunk(ids.subList(0, ids.size() / 2), type, fields));
+			objects.putAll(fetchObjectChunk(ids.subList(ids.size() / 2, ids.size()), type, fields));
+			return objects;
 		}
 	}
 
@@ -603,4 +1022,85 @@ public class FacebookTemplate extends AbstractOAuth2ApiBinding implements Facebo
 		return builder.toString();
 	}
 
+	/**
+	 * The JSON configuration of the templates that are not created through a
+	 * {@link FacebookClientFactory}.
+	 */
+	private static final class DefaultJson {
+
+		static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().registerModule(new FacebookModule());
+
+		static final MappingJackson2HttpMessageConverter MESSAGE_CONVERTER = new MappingJackson2HttpMessageConverter(
+				OBJECT_MAPPER);
+
+	}
+
+	/**
+	 * The operations of this template, grouped so that they are created together on first use.
+	 */
+	private final class SubApis {
+
+		final AchievementOperations achievementOperations = new AchievementTemplate(FacebookTemplate.this);
+
+		final OpenGraphOperations openGraphOperations = new OpenGraphTemplate(FacebookTemplate.this);
+
+		final UserOperations userOperations = new UserTemplate(FacebookTemplate.this, getRestTemplate());
+
+		final FriendOperations friendOperations = new FriendTemplate(FacebookTemplate.this, getRestTemplate());
+
+		final FeedOperations feedOperations = new FeedTemplate(FacebookTemplate.this, getRestTemplate(),
+				objectMapper, pagedListReader);
+
+		final CommentOperations commentOperations = new CommentTemplate(FacebookTemplate.this);
+
+		final LikeOperations likeOperations = new LikeTemplate(FacebookTemplate.this);
+
+		final EventOperations eventOperations = new EventTemplate(FacebookTemplate.this);
+
+		final MediaOperations mediaOperations = new MediaTemplate(FacebookTemplate.this, getRestTemplate());
+
+		final GroupOperations groupOperations = new GroupTemplate(FacebookTemplate.this);
+
+		final PageOperations pageOperations = new PageTemplate(FacebookTemplate.this);
+
+		final TestUserOperations testUserOperations = new TestUserTemplate(FacebookTemplate.this,
+				getRestTemplate(), appId);
+
+		final SocialContextOperations socialContextOperations = new SocialContextTemplate(FacebookTemplate.this,
+				getRestTemplate());
+
+	}
+
+	/**
+	 * Copies an image body to its destination.
+	 */
+	private interface ImageCopier {
+
+		long copy(InputStream image) throws IOException;
+
+	}
+
+	/**
+	 * Image body that releases the response it was read from when closed.
+	 */
+	private static class ResponseInputStream extends FilterInputStream {
+
+		private final ClientHttpResponse response;
+
+		ResponseInputStream(final ClientHttpResponse response) throws IOException {
+			super(response.getBody());
+			this.response = response;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				response.close();
+			}
+		}
+
+	}
+
 }
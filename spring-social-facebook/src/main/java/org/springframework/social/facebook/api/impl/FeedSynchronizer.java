@@ -0,0 +1,231 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api.impl;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.springframework.social.facebook.api.FeedChange;
+import org.springframework.social.facebook.api.FeedCheckpoint;
+import org.springframework.social.facebook.api.FeedCheckpointStore;
+import org.springframework.social.facebook.api.FeedOperations;
+import org.springframework.social.facebook.api.PagedList;
+import org.springframework.social.facebook.api.PagingParameters;
+import org.springframework.social.facebook.api.Post;
+import org.springframework.util.Assert;
+
+/**
+ * <p>
+ * Incrementally synchronizes the posts of feed edges, reporting only the posts created since the previous
+ * synchronization of the same owner and edge instead of walking its whole history each time.
+ * </p>
+ * <p>
+ * Each synchronization reads the edge with {@code since} set to the creation time of the {@link FeedCheckpoint} saved
+ * by the previous one, following the pages until the end, and reports the posts created after it (or at that time but
+ * not reported yet) as {@link FeedChange}s. The first synchronization of an edge reads its whole history.
+ * </p>
+ * <p>
+ * Facebook applies {@code since} to the creation time of posts, so a post edited or commented on after it was reported
+ * is not reported again. Applications that need the latest state of older posts have to fetch them again.
+ * </p>
+ * <p>
+ * The new checkpoint is only saved once the stream of changes has been consumed to its end, so a synchronization that
+ * is interrupted (by a crash, an error or a short-circuiting stream operation) is resumed from the previous checkpoint:
+ * changes are delivered at least once and consumers should be idempotent.
+ * </p>
+ */
+public class FeedSynchronizer {
+
+	private final FeedOperations feedOperations;
+
+	private final FeedCheckpointStore checkpointStore;
+
+	private volatile int pageSize = 100;
+
+	/**
+	 * @param feedOperations the feed operations reading the edges.
+	 * @param checkpointStore the store of the checkpoints of the synchronized edges.
+	 */
+	public FeedSynchronizer(FeedOperations feedOperations, FeedCheckpointStore checkpointStore) {
+		Assert.notNull(feedOperations, "feedOperations must not be null");
+		Assert.notNull(checkpointStore, "checkpointStore must not be null");
+		this.feedOperations = feedOperations;
+		this.checkpointStore = checkpointStore;
+	}
+
+	/**
+	 * @param pageSize the number of posts requested per page. Defaults to 100.
+	 */
+	public void setPageSize(int pageSize) {
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * Streams the posts of an owner's edge created since its last synchronization. Pages are fetched as the
+	 * stream is consumed, and the checkpoint is saved when its end is reached.
+	 * @param ownerId the ID of the feed owner.
+	 * @param edge the edge to synchronize.
+	 * @return the changes, newest first as returned by Facebook.
+	 */
+	public Stream<FeedChange> synchronize(String ownerId, Edge edge) {
+		Iterator<FeedChange> changes = new ChangeIterator(ownerId, edge, checkpointStore.load(ownerId, edge.getName()));
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(changes, Spliterator.ORDERED | Spliterator.NONNULL), false);
+	}
+
+	/**
+	 * The feed edges that can be synchronized.
+	 */
+	public enum Edge {
+
+		FEED("feed"),
+
+		POSTS("posts"),
+
+		TAGGED("tagged");
+
+		private final String name;
+
+		private Edge(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * @return the name of the edge in the Graph API, under which its checkpoints are stored.
+		 */
+		public String getName() {
+			return name;
+		}
+
+	}
+
+	private PagedList<Post> fetch(String ownerId, Edge edge, PagingParameters page) {
+		switch (edge) {
+		case POSTS:
+			return feedOperations.getPosts(ownerId, page);
+		case TAGGED:
+			return feedOperations.getTagged(ownerId, page);
+		default:
+			return feedOperations.getFeed(ownerId, page);
+		}
+	}
+
+	/**
+	 * Walks the pages of an edge, filtering out the posts that were already reported, and saves the new checkpoint at
+	 * the end. The latest creation time seen and the IDs of the posts created at that time become the new checkpoint.
+	 */
+	private class ChangeIterator implements Iterator<FeedChange> {
+
+		private final String ownerId;
+
+		private final Edge edge;
+
+		private final FeedCheckpoint checkpoint;
+
+		private final Date watermark;
+
+		private PagedList<Post> page;
+
+		private Iterator<Post> posts;
+
+		private FeedChange next;
+
+		private Date createdTime;
+
+		private Set<String> postIds;
+
+		private boolean done;
+
+		ChangeIterator(String ownerId, Edge edge, FeedCheckpoint checkpoint) {
+			this.ownerId = ownerId;
+			this.edge = edge;
+			this.checkpoint = checkpoint;
+			this.watermark = checkpoint != null ? checkpoint.getCreatedTime() : null;
+			this.createdTime = watermark;
+			this.postIds = checkpoint != null ? new LinkedHashSet<String>(checkpoint.getPostIds()) : new LinkedHashSet<String>();
+		}
+
+		public boolean hasNext() {
+			while (next == null && !done) {
+				if (posts != null && posts.hasNext()) {
+					next = change(posts.next());
+				} else if (page == null) {
+					Long since = checkpoint != null ? TimeUnit.MILLISECONDS.toSeconds(watermark.getTime()) : null;
+					nextPage(new PagingParameters(pageSize, null, since, null));
+				} else if (!page.isEmpty() && page.getNextPage() != null) {
+					nextPage(page.getNextPage());
+				} else {
+					done = true;
+					if (createdTime != null) {
+						checkpointStore.save(new FeedCheckpoint(ownerId, edge.getName(), createdTime, postIds));
+					}
+				}
+			}
+			return next != null;
+		}
+
+		public FeedChange next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			FeedChange change = next;
+			next = null;
+			return change;
+		}
+
+		private void nextPage(PagingParameters pagingParameters) {
+			page = fetch(ownerId, edge, pagingParameters);
+			posts = page != null ? page.iterator() : Collections.<Post>emptyIterator();
+			if (page == null) {
+				page = new PagedList<Post>(Collections.<Post>emptyList(), null, null);
+			}
+		}
+
+		/**
+		 * @return the change to report for the given post, or null if it was reported by a previous synchronization.
+		 */
+		private FeedChange change(Post post) {
+			Date postCreatedTime = post.getCreatedTime();
+			if (postCreatedTime == null) {
+				return null;
+			}
+			if (checkpoint != null) {
+				int comparison = postCreatedTime.compareTo(watermark);
+				if (comparison < 0 || (comparison == 0 && checkpoint.getPostIds().contains(post.getId()))) {
+					return null;
+				}
+			}
+			if (createdTime == null || postCreatedTime.after(createdTime)) {
+				createdTime = postCreatedTime;
+				postIds = new LinkedHashSet<String>();
+			}
+			if (postCreatedTime.equals(createdTime)) {
+				postIds.add(post.getId());
+			}
+			return new FeedChange(FeedChange.Type.CREATED, post);
+		}
+
+	}
+
+}
@@ -17,13 +17,9 @@ package org.springframework.social.facebook.api.impl;
 
 import static org.springframework.social.facebook.api.impl.PagedListUtils.*;
 
-import java.io.IOException;
 import java.net.URI;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
 
-import org.springframework.social.UncategorizedApiException;
+import org.springframework.http.HttpMethod;
 import org.springframework.social.facebook.api.FacebookLink;
 import org.springframework.social.facebook.api.FeedOperations;
 import org.springframework.social.facebook.api.GraphApi;
@@ -32,6 +28,7 @@ import org.springframework.social.facebook.api.PagingParameters;
 import org.springframework.social.facebook.api.Post;
 import org.springframework.social.facebook.api.Post.PostType;
 import org.springframework.social.facebook.api.PostData;
+import org.springframework.social.facebook.api.impl.json.FacebookModule;
 import org.springframework.social.support.URIBuilder;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
@@ -40,7 +37,7 @@ import org.springframework.web.client.RestTemplate;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.ObjectReader;
 
 class FeedTemplate implements FeedOperations {
 
@@ -48,14 +45,23 @@ class FeedTemplate implements FeedOperations {
 
 	private final GraphApi graphApi;
 	
-	private ObjectMapper objectMapper;
-	
 	private final RestTemplate restTemplate;
 
-	public FeedTemplate(GraphApi graphApi, RestTemplate restTemplate, ObjectMapper objectMapper) {
+	private final PagedListReader pagedListReader;
+
+	private final ObjectReader postReader;
+
+	private final ObjectReader statusReader;
+
+	private final ObjectReader linkReader;
+
+	public FeedTemplate(GraphApi graphApi, RestTemplate restTemplate, ObjectMapper objectMapper, PagedListReader pagedListReader) {
 		this.graphApi = graphApi;
 		this.restTemplate = restTemplate;
-		this.objectMapper = objectMapper;
+		this.pagedListReader = pagedListReader;
+		this.postReader = objectMapper.readerFor(Post.class);
+		this.statusReader = postReader.withAttribute(FacebookModule.POST_TYPE_ATTRIBUTE, PostType.STATUS);
+		this.linkReader = postReader.withAttribute(FacebookModule.POST_TYPE_ATTRIBUTE, PostType.LINK);
 	}
 
 	public PagedList<Post> getFeed() {
@@ -71,8 +77,7 @@ class FeedTemplate implements FeedOperations {
 	}
 		
 	public PagedList<Post> getFeed(String ownerId, PagingParameters pagedListParameters) {
-		JsonNode responseNode = fetchConnectionList(graphApi.getBaseGraphApiUrl() + ownerId + "/feed", pagedListParameters);
-		return deserializeList(responseNode, null, Post.class);
+		return fetchPosts(graphApi.getBaseGraphApiUrl() + ownerId + "/feed", pagedListParameters, postReader);
 	}
 
 	public PagedList<Post> getHomeFeed() {
@@ -80,8 +85,7 @@ class FeedTemplate implements FeedOperations {
 	}
 	
 	public PagedList<Post> getHomeFeed(PagingParameters pagedListParameters) {
-		JsonNode responseNode = fetchConnectionList(graphApi.getBaseGraphApiUrl() + "me/home", pagedListParameters);
-		return deserializeList(responseNode, null, Post.class);
+		return fetchPosts(graphApi.getBaseGraphApiUrl() + "me/home", pagedListParameters, postReader);
 	}
 
 	public PagedList<Post> getStatuses() {
@@ -97,8 +101,7 @@ class FeedTemplate implements FeedOperations {
 	}
 	
 	public PagedList<Post> getStatuses(String userId, PagingParameters pagedListParameters) {
-		JsonNode responseNode = fetchConnectionList(graphApi.getBaseGraphApiUrl() + userId + "/statuses", pagedListParameters);
-		return deserializeList(responseNode, "status", Post.class);
+		return fetchPosts(graphApi.getBaseGraphApiUrl() + userId + "/statuses", pagedListParameters, statusReader);
 	}
 
 	public PagedList<Post> getLinks() {
@@ -114,8 +117,7 @@ class FeedTemplate implements FeedOperations {
 	}
 	
 	public PagedList<Post> getLinks(String ownerId, PagingParameters pagedListParameters) {
-		JsonNode responseNode = fetchConnectionList(graphApi.getBaseGraphApiUrl() + ownerId + "/links", pagedListParameters);
-		return deserializeList(responseNode, "link", Post.class);
+		return fetchPosts(graphApi.getBaseGraphApiUrl() + ownerId + "/links", pagedListParameters, linkReader);
 	}
 
 	public PagedList<Post> getPosts() {
@@ -131,8 +133,7 @@ class FeedTemplate implements FeedOperations {
 	}
 	
 	public PagedList<Post> getPosts(String ownerId, PagingParameters pagedListParameters) {
-		JsonNode responseNode = fetchConnectionList(graphApi.getBaseGraphApiUrl() + ownerId + "/posts", pagedListParameters);
-		return deserializeList(responseNode, null, Post.class);
+		return fetchPosts(graphApi.getBaseGraphApiUrl() + ownerId + "/posts", pagedListParameters, postReader);
 	}
 
 	public PagedList<Post> getTagged() {
@@ -148,13 +149,11 @@ class FeedTemplate implements FeedOperations {
 	}
 	
 	public PagedList<Post> getTagged(String ownerId, PagingParameters pagedListParameters) {
-		JsonNode responseNode = fetchConnectionList(graphApi.getBaseGraphApiUrl() + ownerId + "/tagged", pagedListParameters);
-		return deserializeList(responseNode, null, Post.class);
+		return fetchPosts(graphApi.getBaseGraphApiUrl() + ownerId + "/tagged", pagedListParameters, postReader);
 	}
 
 	public Post getPost(String entryId) {
-		ObjectNode responseNode = (ObjectNode) restTemplate.getForObject(graphApi.getBaseGraphApiUrl() + entryId, JsonNode.class);
-		return deserializePost(null, Post.class, responseNode);
+		return restTemplate.getForObject(graphApi.getBaseGraphApiUrl() + entryId, Post.class);
 	}
 
 	public String updateStatus(String message) {
@@ -207,60 +206,15 @@ class FeedTemplate implements FeedOperations {
 	
 	// private helpers
 	
-	private JsonNode fetchConnectionList(String baseUri, PagingParameters pagedListParameters) {
+	private PagedList<Post> fetchPosts(String baseUri, PagingParameters pagedListParameters, ObjectReader reader) {
 		URIBuilder uriBuilder = URIBuilder.fromUri(baseUri);
 		uriBuilder = appendPagedListParameters(pagedListParameters, uriBuilder);
 		uriBuilder.queryParam("fields", StringUtils.arrayToCommaDelimitedString(ALL_POST_FIELDS));
 		URI uri = uriBuilder.build();
-		JsonNode responseNode = restTemplate.getForObject(uri, JsonNode.class);
-		return responseNode;
-	}
-
-	private <T> PagedList<T> deserializeList(JsonNode jsonNode, String postType, Class<T> type) {
-		JsonNode dataNode = jsonNode.get("data");
-		List<T> posts = new ArrayList<T>();
-		for (Iterator<JsonNode> iterator = dataNode.iterator(); iterator.hasNext();) {
-			posts.add(deserializePost(postType, type, (ObjectNode) iterator.next()));
-		}
-		if (jsonNode.has("paging")) {
-			JsonNode pagingNode = jsonNode.get("paging");
-			PagingParameters previousPage = getPagedListParameters(pagingNode, "previous");
-			PagingParameters nextPage = getPagedListParameters(pagingNode, "next");
-			return new PagedList<T>(posts, previousPage, nextPage);
-		}
-		
-		return new PagedList<T>(posts, null, null);
-	}
-
-	private <T> T deserializePost(String postType, Class<T> type, ObjectNode node) {
-		try {
-			if (postType == null) {
-				postType = determinePostType(node);
-			}
-			
-			// Must have separate postType field for polymorphic deserialization. If we key off of the "type" field, then it will
-			// be null when trying to deserialize the type property.
-			node.put("postType", postType); // used for polymorphic deserialization
-			node.put("type", postType); // used to set Post's type property
-			return objectMapper.readerFor(type).readValue(node.toString()); // TODO: EXTREMELY HACKY--TEMPORARY UNTIL I FIGURE OUT HOW JACKSON 2 DOES THIS
-		} catch (IOException shouldntHappen) {
-			throw new UncategorizedApiException("facebook", "Error deserializing " + postType + " post", shouldntHappen);
-		}
+		return restTemplate.execute(uri, HttpMethod.GET, restTemplate.acceptHeaderRequestCallback(JsonNode.class),
+				pagedListReader.<Post>responseExtractor(reader));
 	}
 
-	private String determinePostType(ObjectNode node) {
-		if (node.has("type")) {
-			try {
-				String type = node.get("type").textValue();
-				PostType.valueOf(type.toUpperCase());
-				return type;
-			} catch (IllegalArgumentException e) {
-				return "post";
-			}
-		}
-		return "post";
-	}
-	
 	private URIBuilder appendPagedListParameters(PagingParameters pagedListParameters,
 			URIBuilder uriBuilder) {
 		if (pagedListParameters.getLimit() != null) {
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.springframework.core.io.AbstractResource;
+
+/**
+ * {@link org.springframework.core.io.Resource} exposing a range of a file, read through positional reads on a
+ * shared {@link FileChannel} each time it is opened, so a chunk can be sent (and re-sent) without loading it in memory.
+ */
+class FileChunkResource extends AbstractResource {
+
+	private final FileChannel channel;
+
+	private final String filename;
+
+	private final long position;
+
+	private final long length;
+
+	FileChunkResource(FileChannel channel, String filename, long position, long length) {
+		this.channel = channel;
+		this.filename = filename;
+		this.position = position;
+		this.length = length;
+	}
+
+	public String getDescription() {
+		return "bytes " + position + "-" + (position + length) + " of " + filename;
+	}
+
+	@Override
+	public String getFilename() {
+		return filename;
+	}
+
+	@Override
+	public long contentLength() {
+		return length;
+	}
+
+	public InputStream getInputStream() throws IOException {
+		return new InputStream() {
+
+			private long offset = position;
+
+			private final long end = position + length;
+
+			@Override
+			public int read() throws IOException {
+				byte[] single = new byte[1];
+				return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+			}
+
+			@Override
+			public int read(byte[] bytes, int off, int len) throws IOException {
+				if (offset >= end) {
+					return -1;
+				}
+				int count = channel.read(ByteBuffer.wrap(bytes, off, (int) Math.min(len, end - offset)), offset);
+				if (count == -1) {
+					return -1;
+				}
+				offset += count;
+				return count;
+			}
+
+			@Override
+			public int available() {
+				return (int) Math.min(Integer.MAX_VALUE, end - offset);
+			}
+
+		};
+	}
+
+}
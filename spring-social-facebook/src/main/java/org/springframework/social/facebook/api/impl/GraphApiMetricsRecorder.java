@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api.impl;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receives the measurements taken by {@link MetricsInterceptor} for each Graph API request, to be forwarded to a
+ * metrics library. {@link MicrometerGraphApiMetricsRecorder} forwards them to Micrometer.
+ * Implementations are called by concurrent requests and must be thread-safe.
+ */
+public interface GraphApiMetricsRecorder {
+
+	/**
+	 * Records the duration of a request, until its response headers were received or it failed.
+	 * @param method the HTTP method of the request.
+	 * @param pathTemplate the path of the request with its object IDs replaced, e.g. "{id}/feed".
+	 * @param apiVersion the Graph API version of the request, e.g. "v7.0", or "none" if it has none.
+	 * @param outcome the outcome of the request: one of {@link MetricsInterceptor#SUCCESS},
+	 * {@link MetricsInterceptor#CLIENT_ERROR}, {@link MetricsInterceptor#SERVER_ERROR} and
+	 * {@link MetricsInterceptor#IO_ERROR}.
+	 * @param exception the simple class name of the I/O exception the request failed with, or "none".
+	 * @param duration the duration of the request.
+	 * @param unit the unit of duration.
+	 */
+	void recordRequest(String method, String pathTemplate, String apiVersion, String outcome, String exception, long duration, TimeUnit unit);
+
+	/**
+	 * Records the size of a response body, once the response has been closed.
+	 * @param method the HTTP method of the request.
+	 * @param pathTemplate the path of the request with its object IDs replaced.
+	 * @param apiVersion the Graph API version of the request.
+	 * @param bytes the number of bytes of the response body that were read, or its Content-Length if greater.
+	 */
+	void recordResponseSize(String method, String pathTemplate, String apiVersion, long bytes);
+
+	/**
+	 * Records an error returned by the Graph API.
+	 * @param pathTemplate the path of the request with its object IDs replaced.
+	 * @param apiVersion the Graph API version of the request.
+	 * @param code the Facebook error code (see {@link org.springframework.social.facebook.api.FacebookErrors}), or 0
+	 * if the response had no Facebook error.
+	 * @param subcode the Facebook error subcode, or 0 if none.
+	 */
+	void recordError(String pathTemplate, String apiVersion, int code, int subcode);
+
+}
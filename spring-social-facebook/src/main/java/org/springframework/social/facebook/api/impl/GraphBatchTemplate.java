@@ -0,0 +1,273 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api.impl;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.social.UncategorizedApiException;
+import org.springframework.social.facebook.api.FacebookError;
+import org.springframework.social.facebook.api.GraphBatch;
+import org.springframework.social.facebook.api.PagedList;
+import org.springframework.social.support.URIBuilder;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StringUtils;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriUtils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Implementation of {@link GraphBatch} that posts the queued requests to the Graph API's batch endpoint.
+ * Sub-responses are bound with the same {@link ObjectMapper} as {@link FacebookTemplate} and sub-errors
+ * are translated by {@link FacebookErrorHandler}.
+ */
+class GraphBatchTemplate implements GraphBatch {
+
+	private final static Log logger = LogFactory.getLog(GraphBatchTemplate.class);
+
+	private final FacebookTemplate facebook;
+
+	private final RestTemplate restTemplate;
+
+	private final ObjectMapper objectMapper;
+
+	private final PagedListReader pagedListReader;
+
+	private final FacebookErrorHandler errorHandler = new FacebookErrorHandler();
+
+	private final List<BatchItem<?>> items = new ArrayList<BatchItem<?>>();
+
+	public GraphBatchTemplate(FacebookTemplate facebook, RestTemplate restTemplate, ObjectMapper objectMapper, PagedListReader pagedListReader) {
+		this.facebook = facebook;
+		this.restTemplate = restTemplate;
+		this.objectMapper = objectMapper;
+		this.pagedListReader = pagedListReader;
+	}
+
+	public <T> CompletableFuture<T> fetchObject(String objectId, Class<T> type, String... fields) {
+		return fetchObject(objectId, type, fieldsParameter(fields));
+	}
+
+	public <T> CompletableFuture<T> fetchObject(String objectId, final Class<T> type, MultiValueMap<String, String> queryParameters) {
+		return enqueue("GET", relativeUrl(objectId, null, queryParameters), null, new BodyExtractor<T>() {
+			public T extract(String body) throws IOException {
+				return objectMapper.readerFor(type).readValue(body);
+			}
+		});
+	}
+
+	public <T> CompletableFuture<PagedList<T>> fetchConnections(String objectId, String connectionName, Class<T> type, String... fields) {
+		return fetchConnections(objectId, connectionName, type, fieldsParameter(fields));
+	}
+
+	public <T> CompletableFuture<PagedList<T>> fetchConnections(String objectId, String connectionName, final Class<T> type, MultiValueMap<String, String> queryParameters) {
+		return enqueue("GET", relativeUrl(objectId, connectionName, queryParameters), null, new BodyExtractor<PagedList<T>>() {
+			public PagedList<T> extract(String body) throws IOException {
+				return pagedListReader.read(body, type);
+			}
+		});
+	}
+
+	public CompletableFuture<String> publish(String objectId, String connectionName, MultiValueMap<String, Object> data) {
+		return enqueue("POST", relativeUrl(objectId, connectionName, null), encodeBody(data), new BodyExtractor<String>() {
+			public String extract(String body) throws IOException {
+				JsonNode idNode = objectMapper.readTree(body).get("id");
+				return idNode != null ? idNode.asText() : null;
+			}
+		});
+	}
+
+	public CompletableFuture<Void> delete(String objectId) {
+		return delete(objectId, null);
+	}
+
+	public CompletableFuture<Void> delete(String objectId, String connectionName) {
+		return enqueue("DELETE", relativeUrl(objectId, connectionName, null), null, new BodyExtractor<Void>() {
+			public Void extract(String body) {
+				return null;
+			}
+		});
+	}
+
+	public int size() {
+		return items.size();
+	}
+
+	public void execute() {
+		List<BatchItem<?>> pending = new ArrayList<BatchItem<?>>(items);
+		items.clear();
+		for (int start = 0; start < pending.size(); start += MAX_BATCH_SIZE) {
+			try {
+				executeChunk(pending.subList(start, Math.min(start + MAX_BATCH_SIZE, pending.size())));
+			} catch (RuntimeException e) {
+				// the later chunks are not sent, but their futures must not be left pending
+				for (BatchItem<?> item : pending.subList(Math.min(start + MAX_BATCH_SIZE, pending.size()), pending.size())) {
+					item.future.completeExceptionally(e);
+				}
+				throw e;
+			}
+		}
+	}
+
+	// private helpers
+
+	private void executeChunk(List<BatchItem<?>> chunk) {
+		ArrayNode batch = objectMapper.createArrayNode();
+		for (BatchItem<?> item : chunk) {
+			ObjectNode request = batch.addObject();
+			request.put("method", item.method);
+			request.put("relative_url", item.relativeUrl);
+			if (item.body != null) {
+				request.put("body", item.body);
+			}
+		}
+
+		MultiValueMap<String, String> form = new LinkedMultiValueMap<String, String>();
+		form.set("batch", batch.toString());
+		form.set("include_headers", "false");
+
+		if (logger.isDebugEnabled()) {
+			logger.debug("Sending batch of " + chunk.size() + " requests to Facebook");
+		}
+
+		JsonNode responses;
+		try {
+			responses = restTemplate.postForObject(URIBuilder.fromUri(facebook.getBaseGraphApiUrl()).build(), form, JsonNode.class);
+		} catch (RuntimeException e) {
+			for (BatchItem<?> item : chunk) {
+				item.future.completeExceptionally(e);
+			}
+			throw e;
+		}
+
+		for (int i = 0; i < chunk.size(); i++) {
+			JsonNode response = responses != null ? responses.get(i) : null;
+			complete(chunk.get(i), response);
+		}
+	}
+
+	private <T> void complete(BatchItem<T> item, JsonNode response) {
+		if (response == null || response.isNull()) {
+			item.future.completeExceptionally(new UncategorizedApiException("facebook",
+					"No response from Facebook for batched request " + item.method + " " + item.relativeUrl, null));
+			return;
+		}
+
+		int code = response.path("code").asInt();
+		String body = response.path("body").asText(null);
+		try {
+			if (code >= 200 && code < 300) {
+				item.future.complete(item.extractor.extract(body));
+			} else {
+				item.future.completeExceptionally(translateError(code, body));
+			}
+		} catch (IOException e) {
+			item.future.completeExceptionally(new UncategorizedApiException("facebook",
+					"Error deserializing data from Facebook: " + e.getMessage(), e));
+		} catch (RuntimeException e) {
+			item.future.completeExceptionally(e);
+		}
+	}
+
+	private RuntimeException translateError(int code, String body) {
+		try {
+			FacebookError error = body != null ? errorHandler.extractError(objectMapper.readTree(body)) : null;
+			errorHandler.handleFacebookError(HttpStatus.valueOf(code), error);
+		} catch (IOException e) {
+			// body is not JSON; fall through to an uncategorized error
+		} catch (RuntimeException e) {
+			return e;
+		}
+		return new UncategorizedApiException("facebook", "Batched request failed with HTTP status " + code + ": " + body, null);
+	}
+
+	private <T> CompletableFuture<T> enqueue(String method, String relativeUrl, String body, BodyExtractor<T> extractor) {
+		BatchItem<T> item = new BatchItem<T>(method, relativeUrl, body, extractor);
+		items.add(item);
+		return item.future;
+	}
+
+	private String relativeUrl(String objectId, String connectionName, MultiValueMap<String, String> queryParameters) {
+		String baseUrl = facebook.getBaseGraphApiUrl();
+		String connectionPath = connectionName != null && connectionName.length() > 0 ? "/" + connectionName : "";
+		URIBuilder uriBuilder = URIBuilder.fromUri(baseUrl + objectId + connectionPath);
+		if (queryParameters != null) {
+			uriBuilder.queryParams(queryParameters);
+		}
+		URI uri = uriBuilder.build();
+		return uri.toString().substring(baseUrl.length());
+	}
+
+	private MultiValueMap<String, String> fieldsParameter(String[] fields) {
+		MultiValueMap<String, String> queryParameters = new LinkedMultiValueMap<String, String>();
+		if (fields.length > 0) {
+			queryParameters.set("fields", StringUtils.arrayToCommaDelimitedString(fields));
+		}
+		return queryParameters;
+	}
+
+	private String encodeBody(MultiValueMap<String, Object> data) {
+		StringBuilder body = new StringBuilder();
+		for (Entry<String, List<Object>> entry : data.entrySet()) {
+			for (Object value : entry.getValue()) {
+				if (body.length() > 0) {
+					body.append('&');
+				}
+				body.append(UriUtils.encode(entry.getKey(), "UTF-8")).append('=')
+					.append(UriUtils.encode(String.valueOf(value), "UTF-8"));
+			}
+		}
+		return body.toString();
+	}
+
+	private interface BodyExtractor<T> {
+		T extract(String body) throws IOException;
+	}
+
+	private static class BatchItem<T> {
+
+		private final String method;
+
+		private final String relativeUrl;
+
+		private final String body;
+
+		private final BodyExtractor<T> extractor;
+
+		private final CompletableFuture<T> future = new CompletableFuture<T>();
+
+		public BatchItem(String method, String relativeUrl, String body, BodyExtractor<T> extractor) {
+			this.method = method;
+			this.relativeUrl = relativeUrl;
+			this.body = body;
+			this.extractor = extractor;
+		}
+
+	}
+
+}
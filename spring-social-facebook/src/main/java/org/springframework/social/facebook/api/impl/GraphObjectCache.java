@@ -0,0 +1,353 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api.impl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.social.ResourceNotFoundException;
+import org.springframework.util.ObjectUtils;
+
+/**
+ * <p>
+ * Bounded, time-limited store of Graph API objects used by {@link CachingGraphApi}. One cache may be shared by the
+ * decorators of many access tokens: entries are keyed by scope, object ID, Java type and query parameters (which
+ * include the requested fields).
+ * </p>
+ * <p>
+ * Objects expire once their time-to-live has elapsed and the least recently used ones are evicted once the cache is
+ * full. Objects Facebook reported as not found are remembered too, for a separate (typically shorter) time-to-live.
+ * Concurrent misses for the same key are collapsed into a single call to Facebook. An object invalidated while it is
+ * being loaded is not cached once loaded, since Facebook may have answered with its state prior to the change.
+ * </p>
+ * <p>
+ * Cached objects are shared between callers and should be treated as read-only.
+ * </p>
+ */
+public class GraphObjectCache {
+
+	private final int maximumSize;
+
+	private final long timeToLiveNanos;
+
+	private long notFoundTimeToLiveNanos;
+
+	private final Map<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+
+	private final ConcurrentMap<Key, Load> loading = new ConcurrentHashMap<Key, Load>();
+
+	private final LongAdder hitCount = new LongAdder();
+
+	private final LongAdder missCount = new LongAdder();
+
+	private final LongAdder notFoundHitCount = new LongAdder();
+
+	private final LongAdder evictionCount = new LongAdder();
+
+	private final LongAdder loadCount = new LongAdder();
+
+	/**
+	 * @param maximumSize the maximum number of objects (found or not) held in the cache.
+	 * @param timeToLive how long an object is served from the cache.
+	 * @param unit the unit of timeToLive.
+	 */
+	public GraphObjectCache(int maximumSize, long timeToLive, TimeUnit unit) {
+		this.maximumSize = maximumSize;
+		this.timeToLiveNanos = unit.toNanos(timeToLive);
+		this.notFoundTimeToLiveNanos = timeToLiveNanos;
+	}
+
+	/**
+	 * Set how long an object Facebook reported as not found keeps being reported as such without asking Facebook again.
+	 * Defaults to the time-to-live of found objects; 0 disables the caching of missing objects.
+	 * @param timeToLive how long a missing object is remembered.
+	 * @param unit the unit of timeToLive.
+	 */
+	public void setNotFoundTimeToLive(long timeToLive, TimeUnit unit) {
+		this.notFoundTimeToLiveNanos = unit.toNanos(timeToLive);
+	}
+
+	/**
+	 * @return the number of lookups served from the cache, including missing objects.
+	 */
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	/**
+	 * @return the number of lookups that had to wait for a call to Facebook.
+	 */
+	public long getMissCount() {
+		return missCount.sum();
+	}
+
+	/**
+	 * @return the number of lookups answered with a cached {@link ResourceNotFoundException}.
+	 */
+	public long getNotFoundHitCount() {
+		return notFoundHitCount.sum();
+	}
+
+	/**
+	 * @return the number of calls made to Facebook on misses. Lower than the miss count when concurrent misses were collapsed.
+	 */
+	public long getLoadCount() {
+		return loadCount.sum();
+	}
+
+	/**
+	 * @return the number of objects removed because they expired or to make room for others.
+	 */
+	public long getEvictionCount() {
+		return evictionCount.sum();
+	}
+
+	/**
+	 * @return the number of objects currently held, some of which may have expired.
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * Removes all the objects cached with the given ID, whatever their type and fields.
+	 * @param scope the scope the objects were cached in.
+	 * @param objectId the object ID.
+	 */
+	public void invalidate(String scope, String objectId) {
+		synchronized (entries) {
+			for (Iterator<Key> iterator = entries.keySet().iterator(); iterator.hasNext();) {
+				Key key = iterator.next();
+				if (ObjectUtils.nullSafeEquals(scope, key.scope) && objectId.equals(key.objectId)) {
+					iterator.remove();
+				}
+			}
+			for (Map.Entry<Key, Load> load : loading.entrySet()) {
+				if (ObjectUtils.nullSafeEquals(scope, load.getKey().scope) && objectId.equals(load.getKey().objectId)) {
+					load.getValue().invalidated = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes all cached objects.
+	 */
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+			for (Load load : loading.values()) {
+				load.invalidated = true;
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	<T> T get(Key key, Supplier<T> loader) {
+		Entry entry = lookup(key);
+		if (entry != null) {
+			hitCount.increment();
+			if (entry.notFound != null) {
+				notFoundHitCount.increment();
+				throw new ResourceNotFoundException(entry.notFound.getProviderId(), entry.notFound.getMessage());
+			}
+			return (T) entry.value;
+		}
+
+		missCount.increment();
+		Load future = new Load();
+		CompletableFuture<Object> inFlight = loading.putIfAbsent(key, future);
+		if (inFlight != null) {
+			try {
+				return (T) inFlight.join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw e;
+			}
+		}
+
+		// another load may have completed between the lookup and claiming the load
+		entry = lookup(key);
+		if (entry != null) {
+			loading.remove(key, future);
+			if (entry.notFound != null) {
+				ResourceNotFoundException notFound = new ResourceNotFoundException(entry.notFound.getProviderId(), entry.notFound.getMessage());
+				future.completeExceptionally(notFound);
+				throw notFound;
+			}
+			future.complete(entry.value);
+			return (T) entry.value;
+		}
+
+		try {
+			loadCount.increment();
+			T value = loader.get();
+			storeLoaded(key, future, new Entry(value, null, timeToLiveNanos));
+			future.complete(value);
+			return value;
+		} catch (ResourceNotFoundException e) {
+			if (notFoundTimeToLiveNanos > 0) {
+				storeLoaded(key, future, new Entry(null, e, notFoundTimeToLiveNanos));
+			}
+			future.completeExceptionally(e);
+			throw e;
+		} catch (RuntimeException e) {
+			future.completeExceptionally(e);
+			throw e;
+		} finally {
+			loading.remove(key, future);
+		}
+	}
+
+	/**
+	 * Returns the object cached under the given key, or null if it is not cached or was reported as not found.
+	 */
+	@SuppressWarnings("unchecked")
+	<T> T getIfPresent(Key key) {
+		Entry entry = lookup(key);
+		if (entry == null || entry.notFound != null) {
+			missCount.increment();
+			return null;
+		}
+		hitCount.increment();
+		return (T) entry.value;
+	}
+
+	void put(Key key, Object value) {
+		store(key, new Entry(value, null, timeToLiveNanos));
+	}
+
+	private Entry lookup(Key key) {
+		synchronized (entries) {
+			Entry entry = entries.get(key);
+			if (entry == null) {
+				return null;
+			}
+			if (System.nanoTime() - entry.expiresAt >= 0) {
+				entries.remove(key);
+				evictionCount.increment();
+				return null;
+			}
+			return entry;
+		}
+	}
+
+	private void store(Key key, Entry entry) {
+		synchronized (entries) {
+			entries.put(key, entry);
+			Iterator<Entry> iterator = entries.values().iterator();
+			while (entries.size() > maximumSize && iterator.hasNext()) {
+				iterator.next();
+				iterator.remove();
+				evictionCount.increment();
+			}
+		}
+	}
+
+	/**
+	 * Stores a loaded object unless it was invalidated while it was being loaded.
+	 */
+	private void storeLoaded(Key key, Load load, Entry entry) {
+		synchronized (entries) {
+			if (!load.invalidated) {
+				store(key, entry);
+			}
+		}
+	}
+
+	/**
+	 * A call to Facebook in progress, which concurrent misses for the same key wait for.
+	 */
+	private static class Load extends CompletableFuture<Object> {
+
+		// guarded by entries
+		private boolean invalidated;
+
+	}
+
+	private static class Entry {
+
+		private final Object value;
+
+		private final ResourceNotFoundException notFound;
+
+		private final long expiresAt;
+
+		Entry(Object value, ResourceNotFoundException notFound, long timeToLiveNanos) {
+			this.value = value;
+			this.notFound = notFound;
+			this.expiresAt = System.nanoTime() + timeToLiveNanos;
+		}
+
+	}
+
+	/**
+	 * Identifies a cached object: scope, object ID, Java type and query parameters.
+	 */
+	static final class Key {
+
+		private final String scope;
+
+		private final String objectId;
+
+		private final Class<?> type;
+
+		private final Object parameters;
+
+		private final int hashCode;
+
+		Key(String scope, String objectId, Class<?> type, Object parameters) {
+			this.scope = scope;
+			this.objectId = objectId;
+			this.type = type;
+			this.parameters = parameters;
+			this.hashCode = ObjectUtils.nullSafeHashCode(new Object[] { scope, objectId, type, parameters });
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof Key)) {
+				return false;
+			}
+			Key key = (Key) other;
+			return hashCode == key.hashCode && ObjectUtils.nullSafeEquals(scope, key.scope)
+					&& objectId.equals(key.objectId) && type.equals(key.type)
+					&& ObjectUtils.nullSafeEquals(parameters, key.parameters);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+	}
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.social.facebook.api.FeedCheckpoint;
+import org.springframework.social.facebook.api.FeedCheckpointStore;
+
+/**
+ * {@link FeedCheckpointStore} keeping the checkpoints in memory, for tests and for applications that may synchronize
+ * their feeds from the start after a restart.
+ */
+public class InMemoryFeedCheckpointStore implements FeedCheckpointStore {
+
+	private final ConcurrentMap<String, FeedCheckpoint> checkpoints = new ConcurrentHashMap<String, FeedCheckpoint>();
+
+	public FeedCheckpoint load(String ownerId, String edge) {
+		return checkpoints.get(key(ownerId, edge));
+	}
+
+	public void save(FeedCheckpoint checkpoint) {
+		checkpoints.put(key(checkpoint.getOwnerId(), checkpoint.getEdge()), checkpoint);
+	}
+
+	private static String key(String ownerId, String edge) {
+		return ownerId + '/' + edge;
+	}
+
+}
@@ -17,9 +17,24 @@ package org.springframework.social.facebook.api.impl;
 
 import static org.springframework.social.facebook.api.impl.PagedListUtils.*;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 import org.springframework.core.io.Resource;
+import org.springframework.social.ServerException;
+import org.springframework.social.UncategorizedApiException;
 import org.springframework.social.facebook.api.Album;
 import org.springframework.social.facebook.api.GraphApi;
 import org.springframework.social.facebook.api.ImageType;
@@ -27,9 +42,15 @@ import org.springframework.social.facebook.api.MediaOperations;
 import org.springframework.social.facebook.api.PagedList;
 import org.springframework.social.facebook.api.PagingParameters;
 import org.springframework.social.facebook.api.Photo;
+import org.springframework.social.facebook.api.PhotoUpload;
+import org.springframework.social.facebook.api.PhotoUploadResult;
 import org.springframework.social.facebook.api.Video;
+import org.springframework.social.facebook.api.VideoUploadListener;
+import org.springframework.social.facebook.api.VideoUploadSession;
+import org.springframework.util.Assert;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 
 class MediaTemplate implements MediaOperations {
@@ -38,11 +59,28 @@ class MediaTemplate implements MediaOperations {
 	
 	private final RestTemplate restTemplate;
 
+	private volatile long chunkRetryIntervalMillis = DEFAULT_CHUNK_RETRY_INTERVAL;
+
+	private volatile Executor photoUploadExecutor;
+
 	public MediaTemplate(GraphApi graphApi, RestTemplate restTemplate) {
 		this.graphApi = graphApi;
 		this.restTemplate = restTemplate;
 	}
 
+	/**
+	 * Set the delay before the first retry of a failed video chunk, which doubles on each following retry.
+	 * @param interval the delay before the first retry, 0 to retry immediately.
+	 * @param unit the unit of interval.
+	 */
+	void setChunkRetryInterval(long interval, TimeUnit unit) {
+		this.chunkRetryIntervalMillis = unit.toMillis(interval);
+	}
+
+	void setPhotoUploadExecutor(Executor photoUploadExecutor) {
+		this.photoUploadExecutor = photoUploadExecutor;
+	}
+
 	public PagedList<Album> getAlbums() {
 		return getAlbums("me", new PagingParameters(25, 0, null, null));
 	}
@@ -81,6 +119,26 @@ class MediaTemplate implements MediaOperations {
 	public byte[] getAlbumImage(String albumId, ImageType imageType) {
 		return graphApi.fetchImage(albumId, "picture", imageType);
 	}
+
+	public long getAlbumImage(String albumId, ImageType imageType, OutputStream out) {
+		return graphApi.fetchImage(albumId, "picture", imageType, out);
+	}
+
+	public long getAlbumImage(String albumId, ImageType imageType, WritableByteChannel channel) {
+		return graphApi.fetchImage(albumId, "picture", imageType, channel);
+	}
+
+	public long getAlbumImage(String albumId, ImageType imageType, Path file) {
+		return graphApi.fetchImage(albumId, "picture", imageType, file);
+	}
+
+	public InputStream openAlbumImage(String albumId, ImageType imageType) {
+		return graphApi.openImage(albumId, "picture", imageType);
+	}
+
+	public String getAlbumImageUrl(String albumId, ImageType imageType) {
+		return graphApi.fetchImageUrl(albumId, "picture", imageType);
+	}
 	
 	public PagedList<Photo> getPhotos(String objectId) {
 		return getPhotos(objectId, new PagingParameters(25, 0, null, null));
@@ -102,6 +160,26 @@ class MediaTemplate implements MediaOperations {
 		return graphApi.fetchImage(photoId, "picture", imageType);
 	}
 
+	public long getPhotoImage(String photoId, ImageType imageType, OutputStream out) {
+		return graphApi.fetchImage(photoId, "picture", imageType, out);
+	}
+
+	public long getPhotoImage(String photoId, ImageType imageType, WritableByteChannel channel) {
+		return graphApi.fetchImage(photoId, "picture", imageType, channel);
+	}
+
+	public long getPhotoImage(String photoId, ImageType imageType, Path file) {
+		return graphApi.fetchImage(photoId, "picture", imageType, file);
+	}
+
+	public InputStream openPhotoImage(String photoId, ImageType imageType) {
+		return graphApi.openImage(photoId, "picture", imageType);
+	}
+
+	public String getPhotoImageUrl(String photoId, ImageType imageType) {
+		return graphApi.fetchImageUrl(photoId, "picture", imageType);
+	}
+
 	public String postPhoto(Resource photo) {
 		MultiValueMap<String, Object> parts = new LinkedMultiValueMap<String, Object>();
 		parts.set("source", photo);
@@ -127,6 +205,19 @@ class MediaTemplate implements MediaOperations {
 		parts.set("message", caption);
 		return graphApi.publish(albumId, "photos", parts);
 	}
+
+	public List<PhotoUploadResult> postPhotos(final String albumId, List<PhotoUpload> photos, int concurrency) {
+		return PhotoUploads.upload(photos, concurrency, photoUploadExecutor, new Function<PhotoUpload, String>() {
+			public String apply(PhotoUpload photo) {
+				MultiValueMap<String, Object> parts = new LinkedMultiValueMap<String, Object>();
+				parts.set("source", photo.getPhoto());
+				if (photo.getCaption() != null) {
+					parts.set("message", photo.getCaption());
+				}
+				return graphApi.publish(albumId, "photos", parts);
+			}
+		});
+	}
 	
 	public PagedList<Video> getVideos() {
 		return getVideos("me", new PagingParameters(25, 0, null, null));
@@ -156,7 +247,7 @@ class MediaTemplate implements MediaOperations {
 	public String postVideo(Resource video) {
 		MultiValueMap<String, Object> parts = new LinkedMultiValueMap<String, Object>();
 		parts.set("file", video);
-		Map<String, Object> response = restTemplate.postForObject("https://graph-video.facebook.com/me/videos", parts, Map.class);
+		Map<String, Object> response = restTemplate.postForObject(videoUploadUrl(), parts, Map.class);
 		return (String) response.get("id");
 	}
 	
@@ -166,16 +257,129 @@ class MediaTemplate implements MediaOperations {
 		parts.set("file", video);
 		parts.set("title", title);
 		parts.set("description", description);
-		Map<String, Object> response = restTemplate.postForObject("https://graph-video.facebook.com/me/videos", parts, Map.class);
+		Map<String, Object> response = restTemplate.postForObject(videoUploadUrl(), parts, Map.class);
 		return (String) response.get("id");
 	}
 	
+	@SuppressWarnings("unchecked")
+	public VideoUploadSession startVideoUpload(Path video, int chunkSize) {
+		Assert.isTrue(chunkSize > 0, "chunkSize must be positive");
+		long fileSize;
+		try {
+			fileSize = Files.size(video);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to read the size of " + video, e);
+		}
+		MultiValueMap<String, Object> parts = new LinkedMultiValueMap<String, Object>();
+		parts.set("upload_phase", "start");
+		parts.set("file_size", String.valueOf(fileSize));
+		Map<String, Object> response = restTemplate.postForObject(videoUploadUrl(), parts, Map.class);
+		return new VideoUploadSession((String) response.get("video_id"), (String) response.get("upload_session_id"), fileSize,
+				offset(response.get("start_offset")), offset(response.get("end_offset")), chunkSize);
+	}
+
+	public VideoUploadSession transferVideo(VideoUploadSession session, Path video, VideoUploadListener listener) {
+		try {
+			FileChannel channel = FileChannel.open(video, StandardOpenOption.READ);
+			try {
+				String filename = video.getFileName().toString();
+				int stalledChunks = 0;
+				while (!session.isTransferComplete()) {
+					// send the range Facebook asked for, falling back to the session's chunk size when it gave none
+					long remaining = session.getFileSize() - session.getStartOffset();
+					long window = session.getEndOffset() - session.getStartOffset();
+					long length = window > 0 ? Math.min(window, remaining) : Math.min(session.getChunkSize(), remaining);
+					long startOffset = session.getStartOffset();
+					session = transferChunk(session, new FileChunkResource(channel, filename, startOffset, length));
+					if (session.getStartOffset() > startOffset) {
+						stalledChunks = 0;
+					} else if (++stalledChunks >= MAX_STALLED_CHUNKS) {
+						throw new UncategorizedApiException("facebook", "Facebook did not move the upload of video "
+								+ session.getVideoId() + " past offset " + startOffset + " after " + stalledChunks + " chunks", null);
+					}
+					if (listener != null) {
+						listener.chunkTransferred(session);
+					}
+				}
+				return session;
+			} finally {
+				channel.close();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to read " + video, e);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	public String finishVideoUpload(VideoUploadSession session, String title, String description) {
+		MultiValueMap<String, Object> parts = new LinkedMultiValueMap<String, Object>();
+		parts.set("upload_phase", "finish");
+		parts.set("upload_session_id", session.getUploadSessionId());
+		if (title != null) {
+			parts.set("title", title);
+		}
+		if (description != null) {
+			parts.set("description", description);
+		}
+		restTemplate.postForObject(videoUploadUrl(), parts, Map.class);
+		return session.getVideoId();
+	}
+
+	@SuppressWarnings("unchecked")
+	private VideoUploadSession transferChunk(VideoUploadSession session, FileChunkResource chunk) {
+		MultiValueMap<String, Object> parts = new LinkedMultiValueMap<String, Object>();
+		parts.set("upload_phase", "transfer");
+		parts.set("upload_session_id", session.getUploadSessionId());
+		parts.set("start_offset", String.valueOf(session.getStartOffset()));
+		parts.set("video_file_chunk", chunk);
+		for (int attempt = 0;; attempt++) {
+			try {
+				Map<String, Object> response = restTemplate.postForObject(videoUploadUrl(), parts, Map.class);
+				return session.withOffsets(offset(response.get("start_offset")), offset(response.get("end_offset")));
+			} catch (ResourceAccessException | ServerException e) {
+				if (attempt >= CHUNK_RETRIES) {
+					throw e;
+				}
+				try {
+					Thread.sleep(chunkRetryIntervalMillis << attempt);
+				} catch (InterruptedException interrupted) {
+					Thread.currentThread().interrupt();
+					throw e;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Videos go to the video host of the Graph API, unless the Graph API URL was changed to another host (e.g. a proxy
+	 * or a stub), which then receives the uploads too.
+	 */
+	private String videoUploadUrl() {
+		String baseUrl = graphApi.getBaseGraphApiUrl();
+		if (baseUrl.startsWith(FacebookTemplate.DEFAULT_GRAPH_API_URL)) {
+			baseUrl = VIDEO_GRAPH_API_URL + baseUrl.substring(FacebookTemplate.DEFAULT_GRAPH_API_URL.length());
+		}
+		return baseUrl + "me/videos";
+	}
+
+	private static long offset(Object offset) {
+		return offset instanceof Number ? ((Number) offset).longValue() : Long.parseLong((String) offset);
+	}
+
 	public void tagVideo(String videoId, String userId) {
 		MultiValueMap<String, Object> data = new LinkedMultiValueMap<String, Object>();
 		data.add("tag_uid", userId);
 		graphApi.publish(videoId, "tags", data);
 	}
 	
+	private static final String VIDEO_GRAPH_API_URL = "https://graph-video.facebook.com/";
+
+	private static final int CHUNK_RETRIES = 3;
+
+	private static final long DEFAULT_CHUNK_RETRY_INTERVAL = 500;
+
+	private static final int MAX_STALLED_CHUNKS = 3;
+
 	static final String[] ALL_ALBUM_FIELDS = {
 			"id", "can_upload", "count", "cover_photo", "created_time", "description", "from", "link", "location",
 			"name", "place", "privacy", "type", "updated_time"
@@ -0,0 +1,311 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api.impl;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * <p>
+ * Measures each Graph API request and hands the measurements to a {@link GraphApiMetricsRecorder}: its duration tagged
+ * by HTTP method, path template, API version and outcome, the size of its response body and, for error responses, the
+ * Facebook error code.
+ * </p>
+ * <p>
+ * Path templates keep the connection types and replace the object IDs, so that {@code /v7.0/1234/feed} and
+ * {@code /v7.0/5678/feed} are both recorded as "{id}/feed"; "me", "search" and the other fixed roots are kept as is.
+ * </p>
+ * <p>
+ * Being an interceptor, it covers the requests of all the operations of the templates it is registered on, e.g.
+ * through {@link FacebookClientFactory#setInterceptors(java.util.List)}. It should be registered before the
+ * {@link CircuitBreakingInterceptor}, {@link RateLimitingInterceptor} and {@link RetryingInterceptor} so that a retried
+ * request is measured once, over all its attempts, and requests rejected by them are recorded as {@link #REJECTED}.
+ * </p>
+ */
+@Slf4j
+public class MetricsInterceptor implements ClientHttpRequestInterceptor {
+
+	/**
+	 * The outcome of requests answered with a 1xx, 2xx or 3xx response.
+	 */
+	public static final String SUCCESS = "SUCCESS";
+
+	/**
+	 * The outcome of requests answered with a 4xx response.
+	 */
+	public static final String CLIENT_ERROR = "CLIENT_ERROR";
+
+	/**
+	 * The outcome of requests answered with a 5xx response.
+	 */
+	public static final String SERVER_ERROR = "SERVER_ERROR";
+
+	/**
+	 * The outcome of requests that failed with an I/O error.
+	 */
+	public static final String IO_ERROR = "IO_ERROR";
+
+	/**
+	 * The outcome of requests rejected by a following interceptor without a response.
+	 */
+	public static final String REJECTED = "REJECTED";
+
+	/**
+	 * The exception tag of requests that did not fail with an exception, and the version tag of unversioned requests.
+	 */
+	public static final String NONE = "none";
+
+	/**
+	 * The path template segment replacing object IDs.
+	 */
+	public static final String ID = "{id}";
+
+	private static final Pattern VERSION = Pattern.compile("v\\d+\\.\\d+");
+
+	private static final Set<String> FIXED_ROOTS = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList("me", "search", "oauth", "debug_token", "app")));
+
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+	private final GraphApiMetricsRecorder recorder;
+
+	public MetricsInterceptor(GraphApiMetricsRecorder recorder) {
+		Assert.notNull(recorder, "recorder must not be null");
+		this.recorder = recorder;
+	}
+
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+		String[] segments = StringUtils.tokenizeToStringArray(request.getURI().getPath(), "/");
+		// the version follows the path prefix of the Graph API URL, if any
+		int version = -1;
+		for (int i = 0; i < segments.length; i++) {
+			if (VERSION.matcher(segments[i]).matches()) {
+				version = i;
+				break;
+			}
+		}
+		String method = String.valueOf(request.getMethod());
+		String pathTemplate = pathTemplate(segments, version + 1);
+		String apiVersion = version >= 0 ? segments[version] : NONE;
+
+		long start = System.nanoTime();
+		ClientHttpResponse response;
+		try {
+			response = execution.execute(request, body);
+		} catch (IOException e) {
+			recorder.recordRequest(method, pathTemplate, apiVersion, IO_ERROR, e.getClass().getSimpleName(), System.nanoTime() - start, TimeUnit.NANOSECONDS);
+			throw e;
+		} catch (RuntimeException e) {
+			recorder.recordRequest(method, pathTemplate, apiVersion, REJECTED, e.getClass().getSimpleName(), System.nanoTime() - start, TimeUnit.NANOSECONDS);
+			throw e;
+		}
+		long duration = System.nanoTime() - start;
+
+		HttpStatus.Series series = HttpStatus.Series.resolve(response.getRawStatusCode());
+		String outcome = series == HttpStatus.Series.CLIENT_ERROR ? CLIENT_ERROR : series == HttpStatus.Series.SERVER_ERROR ? SERVER_ERROR : SUCCESS;
+		recorder.recordRequest(method, pathTemplate, apiVersion, outcome, NONE, duration, TimeUnit.NANOSECONDS);
+		if (series == HttpStatus.Series.CLIENT_ERROR || series == HttpStatus.Series.SERVER_ERROR) {
+			response = ErrorBufferingClientHttpRequestFactory.bufferError(response);
+			recordError(response, pathTemplate, apiVersion);
+		}
+		return new MeasuredClientHttpResponse(response, method, pathTemplate, apiVersion);
+	}
+
+	/**
+	 * Builds the path template of a request from its path segments: connection types and fixed roots are kept, object
+	 * IDs are replaced by {@link #ID}, and batch requests (without a path) are recorded as "/".
+	 * @param segments the path segments of the request.
+	 * @param first the index of the first segment after the API version.
+	 * @return the path template of the request.
+	 */
+	protected String pathTemplate(String[] segments, int first) {
+		if (segments.length <= first) {
+			return "/";
+		}
+		StringBuilder template = new StringBuilder();
+		for (int i = first; i < segments.length; i++) {
+			if (i > first) {
+				template.append('/');
+			}
+			boolean keep = i == first ? FIXED_ROOTS.contains(segments[i]) : (i - first) % 2 == 1;
+			template.append(keep ? segments[i] : ID);
+		}
+		return template.toString();
+	}
+
+	private void recordError(ClientHttpResponse response, String pathTemplate, String apiVersion) {
+		int code = 0;
+		int subcode = 0;
+		try {
+			InputStream in = response.getBody();
+			if (in != null) {
+				JsonParser parser = JSON_FACTORY.createParser(in);
+				try {
+					if (parser.nextToken() == JsonToken.START_OBJECT) {
+						while (parser.nextToken() == JsonToken.FIELD_NAME) {
+							boolean error = "error".equals(parser.getCurrentName());
+							if (parser.nextToken() != JsonToken.START_OBJECT || !error) {
+								parser.skipChildren();
+								continue;
+							}
+							while (parser.nextToken() == JsonToken.FIELD_NAME) {
+								String field = parser.getCurrentName();
+								parser.nextToken();
+								if ("code".equals(field)) {
+									code = parser.getValueAsInt();
+								} else if ("error_subcode".equals(field)) {
+									subcode = parser.getValueAsInt();
+								} else {
+									parser.skipChildren();
+								}
+							}
+							break;
+						}
+					}
+				} finally {
+					parser.close();
+				}
+			}
+		} catch (IOException e) {
+			log.debug("Could not read the error code of a Graph API response", e);
+		}
+		recorder.recordError(pathTemplate, apiVersion, code, subcode);
+	}
+
+	/**
+	 * Counts the bytes read from the body of a response and records its size once it is closed.
+	 */
+	private class MeasuredClientHttpResponse implements ClientHttpResponse {
+
+		private final ClientHttpResponse response;
+
+		private final String method;
+
+		private final String pathTemplate;
+
+		private final String apiVersion;
+
+		private long bytesRead;
+
+		private boolean closed;
+
+		MeasuredClientHttpResponse(ClientHttpResponse response, String method, String pathTemplate, String apiVersion) {
+			this.response = response;
+			this.method = method;
+			this.pathTemplate = pathTemplate;
+			this.apiVersion = apiVersion;
+		}
+
+		public HttpStatus getStatusCode() throws IOException {
+			return response.getStatusCode();
+		}
+
+		public int getRawStatusCode() throws IOException {
+			return response.getRawStatusCode();
+		}
+
+		public String getStatusText() throws IOException {
+			return response.getStatusText();
+		}
+
+		public HttpHeaders getHeaders() {
+			return response.getHeaders();
+		}
+
+		public InputStream getBody() throws IOException {
+			InputStream body = response.getBody();
+			return body != null ? new CountingInputStream(body) : null;
+		}
+
+		public void close() {
+			try {
+				response.close();
+			} finally {
+				if (!closed) {
+					closed = true;
+					recorder.recordResponseSize(method, pathTemplate, apiVersion, Math.max(bytesRead, response.getHeaders().getContentLength()));
+				}
+			}
+		}
+
+		/**
+		 * Counts the bytes read from one body stream. A buffered error body can be read several times, so the size is the
+		 * most read from any of its streams.
+		 */
+		private class CountingInputStream extends FilterInputStream {
+
+			private long count;
+
+			CountingInputStream(InputStream in) {
+				super(in);
+			}
+
+			@Override
+			public int read() throws IOException {
+				int b = super.read();
+				if (b != -1) {
+					count(1);
+				}
+				return b;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				int read = super.read(b, off, len);
+				if (read > 0) {
+					count(read);
+				}
+				return read;
+			}
+
+			@Override
+			public long skip(long n) throws IOException {
+				long skipped = super.skip(n);
+				count(skipped);
+				return skipped;
+			}
+
+			private void count(long n) {
+				count += n;
+				bytesRead = Math.max(bytesRead, count);
+			}
+
+		}
+
+	}
+
+}
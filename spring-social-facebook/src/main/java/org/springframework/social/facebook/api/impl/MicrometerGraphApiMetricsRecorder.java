@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.util.Assert;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * <p>
+ * Records the measurements of a {@link MetricsInterceptor} in a Micrometer {@link MeterRegistry}:
+ * </p>
+ * <ul>
+ * <li>{@value #REQUESTS}: a timer tagged by method, uri (the path template), version, outcome and exception.</li>
+ * <li>{@value #RESPONSE_SIZE}: a distribution summary of the response body sizes in bytes, tagged by method, uri and
+ * version.</li>
+ * <li>{@value #ERRORS}: a counter of the Facebook errors, tagged by uri, version, code and subcode.</li>
+ * </ul>
+ * <p>
+ * Micrometer is an optional dependency, only needed when this class is used.
+ * </p>
+ */
+public class MicrometerGraphApiMetricsRecorder implements GraphApiMetricsRecorder {
+
+	public static final String REQUESTS = "facebook.graph.requests";
+
+	public static final String RESPONSE_SIZE = "facebook.graph.response.size";
+
+	public static final String ERRORS = "facebook.graph.errors";
+
+	private final MeterRegistry registry;
+
+	public MicrometerGraphApiMetricsRecorder(MeterRegistry registry) {
+		Assert.notNull(registry, "registry must not be null");
+		this.registry = registry;
+	}
+
+	public void recordRequest(String method, String pathTemplate, String apiVersion, String outcome, String exception, long duration, TimeUnit unit) {
+		Timer.builder(REQUESTS)
+			.description("Graph API requests")
+			.tag("method", method)
+			.tag("uri", pathTemplate)
+			.tag("version", apiVersion)
+			.tag("outcome", outcome)
+			.tag("exception", exception)
+			.register(registry)
+			.record(duration, unit);
+	}
+
+	public void recordResponseSize(String method, String pathTemplate, String apiVersion, long bytes) {
+		DistributionSummary.builder(RESPONSE_SIZE)
+			.description("Graph API response body sizes")
+			.baseUnit("bytes")
+			.tag("method", method)
+			.tag("uri", pathTemplate)
+			.tag("version", apiVersion)
+			.register(registry)
+			.record(bytes);
+	}
+
+	public void recordError(String pathTemplate, String apiVersion, int code, int subcode) {
+		Counter.builder(ERRORS)
+			.description("Graph API errors by Facebook error code")
+			.tag("uri", pathTemplate)
+			.tag("version", apiVersion)
+			.tag("code", String.valueOf(code))
+			.tag("subcode", String.valueOf(subcode))
+			.register(registry)
+			.increment();
+	}
+
+}
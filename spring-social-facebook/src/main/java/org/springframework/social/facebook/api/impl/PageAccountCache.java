@@ -0,0 +1,330 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api.impl;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.springframework.social.facebook.api.Account;
+import org.springframework.util.Assert;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * <p>
+ * Thread-safe cache of the accounts (and so the page access tokens) of the pages a user administers, used by
+ * {@link PageTemplate}. Each template has its own cache, since accounts are specific to the user's access token.
+ * </p>
+ * <p>
+ * The cache holds a snapshot of all the pages of /me/accounts, up to the maximum size, which is served until its
+ * time-to-live has elapsed. Once the snapshot is older than the refresh time, the next lookup triggers a reload in the
+ * background, on the refresh executor or else on a pool of {@value #DEFAULT_REFRESH_THREADS} daemon threads shared by
+ * all caches, while lookups keep being served from the current snapshot. A refresh that fails is not retried before the
+ * minimum reload interval has elapsed. A lookup for a page missing from the snapshot reloads it too, at most once per
+ * minimum reload interval, so that pages the user was given since are found. Concurrent reloads are collapsed into a
+ * single walk of /me/accounts, and a load in progress when the cache is invalidated does not repopulate it.
+ * </p>
+ */
+@Slf4j
+public class PageAccountCache {
+
+	/**
+	 * The number of threads of the pool shared by the caches that were not given a refresh executor.
+	 */
+	public static final int DEFAULT_REFRESH_THREADS = 2;
+
+	private final int maximumSize;
+
+	private final long timeToLiveNanos;
+
+	private volatile long refreshAfterNanos;
+
+	private volatile long minReloadIntervalNanos = TimeUnit.MINUTES.toNanos(1);
+
+	private volatile Executor refreshExecutor;
+
+	private volatile Snapshot snapshot;
+
+	private final AtomicReference<CompletableFuture<Snapshot>> loading = new AtomicReference<CompletableFuture<Snapshot>>();
+
+	private long generation; // guarded by this
+
+	private final LongAdder hitCount = new LongAdder();
+
+	private final LongAdder missCount = new LongAdder();
+
+	private final LongAdder loadCount = new LongAdder();
+
+	private final LongAdder refreshCount = new LongAdder();
+
+	/**
+	 * Creates a cache holding up to 1000 accounts for an hour, refreshed after 45 minutes.
+	 */
+	public PageAccountCache() {
+		this(1000, 1, TimeUnit.HOURS);
+	}
+
+	/**
+	 * @param maximumSize the maximum number of accounts held, and read from /me/accounts.
+	 * @param timeToLive how long accounts are served from the cache. They are refreshed after three quarters of it.
+	 * @param unit the unit of timeToLive.
+	 */
+	public PageAccountCache(int maximumSize, long timeToLive, TimeUnit unit) {
+		Assert.isTrue(maximumSize > 0, "maximumSize must be positive");
+		this.maximumSize = maximumSize;
+		this.timeToLiveNanos = unit.toNanos(timeToLive);
+		this.refreshAfterNanos = timeToLiveNanos / 4 * 3;
+	}
+
+	/**
+	 * @param refreshAfter the age from which the accounts are reloaded ahead of their expiry. Defaults to three quarters
+	 * of the time-to-live; a value greater than or equal to the time-to-live disables refreshing ahead.
+	 * @param unit the unit of refreshAfter.
+	 */
+	public void setRefreshAfter(long refreshAfter, TimeUnit unit) {
+		this.refreshAfterNanos = unit.toNanos(refreshAfter);
+	}
+
+	/**
+	 * @param minReloadInterval how long after a load a lookup for a page that is not in the cache may not reload the
+	 * accounts. Defaults to 1 minute.
+	 * @param unit the unit of minReloadInterval.
+	 */
+	public void setMinReloadInterval(long minReloadInterval, TimeUnit unit) {
+		this.minReloadIntervalNanos = unit.toNanos(minReloadInterval);
+	}
+
+	/**
+	 * @param refreshExecutor the executor refreshing the accounts in the background. If null (the default), a pool of
+	 * {@value #DEFAULT_REFRESH_THREADS} daemon threads shared by all caches is used. If it rejects a refresh, the lookup
+	 * that triggered it performs it.
+	 */
+	public void setRefreshExecutor(Executor refreshExecutor) {
+		this.refreshExecutor = refreshExecutor;
+	}
+
+	/**
+	 * @return the number of lookups served from the cache, including pages the user does not administer.
+	 */
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	/**
+	 * @return the number of lookups that had to wait for the accounts to be loaded.
+	 */
+	public long getMissCount() {
+		return missCount.sum();
+	}
+
+	/**
+	 * @return the number of times the accounts were loaded, including refreshes.
+	 */
+	public long getLoadCount() {
+		return loadCount.sum();
+	}
+
+	/**
+	 * @return the number of refreshes ahead of expiry.
+	 */
+	public long getRefreshCount() {
+		return refreshCount.sum();
+	}
+
+	/**
+	 * @return the number of accounts currently held, which may have expired.
+	 */
+	public int size() {
+		Snapshot current = snapshot;
+		return current != null ? current.accounts.size() : 0;
+	}
+
+	/**
+	 * Drops the cached accounts, e.g. after a page access token was revoked, so that the next lookup reloads them.
+	 */
+	public synchronized void invalidate() {
+		generation++;
+		snapshot = null;
+		loading.set(null);
+	}
+
+	/**
+	 * Looks up the account of a page, loading the accounts if needed.
+	 * @param pageId the page ID.
+	 * @param loader streams all the accounts of the user.
+	 * @return the account of the page, or null if the user does not administer it.
+	 */
+	Account get(String pageId, Supplier<Stream<Account>> loader) {
+		Snapshot current = snapshot;
+		if (current != null) {
+			long age = System.nanoTime() - current.loadedAt;
+			if (age < timeToLiveNanos) {
+				Account account = current.accounts.get(pageId);
+				if (account != null || age < minReloadIntervalNanos) {
+					hitCount.increment();
+					if (age >= refreshAfterNanos) {
+						refresh(current, loader);
+					}
+					return account;
+				}
+			}
+		}
+		missCount.increment();
+		return load(loader).accounts.get(pageId);
+	}
+
+	private Snapshot load(Supplier<Stream<Account>> loader) {
+		while (true) {
+			CompletableFuture<Snapshot> inFlight = loading.get();
+			if (inFlight != null) {
+				try {
+					return inFlight.join();
+				} catch (CompletionException e) {
+					if (e.getCause() instanceof RuntimeException) {
+						throw (RuntimeException) e.getCause();
+					}
+					throw e;
+				}
+			}
+			CompletableFuture<Snapshot> future = new CompletableFuture<Snapshot>();
+			if (loading.compareAndSet(null, future)) {
+				return load(loader, future);
+			}
+		}
+	}
+
+	/**
+	 * Starts reloading the accounts unless they are already being loaded or a refresh of the same snapshot was attempted
+	 * less than the minimum reload interval ago. Failures are only logged: the current snapshot keeps being served until
+	 * it expires.
+	 */
+	private void refresh(Snapshot current, final Supplier<Stream<Account>> loader) {
+		long now = System.nanoTime();
+		if (current.refreshAttempted && now - current.refreshAttemptedAt < minReloadIntervalNanos) {
+			return;
+		}
+		final CompletableFuture<Snapshot> future = new CompletableFuture<Snapshot>();
+		if (!loading.compareAndSet(null, future)) {
+			return;
+		}
+		current.refreshAttemptedAt = now;
+		current.refreshAttempted = true;
+		refreshCount.increment();
+		Runnable refresh = new Runnable() {
+			public void run() {
+				try {
+					load(loader, future);
+				} catch (RuntimeException e) {
+					log.warn("Could not refresh the page accounts", e);
+				}
+			}
+		};
+		Executor executor = refreshExecutor;
+		try {
+			(executor != null ? executor : DefaultExecutor.INSTANCE).execute(refresh);
+		} catch (RejectedExecutionException e) {
+			log.debug("Refreshing the page accounts in the calling thread", e);
+			refresh.run();
+		}
+	}
+
+	private Snapshot load(Supplier<Stream<Account>> loader, CompletableFuture<Snapshot> future) {
+		try {
+			long loadGeneration;
+			synchronized (this) {
+				loadGeneration = generation;
+			}
+			loadCount.increment();
+			Map<String, Account> accounts = new LinkedHashMap<String, Account>();
+			try (Stream<Account> stream = loader.get()) {
+				for (Iterator<Account> iterator = stream.iterator(); iterator.hasNext() && accounts.size() < maximumSize;) {
+					Account account = iterator.next();
+					accounts.put(account.getId(), account);
+				}
+			}
+			Snapshot loaded = new Snapshot(Collections.unmodifiableMap(accounts), System.nanoTime());
+			synchronized (this) {
+				if (generation == loadGeneration) {
+					snapshot = loaded;
+				}
+			}
+			future.complete(loaded);
+			return loaded;
+		} catch (RuntimeException e) {
+			future.completeExceptionally(e);
+			throw e;
+		} finally {
+			loading.compareAndSet(future, null);
+		}
+	}
+
+	private static class Snapshot {
+
+		private final Map<String, Account> accounts;
+
+		private final long loadedAt;
+
+		private volatile long refreshAttemptedAt;
+
+		private volatile boolean refreshAttempted;
+
+		Snapshot(Map<String, Account> accounts, long loadedAt) {
+			this.accounts = accounts;
+			this.loadedAt = loadedAt;
+		}
+
+	}
+
+	/**
+	 * Keeps the shared pool from being created until a cache without a refresh executor refreshes its accounts.
+	 */
+	private static class DefaultExecutor {
+
+		static final ThreadPoolExecutor INSTANCE = createExecutor();
+
+		private static ThreadPoolExecutor createExecutor() {
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(DEFAULT_REFRESH_THREADS, DEFAULT_REFRESH_THREADS, 60L, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+						private final AtomicInteger count = new AtomicInteger();
+
+						public Thread newThread(Runnable runnable) {
+							Thread thread = new Thread(runnable, "facebook-page-accounts-refresh-" + count.incrementAndGet());
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			executor.allowCoreThreadTimeOut(true);
+			return executor;
+		}
+
+	}
+
+}
@@ -15,11 +15,15 @@
  */
 package org.springframework.social.facebook.api.impl;
 
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import org.springframework.core.io.Resource;
+import org.springframework.social.UncategorizedApiException;
 import org.springframework.social.facebook.api.Account;
 import org.springframework.social.facebook.api.Facebook;
 import org.springframework.social.facebook.api.FacebookLink;
@@ -30,15 +34,41 @@ import org.springframework.social.facebook.api.PageOperations;
 import org.springframework.social.facebook.api.PagePostData;
 import org.springframework.social.facebook.api.PageUpdate;
 import org.springframework.social.facebook.api.PagedList;
+import org.springframework.social.facebook.api.PhotoUpload;
+import org.springframework.social.facebook.api.PhotoUploadResult;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+
 class PageTemplate implements PageOperations {
 
 	private final GraphApi graphApi;
-	
-	public PageTemplate(GraphApi graphApi) {
-		this.graphApi = graphApi;
+
+	private final FacebookTemplate facebook;
+
+	private final Supplier<Stream<Account>> accountsLoader;
+
+	private volatile PageAccountCache accountCache = new PageAccountCache();
+
+	private volatile Executor photoUploadExecutor;
+
+	public PageTemplate(FacebookTemplate facebook) {
+		this.graphApi = facebook;
+		this.facebook = facebook;
+		this.accountsLoader = new Supplier<Stream<Account>>() {
+			public Stream<Account> get() {
+				return graphApi.streamConnections("me", "accounts", Account.class);
+			}
+		};
+	}
+
+	void setAccountCache(PageAccountCache accountCache) {
+		this.accountCache = accountCache;
+	}
+
+	void setPhotoUploadExecutor(Executor photoUploadExecutor) {
+		this.photoUploadExecutor = photoUploadExecutor;
 	}
 
 	public Page getPage(String pageId) {
@@ -94,6 +124,40 @@ class PageTemplate implements PageOperations {
 		parts.set("access_token", pageAccessToken);
 		return graphApi.publish(albumId, "photos", parts);
 	}
+
+	public List<PhotoUploadResult> postPhotos(String pageId, final String albumId, List<PhotoUpload> photos, int concurrency) {
+		final String pageAccessToken = getAccessToken(pageId);
+		return PhotoUploads.upload(photos, concurrency, photoUploadExecutor, new Function<PhotoUpload, String>() {
+			public String apply(PhotoUpload photo) {
+				MultiValueMap<String, Object> parts = photoParts(photo, pageAccessToken);
+				return graphApi.publish(albumId, "photos", parts);
+			}
+		});
+	}
+
+	public List<PhotoUploadResult> stagePhotos(final String pageId, List<PhotoUpload> photos, int concurrency) {
+		final String pageAccessToken = getAccessToken(pageId);
+		return PhotoUploads.upload(photos, concurrency, photoUploadExecutor, new Function<PhotoUpload, String>() {
+			public String apply(PhotoUpload photo) {
+				MultiValueMap<String, Object> parts = photoParts(photo, pageAccessToken);
+				parts.set("published", "false");
+				return graphApi.publish(pageId, "photos", parts);
+			}
+		});
+	}
+
+	public String postStagedPhotos(String pageId, String message, List<String> photoIds) {
+		String pageAccessToken = getAccessToken(pageId);
+		MultiValueMap<String, Object> map = new LinkedMultiValueMap<String, Object>();
+		if(message != null) {
+			map.set("message", message);
+		}
+		for (int i = 0; i < photoIds.size(); i++) {
+			map.set("attached_media[" + i + "]", mediaReference(photoIds.get(i)));
+		}
+		map.set("access_token", pageAccessToken);
+		return graphApi.publish(pageId, "feed", map);
+	}
 	
 	public PagedList<Page> search(String query) {
 		MultiValueMap<String, String> queryMap = new LinkedMultiValueMap<String, String>();
@@ -120,22 +184,31 @@ class PageTemplate implements PageOperations {
 	}
 
 	public Account getAccount(String pageId) {
-		if(!accountCache.containsKey(pageId)) {
-			// only bother fetching the account data in the event of a cache miss
-			List<Account> accounts = getAccounts();
-			for (Account account : accounts) {
-				accountCache.put(account.getId(), account);
-			}
-		}
-		return accountCache.get(pageId);
+		return accountCache.get(pageId, accountsLoader);
 	}
 	
 	public Facebook facebookOperations(String pageId) {
-		return new FacebookTemplate(getAccessToken(pageId));
+		return facebook.forAccessToken(getAccessToken(pageId));
 	}
 
 	// private helper methods
-	
-	private Map<String, Account> accountCache = new HashMap<String, Account>();
+
+	private MultiValueMap<String, Object> photoParts(PhotoUpload photo, String pageAccessToken) {
+		MultiValueMap<String, Object> parts = new LinkedMultiValueMap<String, Object>();
+		parts.set("source", photo.getPhoto());
+		if(photo.getCaption() != null) {
+			parts.set("message", photo.getCaption());
+		}
+		parts.set("access_token", pageAccessToken);
+		return parts;
+	}
+
+	private String mediaReference(String photoId) {
+		try {
+			return facebook.getObjectMapper().writeValueAsString(Collections.singletonMap("media_fbid", photoId));
+		} catch (JsonProcessingException e) {
+			throw new UncategorizedApiException("facebook", "Unable to reference staged photo " + photoId, e);
+		}
+	}
 	
 }
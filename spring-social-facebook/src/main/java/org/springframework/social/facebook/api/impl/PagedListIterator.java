@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api.impl;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.springframework.social.UncategorizedApiException;
+import org.springframework.social.facebook.api.PagedList;
+
+/**
+ * Iterator over the elements of a connection that fetches the following page only once the current one has been consumed.
+ * Only the current page (and, when prefetching, the next one) is held in memory.
+ * When an {@link Executor} is given, the next page is fetched in the background as soon as a page starts being consumed.
+ */
+class PagedListIterator<T> implements Iterator<T> {
+
+	private final FacebookTemplate facebook;
+
+	private final Class<T> type;
+
+	private final Executor prefetchExecutor;
+
+	private PagedList<T> page;
+
+	private Iterator<T> pageIterator;
+
+	private FutureTask<PagedList<T>> nextPage;
+
+	private Callable<PagedList<T>> firstPageLoader;
+
+	private boolean closed;
+
+	public PagedListIterator(FacebookTemplate facebook, PagedList<T> firstPage, Class<T> type, Executor prefetchExecutor) {
+		this.facebook = facebook;
+		this.type = type;
+		this.prefetchExecutor = prefetchExecutor;
+		startPage(firstPage);
+	}
+
+	/**
+	 * Creates an iterator that only fetches its first page when first asked for an element.
+	 */
+	public PagedListIterator(FacebookTemplate facebook, Callable<PagedList<T>> firstPageLoader, Class<T> type, Executor prefetchExecutor) {
+		this.facebook = facebook;
+		this.type = type;
+		this.prefetchExecutor = prefetchExecutor;
+		this.firstPageLoader = firstPageLoader;
+	}
+
+	public boolean hasNext() {
+		if (!closed && firstPageLoader != null) {
+			Callable<PagedList<T>> loader = firstPageLoader;
+			firstPageLoader = null;
+			try {
+				startPage(loader.call());
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new UncategorizedApiException("facebook", "Error fetching the first page of connections", e);
+			}
+		}
+		while (!closed && pageIterator != null && !pageIterator.hasNext()) {
+			PagedList<T> next = fetchNextPage();
+			// Facebook returns empty pages with a next cursor on filtered connections, so only the end of the
+			// cursors (or an empty page pointing back to the same next page) ends the iteration
+			if (next == null || (next.isEmpty() && isSameNextPage(page, next))) {
+				page = null;
+				pageIterator = null;
+			} else {
+				startPage(next);
+			}
+		}
+		return !closed && pageIterator != null && pageIterator.hasNext();
+	}
+
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return pageIterator.next();
+	}
+
+	/**
+	 * Stops the iteration, cancelling any page being prefetched.
+	 */
+	public void close() {
+		closed = true;
+		if (nextPage != null) {
+			nextPage.cancel(false);
+			nextPage = null;
+		}
+	}
+
+	/**
+	 * @return a sequential {@link Stream} over the remaining elements, closing this iterator when the stream is closed.
+	 */
+	public Stream<T> stream() {
+		Stream<T> stream = StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false);
+		return stream.onClose(new Runnable() {
+			public void run() {
+				close();
+			}
+		});
+	}
+
+	private void startPage(PagedList<T> newPage) {
+		page = newPage;
+		pageIterator = newPage != null ? newPage.iterator() : null;
+		nextPage = null;
+		if (prefetchExecutor != null && hasNextPage(newPage)) {
+			final PagedList<T> current = newPage;
+			nextPage = new FutureTask<PagedList<T>>(new Callable<PagedList<T>>() {
+				public PagedList<T> call() {
+					return facebook.fetchNextPagedConnections(current, type);
+				}
+			});
+			prefetchExecutor.execute(nextPage);
+		}
+	}
+
+	private PagedList<T> fetchNextPage() {
+		if (nextPage == null) {
+			return hasNextPage(page) ? facebook.fetchNextPagedConnections(page, type) : null;
+		}
+		try {
+			return nextPage.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new UncategorizedApiException("facebook", "Interrupted while fetching the next page of connections", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new UncategorizedApiException("facebook", "Error fetching the next page of connections", e.getCause());
+		}
+	}
+
+	private boolean isSameNextPage(PagedList<T> page, PagedList<T> next) {
+		return hasNextPage(next) && page.getNextPage().getFullUrl().equals(next.getNextPage().getFullUrl());
+	}
+
+	private boolean hasNextPage(PagedList<T> page) {
+		return page != null && page.getNextPage() != null && page.getNextPage().getFullUrl() != null
+				&& !"".equals(page.getNextPage().getFullUrl().trim());
+	}
+
+}
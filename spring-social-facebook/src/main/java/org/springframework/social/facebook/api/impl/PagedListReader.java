@@ -0,0 +1,216 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api.impl;
+
+import static org.springframework.social.facebook.api.impl.PagedListUtils.getPagedListParameters;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.social.UncategorizedApiException;
+import org.springframework.social.facebook.api.PagedList;
+import org.springframework.social.facebook.api.PagingParameters;
+import org.springframework.social.facebook.api.Post;
+import org.springframework.social.facebook.api.Post.PostType;
+import org.springframework.social.facebook.api.impl.json.FacebookModule;
+import org.springframework.web.client.ResponseExtractor;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Reads a page of Graph API connections ("data", "paging" and "summary") into a {@link PagedList}
+ * in a single streaming pass, binding each element of "data" directly from the parser.
+ * Also reads the objects of a multi-ID request, keyed by ID, the same way.
+ * The {@link ObjectReader} of each element type is created once and cached.
+ */
+class PagedListReader {
+
+	private final ObjectMapper objectMapper;
+
+	private final ConcurrentMap<Class<?>, ObjectReader> readers = new ConcurrentHashMap<Class<?>, ObjectReader>();
+
+	public PagedListReader(ObjectMapper objectMapper) {
+		this.objectMapper = objectMapper;
+	}
+
+	/**
+	 * @param type the Java type of each connection
+	 * @param <T> the Java type of each connection
+	 * @return a {@link ResponseExtractor} reading the response body straight into a {@link PagedList}.
+	 */
+	public <T> ResponseExtractor<PagedList<T>> responseExtractor(Class<T> type) {
+		return responseExtractor(readerFor(type));
+	}
+
+	/**
+	 * @param uri the URI the page of connections is fetched from
+	 * @param type the Java type of each connection
+	 * @param <T> the Java type of each connection
+	 * @return a {@link ResponseExtractor} reading the response body straight into a {@link PagedList}. The posts of
+	 *         the statuses and links connections get the type implied by the connection, like in {@link FeedTemplate}.
+	 */
+	public <T> ResponseExtractor<PagedList<T>> responseExtractor(URI uri, Class<T> type) {
+		ObjectReader reader = readerFor(type);
+		if (Post.class.isAssignableFrom(type) && uri.getPath() != null) {
+			if (uri.getPath().endsWith("/statuses")) {
+				reader = reader.withAttribute(FacebookModule.POST_TYPE_ATTRIBUTE, PostType.STATUS);
+			} else if (uri.getPath().endsWith("/links")) {
+				reader = reader.withAttribute(FacebookModule.POST_TYPE_ATTRIBUTE, PostType.LINK);
+			}
+		}
+		return responseExtractor(reader);
+	}
+
+	/**
+	 * @param reader the reader to bind each connection with
+	 * @param <T> the Java type of each connection
+	 * @return a {@link ResponseExtractor} reading the response body straight into a {@link PagedList}.
+	 */
+	public <T> ResponseExtractor<PagedList<T>> responseExtractor(final ObjectReader reader) {
+		return new ResponseExtractor<PagedList<T>>() {
+			public PagedList<T> extractData(ClientHttpResponse response) throws IOException {
+				InputStream body = response.getBody();
+				if (body == null) {
+					return null;
+				}
+				JsonParser parser = objectMapper.getFactory().createParser(body);
+				try {
+					return read(parser, reader);
+				} finally {
+					parser.close();
+				}
+			}
+		};
+	}
+
+	/**
+	 * @param type the Java type of each object
+	 * @param <T> the Java type of each object
+	 * @return a {@link ResponseExtractor} reading the response body of a multi-ID request straight into a map of
+	 *         objects keyed by ID. IDs mapped to null are left out.
+	 */
+	public <T> ResponseExtractor<Map<String, T>> objectMapResponseExtractor(Class<T> type) {
+		final ObjectReader reader = readerFor(type);
+		return new ResponseExtractor<Map<String, T>>() {
+			public Map<String, T> extractData(ClientHttpResponse response) throws IOException {
+				Map<String, T> objects = new LinkedHashMap<String, T>();
+				InputStream body = response.getBody();
+				if (body == null) {
+					return objects;
+				}
+				JsonParser parser = objectMapper.getFactory().createParser(body);
+				try {
+					if (parser.nextToken() != JsonToken.START_OBJECT) {
+						throw new UncategorizedApiException("facebook", "Error deserializing data from Facebook: expected a JSON object", null);
+					}
+					while (parser.nextToken() == JsonToken.FIELD_NAME) {
+						String id = parser.getCurrentName();
+						if (parser.nextToken() != JsonToken.VALUE_NULL) {
+							objects.put(id, reader.<T>readValue(parser));
+						}
+					}
+					return objects;
+				} catch (JsonProcessingException e) {
+					throw new UncategorizedApiException("facebook", "Error deserializing data from Facebook: " + e.getMessage(), e);
+				} finally {
+					parser.close();
+				}
+			}
+		};
+	}
+
+	public <T> PagedList<T> read(String json, Class<T> type) throws IOException {
+		JsonParser parser = objectMapper.getFactory().createParser(json);
+		try {
+			return read(parser, type);
+		} finally {
+			parser.close();
+		}
+	}
+
+	public <T> PagedList<T> read(JsonParser parser, Class<T> type) throws IOException {
+		return read(parser, readerFor(type));
+	}
+
+	public <T> PagedList<T> read(JsonParser parser, ObjectReader reader) throws IOException {
+		try {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				throw new UncategorizedApiException("facebook", "Error deserializing data from Facebook: expected a JSON object", null);
+			}
+
+			List<T> data = new ArrayList<T>();
+			JsonNode pagingNode = null;
+			JsonNode summaryNode = null;
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String fieldName = parser.getCurrentName();
+				JsonToken valueToken = parser.nextToken();
+				if ("data".equals(fieldName) && valueToken == JsonToken.START_ARRAY) {
+					while (parser.nextToken() != JsonToken.END_ARRAY) {
+						data.add(reader.<T>readValue(parser));
+					}
+				} else if ("paging".equals(fieldName)) {
+					pagingNode = parser.readValueAsTree();
+				} else if ("summary".equals(fieldName)) {
+					summaryNode = parser.readValueAsTree();
+				} else {
+					parser.skipChildren();
+				}
+			}
+
+			if (pagingNode == null) {
+				return new PagedList<T>(data, null, null);
+			}
+
+			PagingParameters previousPage = getPagedListParameters(pagingNode, "previous");
+			PagingParameters nextPage = getPagedListParameters(pagingNode, "next");
+
+			Integer totalCount = null;
+			if (summaryNode != null && summaryNode.has("total_count")) {
+				totalCount = summaryNode.get("total_count").intValue();
+			}
+
+			return new PagedList<T>(data, previousPage, nextPage, totalCount);
+		} catch (JsonProcessingException e) {
+			throw new UncategorizedApiException("facebook", "Error deserializing data from Facebook: " + e.getMessage(), e);
+		}
+	}
+
+	private ObjectReader readerFor(Class<?> type) {
+		ObjectReader reader = readers.get(type);
+		if (reader == null) {
+			reader = objectMapper.readerFor(type);
+			ObjectReader existing = readers.putIfAbsent(type, reader);
+			if (existing != null) {
+				reader = existing;
+			}
+		}
+		return reader;
+	}
+
+}
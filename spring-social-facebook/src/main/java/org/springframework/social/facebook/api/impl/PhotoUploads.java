@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.springframework.social.UncategorizedApiException;
+import org.springframework.social.facebook.api.PhotoUpload;
+import org.springframework.social.facebook.api.PhotoUploadResult;
+import org.springframework.util.Assert;
+
+/**
+ * Runs the uploads of a bulk photo upload with bounded concurrency, collecting one result per photo in the order the
+ * photos were given. A failing upload does not stop the others.
+ * <p>
+ * Each bulk upload hands at most <code>concurrency</code> workers to the given executor, each of them uploading the
+ * photos no other worker has taken yet. When no executor is given, the workers run on a pool of at most
+ * {@link #DEFAULT_THREADS} daemon threads shared by all templates.
+ * </p>
+ */
+final class PhotoUploads {
+
+	/**
+	 * The number of threads of the pool shared by the templates that were not given a photo upload executor.
+	 */
+	static final int DEFAULT_THREADS = 8;
+
+	private PhotoUploads() {
+	}
+
+	static List<PhotoUploadResult> upload(final List<PhotoUpload> photos, int concurrency, Executor executor,
+			final Function<PhotoUpload, String> uploader) {
+		Assert.isTrue(concurrency > 0, "concurrency must be positive");
+		int workers = Math.min(concurrency, photos.size());
+		if (workers <= 1) {
+			List<PhotoUploadResult> results = new ArrayList<PhotoUploadResult>(photos.size());
+			for (PhotoUpload photo : photos) {
+				results.add(upload(photo, uploader));
+			}
+			return results;
+		}
+
+		final PhotoUploadResult[] results = new PhotoUploadResult[photos.size()];
+		final AtomicInteger nextPhoto = new AtomicInteger();
+		final CountDownLatch done = new CountDownLatch(workers);
+		Runnable worker = new Runnable() {
+			public void run() {
+				try {
+					for (int next = nextPhoto.getAndIncrement(); next < photos.size(); next = nextPhoto.getAndIncrement()) {
+						results[next] = upload(photos.get(next), uploader);
+					}
+				} finally {
+					done.countDown();
+				}
+			}
+		};
+		for (int i = 0; i < workers; i++) {
+			try {
+				(executor != null ? executor : DefaultExecutor.INSTANCE).execute(worker);
+			} catch (RejectedExecutionException e) {
+				worker.run();
+			}
+		}
+
+		boolean interrupted = false;
+		while (true) {
+			try {
+				done.await();
+				break;
+			} catch (InterruptedException e) {
+				// photos not taken yet are not uploaded anymore, but the uploads in progress may still succeed
+				// and must be reported as they end
+				interrupted = true;
+				nextPhoto.set(photos.size());
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+			for (int i = 0; i < results.length; i++) {
+				if (results[i] == null) {
+					results[i] = new PhotoUploadResult(photos.get(i), null,
+							new UncategorizedApiException("facebook", "Photo upload not started: the bulk upload was interrupted", null));
+				}
+			}
+		}
+		return Arrays.asList(results);
+	}
+
+	private static PhotoUploadResult upload(PhotoUpload photo, Function<PhotoUpload, String> uploader) {
+		try {
+			return new PhotoUploadResult(photo, uploader.apply(photo), null);
+		} catch (RuntimeException e) {
+			return new PhotoUploadResult(photo, null, e);
+		}
+	}
+
+	/**
+	 * Keeps the shared pool from being created until a template without a photo upload executor uploads photos
+	 * concurrently.
+	 */
+	private static class DefaultExecutor {
+
+		static final ThreadPoolExecutor INSTANCE = createExecutor();
+
+		private static ThreadPoolExecutor createExecutor() {
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(DEFAULT_THREADS, DEFAULT_THREADS, 60L, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+						private final AtomicInteger count = new AtomicInteger();
+
+						public Thread newThread(Runnable runnable) {
+							Thread thread = new Thread(runnable, "facebook-photo-upload-" + count.incrementAndGet());
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			executor.allowCoreThreadTimeOut(true);
+			return executor;
+		}
+
+	}
+
+}
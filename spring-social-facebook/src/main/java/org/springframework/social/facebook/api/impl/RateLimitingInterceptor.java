@@ -0,0 +1,314 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api.impl;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.social.RateLimitExceededException;
+import org.springframework.util.Assert;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * <p>
+ * Paces the requests sent to the Graph API so as to stay under Facebook's rate limits instead of being throttled.
+ * </p>
+ * <p>
+ * Requests go through two token buckets: one for the whole app and one per access token. Each bucket lets a burst of
+ * requests through and then refills at its configured rate, which is slowed down as the usage Facebook reports in the
+ * X-App-Usage (app), X-Page-Usage and X-Business-Use-Case-Usage (access token) headers of each response goes over the
+ * throttle threshold. Once the usage reaches the reject threshold, or while Facebook reports that access is blocked,
+ * requests are rejected with a {@link RateLimitExceededException} without being sent. A request that would have to wait
+ * longer than the maximum delay for its turn is rejected too.
+ * </p>
+ * <p>
+ * One interceptor should be shared by all the templates of an app, e.g. through
+ * {@link FacebookClientFactory#setInterceptors(java.util.List)}.
+ * </p>
+ */
+@Slf4j
+public class RateLimitingInterceptor implements ClientHttpRequestInterceptor {
+
+	private static final ObjectReader USAGE_READER = new ObjectMapper().readerFor(JsonNode.class);
+
+	private static final int MAX_TRACKED_TOKENS = 10000;
+
+	/**
+	 * How long a usage over the reject threshold rejects requests without a new report. Facebook only reports usage on
+	 * responses, so requests are let through (at the slowest pace) once the report is this old to learn the new usage.
+	 */
+	private static final long USAGE_TIME_TO_LIVE = TimeUnit.MINUTES.toNanos(1);
+
+	private final Budget appBudget;
+
+	private final double tokenRequestsPerSecond;
+
+	private final int burst;
+
+	private final Map<String, Budget> tokenBudgets = new LinkedHashMap<String, Budget>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Budget> eldest) {
+			return size() > MAX_TRACKED_TOKENS;
+		}
+	};
+
+	private volatile int throttleThreshold = 75;
+
+	private volatile int rejectThreshold = 95;
+
+	private volatile long maxDelayNanos = TimeUnit.SECONDS.toNanos(30);
+
+	/**
+	 * @param appRequestsPerSecond the rate requests of the whole app are sent at while under the throttle threshold.
+	 * @param tokenRequestsPerSecond the rate requests of each access token are sent at while under the throttle threshold.
+	 * @param burst the number of requests sent without pacing after a quiet period.
+	 */
+	public RateLimitingInterceptor(double appRequestsPerSecond, double tokenRequestsPerSecond, int burst) {
+		Assert.isTrue(appRequestsPerSecond > 0 && tokenRequestsPerSecond > 0, "Request rates must be positive");
+		Assert.isTrue(burst > 0, "burst must be positive");
+		this.appBudget = new Budget(appRequestsPerSecond, burst);
+		this.tokenRequestsPerSecond = tokenRequestsPerSecond;
+		this.burst = burst;
+	}
+
+	/**
+	 * @param throttleThreshold the usage percentage over which requests are slowed down. Defaults to 75.
+	 */
+	public void setThrottleThreshold(int throttleThreshold) {
+		this.throttleThreshold = throttleThreshold;
+	}
+
+	/**
+	 * @param rejectThreshold the usage percentage from which requests are rejected. Defaults to 95.
+	 */
+	public void setRejectThreshold(int rejectThreshold) {
+		this.rejectThreshold = rejectThreshold;
+	}
+
+	/**
+	 * @param maxDelay how long a request may be held back before being rejected instead. Defaults to 30 seconds.
+	 * @param unit the unit of maxDelay.
+	 */
+	public void setMaxDelay(long maxDelay, TimeUnit unit) {
+		this.maxDelayNanos = unit.toNanos(maxDelay);
+	}
+
+	/**
+	 * @return the last usage Facebook reported for the app.
+	 */
+	public ApiUsage getAppUsage() {
+		return appBudget.getUsage();
+	}
+
+	/**
+	 * @param accessToken an access token.
+	 * @return the last usage Facebook reported for the pages and businesses of the given access token.
+	 */
+	public ApiUsage getUsage(String accessToken) {
+		Budget budget;
+		synchronized (tokenBudgets) {
+			budget = tokenBudgets.get(accessToken);
+		}
+		return budget != null ? budget.getUsage() : ApiUsage.NONE;
+	}
+
+	/**
+	 * @return the app's utilization of its rate limit, in percent.
+	 */
+	public int getAppUtilization() {
+		return getAppUsage().getUtilization();
+	}
+
+	/**
+	 * @param accessToken an access token.
+	 * @return the access token's utilization of its page and business rate limits, in percent.
+	 */
+	public int getUtilization(String accessToken) {
+		return getUsage(accessToken).getUtilization();
+	}
+
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+		String accessToken = accessToken(request);
+		Budget tokenBudget = accessToken != null ? tokenBudget(accessToken) : null;
+		long delay = appBudget.reserve();
+		if (tokenBudget != null) {
+			delay = Math.max(delay, tokenBudget.reserve());
+		}
+		if (delay > 0) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for the rate limit");
+			}
+		}
+
+		ClientHttpResponse response = execution.execute(request, body);
+		HttpHeaders headers = response.getHeaders();
+		String appUsage = headers.getFirst("X-App-Usage");
+		if (appUsage != null) {
+			appBudget.update(parseUsage(appUsage));
+		}
+		if (tokenBudget != null) {
+			ApiUsage usage = null;
+			String pageUsage = headers.getFirst("X-Page-Usage");
+			if (pageUsage != null) {
+				usage = parseUsage(pageUsage);
+			}
+			String businessUsage = headers.getFirst("X-Business-Use-Case-Usage");
+			if (businessUsage != null) {
+				ApiUsage parsed = parseBusinessUsage(businessUsage);
+				usage = usage != null ? usage.max(parsed) : parsed;
+			}
+			if (usage != null) {
+				tokenBudget.update(usage);
+			}
+		}
+		return response;
+	}
+
+	private Budget tokenBudget(String accessToken) {
+		synchronized (tokenBudgets) {
+			Budget budget = tokenBudgets.get(accessToken);
+			if (budget == null) {
+				budget = new Budget(tokenRequestsPerSecond, burst);
+				tokenBudgets.put(accessToken, budget);
+			}
+			return budget;
+		}
+	}
+
+	private static String accessToken(HttpRequest request) {
+		String authorization = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+		if (authorization != null) {
+			int space = authorization.indexOf(' ');
+			return space >= 0 ? authorization.substring(space + 1) : authorization;
+		}
+		return UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams().getFirst("access_token");
+	}
+
+	private static ApiUsage parseUsage(String header) {
+		try {
+			return ApiUsage.fromJson(USAGE_READER.<JsonNode>readValue(header));
+		} catch (IOException e) {
+			log.debug("Ignoring malformed usage header: {}", header);
+			return ApiUsage.NONE;
+		}
+	}
+
+	private static ApiUsage parseBusinessUsage(String header) {
+		ApiUsage usage = ApiUsage.NONE;
+		try {
+			JsonNode businesses = USAGE_READER.readValue(header);
+			for (Iterator<JsonNode> entries = businesses.elements(); entries.hasNext();) {
+				for (JsonNode entry : entries.next()) {
+					usage = usage.max(ApiUsage.fromJson(entry));
+				}
+			}
+		} catch (IOException e) {
+			log.debug("Ignoring malformed usage header: {}", header);
+		}
+		return usage;
+	}
+
+	/**
+	 * Token bucket paced by the last usage Facebook reported.
+	 */
+	private class Budget {
+
+		private final double requestsPerNano;
+
+		private final double capacity;
+
+		private double tokens;
+
+		private long refilledAt = System.nanoTime();
+
+		private ApiUsage usage = ApiUsage.NONE;
+
+		private long reportedAt;
+
+		private long blockedUntil;
+
+		Budget(double requestsPerSecond, int burst) {
+			this.requestsPerNano = requestsPerSecond / TimeUnit.SECONDS.toNanos(1);
+			this.capacity = burst;
+			this.tokens = burst;
+		}
+
+		synchronized ApiUsage getUsage() {
+			return usage;
+		}
+
+		synchronized void update(ApiUsage usage) {
+			this.usage = usage;
+			this.reportedAt = System.nanoTime();
+			if (usage.getEstimatedTimeToRegainAccess() > 0) {
+				blockedUntil = System.nanoTime() + TimeUnit.MINUTES.toNanos(usage.getEstimatedTimeToRegainAccess());
+			}
+		}
+
+		/**
+		 * Takes a token, returning how long to wait for it, or rejects the request if it would wait too long.
+		 */
+		synchronized long reserve() {
+			long now = System.nanoTime();
+			long blockedFor = blockedUntil - now;
+			if (blockedFor > maxDelayNanos) {
+				throw new RateLimitExceededException("facebook");
+			}
+			int utilization = usage.getUtilization();
+			if (utilization >= rejectThreshold && now - reportedAt > USAGE_TIME_TO_LIVE) {
+				utilization = rejectThreshold - 1;
+			}
+			if (utilization >= rejectThreshold) {
+				throw new RateLimitExceededException("facebook");
+			}
+			double rate = requestsPerNano;
+			if (utilization > throttleThreshold) {
+				rate *= Math.max(0.05, (double) (rejectThreshold - utilization) / (rejectThreshold - throttleThreshold));
+			}
+			tokens = Math.min(capacity, tokens + (now - refilledAt) * rate);
+			refilledAt = now;
+			long wait = tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / rate);
+			wait = Math.max(wait, blockedFor);
+			if (wait > maxDelayNanos) {
+				throw new RateLimitExceededException("facebook");
+			}
+			tokens -= 1;
+			return wait;
+		}
+
+	}
+
+}
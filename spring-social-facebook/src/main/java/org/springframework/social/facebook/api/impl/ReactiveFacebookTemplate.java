@@ -0,0 +1,567 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.nio.client.HttpAsyncClient;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.AbstractClientHttpResponse;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.converter.ByteArrayHttpMessageConverter;
+import org.springframework.http.converter.FormHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.ResourceHttpMessageConverter;
+import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.social.facebook.api.Facebook;
+import org.springframework.social.facebook.api.PagedList;
+import org.springframework.social.facebook.api.ReactiveFacebook;
+import org.springframework.social.facebook.api.impl.json.FacebookModule;
+import org.springframework.social.facebook.security.AppSecretProofCalculator;
+import org.springframework.social.oauth2.OAuth2Version;
+import org.springframework.social.support.URIBuilder;
+import org.springframework.util.Assert;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.HttpMessageConverterExtractor;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.ResponseErrorHandler;
+import org.springframework.web.client.ResponseExtractor;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * <p>
+ * Non-blocking implementation of {@link ReactiveFacebook}, built on Apache HttpAsyncClient, which must be on the
+ * classpath.
+ * </p>
+ * <p>
+ * Responses are bound with the same {@link FacebookModule} mappings and message converters as {@link FacebookTemplate}
+ * and errors are translated by the same {@link FacebookErrorHandler}, so futures fail with the exceptions the blocking
+ * API would throw.
+ * </p>
+ * <p>
+ * Futures are completed on the I/O threads of the HTTP client, so stages depending on them must not block; blocking
+ * work belongs in the async variants of {@link CompletableFuture} given an executor. The HTTP client created by default
+ * is closed by {@link #destroy()}. Applications creating many templates should rather share one client, for instance
+ * through {@link FacebookClientFactory#getReactiveFacebook(String, HttpAsyncClient)}.
+ * </p>
+ */
+@Slf4j
+public class ReactiveFacebookTemplate implements ReactiveFacebook, DisposableBean {
+
+	private static final String APPSECRET_PROOF_PARAMETER = "appsecret_proof";
+
+	private final String accessToken;
+
+	private final String applicationNamespace;
+
+	private final String appSecretProof;
+
+	private final HttpAsyncClient httpClient;
+
+	private final CloseableHttpAsyncClient defaultHttpClient;
+
+	private final ObjectMapper objectMapper;
+
+	private final PagedListReader pagedListReader;
+
+	private final FormHttpMessageConverter formMessageConverter;
+
+	private final List<HttpMessageConverter<?>> messageConverters;
+
+	private final ResponseErrorHandler errorHandler = new FacebookErrorHandler();
+
+	private String apiVersion = Facebook.DEFAULT_API_VERSION;
+
+	private String graphApiUrl = FacebookTemplate.DEFAULT_GRAPH_API_URL;
+
+	/**
+	 * Create a new instance of ReactiveFacebookTemplate. This constructor creates the ReactiveFacebookTemplate using a
+	 * given access token.
+	 *
+	 * @param accessToken
+	 *            An access token given by Facebook after a successful OAuth 2 authentication (or
+	 *            through Facebook's JS library).
+	 */
+	public ReactiveFacebookTemplate(final String accessToken) {
+		this(accessToken, null, null);
+	}
+
+	public ReactiveFacebookTemplate(final String accessToken, final String applicationNamespace,
+			final String appSecret) {
+		this(accessToken, applicationNamespace, appSecret, HttpAsyncClients.createSystem(), true, null);
+	}
+
+	/**
+	 * Create a new instance of ReactiveFacebookTemplate sending its requests through the given HTTP client.
+	 *
+	 * @param accessToken
+	 *            the access token to authorize requests with.
+	 * @param applicationNamespace
+	 *            the application namespace, may be null.
+	 * @param appSecret
+	 *            the application's App Secret, used to sign requests with an appsecret_proof. May be null.
+	 * @param httpClient
+	 *            the HTTP client, which may be shared between templates and is not closed by {@link #destroy()}. A
+	 *            {@link CloseableHttpAsyncClient} that is not running yet is started.
+	 */
+	public ReactiveFacebookTemplate(final String accessToken, final String applicationNamespace,
+			final String appSecret, final HttpAsyncClient httpClient) {
+		this(accessToken, applicationNamespace, appSecret, httpClient, false, null);
+	}
+
+	/**
+	 * Creates a ReactiveFacebookTemplate sharing the Jackson configuration of the given {@link FacebookClientFactory}.
+	 * See {@link FacebookClientFactory#getReactiveFacebook(String, HttpAsyncClient)}.
+	 */
+	ReactiveFacebookTemplate(final String accessToken, final String applicationNamespace, final String appSecret,
+			final HttpAsyncClient httpClient, final FacebookClientFactory clientFactory) {
+		this(accessToken, applicationNamespace, appSecret, httpClient, false, clientFactory);
+	}
+
+	private ReactiveFacebookTemplate(final String accessToken, final String applicationNamespace,
+			final String appSecret, final HttpAsyncClient httpClient, final boolean ownsHttpClient,
+			final FacebookClientFactory clientFactory) {
+		Assert.notNull(httpClient, "httpClient must not be null");
+		this.accessToken = accessToken;
+		this.applicationNamespace = applicationNamespace;
+		MappingJackson2HttpMessageConverter jsonMessageConverter;
+		if (clientFactory != null) {
+			this.objectMapper = clientFactory.getObjectMapper();
+			this.pagedListReader = clientFactory.getPagedListReader();
+			jsonMessageConverter = clientFactory.getJsonMessageConverter();
+		}
+		else {
+			this.objectMapper = new ObjectMapper();
+			this.objectMapper.registerModule(new FacebookModule());
+			this.pagedListReader = new PagedListReader(objectMapper);
+			jsonMessageConverter = new MappingJackson2HttpMessageConverter(objectMapper);
+		}
+		if (appSecret != null) {
+			AppSecretProofCalculator calculator = clientFactory != null ? clientFactory.getAppSecretProofCalculator()
+					: new AppSecretProofCalculator(appSecret, 0);
+			this.appSecretProof = calculator.calculate(accessToken);
+		}
+		else {
+			this.appSecretProof = null;
+		}
+		this.formMessageConverter = getFormMessageConverter();
+		this.messageConverters = getMessageConverters(formMessageConverter, jsonMessageConverter);
+
+		if (httpClient instanceof CloseableHttpAsyncClient && !((CloseableHttpAsyncClient) httpClient).isRunning()) {
+			((CloseableHttpAsyncClient) httpClient).start();
+		}
+		this.httpClient = httpClient;
+		this.defaultHttpClient = ownsHttpClient ? (CloseableHttpAsyncClient) httpClient : null;
+	}
+
+	/**
+	 * Set the Graph API version (e.g., {@link Facebook#DEFAULT_API_VERSION}). If set to null, the
+	 * version will be left out of the request URLs to the Graph API.
+	 *
+	 * @param apiVersion
+	 *            the API version.
+	 */
+	public void setApiVersion(final String apiVersion) {
+		this.apiVersion = apiVersion;
+	}
+
+	/**
+	 * Set the root URL of the Graph API. See {@link FacebookTemplate#setGraphApiUrl(String)}.
+	 *
+	 * @param graphApiUrl
+	 *            the root URL, to which the API version and the request paths are appended.
+	 */
+	public void setGraphApiUrl(final String graphApiUrl) {
+		Assert.hasText(graphApiUrl, "graphApiUrl must not be empty");
+		this.graphApiUrl = graphApiUrl.endsWith("/") ? graphApiUrl : graphApiUrl + "/";
+	}
+
+	/**
+	 * Closes the HTTP client created by this template when it was not given one. An HTTP client given to the
+	 * constructor is left open, since it may be shared with other templates.
+	 */
+	@Override
+	public void destroy() throws Exception {
+		if (defaultHttpClient != null) {
+			defaultHttpClient.close();
+		}
+	}
+
+	@Override
+	public boolean isAuthorized() {
+		return accessToken != null;
+	}
+
+	@Override
+	public String getApplicationNamespace() {
+		return applicationNamespace;
+	}
+
+	@Override
+	public String getBaseGraphApiUrl() {
+		if (apiVersion != null) {
+			return graphApiUrl + "v" + apiVersion + "/";
+		}
+		return graphApiUrl;
+	}
+
+	@Override
+	public <T> CompletableFuture<T> fetchObject(final String objectId, final Class<T> type, final String... fields) {
+		return fetchObject(objectId, type, fieldsParameter(fields));
+	}
+
+	@Override
+	public <T> CompletableFuture<T> fetchObject(final String objectId, final Class<T> type,
+			final MultiValueMap<String, String> queryParameters) {
+
+		URI uri = URIBuilder.fromUri(getBaseGraphApiUrl() + objectId).queryParams(queryParameters).build();
+
+		log.debug("Fetching {} '{}' asynchronously from URI {}", type.getSimpleName(), objectId, uri);
+
+		return execute(new HttpGet(withAppSecretProof(uri)),
+				new HttpMessageConverterExtractor<T>(type, messageConverters));
+	}
+
+	@Override
+	public <T> CompletableFuture<PagedList<T>> fetchConnections(final String objectId, final String connectionName,
+			final Class<T> type, final String... fields) {
+		return fetchConnections(objectId, connectionName, type, fieldsParameter(fields));
+	}
+
+	@Override
+	public <T> CompletableFuture<PagedList<T>> fetchConnections(final String objectId, final String connectionName,
+			final Class<T> type, final MultiValueMap<String, String> queryParameters) {
+
+		log.debug("Fetching {} connections for {} '{}' asynchronously with the following query parameters: {}",
+				connectionName, type.getSimpleName(), objectId, queryParameters);
+
+		String connectionPath = connectionName != null && connectionName.length() > 0 ? "/" + connectionName : "";
+		URI uri = URIBuilder.fromUri(getBaseGraphApiUrl() + objectId + connectionPath).queryParams(queryParameters)
+				.build();
+		return fetchPagedList(uri, type);
+	}
+
+	@Override
+	public <T> CompletableFuture<PagedList<T>> fetchNextPagedConnections(final PagedList<T> page, final Class<T> type) {
+		if (hasNextPage(page)) {
+			return fetchPagedList(URIBuilder.fromUri(page.getNextPage().getFullUrl()).build(), type);
+		}
+		return CompletableFuture.completedFuture(null);
+	}
+
+	@Override
+	public <T> CompletableFuture<Void> forEachConnectionPage(final String objectId, final String connectionName,
+			final Class<T> type, final Function<? super PagedList<T>, ? extends CompletionStage<Boolean>> pageHandler,
+			final String... fields) {
+		return fetchConnections(objectId, connectionName, type, fields)
+				.thenCompose(new Function<PagedList<T>, CompletionStage<Void>>() {
+					public CompletionStage<Void> apply(PagedList<T> page) {
+						return handlePage(null, page, type, pageHandler);
+					}
+				});
+	}
+
+	@Override
+	@SuppressWarnings("rawtypes")
+	public CompletableFuture<String> publish(final String objectId, final String connectionName,
+			final MultiValueMap<String, Object> data) {
+		URI uri = URIBuilder.fromUri(getBaseGraphApiUrl() + objectId + "/" + connectionName).build();
+		return post(uri, data, new HttpMessageConverterExtractor<Map>(Map.class, messageConverters))
+				.thenApply(new Function<Map, String>() {
+					public String apply(Map response) {
+						return response != null ? (String) response.get("id") : null;
+					}
+				});
+	}
+
+	@Override
+	public CompletableFuture<Void> delete(final String objectId) {
+		return postDelete(URIBuilder.fromUri(getBaseGraphApiUrl() + objectId).build());
+	}
+
+	@Override
+	public CompletableFuture<Void> delete(final String objectId, final String connectionName) {
+		return postDelete(URIBuilder.fromUri(getBaseGraphApiUrl() + objectId + "/" + connectionName).build());
+	}
+
+	// private helpers
+
+	private <T> CompletableFuture<PagedList<T>> fetchPagedList(final URI uri, final Class<T> type) {
+		return execute(new HttpGet(withAppSecretProof(uri)), pagedListReader.responseExtractor(uri, type));
+	}
+
+	/**
+	 * Hands the page to the handler unless it is empty, then follows its next page, stopping like
+	 * {@link PagedListIterator} once there is no next page or an empty page points back to the same next page.
+	 */
+	private <T> CompletionStage<Void> handlePage(final PagedList<T> previousPage, final PagedList<T> page,
+			final Class<T> type, final Function<? super PagedList<T>, ? extends CompletionStage<Boolean>> pageHandler) {
+		if (page == null) {
+			return CompletableFuture.completedFuture(null);
+		}
+		if (page.isEmpty()) {
+			if (previousPage != null && hasNextPage(page)
+					&& previousPage.getNextPage().getFullUrl().equals(page.getNextPage().getFullUrl())) {
+				return CompletableFuture.completedFuture(null);
+			}
+			return handleNextPage(page, type, pageHandler);
+		}
+		return pageHandler.apply(page).thenCompose(new Function<Boolean, CompletionStage<Void>>() {
+			public CompletionStage<Void> apply(Boolean requestNext) {
+				if (!Boolean.TRUE.equals(requestNext)) {
+					return CompletableFuture.completedFuture(null);
+				}
+				return handleNextPage(page, type, pageHandler);
+			}
+		});
+	}
+
+	private <T> CompletionStage<Void> handleNextPage(final PagedList<T> page, final Class<T> type,
+			final Function<? super PagedList<T>, ? extends CompletionStage<Boolean>> pageHandler) {
+		return fetchNextPagedConnections(page, type).thenCompose(new Function<PagedList<T>, CompletionStage<Void>>() {
+			public CompletionStage<Void> apply(PagedList<T> nextPage) {
+				return handlePage(page, nextPage, type, pageHandler);
+			}
+		});
+	}
+
+	private CompletableFuture<Void> postDelete(final URI uri) {
+		MultiValueMap<String, Object> deleteRequest = new LinkedMultiValueMap<>();
+		deleteRequest.set("method", "delete");
+		return post(uri, deleteRequest, new HttpMessageConverterExtractor<String>(String.class, messageConverters))
+				.thenApply(new Function<String, Void>() {
+					public Void apply(String response) {
+						return null;
+					}
+				});
+	}
+
+	private <T> CompletableFuture<T> post(final URI uri, final MultiValueMap<String, Object> data,
+			final ResponseExtractor<T> responseExtractor) {
+		HttpPost request = new HttpPost(withAppSecretProof(uri));
+		try {
+			BufferingOutputMessage form = new BufferingOutputMessage();
+			formMessageConverter.write(new LinkedMultiValueMap<>(data), null, form);
+			ByteArrayEntity entity = new ByteArrayEntity(form.body.toByteArray());
+			entity.setContentType(form.headers.getContentType().toString());
+			request.setEntity(entity);
+		} catch (IOException e) {
+			CompletableFuture<T> failure = new CompletableFuture<T>();
+			failure.completeExceptionally(e);
+			return failure;
+		}
+		return execute(request, responseExtractor);
+	}
+
+	/**
+	 * Sends the request, checking the response with the {@link FacebookErrorHandler} and reading it with the given
+	 * extractor once it has been received.
+	 */
+	private <T> CompletableFuture<T> execute(final HttpUriRequest request, final ResponseExtractor<T> responseExtractor) {
+		final CompletableFuture<T> future = new CompletableFuture<T>();
+		request.setHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE);
+		if (accessToken != null) {
+			request.setHeader(HttpHeaders.AUTHORIZATION, OAuth2Version.DRAFT_10.getAuthorizationHeaderValue(accessToken));
+		}
+		try {
+			httpClient.execute(request, new FutureCallback<HttpResponse>() {
+				public void completed(HttpResponse httpResponse) {
+					ClientHttpResponse response = new HttpAsyncClientResponse(httpResponse);
+					try {
+						if (errorHandler.hasError(response)) {
+							errorHandler.handleError(response);
+						}
+						future.complete(responseExtractor.extractData(response));
+					} catch (IOException e) {
+						future.completeExceptionally(ioError(request, e));
+					} catch (RuntimeException e) {
+						future.completeExceptionally(e);
+					} finally {
+						response.close();
+					}
+				}
+
+				public void failed(Exception e) {
+					future.completeExceptionally(e instanceof IOException ? ioError(request, (IOException) e) : e);
+				}
+
+				public void cancelled() {
+					future.cancel(false);
+				}
+			});
+		} catch (RuntimeException e) {
+			// thrown by a client that is not running, e.g. once the template has been destroyed
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	private URI withAppSecretProof(final URI uri) {
+		if (appSecretProof == null) {
+			return uri;
+		}
+		return UriComponentsBuilder.fromUri(uri).queryParam(APPSECRET_PROOF_PARAMETER, appSecretProof).build(true)
+				.toUri();
+	}
+
+	private static ResourceAccessException ioError(final HttpUriRequest request, final IOException e) {
+		return new ResourceAccessException("I/O error on " + request.getMethod() + " request for \"" + request.getURI()
+				+ "\": " + e.getMessage(), e);
+	}
+
+	private static boolean hasNextPage(final PagedList<?> page) {
+		return page != null && page.getNextPage() != null && page.getNextPage().getFullUrl() != null
+				&& !"".equals(page.getNextPage().getFullUrl().trim());
+	}
+
+	private MultiValueMap<String, String> fieldsParameter(final String[] fields) {
+		MultiValueMap<String, String> queryParameters = new LinkedMultiValueMap<>();
+		if (fields.length > 0) {
+			StringBuilder joinedFields = new StringBuilder(fields[0]);
+			for (int i = 1; i < fields.length; i++) {
+				joinedFields.append(',').append(fields[i]);
+			}
+			queryParameters.set("fields", joinedFields.toString());
+		}
+		return queryParameters;
+	}
+
+	private FormHttpMessageConverter getFormMessageConverter() {
+		FormHttpMessageConverter formConverter = new FormHttpMessageConverter();
+		formConverter.setCharset(StandardCharsets.UTF_8);
+		List<HttpMessageConverter<?>> partConverters = new ArrayList<>();
+		partConverters.add(new ByteArrayHttpMessageConverter());
+		partConverters.add(new StringHttpMessageConverter(StandardCharsets.UTF_8));
+		partConverters.add(new ResourceHttpMessageConverter());
+		formConverter.setPartConverters(partConverters);
+		return formConverter;
+	}
+
+	private List<HttpMessageConverter<?>> getMessageConverters(final FormHttpMessageConverter formConverter,
+			final MappingJackson2HttpMessageConverter jsonMessageConverter) {
+		List<HttpMessageConverter<?>> messageConverters = new ArrayList<>();
+		messageConverters.add(new StringHttpMessageConverter(StandardCharsets.UTF_8));
+		messageConverters.add(formConverter);
+		messageConverters.add(jsonMessageConverter);
+		messageConverters.add(new ByteArrayHttpMessageConverter());
+		return messageConverters;
+	}
+
+	/**
+	 * Collects a request body written by a message converter.
+	 */
+	private static class BufferingOutputMessage implements HttpOutputMessage {
+
+		final HttpHeaders headers = new HttpHeaders();
+
+		final ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+
+		public OutputStream getBody() {
+			return body;
+		}
+
+		public HttpHeaders getHeaders() {
+			return headers;
+		}
+
+	}
+
+	/**
+	 * Exposes a response received by HttpAsyncClient, whose body is buffered, to the {@link FacebookErrorHandler} and
+	 * the message converters.
+	 */
+	private static class HttpAsyncClientResponse extends AbstractClientHttpResponse {
+
+		private final HttpResponse httpResponse;
+
+		private HttpHeaders headers;
+
+		private InputStream body;
+
+		HttpAsyncClientResponse(HttpResponse httpResponse) {
+			this.httpResponse = httpResponse;
+		}
+
+		public int getRawStatusCode() {
+			return httpResponse.getStatusLine().getStatusCode();
+		}
+
+		public String getStatusText() {
+			return httpResponse.getStatusLine().getReasonPhrase();
+		}
+
+		public HttpHeaders getHeaders() {
+			if (headers == null) {
+				headers = new HttpHeaders();
+				for (Header header : httpResponse.getAllHeaders()) {
+					headers.add(header.getName(), header.getValue());
+				}
+			}
+			return headers;
+		}
+
+		public InputStream getBody() throws IOException {
+			if (body == null) {
+				HttpEntity entity = httpResponse.getEntity();
+				body = entity != null ? entity.getContent() : StreamUtils.emptyInput();
+			}
+			return body;
+		}
+
+		public void close() {
+			if (body != null) {
+				try {
+					body.close();
+				} catch (IOException e) {
+					// the body is buffered in memory
+				}
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.Assert;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * <p>
+ * Retries the requests that failed for a transient reason: an I/O error, a 5xx response, or a Graph API error that is
+ * flagged as transient or whose code is one of Facebook's temporary ones (1 unknown, 2 service, 4, 17, 32, 341 and 613
+ * rate limits).
+ * </p>
+ * <p>
+ * Only the requests whose method is retryable are retried: GET and HEAD by default. Non-idempotent requests such as
+ * POSTs opt in through {@link #setRetryableMethods(Set)}, which should only be done when posting twice is harmless.
+ * </p>
+ * <p>
+ * Attempts are spaced out by an exponential backoff with full jitter, unless Facebook hints at how long to wait with
+ * a Retry-After header or an estimated time to regain access in its usage headers; a hint longer than the maximum
+ * backoff gives up at once. A retry budget keeps retries to a fraction of the requests so that an outage does not
+ * multiply the load on Facebook: once it is spent, failures are returned to the caller without being retried.
+ * </p>
+ * <p>
+ * RestTemplate skips the interceptors registered after this one when a request is sent again, so it should be the last
+ * one, e.g. in {@link FacebookClientFactory#setInterceptors(java.util.List)}.
+ * </p>
+ */
+@Slf4j
+public class RetryingInterceptor implements ClientHttpRequestInterceptor {
+
+	private static final ObjectReader ERROR_READER = new ObjectMapper().readerFor(JsonNode.class);
+
+	private static final Set<Integer> TRANSIENT_ERROR_CODES = Collections.unmodifiableSet(new HashSet<Integer>(Arrays.asList(1, 2, 4, 17, 32, 341, 613)));
+
+	private final int maxAttempts;
+
+	private final long initialBackoffNanos;
+
+	private final long maxBackoffNanos;
+
+	private final RetryBudget budget;
+
+	private volatile Set<HttpMethod> retryableMethods = EnumSet.of(HttpMethod.GET, HttpMethod.HEAD);
+
+	private final LongAdder callCount = new LongAdder();
+
+	private final LongAdder retryCount = new LongAdder();
+
+	private final LongAdder exhaustedCount = new LongAdder();
+
+	private final LongAdder budgetExhaustedCount = new LongAdder();
+
+	private final AtomicLongArray attemptCounts;
+
+	/**
+	 * Creates an interceptor making up to 3 attempts, backing off from 100 milliseconds up to 10 seconds, with a budget of
+	 * one retry per 10 requests on top of 10 retries per second.
+	 */
+	public RetryingInterceptor() {
+		this(3, 100, 10000, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Creates an interceptor with a budget of one retry per 10 requests on top of 10 retries per second.
+	 * @param maxAttempts the maximum number of times a request is sent, including the first one.
+	 * @param initialBackoff the upper bound of the delay before the first retry, doubled for each subsequent retry.
+	 * @param maxBackoff the maximum delay before a retry.
+	 * @param unit the unit of initialBackoff and maxBackoff.
+	 */
+	public RetryingInterceptor(int maxAttempts, long initialBackoff, long maxBackoff, TimeUnit unit) {
+		this(maxAttempts, initialBackoff, maxBackoff, unit, 0.1, 10);
+	}
+
+	/**
+	 * @param maxAttempts the maximum number of times a request is sent, including the first one.
+	 * @param initialBackoff the upper bound of the delay before the first retry, doubled for each subsequent retry.
+	 * @param maxBackoff the maximum delay before a retry.
+	 * @param unit the unit of initialBackoff and maxBackoff.
+	 * @param retryRatio the number of retries each request adds to the retry budget.
+	 * @param minRetriesPerSecond the number of retries the budget allows each second whatever the number of requests.
+	 */
+	public RetryingInterceptor(int maxAttempts, long initialBackoff, long maxBackoff, TimeUnit unit, double retryRatio, int minRetriesPerSecond) {
+		Assert.isTrue(maxAttempts > 0, "maxAttempts must be positive");
+		Assert.isTrue(initialBackoff >= 0 && maxBackoff >= initialBackoff, "Backoffs must not be negative and initialBackoff must not exceed maxBackoff");
+		Assert.isTrue(retryRatio >= 0 && minRetriesPerSecond >= 0, "The retry budget must not be negative");
+		this.maxAttempts = maxAttempts;
+		this.initialBackoffNanos = unit.toNanos(initialBackoff);
+		this.maxBackoffNanos = unit.toNanos(maxBackoff);
+		this.budget = new RetryBudget(retryRatio, minRetriesPerSecond);
+		this.attemptCounts = new AtomicLongArray(maxAttempts);
+	}
+
+	/**
+	 * @param retryableMethods the HTTP methods of the requests that may be retried. Defaults to GET and HEAD.
+	 */
+	public void setRetryableMethods(Set<HttpMethod> retryableMethods) {
+		this.retryableMethods = EnumSet.copyOf(retryableMethods);
+	}
+
+	/**
+	 * @return the number of requests intercepted, not counting retries.
+	 */
+	public long getCallCount() {
+		return callCount.sum();
+	}
+
+	/**
+	 * @return the number of times a request was sent again.
+	 */
+	public long getRetryCount() {
+		return retryCount.sum();
+	}
+
+	/**
+	 * @return the number of requests that still failed after the maximum number of attempts.
+	 */
+	public long getExhaustedCount() {
+		return exhaustedCount.sum();
+	}
+
+	/**
+	 * @return the number of failed requests that were not retried because the retry budget was spent.
+	 */
+	public long getBudgetExhaustedCount() {
+		return budgetExhaustedCount.sum();
+	}
+
+	/**
+	 * @param attempts a number of attempts, from 1 to the maximum number of attempts.
+	 * @return the number of requests that were sent that number of times.
+	 */
+	public long getCallCount(int attempts) {
+		Assert.isTrue(attempts > 0 && attempts <= maxAttempts, "attempts must be between 1 and " + maxAttempts);
+		return attemptCounts.get(attempts - 1);
+	}
+
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+		callCount.increment();
+		budget.deposit();
+		boolean retryable = retryableMethods.contains(request.getMethod());
+		int attempt = 1;
+		while (true) {
+			ClientHttpResponse response = null;
+			IOException failure = null;
+			try {
+				response = execution.execute(request, body);
+			} catch (InterruptedIOException e) {
+				attemptCounts.incrementAndGet(attempt - 1);
+				throw e;
+			} catch (IOException e) {
+				failure = e;
+			}
+
+			long hint = failure != null ? 0 : -1;
+			if (response != null && HttpStatus.Series.valueOf(response.getRawStatusCode()) != HttpStatus.Series.SUCCESSFUL) {
+				response = ErrorBufferingClientHttpRequestFactory.bufferError(response);
+				if (isTransient(response)) {
+					hint = retryHint(response);
+				}
+			}
+
+			boolean retry = false;
+			if (hint >= 0 && retryable && hint <= maxBackoffNanos) {
+				if (attempt >= maxAttempts) {
+					exhaustedCount.increment();
+				} else if (!budget.withdraw()) {
+					budgetExhaustedCount.increment();
+				} else {
+					retry = true;
+				}
+			}
+			if (!retry) {
+				attemptCounts.incrementAndGet(attempt - 1);
+				if (failure != null) {
+					throw failure;
+				}
+				return response;
+			}
+
+			if (response != null) {
+				response.close();
+			}
+			long delay = Math.max(hint, backoff(attempt));
+			log.debug("Retrying {} {} in {} ms after attempt {} failed", request.getMethod(), request.getURI().getPath(), TimeUnit.NANOSECONDS.toMillis(delay), attempt);
+			sleep(delay);
+			retryCount.increment();
+			attempt++;
+		}
+	}
+
+	/**
+	 * Full jitter: a random delay between 0 and the exponentially growing upper bound.
+	 */
+	private long backoff(int attempt) {
+		long bound = initialBackoffNanos << Math.min(attempt - 1, 30);
+		if (bound <= 0 || bound > maxBackoffNanos) {
+			bound = maxBackoffNanos;
+		}
+		return bound > 0 ? ThreadLocalRandom.current().nextLong(bound + 1) : 0;
+	}
+
+	private static void sleep(long delay) throws InterruptedIOException {
+		try {
+			TimeUnit.NANOSECONDS.sleep(delay);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting to retry");
+		}
+	}
+
+	private static boolean isTransient(ClientHttpResponse response) throws IOException {
+		JsonNode error = readError(response);
+		if (error != null) {
+			JsonNode isTransient = error.get("is_transient");
+			if (isTransient != null && isTransient.isBoolean()) {
+				return isTransient.booleanValue();
+			}
+			JsonNode code = error.get("code");
+			if (code != null && code.canConvertToInt()) {
+				return TRANSIENT_ERROR_CODES.contains(code.intValue());
+			}
+		}
+		int status = response.getRawStatusCode();
+		return HttpStatus.Series.valueOf(status) == HttpStatus.Series.SERVER_ERROR || status == HttpStatus.TOO_MANY_REQUESTS.value();
+	}
+
+	private static JsonNode readError(ClientHttpResponse response) {
+		try {
+			InputStream body = response.getBody();
+			if (body == null) {
+				return null;
+			}
+			JsonNode json = ERROR_READER.readValue(body);
+			return json != null ? json.get("error") : null;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * How long Facebook asked to wait before retrying, 0 if it did not say.
+	 */
+	private static long retryHint(ClientHttpResponse response) {
+		HttpHeaders headers = response.getHeaders();
+		String retryAfter = headers.getFirst(HttpHeaders.RETRY_AFTER);
+		if (retryAfter != null) {
+			try {
+				return TimeUnit.SECONDS.toNanos(Long.parseLong(retryAfter.trim()));
+			} catch (NumberFormatException e) {
+				log.debug("Ignoring Retry-After header that is not a number of seconds: {}", retryAfter);
+			}
+		}
+		long regainAccess = 0;
+		for (String header : Arrays.asList("X-App-Usage", "X-Page-Usage", "X-Business-Use-Case-Usage")) {
+			String usage = headers.getFirst(header);
+			if (usage != null) {
+				regainAccess = Math.max(regainAccess, estimatedTimeToRegainAccess(usage));
+			}
+		}
+		return TimeUnit.MINUTES.toNanos(regainAccess);
+	}
+
+	private static int estimatedTimeToRegainAccess(String usage) {
+		try {
+			int minutes = 0;
+			for (JsonNode node : ERROR_READER.<JsonNode>readValue(usage).findValues("estimated_time_to_regain_access")) {
+				minutes = Math.max(minutes, node.asInt());
+			}
+			return minutes;
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Each request deposits a fraction of a retry and each retry withdraws a whole one. The budget also refills with a
+	 * minimum number of retries per second so that a low traffic client can still retry.
+	 */
+	private static class RetryBudget {
+
+		private final double retryRatio;
+
+		private final double minRetriesPerNano;
+
+		private final double capacity;
+
+		private double balance;
+
+		private long refilledAt = System.nanoTime();
+
+		RetryBudget(double retryRatio, int minRetriesPerSecond) {
+			this.retryRatio = retryRatio;
+			this.minRetriesPerNano = (double) minRetriesPerSecond / TimeUnit.SECONDS.toNanos(1);
+			this.capacity = Math.max(1, minRetriesPerSecond);
+			this.balance = capacity;
+		}
+
+		synchronized void deposit() {
+			balance = Math.min(capacity, balance + retryRatio);
+		}
+
+		synchronized boolean withdraw() {
+			long now = System.nanoTime();
+			balance = Math.min(capacity, balance + (now - refilledAt) * minRetriesPerNano);
+			refilledAt = now;
+			if (balance < 1) {
+				return false;
+			}
+			balance -= 1;
+			return true;
+		}
+
+	}
+
+}
@@ -78,7 +78,10 @@ public class TestUserTemplate extends AbstractFacebookOperations implements Test
 	}
 	
 	public void sendConfirmFriends(TestUser testUser1, TestUser testUser2) {
-		RestOperations userRest = new FacebookTemplate(testUser1.getAccessToken()).restOperations();
+		FacebookTemplate userFacebook = graphApi instanceof FacebookTemplate
+				? ((FacebookTemplate) graphApi).forAccessToken(testUser1.getAccessToken())
+				: new FacebookTemplate(testUser1.getAccessToken());
+		RestOperations userRest = userFacebook.restOperations();
 		
 		userRest.postForObject(graphApi.getBaseGraphApiUrl() + "{testUserId1}/friends/{testUserId2}", "", String.class, testUser1.getId(), testUser2.getId());
 	}
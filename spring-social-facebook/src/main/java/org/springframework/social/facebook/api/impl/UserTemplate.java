@@ -15,6 +15,10 @@
  */
 package org.springframework.social.facebook.api.impl;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -107,6 +111,40 @@ class UserTemplate implements UserOperations {
 		return graphApi.fetchImage(userId, "picture", width, height);
 	}
 
+	@Override
+	public long getUserProfileImage(final String userId, final ImageType imageType,
+			final OutputStream out) {
+		return graphApi.fetchImage(userId, "picture", imageType, out);
+	}
+
+	@Override
+	public long getUserProfileImage(final String userId, final ImageType imageType,
+			final WritableByteChannel channel) {
+		return graphApi.fetchImage(userId, "picture", imageType, channel);
+	}
+
+	@Override
+	public long getUserProfileImage(final String userId, final ImageType imageType,
+			final Path file) {
+		return graphApi.fetchImage(userId, "picture", imageType, file);
+	}
+
+	@Override
+	public InputStream openUserProfileImage(final String userId, final ImageType imageType) {
+		return graphApi.openImage(userId, "picture", imageType);
+	}
+
+	@Override
+	public String getUserProfileImageUrl(final String userId, final ImageType imageType) {
+		return graphApi.fetchImageUrl(userId, "picture", imageType);
+	}
+
+	@Override
+	public String getUserProfileImageUrl(final String userId, final Integer width,
+			final Integer height) {
+		return graphApi.fetchImageUrl(userId, "picture", width, height);
+	}
+
 	@Override
 	public List<Permission> getUserPermissions() {
 		JsonNode responseNode = restTemplate.getForObject(
@@ -85,6 +85,13 @@ public class FacebookModule extends SimpleModule {
 
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * Name of the deserialization attribute holding the {@link Post.PostType} to assign to every {@link Post} read,
+	 * for use with connections that only contain one kind of post.
+	 * For example: {@code objectMapper.readerFor(Post.class).withAttribute(POST_TYPE_ATTRIBUTE, PostType.STATUS)}.
+	 */
+	public static final String POST_TYPE_ATTRIBUTE = "facebook.postType";
+
 	public FacebookModule() {
 		super("FacebookModule");
 	}
@@ -142,6 +149,7 @@ public class FacebookModule extends SimpleModule {
 		context.setMixInAnnotations(Post.class, PostMixin.class);
 		context.setMixInAnnotations(Post.AdminCreator.class, PostMixin.AdminCreatorMixin.class);
 		context.setMixInAnnotations(Post.Privacy.class, PostMixin.PrivacyMixin.class);
+		context.addBeanDeserializerModifier(new PostDeserializer.Modifier());
 		context.setMixInAnnotations(Account.class, AccountMixin.class);
 		context.setMixInAnnotations(GroupMembership.class, GroupMembershipMixin.class);
 		context.setMixInAnnotations(FamilyMember.class, FamilyMemberMixin.class);
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api.impl.json;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JavaType;
+
+/**
+ * Streaming helpers for the custom deserializers. Nested values are bound through the {@link DeserializationContext}
+ * of the mapper being used, which already has the {@link FacebookModule} registered, so no mapper or JSON tree is built
+ * per value.
+ */
+final class JsonStreams {
+
+	private JsonStreams() {
+	}
+
+	/**
+	 * Binds the "data" field of the object the parser is at, skipping its other fields.
+	 * @param jp the parser, at the start of the object.
+	 * @param ctxt the current deserialization context.
+	 * @param type the type to bind the "data" field to.
+	 * @return the bound "data" field, or null if the object does not have one or the value is not an object.
+	 */
+	static <T> T readData(JsonParser jp, DeserializationContext ctxt, JavaType type) throws IOException {
+		if (jp.currentToken() != JsonToken.START_OBJECT) {
+			jp.skipChildren();
+			return null;
+		}
+		T data = null;
+		while (jp.nextToken() == JsonToken.FIELD_NAME) {
+			String field = jp.getCurrentName();
+			if (jp.nextToken() != JsonToken.VALUE_NULL && "data".equals(field)) {
+				data = ctxt.readValue(jp, type);
+			} else {
+				jp.skipChildren();
+			}
+		}
+		return data;
+	}
+
+}
@@ -16,7 +16,7 @@
 package org.springframework.social.facebook.api.impl.json;
 
 import java.io.IOException;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -26,37 +26,47 @@ import org.springframework.social.facebook.api.MessageTag;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonDeserializer;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.JsonNodeType;
+import com.fasterxml.jackson.databind.type.TypeFactory;
 
+/**
+ * Reads a post's "message_tags", grouping the tags by their offset in the message.
+ * Graph API 2.3 returned them as an object keyed by offset, later versions as an array of tags.
+ */
 public class MessageTagMapDeserializer extends JsonDeserializer<Map<Integer,List<MessageTag>>> {
 
-	@SuppressWarnings({ "unchecked", "deprecation" })
+	private static final JavaType MESSAGE_TAG_LIST = TypeFactory.defaultInstance().constructCollectionType(List.class, MessageTag.class);
+
 	@Override
 	public Map<Integer,List<MessageTag>> deserialize(JsonParser jp, DeserializationContext ctxt)
 			throws IOException, JsonProcessingException {
-		ObjectMapper mapper = new ObjectMapper();
-		mapper.registerModule(new FacebookModule());
-		jp.setCodec(mapper);
-		if (jp.hasCurrentToken()) {
-			JsonNode dataNode = jp.readValueAs(JsonNode.class);
-			if (dataNode != null) {
-				if(dataNode.getNodeType().equals(JsonNodeType.OBJECT)) { // OLD STYLE, SUPPORTED IN GRAPH API 2.3
-					return (Map<Integer,List<MessageTag>>) mapper.reader(new TypeReference<Map<Integer,List<MessageTag>>>() {}).readValue(dataNode);
-				} else if (dataNode.getNodeType().equals(JsonNodeType.ARRAY)) { // NEW STYLE 2.4/2.5-ish
-					List<MessageTag> tagList = (List<MessageTag>) mapper.reader(new TypeReference<List<MessageTag>>() {}).readValue(dataNode);
-					Map<Integer, List<MessageTag>> messageTagMap = new HashMap<Integer, List<MessageTag>>();
-					for (MessageTag messageTag : tagList) {
-						messageTagMap.put(messageTag.getOffset(), Arrays.asList(messageTag));
-					}
+		JsonToken token = jp.currentToken();
+		if (token == JsonToken.START_OBJECT) { // OLD STYLE, SUPPORTED IN GRAPH API 2.3
+			Map<Integer, List<MessageTag>> messageTagMap = new HashMap<Integer, List<MessageTag>>();
+			while (jp.nextToken() == JsonToken.FIELD_NAME) {
+				Integer offset = Integer.valueOf(jp.getCurrentName());
+				jp.nextToken();
+				List<MessageTag> tags = ctxt.readValue(jp, MESSAGE_TAG_LIST);
+				messageTagMap.put(offset, tags);
+			}
+			return messageTagMap;
+		} else if (token == JsonToken.START_ARRAY) { // NEW STYLE 2.4/2.5-ish
+			Map<Integer, List<MessageTag>> messageTagMap = new HashMap<Integer, List<MessageTag>>();
+			while (jp.nextToken() != JsonToken.END_ARRAY) {
+				MessageTag messageTag = ctxt.readValue(jp, MessageTag.class);
+				List<MessageTag> tags = messageTagMap.get(messageTag.getOffset());
+				if (tags == null) {
+					tags = new ArrayList<MessageTag>(1);
+					messageTagMap.put(messageTag.getOffset(), tags);
 				}
-			} 
+				tags.add(messageTag);
+			}
+			return messageTagMap;
 		}
-		
+		jp.skipChildren();
 		return Collections.emptyMap();
 	}
 
@@ -19,21 +19,42 @@ import java.io.IOException;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
-import com.fasterxml.jackson.databind.JsonNode;
 
+/**
+ * Reads a "picture" field, which is either the URL of the picture or an object with the URL in data.url.
+ */
 class PictureDeserializer extends JsonDeserializer<String> {
 
 	@Override
 	public String deserialize(JsonParser jp, DeserializationContext ctxt) throws IOException, JsonProcessingException {
-		JsonNode node = jp.readValueAs(JsonNode.class);
-		if (node.isObject() && node.has("data")) {
-			return node.get("data").get("url").asText();
-		} else if (node.isTextual()) {
-			return node.asText();
+		if (jp.currentToken() == JsonToken.VALUE_STRING) {
+			return jp.getText();
+		}
+		if (jp.currentToken() != JsonToken.START_OBJECT) {
+			jp.skipChildren();
+			return null;
+		}
+		String url = null;
+		while (jp.nextToken() == JsonToken.FIELD_NAME) {
+			boolean data = "data".equals(jp.getCurrentName());
+			if (jp.nextToken() == JsonToken.START_OBJECT && data) {
+				while (jp.nextToken() == JsonToken.FIELD_NAME) {
+					boolean urlField = "url".equals(jp.getCurrentName());
+					jp.nextToken();
+					if (urlField) {
+						url = jp.getValueAsString();
+					} else {
+						jp.skipChildren();
+					}
+				}
+			} else {
+				jp.skipChildren();
+			}
 		}
-		return null;
-	}	
+		return url;
+	}
 
 }
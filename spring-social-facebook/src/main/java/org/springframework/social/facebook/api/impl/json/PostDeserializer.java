@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api.impl.json;
+
+import java.io.IOException;
+
+import org.springframework.social.facebook.api.Post;
+import org.springframework.social.facebook.api.Post.PostType;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerBase;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerModifier;
+import com.fasterxml.jackson.databind.deser.SettableBeanProperty;
+import com.fasterxml.jackson.databind.deser.std.DelegatingDeserializer;
+
+/**
+ * Deserializer for {@link Post} that binds the post straight from the parser and then applies the post type
+ * implied by the connection it was read from, if any.
+ * Connections such as "statuses" or "links" only contain one kind of post and do not always include the "type"
+ * field, so readers for those connections set the {@link FacebookModule#POST_TYPE_ATTRIBUTE} attribute.
+ * Otherwise, the type is taken from the "type" field as it is streamed, defaulting to {@link PostType#UNKNOWN}.
+ */
+class PostDeserializer extends DelegatingDeserializer {
+
+	private static final long serialVersionUID = 1L;
+
+	public PostDeserializer(JsonDeserializer<?> delegatee) {
+		super(delegatee);
+	}
+
+	@Override
+	protected JsonDeserializer<?> newDelegatingInstance(JsonDeserializer<?> newDelegatee) {
+		return new PostDeserializer(newDelegatee);
+	}
+
+	@Override
+	public Object deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+		Object post = super.deserialize(p, ctxt);
+		Object postType = ctxt.getAttribute(FacebookModule.POST_TYPE_ATTRIBUTE);
+		if (post != null && postType instanceof PostType && _delegatee instanceof BeanDeserializerBase) {
+			SettableBeanProperty typeProperty = ((BeanDeserializerBase) _delegatee).findProperty("type");
+			if (typeProperty != null) {
+				typeProperty.set(post, postType);
+			}
+		}
+		return post;
+	}
+
+	static class Modifier extends BeanDeserializerModifier {
+
+		@Override
+		public JsonDeserializer<?> modifyDeserializer(DeserializationConfig config, BeanDescription beanDesc, JsonDeserializer<?> deserializer) {
+			if (beanDesc.getBeanClass() == Post.class) {
+				return new PostDeserializer(deserializer);
+			}
+			return deserializer;
+		}
+
+	}
+
+}
@@ -23,26 +23,18 @@ import org.springframework.social.facebook.api.Reference;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonDeserializer;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.type.TypeFactory;
 
 class ReferenceListDeserializer extends JsonDeserializer<List<Reference>> {
-	@SuppressWarnings("unchecked")
+
+	private static final JavaType REFERENCE_LIST = TypeFactory.defaultInstance().constructCollectionType(List.class, Reference.class);
+
 	@Override
 	public List<Reference> deserialize(JsonParser jp, DeserializationContext ctxt) throws IOException, JsonProcessingException {
-		ObjectMapper mapper = new ObjectMapper();
-		mapper.registerModule(new FacebookModule());
-		jp.setCodec(mapper);
-		if (jp.hasCurrentToken()) {
-			JsonNode dataNode = (JsonNode) jp.readValueAs(JsonNode.class).get("data");
-			if (dataNode != null) {
-				return (List<Reference>) mapper.readerFor(new TypeReference<List<Reference>>() {}).readValue(dataNode);
-			}
-		}
-		
-		return Collections.emptyList();
+		List<Reference> references = JsonStreams.readData(jp, ctxt, REFERENCE_LIST);
+		return references != null ? references : Collections.<Reference>emptyList();
 	}
 }
@@ -22,24 +22,17 @@ import org.springframework.social.facebook.api.Tag;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonDeserializer;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.type.TypeFactory;
 
 class TagListDeserializer extends JsonDeserializer<List<Tag>> {
-	@SuppressWarnings("unchecked")
+
+	private static final JavaType TAG_LIST = TypeFactory.defaultInstance().constructCollectionType(List.class, Tag.class);
+
 	@Override
 	public List<Tag> deserialize(JsonParser jp, DeserializationContext ctxt) throws IOException, JsonProcessingException {
-		ObjectMapper mapper = new ObjectMapper();
-		mapper.registerModule(new FacebookModule());
-		jp.setCodec(mapper);
-		if(jp.hasCurrentToken()) {
-			JsonNode dataNode = (JsonNode) jp.readValueAs(JsonNode.class).get("data");
-			return (List<Tag>) mapper.readerFor(new TypeReference<List<Tag>>() {}).readValue(dataNode);
-		}
-		
-		return null;
+		return JsonStreams.readData(jp, ctxt, TAG_LIST);
 	}
 }
@@ -34,9 +34,9 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 
 /**
@@ -175,11 +175,23 @@ abstract class UserMixin extends FacebookObjectMixin {
 		@Override
 		public AgeRange deserialize(final JsonParser jp, final DeserializationContext ctxt)
 				throws IOException, JsonProcessingException {
-			JsonNode ageRangeNode = jp.readValueAs(JsonNode.class);
-			JsonNode minNode = ageRangeNode.get("min");
-			JsonNode maxNode = ageRangeNode.get("max");
-			Integer min = minNode != null ? minNode.asInt() : null;
-			Integer max = maxNode != null ? maxNode.asInt() : null;
+			Integer min = null;
+			Integer max = null;
+			if (jp.currentToken() == JsonToken.START_OBJECT) {
+				while (jp.nextToken() == JsonToken.FIELD_NAME) {
+					String field = jp.getCurrentName();
+					jp.nextToken();
+					if ("min".equals(field)) {
+						min = jp.getValueAsInt();
+					} else if ("max".equals(field)) {
+						max = jp.getValueAsInt();
+					} else {
+						jp.skipChildren();
+					}
+				}
+			} else {
+				jp.skipChildren();
+			}
 			return AgeRange.fromMinMax(min, max);
 		}
 	}
@@ -26,10 +26,10 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonDeserializer;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.type.TypeFactory;
 
 /**
  * Annotated mixin to add Jackson annotations to UserTaggableFriend. 
@@ -48,12 +48,11 @@ abstract class UserTaggableFriendMixin extends FacebookObject {
 			@JsonProperty("picture") @JsonDeserialize(using=PictureDeserializer.class) ProfilePictureSource picture) {}
 
 	private static class PictureDeserializer extends JsonDeserializer<ProfilePictureSource> {
+		private static final JavaType PROFILE_PICTURE_SOURCE = TypeFactory.defaultInstance().constructType(ProfilePictureSource.class);
+
 		@Override
 		public ProfilePictureSource deserialize(JsonParser jp, DeserializationContext ctxt) throws IOException, JsonProcessingException {
-			ObjectMapper mapper = new ObjectMapper();
-			mapper.registerModule(new FacebookModule());
-			JsonNode dataNode = (JsonNode) jp.readValueAs(JsonNode.class).get("data");
-			return (ProfilePictureSource) mapper.readerFor(ProfilePictureSource.class).readValue(dataNode);
+			return JsonStreams.readData(jp, ctxt, PROFILE_PICTURE_SOURCE);
 		}
 	}
 
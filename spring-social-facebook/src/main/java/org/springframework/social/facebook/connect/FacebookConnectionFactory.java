@@ -45,4 +45,16 @@ public class FacebookConnectionFactory extends OAuth2ConnectionFactory<Facebook>
 		super("facebook", new FacebookServiceProvider(appId, appSecret, appNamespace), new FacebookAdapter());
 	}
 
+	/**
+	 * Creates a FacebookConnectionFactory for the given application ID, secret, and namespace, talking to the given
+	 * Graph API URL (e.g. a proxy or a local stub of the Graph API) instead of Facebook's.
+	 * @param appId The application's App ID as assigned by Facebook 
+	 * @param appSecret The application's App Secret as assigned by Facebook
+	 * @param appNamespace The application's App Namespace as configured with Facebook. Enables use of Open Graph operations.
+	 * @param graphApiUrl The root URL of the Graph API, to which the API version and the request paths are appended.
+	 */
+	public FacebookConnectionFactory(String appId, String appSecret, String appNamespace, String graphApiUrl) {
+		super("facebook", new FacebookServiceProvider(appId, appSecret, appNamespace, graphApiUrl), new FacebookAdapter());
+	}
+
 }
@@ -16,9 +16,11 @@
 package org.springframework.social.facebook.connect;
 
 import org.springframework.social.facebook.api.Facebook;
+import org.springframework.social.facebook.api.impl.FacebookClientFactory;
 import org.springframework.social.facebook.api.impl.FacebookTemplate;
 import org.springframework.social.oauth2.AbstractOAuth2ServiceProvider;
 import org.springframework.social.oauth2.OAuth2Template;
+import org.springframework.util.Assert;
 
 /**
  * Facebook ServiceProvider implementation.
@@ -27,17 +29,10 @@ import org.springframework.social.oauth2.OAuth2Template;
  */
 public class FacebookServiceProvider extends AbstractOAuth2ServiceProvider<Facebook> {
 
-	private String appNamespace;
-
-	private String appSecret;
-
-	private String appId;
+	private final FacebookClientFactory clientFactory;
 
 	private static final String API_VERSION = Facebook.DEFAULT_API_VERSION;
 
-	private static final String GRAPH_API_URL = "https://graph.facebook.com/v" + API_VERSION + "/";
-
-
 	/**
 	 * Creates a FacebookServiceProvider for the given application ID, secret, and namespace.
 	 * @param appId The application's App ID as assigned by Facebook 
@@ -45,22 +40,36 @@ public class FacebookServiceProvider extends AbstractOAuth2ServiceProvider<Faceb
 	 * @param appNamespace The application's App Namespace as configured with Facebook. Enables use of Open Graph operations.
 	 */
 	public FacebookServiceProvider(String appId, String appSecret, String appNamespace) {
-		super(getOAuth2Template(appId, appSecret));
-		this.appNamespace = appNamespace;
-		this.appSecret = appSecret;
-		this.appId = appId;
+		this(appId, appSecret, appNamespace, FacebookTemplate.DEFAULT_GRAPH_API_URL);
+	}
+
+	/**
+	 * Creates a FacebookServiceProvider for the given application ID, secret, and namespace, sending the access token
+	 * requests and the API requests to the given Graph API URL (e.g. a proxy or a local stub of the Graph API).
+	 * @param appId The application's App ID as assigned by Facebook 
+	 * @param appSecret The application's App Secret as assigned by Facebook
+	 * @param appNamespace The application's App Namespace as configured with Facebook. Enables use of Open Graph operations.
+	 * @param graphApiUrl The root URL of the Graph API, to which the API version and the request paths are appended.
+	 */
+	public FacebookServiceProvider(String appId, String appSecret, String appNamespace, String graphApiUrl) {
+		super(getOAuth2Template(appId, appSecret, graphApiUrl));
+		this.clientFactory = new FacebookClientFactory(appId, appSecret);
+		this.clientFactory.setApplicationNamespace(appNamespace);
+		this.clientFactory.setGraphApiUrl(graphApiUrl);
 	}
 	
-	private static OAuth2Template getOAuth2Template(String appId, String appSecret) {
+	private static OAuth2Template getOAuth2Template(String appId, String appSecret, String graphApiUrl) {
+		Assert.hasText(graphApiUrl, "graphApiUrl must not be empty");
+		String rootUrl = graphApiUrl.endsWith("/") ? graphApiUrl : graphApiUrl + "/";
 		OAuth2Template oAuth2Template = new OAuth2Template(appId, appSecret,
 				"https://www.facebook.com/v" + API_VERSION + "/dialog/oauth",
-				GRAPH_API_URL + "oauth/access_token");
+				rootUrl + "v" + API_VERSION + "/oauth/access_token");
 		oAuth2Template.setUseParametersForClientAuthentication(true);
 		return oAuth2Template;
 	}
 
 	public Facebook getApi(String accessToken) {
-		return new FacebookTemplate(accessToken, appNamespace, appId, appSecret);
+		return clientFactory.getFacebook(accessToken);
 	}
 	
 }
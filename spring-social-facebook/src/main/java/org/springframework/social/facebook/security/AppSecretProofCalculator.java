@@ -0,0 +1,120 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.security.crypto.codec.Hex;
+
+/**
+ * <p>
+ * Calculates the appsecret_proof (the hex-encoded HMAC-SHA256 of an access token, keyed with the app secret) Facebook
+ * requires when "Require App Secret" is enabled.
+ * </p>
+ * <p>
+ * Each thread reuses its own {@link Mac}, initialized once with the app secret, and the proofs of the most recently used
+ * access tokens are cached so that a client shared between many tokens does not recompute them on every request.
+ * </p>
+ * <p>
+ * Instances are thread-safe.
+ * </p>
+ */
+public class AppSecretProofCalculator {
+
+	/**
+	 * The default number of access tokens whose proof is cached.
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 1024;
+
+	private static final String ALGORITHM = "HmacSHA256";
+
+	private final SecretKeySpec secretKey;
+
+	private final ThreadLocal<Mac> macs;
+
+	private final Map<String, String> proofs;
+
+	public AppSecretProofCalculator(String appSecret) {
+		this(appSecret, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * @param appSecret the application's App Secret
+	 * @param cacheSize the maximum number of access tokens whose proof is cached; 0 disables caching
+	 * @throws IllegalArgumentException if the app secret is null or cannot be used as an HMAC-SHA256 key
+	 * @throws IllegalStateException if HMAC-SHA256 is not supported by the JVM
+	 */
+	public AppSecretProofCalculator(String appSecret, final int cacheSize) {
+		if (appSecret == null) {
+			throw new IllegalArgumentException("An app secret is required to calculate the appsecret_proof");
+		}
+		this.secretKey = new SecretKeySpec(appSecret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+		this.macs = new ThreadLocal<Mac>() {
+			@Override
+			protected Mac initialValue() {
+				return createMac();
+			}
+		};
+		// fail fast on an unusable secret rather than on the first request
+		this.macs.get();
+		this.proofs = new LinkedHashMap<String, String>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	/**
+	 * @param accessToken the access token to prove
+	 * @return the hex-encoded appsecret_proof of the access token
+	 */
+	public String calculate(String accessToken) {
+		synchronized (proofs) {
+			String proof = proofs.get(accessToken);
+			if (proof != null) {
+				return proof;
+			}
+		}
+		String proof = new String(Hex.encode(macs.get().doFinal(accessToken.getBytes(StandardCharsets.UTF_8))));
+		synchronized (proofs) {
+			proofs.put(accessToken, proof);
+		}
+		return proof;
+	}
+
+	private Mac createMac() {
+		try {
+			Mac mac = Mac.getInstance(ALGORITHM);
+			mac.init(secretKey);
+			return mac;
+		} catch (InvalidKeyException e) {
+			throw new IllegalArgumentException("The app secret cannot be used to calculate the appsecret_proof", e);
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException("Unable to calculate the appsecret_proof", e);
+		}
+	}
+
+}
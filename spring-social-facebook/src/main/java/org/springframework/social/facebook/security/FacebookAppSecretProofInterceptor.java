@@ -4,12 +4,11 @@ import org.springframework.http.HttpRequest;
 import org.springframework.http.client.ClientHttpRequestExecution;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
 import org.springframework.http.client.ClientHttpResponse;
-import org.springframework.security.crypto.codec.Hex;
-import org.springframework.social.support.HttpRequestDecorator;
+import org.springframework.http.client.support.HttpRequestWrapper;
+import org.springframework.web.util.UriComponentsBuilder;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 import java.io.IOException;
+import java.net.URI;
 
 /*
  * Copyright 2002-2015 the original author or authors.
@@ -28,38 +27,51 @@ import java.io.IOException;
  */
 
 /**
+ * Adds the appsecret_proof parameter to each request.
+ * The proof is calculated once, when the interceptor is created, and an error is raised then if it cannot be
+ * calculated rather than sending requests with an empty proof.
+ *
  * @author Ariel Himmelstern
  */
 public class FacebookAppSecretProofInterceptor implements ClientHttpRequestInterceptor {
 
-    private final String appSecret;
-    private final String appToken;
-    private static final String algorithm = "HmacSHA256";
+    private static final String APPSECRET_PROOF_PARAMETER = "appsecret_proof";
+
+    private final String appSecretProof;
 
+    /**
+     * @param appToken the access token sent with each request
+     * @param appSecret the application's App Secret
+     * @throws IllegalArgumentException if the proof cannot be calculated with the given app secret
+     */
     public FacebookAppSecretProofInterceptor(String appToken, String appSecret) {
-        this.appSecret = appSecret;
-        this.appToken = appToken;
+        this(appToken, new AppSecretProofCalculator(appSecret, 0));
+    }
+
+    /**
+     * Creates an interceptor whose proof comes from a calculator shared by the templates of many access tokens.
+     * @param appToken the access token sent with each request
+     * @param appSecretProofCalculator the calculator keyed with the application's App Secret
+     */
+    public FacebookAppSecretProofInterceptor(String appToken, AppSecretProofCalculator appSecretProofCalculator) {
+        this.appSecretProof = appSecretProofCalculator.calculate(appToken);
     }
 
     @Override
     public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
-        HttpRequestDecorator protectedResourceRequest = new HttpRequestDecorator(request);
-
-        String appSecreteProof = calculateAppSecretProof(appToken, appSecret);
-        protectedResourceRequest.addParameter("appsecret_proof", appSecreteProof);
-        return execution.execute(protectedResourceRequest, body);
+        return execution.execute(withAppSecretProof(request), body);
     }
 
-    private String calculateAppSecretProof(String token, String appSecret) {
-        try {
-            Mac mac = Mac.getInstance(algorithm);
-            SecretKeySpec secretKey = new SecretKeySpec(appSecret.getBytes("UTF-8"), algorithm);
-            mac.init(secretKey);
-            byte[] digest = mac.doFinal(token.getBytes());
-            return new String(Hex.encode(digest));
-        } catch (Exception e) {
-            return "";
-        }
-
+    private HttpRequest withAppSecretProof(HttpRequest request) {
+        final URI uri = UriComponentsBuilder.fromUri(request.getURI())
+                .queryParam(APPSECRET_PROOF_PARAMETER, appSecretProof)
+                .build(true)
+                .toUri();
+        return new HttpRequestWrapper(request) {
+            @Override
+            public URI getURI() {
+                return uri;
+            }
+        };
     }
 }
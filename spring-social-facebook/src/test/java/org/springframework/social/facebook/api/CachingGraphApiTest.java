@@ -0,0 +1,220 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.http.HttpMethod.*;
+import static org.springframework.test.web.client.ExpectedCount.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.*;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.social.ResourceNotFoundException;
+import org.springframework.social.facebook.api.impl.CachingGraphApi;
+import org.springframework.social.facebook.api.impl.GraphObjectCache;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+public class CachingGraphApiTest extends AbstractFacebookApiTest {
+
+	@Test
+	public void fetchObject_cachedPerFieldSet() {
+		mockServer.expect(once(), requestTo(fbUrl("me?fields=id%2Cname")))
+			.andExpect(method(GET))
+			.andRespond(withSuccess(jsonResource("minimal-profile"), MediaType.APPLICATION_JSON));
+		mockServer.expect(once(), requestTo(fbUrl("me?fields=id")))
+			.andExpect(method(GET))
+			.andRespond(withSuccess(jsonResource("minimal-profile"), MediaType.APPLICATION_JSON));
+		GraphObjectCache cache = new GraphObjectCache(100, 1, TimeUnit.MINUTES);
+		CachingGraphApi graphApi = new CachingGraphApi(facebook, cache, "user1");
+
+		User user = graphApi.fetchObject("me", User.class, "id", "name");
+		assertEquals("123456789", user.getId());
+		assertSame(user, graphApi.fetchObject("me", User.class, "name", "id"));
+		assertNotSame(user, graphApi.fetchObject("me", User.class, "id"));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+		assertEquals(2, cache.size());
+		mockServer.verify();
+	}
+
+	@Test
+	public void fetchObject_scopedPerToken() {
+		mockServer.expect(twice(), requestTo(fbUrl("me")))
+			.andExpect(method(GET))
+			.andRespond(withSuccess(jsonResource("minimal-profile"), MediaType.APPLICATION_JSON));
+		GraphObjectCache cache = new GraphObjectCache(100, 1, TimeUnit.MINUTES);
+		new CachingGraphApi(facebook, cache, "user1").fetchObject("me", User.class);
+		new CachingGraphApi(facebook, cache, "user2").fetchObject("me", User.class);
+		new CachingGraphApi(facebook, cache, "user2").fetchObject("me", User.class);
+		assertEquals(1, cache.getHitCount());
+		mockServer.verify();
+	}
+
+	@Test
+	public void fetchObject_expires() throws Exception {
+		mockServer.expect(twice(), requestTo(fbUrl("me")))
+			.andExpect(method(GET))
+			.andRespond(withSuccess(jsonResource("minimal-profile"), MediaType.APPLICATION_JSON));
+		GraphObjectCache cache = new GraphObjectCache(100, 1, TimeUnit.MILLISECONDS);
+		CachingGraphApi graphApi = new CachingGraphApi(facebook, cache, null);
+		graphApi.fetchObject("me", User.class);
+		Thread.sleep(5);
+		graphApi.fetchObject("me", User.class);
+		assertEquals(0, cache.getHitCount());
+		assertEquals(1, cache.getEvictionCount());
+		mockServer.verify();
+	}
+
+	@Test
+	public void fetchObject_evictsLeastRecentlyUsed() {
+		MultiValueMap<String, String> parameters = new LinkedMultiValueMap<String, String>();
+		mockServer.expect(twice(), requestTo(fbUrl("1")))
+			.andExpect(method(GET))
+			.andRespond(withSuccess(jsonResource("minimal-profile"), MediaType.APPLICATION_JSON));
+		mockServer.expect(once(), requestTo(fbUrl("2")))
+			.andExpect(method(GET))
+			.andRespond(withSuccess(jsonResource("minimal-profile"), MediaType.APPLICATION_JSON));
+		GraphObjectCache cache = new GraphObjectCache(1, 1, TimeUnit.MINUTES);
+		CachingGraphApi graphApi = new CachingGraphApi(facebook, cache, null);
+		graphApi.fetchObject("1", User.class, parameters);
+		graphApi.fetchObject("2", User.class, parameters);
+		graphApi.fetchObject("1", User.class, parameters);
+		assertEquals(2, cache.getEvictionCount());
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void fetchObject_notFoundIsCached() {
+		mockServer.expect(once(), requestTo(fbUrl("dummyalias")))
+			.andExpect(method(GET))
+			.andRespond(withStatus(HttpStatus.BAD_REQUEST).body(jsonResource("error-803-unknownAlias")).contentType(MediaType.APPLICATION_JSON));
+		GraphObjectCache cache = new GraphObjectCache(100, 1, TimeUnit.MINUTES);
+		CachingGraphApi graphApi = new CachingGraphApi(facebook, cache, null);
+		for (int i = 0; i < 2; i++) {
+			try {
+				graphApi.fetchObject("dummyalias", User.class);
+				fail("Expected ResourceNotFoundException");
+			} catch (ResourceNotFoundException e) {
+				assertEquals("facebook", e.getProviderId());
+			}
+		}
+		assertEquals(1, cache.getNotFoundHitCount());
+		mockServer.verify();
+	}
+
+	@Test
+	public void delete_invalidatesObject() {
+		GraphObjectCache cache = new GraphObjectCache(100, 1, TimeUnit.MINUTES);
+		GraphApi delegate = mock(GraphApi.class);
+		when(delegate.fetchObject("123", User.class)).thenReturn(new User("123", "Craig", "Craig", "Walls", null));
+		CachingGraphApi graphApi = new CachingGraphApi(delegate, cache, null);
+		graphApi.fetchObject("123", User.class);
+		graphApi.delete("123");
+		graphApi.fetchObject("123", User.class);
+		verify(delegate, Mockito.times(2)).fetchObject("123", User.class);
+		verify(delegate).delete("123");
+	}
+
+	@Test
+	public void fetchObject_queryParametersCachedRegardlessOfFieldOrder() {
+		GraphObjectCache cache = new GraphObjectCache(100, 1, TimeUnit.MINUTES);
+		GraphApi delegate = mock(GraphApi.class);
+		MultiValueMap<String, String> parameters = new LinkedMultiValueMap<String, String>();
+		parameters.set("fields", "name,id");
+		MultiValueMap<String, String> reorderedParameters = new LinkedMultiValueMap<String, String>();
+		reorderedParameters.set("fields", "id, name");
+		when(delegate.fetchObject("123", User.class, parameters)).thenReturn(new User("123", "Craig", "Craig", "Walls", null));
+		CachingGraphApi graphApi = new CachingGraphApi(delegate, cache, null);
+		User user = graphApi.fetchObject("123", User.class, parameters);
+		assertSame(user, graphApi.fetchObject("123", User.class, reorderedParameters));
+		assertSame(user, graphApi.fetchObject("123", User.class, "id", "name"));
+		verify(delegate, Mockito.times(1)).fetchObject("123", User.class, parameters);
+	}
+
+	@Test
+	public void invalidate_duringLoad_doesNotCacheLoadedObject() {
+		final GraphObjectCache cache = new GraphObjectCache(100, 1, TimeUnit.MINUTES);
+		GraphApi delegate = mock(GraphApi.class);
+		when(delegate.fetchObject("123", User.class)).thenAnswer(new Answer<User>() {
+			public User answer(InvocationOnMock invocation) throws Throwable {
+				// the object changes while Facebook is answering with its former state
+				cache.invalidate(null, "123");
+				return new User("123", "Craig", "Craig", "Walls", null);
+			}
+		});
+		CachingGraphApi graphApi = new CachingGraphApi(delegate, cache, null);
+		graphApi.fetchObject("123", User.class);
+		assertEquals(0, cache.size());
+		graphApi.fetchObject("123", User.class);
+		verify(delegate, Mockito.times(2)).fetchObject("123", User.class);
+	}
+
+	@Test
+	public void fetchObject_concurrentMissesCallFacebookOnce() throws Exception {
+		final CountDownLatch loading = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		GraphApi delegate = mock(GraphApi.class);
+		when(delegate.fetchObject("123", User.class)).thenAnswer(new Answer<User>() {
+			public User answer(InvocationOnMock invocation) throws Throwable {
+				loading.countDown();
+				release.await(5, TimeUnit.SECONDS);
+				return new User("123", "Craig", "Craig", "Walls", null);
+			}
+		});
+		GraphObjectCache cache = new GraphObjectCache(100, 1, TimeUnit.MINUTES);
+		final CachingGraphApi graphApi = new CachingGraphApi(delegate, cache, null);
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<User>> users = new ArrayList<Future<User>>();
+		for (int i = 0; i < 4; i++) {
+			users.add(executor.submit(new Callable<User>() {
+				public User call() {
+					return graphApi.fetchObject("123", User.class);
+				}
+			}));
+			if (i == 0) {
+				loading.await(5, TimeUnit.SECONDS);
+			}
+		}
+		while (cache.getMissCount() < 4) {
+			Thread.sleep(1);
+		}
+		release.countDown();
+		for (Future<User> user : users) {
+			assertSame(users.get(0).get(), user.get());
+		}
+		executor.shutdown();
+		assertEquals(1, cache.getLoadCount());
+		verify(delegate, Mockito.times(1)).fetchObject("123", User.class);
+	}
+
+}
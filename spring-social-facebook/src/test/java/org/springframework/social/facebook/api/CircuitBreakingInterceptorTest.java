@@ -0,0 +1,284 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api;
+
+import static org.junit.Assert.*;
+import static org.springframework.http.HttpMethod.*;
+import static org.springframework.test.web.client.ExpectedCount.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.*;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.social.ServerDownException;
+import org.springframework.social.ServerException;
+import org.springframework.social.ServerOverloadedException;
+import org.springframework.social.facebook.api.impl.CircuitBreakingInterceptor;
+import org.springframework.social.facebook.api.impl.CircuitBreakingInterceptor.State;
+import org.springframework.social.facebook.api.impl.FacebookClientFactory;
+import org.springframework.social.facebook.api.impl.FacebookTemplate;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.test.web.client.ResponseCreator;
+
+public class CircuitBreakingInterceptorTest {
+
+	private static final String BASE_URL = "https://graph.facebook.com/v" + Facebook.DEFAULT_API_VERSION + "/";
+
+	@Test
+	public void opensOnFailuresOfOneFamilyOnly() {
+		CircuitBreakingInterceptor circuitBreaker = circuitBreaker(1, TimeUnit.MINUTES);
+		FacebookTemplate facebook = facebook(circuitBreaker);
+		MockRestServiceServer mockServer = MockRestServiceServer.createServer(facebook.getRestTemplate());
+		mockServer.expect(times(4), requestTo(BASE_URL + "me/feed"))
+			.andExpect(method(GET))
+			.andRespond(serviceUnavailable());
+		mockServer.expect(once(), requestTo(BASE_URL + "me"))
+			.andExpect(method(GET))
+			.andRespond(withSuccess("{\"id\":\"123\"}", MediaType.APPLICATION_JSON));
+
+		for (int i = 0; i < 4; i++) {
+			try {
+				facebook.fetchConnections("me", "feed", Post.class);
+				fail("Expected ServerException");
+			} catch (ServerException e) {
+				// the feed is down
+			}
+		}
+		assertEquals(State.OPEN, circuitBreaker.getState("feed"));
+		assertEquals(100, circuitBreaker.getFailureRate("feed"));
+		try {
+			facebook.fetchConnections("me", "feed", Post.class);
+			fail("Expected ServerDownException");
+		} catch (ServerDownException e) {
+			// rejected without being sent
+		}
+		assertEquals(1, circuitBreaker.getShortCircuitedCount("feed"));
+
+		assertEquals("123", facebook.fetchObject("me", User.class).getId());
+		assertEquals(State.CLOSED, circuitBreaker.getState(CircuitBreakingInterceptor.OBJECT_FAMILY));
+		assertEquals(Arrays.asList("feed", "object"), Arrays.asList(circuitBreaker.getEndpointFamilies().toArray()));
+		mockServer.verify();
+	}
+
+	@Test
+	public void halfOpenProbeClosesCircuit() throws Exception {
+		CircuitBreakingInterceptor circuitBreaker = circuitBreaker(20, TimeUnit.MILLISECONDS);
+		FacebookTemplate facebook = facebook(circuitBreaker);
+		MockRestServiceServer mockServer = MockRestServiceServer.createServer(facebook.getRestTemplate());
+		mockServer.expect(times(4), requestTo(BASE_URL + "search?q=coffee&type=page"))
+			.andRespond(serviceUnavailable());
+		mockServer.expect(once(), requestTo(BASE_URL + "search?q=coffee&type=page"))
+			.andRespond(withSuccess("{\"data\":[]}", MediaType.APPLICATION_JSON));
+
+		for (int i = 0; i < 4; i++) {
+			try {
+				facebook.pageOperations().search("coffee");
+				fail("Expected ServerException");
+			} catch (ServerException e) {
+				// search is down
+			}
+		}
+		assertEquals(State.OPEN, circuitBreaker.getState(CircuitBreakingInterceptor.SEARCH_FAMILY));
+		Thread.sleep(30);
+		assertEquals(0, facebook.pageOperations().search("coffee").size());
+		assertEquals(State.CLOSED, circuitBreaker.getState(CircuitBreakingInterceptor.SEARCH_FAMILY));
+		mockServer.verify();
+	}
+
+	@Test
+	public void halfOpenProbeFailureReopensCircuit() throws Exception {
+		CircuitBreakingInterceptor circuitBreaker = circuitBreaker(20, TimeUnit.MILLISECONDS);
+		FacebookTemplate facebook = facebook(circuitBreaker);
+		MockRestServiceServer mockServer = MockRestServiceServer.createServer(facebook.getRestTemplate());
+		mockServer.expect(times(5), requestTo(BASE_URL + "me/feed"))
+			.andRespond(serviceUnavailable());
+
+		for (int i = 0; i < 5; i++) {
+			try {
+				facebook.fetchConnections("me", "feed", Post.class);
+				fail("Expected ServerException");
+			} catch (ServerException e) {
+				// the feed is down
+			}
+			if (i == 3) {
+				assertEquals(State.OPEN, circuitBreaker.getState("feed"));
+				Thread.sleep(30);
+			}
+		}
+		assertEquals(State.OPEN, circuitBreaker.getState("feed"));
+		assertEquals(5, circuitBreaker.getFailureCount("feed"));
+		mockServer.verify();
+	}
+
+	@Test
+	public void bulkheadRejectsExcessConcurrentCalls() throws Exception {
+		final CircuitBreakingInterceptor circuitBreaker = circuitBreaker(1, TimeUnit.MINUTES);
+		circuitBreaker.setMaxConcurrentCalls("feed", 1);
+		final CountDownLatch sending = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final HttpRequest feedRequest = new MockClientHttpRequest(GET, URI.create(BASE_URL + "me/feed"));
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		Future<ClientHttpResponse> slowCall = executor.submit(new Callable<ClientHttpResponse>() {
+			public ClientHttpResponse call() throws IOException {
+				return circuitBreaker.intercept(feedRequest, new byte[0], new ClientHttpRequestExecution() {
+					public ClientHttpResponse execute(HttpRequest request, byte[] body) throws IOException {
+						sending.countDown();
+						try {
+							release.await(5, TimeUnit.SECONDS);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+						return new MockClientHttpResponse(new byte[0], HttpStatus.OK);
+					}
+				});
+			}
+		});
+		sending.await(5, TimeUnit.SECONDS);
+		assertEquals(1, circuitBreaker.getActiveCallCount("feed"));
+
+		try {
+			circuitBreaker.intercept(feedRequest, new byte[0], respondingWith(HttpStatus.OK));
+			fail("Expected ServerOverloadedException");
+		} catch (ServerOverloadedException e) {
+			// the only slot is taken by the slow call
+		}
+		HttpRequest pictureRequest = new MockClientHttpRequest(GET, URI.create(BASE_URL + "me/picture"));
+		ClientHttpResponse pictureResponse = circuitBreaker.intercept(pictureRequest, new byte[0], respondingWith(HttpStatus.OK));
+		assertEquals(HttpStatus.OK, pictureResponse.getStatusCode());
+		pictureResponse.close();
+
+		release.countDown();
+		ClientHttpResponse slowResponse = slowCall.get();
+		assertEquals(HttpStatus.OK, slowResponse.getStatusCode());
+		slowResponse.close();
+		executor.shutdown();
+		assertEquals(1, circuitBreaker.getRejectedCount("feed"));
+		assertEquals(0, circuitBreaker.getActiveCallCount("feed"));
+		assertEquals(1, circuitBreaker.getSuccessCount("feed"));
+	}
+
+	@Test
+	public void bulkheadSlotHeldUntilResponseClosed() throws Exception {
+		CircuitBreakingInterceptor circuitBreaker = circuitBreaker(1, TimeUnit.MINUTES);
+		HttpRequest feedRequest = new MockClientHttpRequest(GET, URI.create(BASE_URL + "me/feed"));
+		ClientHttpResponse response = circuitBreaker.intercept(feedRequest, new byte[0], respondingWith(HttpStatus.OK));
+		assertEquals(1, circuitBreaker.getActiveCallCount("feed"));
+		assertEquals(0, circuitBreaker.getSuccessCount("feed"));
+
+		response.close();
+		response.close();
+		assertEquals(0, circuitBreaker.getActiveCallCount("feed"));
+		assertEquals(1, circuitBreaker.getSuccessCount("feed"));
+	}
+
+	@Test
+	public void slowBodyCountsAsSlowCall() throws Exception {
+		CircuitBreakingInterceptor circuitBreaker = circuitBreaker(1, TimeUnit.MINUTES);
+		circuitBreaker.setSlowCallDuration(20, TimeUnit.MILLISECONDS);
+		HttpRequest feedRequest = new MockClientHttpRequest(GET, URI.create(BASE_URL + "me/feed"));
+		ClientHttpResponse response = circuitBreaker.intercept(feedRequest, new byte[0], respondingWith(HttpStatus.OK));
+		Thread.sleep(30);
+		response.close();
+		assertEquals(1, circuitBreaker.getFailureCount("feed"));
+	}
+
+	@Test
+	public void bodyReadFailureCountsAsFailure() throws Exception {
+		CircuitBreakingInterceptor circuitBreaker = circuitBreaker(1, TimeUnit.MINUTES);
+		HttpRequest feedRequest = new MockClientHttpRequest(GET, URI.create(BASE_URL + "me/feed"));
+		ClientHttpResponse response = circuitBreaker.intercept(feedRequest, new byte[0], new ClientHttpRequestExecution() {
+			public ClientHttpResponse execute(HttpRequest request, byte[] body) {
+				return new MockClientHttpResponse(new InputStream() {
+					@Override
+					public int read() throws IOException {
+						throw new IOException("Connection reset");
+					}
+				}, HttpStatus.OK);
+			}
+		});
+		try {
+			response.getBody().read();
+			fail("Expected IOException");
+		} catch (IOException e) {
+			// the connection broke while reading the body
+		}
+		response.close();
+		assertEquals(1, circuitBreaker.getFailureCount("feed"));
+		assertEquals(0, circuitBreaker.getSuccessCount("feed"));
+	}
+
+	@Test
+	public void endpointFamilyFollowsVersionAfterUrlPrefix() throws Exception {
+		CircuitBreakingInterceptor circuitBreaker = circuitBreaker(1, TimeUnit.MINUTES);
+		String prefixedUrl = "http://localhost:8080/graph/v" + Facebook.DEFAULT_API_VERSION + "/";
+		for (String path : Arrays.asList("me/feed", "me", "")) {
+			HttpRequest request = new MockClientHttpRequest(GET, URI.create(prefixedUrl + path));
+			circuitBreaker.intercept(request, new byte[0], respondingWith(HttpStatus.OK)).close();
+		}
+		assertEquals(1, circuitBreaker.getSuccessCount("feed"));
+		assertEquals(1, circuitBreaker.getSuccessCount(CircuitBreakingInterceptor.OBJECT_FAMILY));
+		assertEquals(1, circuitBreaker.getSuccessCount(CircuitBreakingInterceptor.BATCH_FAMILY));
+		assertEquals(Arrays.asList("batch", "feed", "object"), Arrays.asList(circuitBreaker.getEndpointFamilies().toArray()));
+	}
+
+	private ResponseCreator serviceUnavailable() {
+		return withStatus(HttpStatus.SERVICE_UNAVAILABLE)
+			.body("{\"error\":{\"message\":\"Service temporarily unavailable\",\"type\":\"FacebookApiException\",\"code\":2}}")
+			.contentType(MediaType.APPLICATION_JSON);
+	}
+
+	private ClientHttpRequestExecution respondingWith(final HttpStatus status) {
+		return new ClientHttpRequestExecution() {
+			public ClientHttpResponse execute(HttpRequest request, byte[] body) {
+				return new MockClientHttpResponse(new byte[0], status);
+			}
+		};
+	}
+
+	private CircuitBreakingInterceptor circuitBreaker(long openDuration, TimeUnit unit) {
+		CircuitBreakingInterceptor circuitBreaker = new CircuitBreakingInterceptor(10, 50, openDuration, unit);
+		circuitBreaker.setSlidingWindowSize(4);
+		circuitBreaker.setMinimumCalls(4);
+		circuitBreaker.setHalfOpenProbes(1);
+		return circuitBreaker;
+	}
+
+	private FacebookTemplate facebook(CircuitBreakingInterceptor circuitBreaker) {
+		FacebookClientFactory clientFactory = new FacebookClientFactory(null, null);
+		clientFactory.setInterceptors(Collections.<ClientHttpRequestInterceptor>singletonList(circuitBreaker));
+		return clientFactory.getFacebook("someAccessToken");
+	}
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.social.InvalidAuthorizationException;
+import org.springframework.social.facebook.api.impl.FacebookTemplate;
+import org.springframework.social.facebook.api.impl.json.FacebookModule;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.ResponseErrorHandler;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Bounds the bytes allocated per deserialized object by the custom deserializers and the error handler, so that a
+ * per-call mapper or JSON tree does not creep back in. The bounds leave room for JVM and Jackson version differences.
+ */
+public class DeserializationAllocationTest {
+
+	private static final int WARMUP = 2000;
+
+	private static final int ITERATIONS = 2000;
+
+	private static final String POST_WITH_TAGS = "{\"id\":\"1_2\",\"from\":{\"id\":\"1\",\"name\":\"Luke\"},\"message\":\"Hey, Luke Skywalker and Han Solo\","
+			+ "\"message_tags\":[{\"id\":\"17540\",\"name\":\"Luke Skywalker\",\"type\":\"user\",\"offset\":5,\"length\":14},"
+			+ "{\"id\":\"17541\",\"name\":\"Han Solo\",\"type\":\"user\",\"offset\":24,\"length\":8}],"
+			+ "\"to\":{\"data\":[{\"id\":\"17540\",\"name\":\"Luke Skywalker\"}]},\"with_tags\":{\"data\":[{\"id\":\"17541\",\"name\":\"Han Solo\"}]}}";
+
+	private ThreadMXBean threads;
+
+	private ObjectMapper objectMapper;
+
+	@Before
+	public void setup() {
+		threads = ManagementFactory.getThreadMXBean();
+		assumeTrue(threads instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported());
+		((com.sun.management.ThreadMXBean) threads).setThreadAllocatedMemoryEnabled(true);
+		objectMapper = new ObjectMapper();
+		objectMapper.registerModule(new FacebookModule());
+	}
+
+	@Test
+	public void postWithMessageTags() throws Exception {
+		final ObjectReader reader = objectMapper.readerFor(Post.class);
+		final byte[] json = POST_WITH_TAGS.getBytes("UTF-8");
+		Post post = reader.readValue(json);
+		assertEquals(2, post.getMessageTags().size());
+		assertEquals("Han Solo", post.getMessageTags().get(24).get(0).getName());
+		assertEquals(1, post.getTo().size());
+		assertEquals(1, post.getWithTags().size());
+		assertThat(bytesPerCall(new Call() {
+			public Object call() throws IOException {
+				return reader.readValue(json);
+			}
+		}), lessThan(16L * 1024));
+	}
+
+	@Test
+	public void videoWithPictureAndTags() throws Exception {
+		final ObjectReader reader = objectMapper.readerFor(Video.class);
+		final byte[] json = fixture("video");
+		Video video = reader.readValue(json);
+		assertNotNull(video.getPicture());
+		assertEquals(1, video.getTags().size());
+		assertThat(bytesPerCall(new Call() {
+			public Object call() throws IOException {
+				return reader.readValue(json);
+			}
+		}), lessThan(16L * 1024));
+	}
+
+	@Test
+	public void errorResponse() throws Exception {
+		final ResponseErrorHandler errorHandler = new FacebookTemplate("someAccessToken").getRestTemplate().getErrorHandler();
+		final byte[] json = fixture("error-190-bogusAccessToken");
+		assertThat(bytesPerCall(new Call() {
+			public Object call() throws IOException {
+				try {
+					errorHandler.handleError(new MockClientHttpResponse(json, HttpStatus.BAD_REQUEST));
+					fail("Expected InvalidAuthorizationException");
+					return null;
+				} catch (InvalidAuthorizationException e) {
+					return e;
+				}
+			}
+		}), lessThan(8L * 1024));
+	}
+
+	private long bytesPerCall(Call call) throws IOException {
+		com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) threads;
+		long threadId = Thread.currentThread().getId();
+		for (int i = 0; i < WARMUP; i++) {
+			call.call();
+		}
+		long before = threadBean.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < ITERATIONS; i++) {
+			call.call();
+		}
+		return (threadBean.getThreadAllocatedBytes(threadId) - before) / ITERATIONS;
+	}
+
+	private byte[] fixture(String name) throws IOException {
+		return StreamUtils.copyToByteArray(new ClassPathResource(name + ".json", getClass()).getInputStream());
+	}
+
+	private interface Call {
+		Object call() throws IOException;
+	}
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.social.InvalidAuthorizationException;
+import org.springframework.social.facebook.api.impl.ErrorBufferingClientHttpRequestFactory;
+import org.springframework.social.facebook.api.impl.FacebookTemplate;
+import org.springframework.util.StreamUtils;
+
+public class ErrorBufferingClientHttpRequestFactoryTest {
+
+	@Test
+	public void successfulResponseIsNotBuffered() throws Exception {
+		InputStream body = new ByteArrayInputStream("{\"id\":\"123\"}".getBytes(StandardCharsets.UTF_8));
+		ClientHttpRequestFactory requestFactory = new ErrorBufferingClientHttpRequestFactory(stubFactory(body, HttpStatus.OK));
+		ClientHttpResponse response = requestFactory.createRequest(URI.create("https://graph.facebook.com/me"), HttpMethod.GET).execute();
+		assertSame(body, response.getBody());
+	}
+
+	@Test
+	public void errorResponseIsBufferedUpToLimit() throws Exception {
+		InputStream body = new ByteArrayInputStream("{\"error\":{\"code\":190}}".getBytes(StandardCharsets.UTF_8));
+		ClientHttpRequestFactory requestFactory = new ErrorBufferingClientHttpRequestFactory(stubFactory(body, HttpStatus.BAD_REQUEST), 10);
+		ClientHttpResponse response = requestFactory.createRequest(URI.create("https://graph.facebook.com/me"), HttpMethod.GET).execute();
+		assertEquals("{\"error\":{", StreamUtils.copyToString(response.getBody(), StandardCharsets.UTF_8));
+		assertEquals("{\"error\":{", StreamUtils.copyToString(response.getBody(), StandardCharsets.UTF_8));
+		assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+	}
+
+	@Test(expected = InvalidAuthorizationException.class)
+	public void errorHandlerReadsBufferedError() throws Exception {
+		InputStream body = new ClassPathResource("error-190-bogusAccessToken.json", getClass()).getInputStream();
+		FacebookTemplate facebook = new FacebookTemplate("ACCESS_TOKEN");
+		facebook.setRequestFactory(stubFactory(body, HttpStatus.BAD_REQUEST));
+		facebook.userOperations().getUserProfile();
+	}
+
+	private ClientHttpRequestFactory stubFactory(final InputStream body, final HttpStatus status) {
+		return new ClientHttpRequestFactory() {
+			public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+				MockClientHttpRequest request = new MockClientHttpRequest(httpMethod, uri);
+				MockClientHttpResponse response = new MockClientHttpResponse(body, status);
+				response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+				request.setResponse(response);
+				return request;
+			}
+		};
+	}
+
+}
@@ -27,6 +27,17 @@ import org.springframework.http.MediaType;
 
 public class EventTemplateTest extends AbstractFacebookApiTest {
 
+	@Test
+	public void getEventImageUrl() {
+		mockServer.expect(requestTo(fbUrl("193482154020832/picture?type=large&redirect=false")))
+			.andExpect(method(GET))
+			.andExpect(header("Authorization", "OAuth someAccessToken"))
+			.andRespond(withSuccess(jsonResource("picture-url"), MediaType.APPLICATION_JSON));
+		String url = facebook.eventOperations().getEventImageUrl("193482154020832", ImageType.LARGE);
+		assertEquals("https://scontent.xx.fbcdn.net/v/t1.0-1/p100x100/10354686_10150004552801856_220367501106153455_n.jpg", url);
+		mockServer.verify();
+	}
+
 	@Test
 	public void getCreated_user() {
 		mockServer.expect(requestTo(fbUrl("me/events/created?offset=0&limit=25")))
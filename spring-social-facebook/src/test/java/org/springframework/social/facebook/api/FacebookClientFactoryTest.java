@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import static org.springframework.http.HttpMethod.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.*;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.*;
+
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.social.facebook.api.impl.FacebookClientFactory;
+import org.springframework.social.facebook.api.impl.FacebookTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.MockRestServiceServer;
+
+public class FacebookClientFactoryTest {
+
+	@Test
+	public void getFacebook_sharesHttpClientAndObjectMapper() {
+		FacebookClientFactory clientFactory = new FacebookClientFactory("APP_ID", null);
+		FacebookTemplate facebook1 = clientFactory.getFacebook("token1");
+		FacebookTemplate facebook2 = clientFactory.getFacebook("token2");
+
+		assertSame(clientFactory.getRequestFactory(), underlyingRequestFactory(facebook1));
+		assertSame(clientFactory.getRequestFactory(), underlyingRequestFactory(facebook2));
+		assertSame(jsonConverter(facebook1), jsonConverter(facebook2));
+		assertSame(clientFactory.getObjectMapper(), jsonConverter(facebook1).getObjectMapper());
+	}
+
+	@Test
+	public void getFacebook_usesItsOwnAccessToken() {
+		FacebookClientFactory clientFactory = new FacebookClientFactory("APP_ID", null);
+		clientFactory.setApplicationNamespace("APP_NAMESPACE");
+		clientFactory.setApiVersion("2.12");
+		FacebookTemplate facebook = clientFactory.getFacebook("someAccessToken");
+		assertEquals("APP_NAMESPACE", facebook.getApplicationNamespace());
+		assertEquals("https://graph.facebook.com/v2.12/", facebook.getBaseGraphApiUrl());
+
+		MockRestServiceServer mockServer = MockRestServiceServer.createServer(facebook.getRestTemplate());
+		mockServer.expect(requestTo("https://graph.facebook.com/v2.12/me"))
+			.andExpect(method(GET))
+			.andExpect(header("Authorization", "OAuth someAccessToken"))
+			.andRespond(withSuccess(new ClassPathResource("minimal-profile.json", getClass()), MediaType.APPLICATION_JSON));
+		User user = facebook.fetchObject("me", User.class);
+		assertEquals("123456789", user.getId());
+		mockServer.verify();
+	}
+
+	@Test
+	public void getFacebook_withAppSecret_addsAppSecretProof() {
+		FacebookClientFactory clientFactory = new FacebookClientFactory("APP_ID", "APP_SECRET");
+		FacebookTemplate facebook = clientFactory.getFacebook("someAccessToken");
+
+		MockRestServiceServer mockServer = MockRestServiceServer.createServer(facebook.getRestTemplate());
+		mockServer.expect(requestTo("https://graph.facebook.com/v" + Facebook.DEFAULT_API_VERSION + "/me?appsecret_proof=a0959f307ca864d7ad92a9505a30f6969605f9c8fc647b7bb9f8c1320fcbb945"))
+			.andExpect(method(GET))
+			.andRespond(withSuccess(new ClassPathResource("minimal-profile.json", getClass()), MediaType.APPLICATION_JSON));
+		facebook.fetchObject("me", User.class);
+		mockServer.verify();
+	}
+
+	@Test
+	public void accessTokenView_sharesHttpClientOfParent() {
+		FacebookClientFactory clientFactory = new FacebookClientFactory("APP_ID", "APP_SECRET");
+		clientFactory.setApiVersion("2.12");
+		FacebookTemplate parent = clientFactory.getFacebook("parentAccessToken");
+		FacebookTemplate view = new FacebookTemplate(parent, "pageAccessToken") {};
+
+		assertSame(clientFactory.getRequestFactory(), underlyingRequestFactory(view));
+		assertSame(jsonConverter(parent), jsonConverter(view));
+		assertEquals("https://graph.facebook.com/v2.12/", view.getBaseGraphApiUrl());
+
+		MockRestServiceServer mockServer = MockRestServiceServer.createServer(view.getRestTemplate());
+		mockServer.expect(requestTo(startsWith("https://graph.facebook.com/v2.12/me?appsecret_proof=")))
+			.andExpect(method(GET))
+			.andExpect(header("Authorization", "OAuth pageAccessToken"))
+			.andRespond(withSuccess(new ClassPathResource("minimal-profile.json", getClass()), MediaType.APPLICATION_JSON));
+		view.fetchObject("me", User.class);
+		mockServer.verify();
+	}
+
+	@Test
+	public void accessTokenView_withoutClientFactory_sharesHttpClientOfParent() {
+		FacebookTemplate parent = new FacebookTemplate("parentAccessToken");
+		FacebookTemplate view = new FacebookTemplate(parent, "pageAccessToken") {};
+
+		assertSame(underlyingRequestFactory(parent), underlyingRequestFactory(view));
+		assertSame(jsonConverter(parent), jsonConverter(view));
+	}
+
+	private Object underlyingRequestFactory(FacebookTemplate facebook) {
+		// the RestTemplate wraps the request factory to apply its interceptors
+		return ReflectionTestUtils.getField(facebook.getRestTemplate().getRequestFactory(), "requestFactory");
+	}
+
+	private MappingJackson2HttpMessageConverter jsonConverter(FacebookTemplate facebook) {
+		for (HttpMessageConverter<?> converter : facebook.getRestTemplate().getMessageConverters()) {
+			if (converter instanceof MappingJackson2HttpMessageConverter) {
+				return (MappingJackson2HttpMessageConverter) converter;
+			}
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import static org.springframework.http.HttpMethod.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.*;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.social.facebook.api.impl.FeedSynchronizer;
+import org.springframework.social.facebook.api.impl.InMemoryFeedCheckpointStore;
+
+public class FeedSynchronizerTest extends AbstractFacebookApiTest {
+
+	private static final long NOON = 1577880000L;
+
+	@Test
+	public void firstSynchronizationReadsAllPages() {
+		InMemoryFeedCheckpointStore store = new InMemoryFeedCheckpointStore();
+		FeedSynchronizer synchronizer = synchronizer(store);
+		mockServer.expect(requestTo(startsWith(fbUrl("123/feed?"))))
+			.andExpect(method(GET))
+			.andExpect(queryParam("limit", "2"))
+			.andRespond(withSuccess(page(fbUrl("123/feed?limit=2&__paging_token=abc"),
+					post("3", "2020-01-01T10:00:00+0000", "2020-01-01T12:00:00+0000"),
+					post("2", "2020-01-01T11:00:00+0000", "2020-01-01T11:00:00+0000")), MediaType.APPLICATION_JSON));
+		mockServer.expect(requestTo(startsWith(fbUrl("123/feed?"))))
+			.andExpect(queryParam("__paging_token", "abc"))
+			.andRespond(withSuccess(page(null,
+					post("1", "2020-01-01T09:00:00+0000", "2020-01-01T09:00:00+0000")), MediaType.APPLICATION_JSON));
+
+		List<FeedChange> changes = synchronizer.synchronize("123", FeedSynchronizer.Edge.FEED).collect(Collectors.toList());
+
+		assertEquals(Arrays.asList("3", "2", "1"), ids(changes));
+		for (FeedChange change : changes) {
+			assertEquals(FeedChange.Type.CREATED, change.getType());
+		}
+		FeedCheckpoint checkpoint = store.load("123", "feed");
+		assertEquals(toDate("2020-01-01T11:00:00+0000"), checkpoint.getCreatedTime());
+		assertEquals(Collections.singleton("2"), checkpoint.getPostIds());
+		mockServer.verify();
+	}
+
+	@Test
+	public void resumesFromCheckpoint() {
+		InMemoryFeedCheckpointStore store = new InMemoryFeedCheckpointStore();
+		store.save(new FeedCheckpoint("123", "feed", toDate("2020-01-01T12:00:00+0000"), Collections.singleton("3")));
+		FeedSynchronizer synchronizer = synchronizer(store);
+		mockServer.expect(requestTo(startsWith(fbUrl("123/feed?"))))
+			.andExpect(queryParam("since", String.valueOf(NOON)))
+			.andRespond(withSuccess(page(null,
+					post("4", "2020-01-01T13:00:00+0000", "2020-01-01T13:00:00+0000"),
+					post("6", "2020-01-01T13:00:00+0000", "2020-01-01T13:30:00+0000"),
+					post("3", "2020-01-01T12:00:00+0000", "2020-01-01T14:00:00+0000"),
+					post("5", "2020-01-01T12:00:00+0000", "2020-01-01T12:00:00+0000"),
+					post("2", "2020-01-01T11:00:00+0000", "2020-01-01T14:00:00+0000")), MediaType.APPLICATION_JSON));
+
+		List<FeedChange> changes = synchronizer.synchronize("123", FeedSynchronizer.Edge.FEED).collect(Collectors.toList());
+
+		assertEquals(Arrays.asList("4", "6", "5"), ids(changes));
+		for (FeedChange change : changes) {
+			assertEquals(FeedChange.Type.CREATED, change.getType());
+		}
+		FeedCheckpoint checkpoint = store.load("123", "feed");
+		assertEquals(toDate("2020-01-01T13:00:00+0000"), checkpoint.getCreatedTime());
+		assertEquals(new LinkedHashSet<String>(Arrays.asList("4", "6")), checkpoint.getPostIds());
+		mockServer.verify();
+	}
+
+	@Test
+	public void interruptedSynchronizationKeepsCheckpoint() {
+		InMemoryFeedCheckpointStore store = new InMemoryFeedCheckpointStore();
+		FeedSynchronizer synchronizer = synchronizer(store);
+		mockServer.expect(requestTo(startsWith(fbUrl("123/posts?"))))
+			.andRespond(withSuccess(page(fbUrl("123/posts?limit=2&__paging_token=abc"),
+					post("2", "2020-01-01T11:00:00+0000", "2020-01-01T11:00:00+0000"),
+					post("1", "2020-01-01T09:00:00+0000", "2020-01-01T09:00:00+0000")), MediaType.APPLICATION_JSON));
+
+		FeedChange first = synchronizer.synchronize("123", FeedSynchronizer.Edge.POSTS).findFirst().get();
+
+		assertEquals("2", first.getPost().getId());
+		assertNull(store.load("123", "posts"));
+		mockServer.verify();
+	}
+
+	private FeedSynchronizer synchronizer(InMemoryFeedCheckpointStore store) {
+		FeedSynchronizer synchronizer = new FeedSynchronizer(facebook.feedOperations(), store);
+		synchronizer.setPageSize(2);
+		return synchronizer;
+	}
+
+	private static String page(String next, String... posts) {
+		StringBuilder json = new StringBuilder("{\"data\":[");
+		for (int i = 0; i < posts.length; i++) {
+			json.append(i > 0 ? "," : "").append(posts[i]);
+		}
+		json.append("]");
+		if (next != null) {
+			json.append(",\"paging\":{\"next\":\"").append(next).append("\"}");
+		}
+		return json.append("}").toString();
+	}
+
+	private static String post(String id, String createdTime, String updatedTime) {
+		return "{\"id\":\"" + id + "\",\"created_time\":\"" + createdTime + "\",\"updated_time\":\"" + updatedTime + "\"}";
+	}
+
+	private static List<String> ids(List<FeedChange> changes) {
+		List<String> ids = new ArrayList<String>();
+		for (FeedChange change : changes) {
+			ids.add(change.getPost().getId());
+		}
+		return ids;
+	}
+
+}
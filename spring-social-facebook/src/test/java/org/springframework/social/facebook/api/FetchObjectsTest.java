@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import static org.springframework.http.HttpMethod.*;
+import static org.springframework.test.web.client.ExpectedCount.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.*;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.social.facebook.api.impl.CachingGraphApi;
+import org.springframework.social.facebook.api.impl.GraphObjectCache;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.test.web.client.ResponseCreator;
+import org.springframework.util.StringUtils;
+import org.springframework.web.util.UriComponentsBuilder;
+
+public class FetchObjectsTest extends AbstractFacebookApiTest {
+
+	@Test
+	public void fetchObjects() {
+		mockServer.expect(requestTo(fbUrl("?ids=123%2C456&fields=id%2Cname")))
+			.andExpect(method(GET))
+			.andExpect(header("Authorization", "OAuth someAccessToken"))
+			.andRespond(withSuccess("{\"456\":{\"id\":\"456\",\"name\":\"Jane\"},\"123\":{\"id\":\"123\",\"name\":\"John\"}}", MediaType.APPLICATION_JSON));
+
+		GraphObjectMap<User> users = facebook.fetchObjects(Arrays.asList("123", "456", "123"), User.class, "id", "name");
+		assertEquals(Arrays.asList("123", "456"), new ArrayList<String>(users.keySet()));
+		assertEquals("John", users.get("123").getName());
+		assertEquals("Jane", users.get("456").getName());
+		assertTrue(users.getMissingIds().isEmpty());
+		mockServer.verify();
+	}
+
+	@Test
+	public void fetchObjects_none() {
+		GraphObjectMap<User> users = facebook.fetchObjects(Collections.<String>emptyList(), User.class);
+		assertTrue(users.isEmpty());
+		mockServer.verify();
+	}
+
+	@Test
+	public void fetchObjects_missingIdsDoNotFailOthers() {
+		mockServer.expect(requestTo(fbUrl("?ids=1%2C2%2C3%2C4")))
+			.andRespond(withBadRequest().body(jsonResource("error-803-unknownAlias")).contentType(MediaType.APPLICATION_JSON));
+		mockServer.expect(requestTo(fbUrl("?ids=1%2C2")))
+			.andRespond(withSuccess("{\"1\":{\"id\":\"1\"},\"2\":{\"id\":\"2\"}}", MediaType.APPLICATION_JSON));
+		mockServer.expect(requestTo(fbUrl("?ids=3%2C4")))
+			.andRespond(withBadRequest().body(jsonResource("error-803-unknownAlias")).contentType(MediaType.APPLICATION_JSON));
+		mockServer.expect(requestTo(fbUrl("?ids=3")))
+			.andRespond(withSuccess("{\"3\":null}", MediaType.APPLICATION_JSON));
+		mockServer.expect(requestTo(fbUrl("?ids=4")))
+			.andRespond(withBadRequest().body(jsonResource("error-803-unknownAlias")).contentType(MediaType.APPLICATION_JSON));
+
+		GraphObjectMap<User> users = facebook.fetchObjects(Arrays.asList("1", "2", "3", "4"), User.class);
+		assertEquals(Arrays.asList("1", "2"), new ArrayList<String>(users.keySet()));
+		assertEquals(Arrays.asList("3", "4"), new ArrayList<String>(users.getMissingIds()));
+		mockServer.verify();
+	}
+
+	@Test
+	public void fetchObjects_chunkedAndConcurrent() {
+		MockRestServiceServer server = MockRestServiceServer.bindTo(facebook.getRestTemplate()).ignoreExpectOrder(true).build();
+		server.expect(times(3), requestTo(startsWith(fbUrl("?ids="))))
+			.andExpect(method(GET))
+			.andRespond(echoIds());
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		facebook.setObjectFetchExecutor(executor);
+		List<String> ids = new ArrayList<String>();
+		for (int i = 0; i < 120; i++) {
+			ids.add(String.valueOf(i));
+		}
+
+		GraphObjectMap<Reference> references = facebook.fetchObjects(ids, Reference.class);
+		executor.shutdown();
+		assertEquals(ids, new ArrayList<String>(references.keySet()));
+		assertEquals("119", references.get("119").getId());
+		server.verify();
+	}
+
+	@Test
+	public void fetchObjects_cached() {
+		mockServer.expect(requestTo(fbUrl("?ids=123")))
+			.andRespond(withSuccess("{\"123\":{\"id\":\"123\",\"name\":\"John\"}}", MediaType.APPLICATION_JSON));
+		mockServer.expect(requestTo(fbUrl("?ids=456")))
+			.andRespond(withSuccess("{\"456\":{\"id\":\"456\",\"name\":\"Jane\"}}", MediaType.APPLICATION_JSON));
+		GraphObjectCache cache = new GraphObjectCache(100, 1, TimeUnit.MINUTES);
+		CachingGraphApi graphApi = new CachingGraphApi(facebook, cache, null);
+
+		graphApi.fetchObjects(Arrays.asList("123"), User.class);
+		GraphObjectMap<User> users = graphApi.fetchObjects(Arrays.asList("456", "123"), User.class);
+		assertEquals(Arrays.asList("456", "123"), new ArrayList<String>(users.keySet()));
+		assertSame(users.get("123"), graphApi.fetchObject("123", User.class));
+		assertEquals(2, cache.getHitCount());
+		mockServer.verify();
+	}
+
+	/**
+	 * Responds with a reference for each requested ID.
+	 */
+	private ResponseCreator echoIds() {
+		return new ResponseCreator() {
+			public ClientHttpResponse createResponse(ClientHttpRequest request) throws IOException {
+				String ids = UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams().getFirst("ids");
+				StringBuilder json = new StringBuilder("{");
+				for (String id : StringUtils.commaDelimitedListToStringArray(ids.replace("%2C", ","))) {
+					json.append(json.length() > 1 ? "," : "").append("\"").append(id).append("\":{\"id\":\"").append(id).append("\"}");
+				}
+				assertThat(ids.split("%2C").length, lessThanOrEqualTo(GraphApi.MAX_IDS_PER_REQUEST));
+				return withSuccess(json.append("}").toString(), MediaType.APPLICATION_JSON).createResponse(request);
+			}
+		};
+	}
+
+}
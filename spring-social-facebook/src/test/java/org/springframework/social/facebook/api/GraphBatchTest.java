@@ -0,0 +1,159 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import static org.springframework.http.HttpMethod.*;
+import static org.springframework.test.web.client.ExpectedCount.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.*;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.*;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.hamcrest.Description;
+import org.hamcrest.Matcher;
+import org.hamcrest.TypeSafeMatcher;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.social.ResourceNotFoundException;
+import org.springframework.social.ServerException;
+import org.springframework.social.UncategorizedApiException;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+public class GraphBatchTest extends AbstractFacebookApiTest {
+
+	@Test
+	public void execute() throws Exception {
+		mockServer.expect(requestTo(fbUrl("")))
+			.andExpect(method(POST))
+			.andExpect(header("Authorization", "OAuth someAccessToken"))
+			.andExpect(content().string(containsString("include_headers=false")))
+			.andExpect(content().string(decodedContains("\"relative_url\":\"me?fields=id%2Cname\"")))
+			.andExpect(content().string(decodedContains("\"relative_url\":\"123456789/likes?limit=2\"")))
+			.andExpect(content().string(decodedContains("\"method\":\"POST\",\"relative_url\":\"123456789/feed\",\"body\":\"message=Hello%20World%21\"")))
+			.andExpect(content().string(decodedContains("\"method\":\"DELETE\",\"relative_url\":\"123456789_1\"")))
+			.andRespond(withSuccess(jsonResource("batch"), MediaType.APPLICATION_JSON));
+
+		GraphBatch batch = facebook.batch();
+		CompletableFuture<User> user = batch.fetchObject("me", User.class, "id", "name");
+		MultiValueMap<String, String> queryParameters = new LinkedMultiValueMap<String, String>();
+		queryParameters.set("limit", "2");
+		CompletableFuture<PagedList<Page>> likes = batch.fetchConnections("123456789", "likes", Page.class, queryParameters);
+		CompletableFuture<User> missing = batch.fetchObject("bogus", User.class);
+		MultiValueMap<String, Object> data = new LinkedMultiValueMap<String, Object>();
+		data.set("message", "Hello World!");
+		CompletableFuture<String> postId = batch.publish("123456789", "feed", data);
+		CompletableFuture<Void> deleted = batch.delete("123456789_1");
+		assertEquals(5, batch.size());
+
+		batch.execute();
+		assertEquals(0, batch.size());
+		mockServer.verify();
+
+		assertEquals("123456789", user.get().getId());
+		assertEquals("Michael", user.get().getFirstName());
+		assertEquals(2, likes.get().size());
+		assertEquals("22", likes.get().get(1).getId());
+		assertEquals("MjI=", likes.get().getNextPage().getAfter());
+		assertEquals("123456789_987654321", postId.get());
+		assertExecutionFailure(missing, ResourceNotFoundException.class);
+		assertExecutionFailure(deleted, UncategorizedApiException.class);
+	}
+
+	@Test
+	public void execute_splitsIntoChunksOfMaxBatchSize() throws Exception {
+		mockServer.expect(times(2), requestTo(fbUrl("")))
+			.andExpect(method(POST))
+			.andRespond(withSuccess("[]", MediaType.APPLICATION_JSON));
+
+		GraphBatch batch = facebook.batch();
+		for (int i = 0; i < GraphBatch.MAX_BATCH_SIZE + 1; i++) {
+			batch.fetchObject(String.valueOf(i), User.class);
+		}
+		batch.execute();
+		mockServer.verify();
+	}
+
+	@Test
+	public void execute_batchRequestFails() throws Exception {
+		mockServer.expect(requestTo(fbUrl("")))
+			.andExpect(method(POST))
+			.andRespond(withStatus(HttpStatus.BAD_REQUEST).body(jsonResource("error-2-serviceUnavailable")).contentType(MediaType.APPLICATION_JSON));
+
+		GraphBatch batch = facebook.batch();
+		CompletableFuture<User> user = batch.fetchObject("me", User.class);
+		try {
+			batch.execute();
+			fail();
+		} catch (ServerException e) {
+			assertExecutionFailure(user, ServerException.class);
+		}
+	}
+
+	@Test
+	public void execute_firstChunkFails() throws Exception {
+		mockServer.expect(once(), requestTo(fbUrl("")))
+			.andExpect(method(POST))
+			.andRespond(withStatus(HttpStatus.BAD_REQUEST).body(jsonResource("error-2-serviceUnavailable")).contentType(MediaType.APPLICATION_JSON));
+
+		GraphBatch batch = facebook.batch();
+		CompletableFuture<User> first = batch.fetchObject("0", User.class);
+		for (int i = 1; i < GraphBatch.MAX_BATCH_SIZE; i++) {
+			batch.fetchObject(String.valueOf(i), User.class);
+		}
+		CompletableFuture<User> last = batch.fetchObject(String.valueOf(GraphBatch.MAX_BATCH_SIZE), User.class);
+		try {
+			batch.execute();
+			fail();
+		} catch (ServerException e) {
+			assertExecutionFailure(first, ServerException.class);
+			assertExecutionFailure(last, ServerException.class);
+		}
+		mockServer.verify();
+	}
+
+	private void assertExecutionFailure(CompletableFuture<?> future, Class<? extends Exception> expected) throws InterruptedException {
+		assertTrue(future.isCompletedExceptionally());
+		try {
+			future.get();
+			fail();
+		} catch (ExecutionException e) {
+			assertThat(e.getCause(), instanceOf(expected));
+		}
+	}
+
+	private Matcher<String> decodedContains(final String expected) {
+		return new TypeSafeMatcher<String>() {
+			protected boolean matchesSafely(String body) {
+				try {
+					return URLDecoder.decode(body, "UTF-8").contains(expected);
+				} catch (UnsupportedEncodingException e) {
+					return false;
+				}
+			}
+			public void describeTo(Description description) {
+				description.appendText("URL-decoded string containing ").appendValue(expected);
+			}
+		};
+	}
+
+}
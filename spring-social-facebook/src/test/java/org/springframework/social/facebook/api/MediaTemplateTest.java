@@ -15,18 +15,32 @@
  */
 package org.springframework.social.facebook.api;
 
+import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.*;
 import static org.springframework.http.HttpMethod.*;
+import static org.springframework.test.web.client.ExpectedCount.*;
 import static org.springframework.test.web.client.match.MockRestRequestMatchers.*;
 import static org.springframework.test.web.client.response.MockRestResponseCreators.*;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.MediaType;
+import org.springframework.social.UncategorizedApiException;
 import org.springframework.social.facebook.api.Photo.TimeGranularity;
+import org.springframework.test.web.client.MockRestServiceServer;
 import org.springframework.util.StringUtils;
 
 public class MediaTemplateTest extends AbstractFacebookApiTest {
@@ -152,6 +166,65 @@ public class MediaTemplateTest extends AbstractFacebookApiTest {
 		assertEquals("12345", photoId);
 	}
 
+	@Test
+	public void postPhotos_concurrentlyOnGivenExecutor() {
+		MockRestServiceServer server = MockRestServiceServer.bindTo(facebook.getRestTemplate()).ignoreExpectOrder(true).build();
+		for (int i = 1; i <= 4; i++) {
+			server.expect(once(), requestTo(fbUrl("192837465/photos")))
+				.andExpect(method(POST))
+				.andExpect(content().string(containsString("Caption " + i)))
+				.andRespond(i == 3
+						? withBadRequest().body(jsonResource("error-100-badRequestUrl")).contentType(MediaType.APPLICATION_JSON)
+						: withSuccess("{\"id\":\"1234" + i + "\"}", MediaType.APPLICATION_JSON));
+		}
+		final AtomicInteger workers = new AtomicInteger();
+		final ExecutorService executor = Executors.newCachedThreadPool();
+		try {
+			facebook.setPhotoUploadExecutor(new Executor() {
+				public void execute(Runnable command) {
+					workers.incrementAndGet();
+					executor.execute(command);
+				}
+			});
+			List<PhotoUpload> photos = new ArrayList<PhotoUpload>();
+			for (int i = 1; i <= 4; i++) {
+				photos.add(new PhotoUpload(getUploadResource("photo" + i + ".jpg", "PHOTO DATA"), "Caption " + i));
+			}
+			List<PhotoUploadResult> results = facebook.mediaOperations().postPhotos("192837465", photos, 2);
+			assertEquals(2, workers.get());
+			assertEquals(4, results.size());
+			for (int i = 0; i < 4; i++) {
+				assertSame(photos.get(i), results.get(i).getUpload());
+			}
+			assertEquals("12341", results.get(0).getPhotoId());
+			assertEquals("12342", results.get(1).getPhotoId());
+			assertFalse(results.get(2).isSuccessful());
+			assertNotNull(results.get(2).getFailure());
+			assertEquals("12344", results.get(3).getPhotoId());
+			server.verify();
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void postPhotos_oneAtATime() {
+		for (int i = 1; i <= 2; i++) {
+			mockServer.expect(requestTo(fbUrl("192837465/photos")))
+				.andExpect(method(POST))
+				.andExpect(content().string(containsString("Caption " + i)))
+				.andRespond(withSuccess("{\"id\":\"1234" + i + "\"}", MediaType.APPLICATION_JSON));
+		}
+		List<PhotoUpload> photos = new ArrayList<PhotoUpload>();
+		for (int i = 1; i <= 2; i++) {
+			photos.add(new PhotoUpload(getUploadResource("photo" + i + ".jpg", "PHOTO DATA"), "Caption " + i));
+		}
+		List<PhotoUploadResult> results = facebook.mediaOperations().postPhotos("192837465", photos, 1);
+		assertEquals("12341", results.get(0).getPhotoId());
+		assertEquals("12342", results.get(1).getPhotoId());
+		mockServer.verify();
+	}
+
 	@Test
 	public void getVideos() {
 		mockServer.expect(requestTo(fbUrl("me/videos?offset=0&limit=25")))
@@ -194,7 +267,7 @@ public class MediaTemplateTest extends AbstractFacebookApiTest {
 
 	@Test
 	public void postVideo_noTitleOrDescription() {
-		mockServer.expect(requestTo("https://graph-video.facebook.com/me/videos"))
+		mockServer.expect(requestTo("https://graph-video.facebook.com/v" + Facebook.DEFAULT_API_VERSION + "/me/videos"))
 			.andExpect(method(POST))
 			.andExpect(header("Authorization", "OAuth someAccessToken"))
 			.andRespond(withSuccess("{\"id\":\"12345\"}", MediaType.APPLICATION_JSON));
@@ -206,7 +279,7 @@ public class MediaTemplateTest extends AbstractFacebookApiTest {
 
 	@Test
 	public void postVideo_withTitleOrDescription() {
-		mockServer.expect(requestTo("https://graph-video.facebook.com/me/videos"))
+		mockServer.expect(requestTo("https://graph-video.facebook.com/v" + Facebook.DEFAULT_API_VERSION + "/me/videos"))
 			.andExpect(method(POST))
 			.andExpect(header("Authorization", "OAuth someAccessToken"))
 			.andRespond(withSuccess("{\"id\":\"12345\"}", MediaType.APPLICATION_JSON));
@@ -216,6 +289,17 @@ public class MediaTemplateTest extends AbstractFacebookApiTest {
 		assertEquals("12345", photoId);
 	}
 
+	@Test
+	public void postVideo_toConfiguredGraphApiUrl() {
+		facebook.setGraphApiUrl("http://localhost:8080/graph");
+		mockServer.expect(requestTo("http://localhost:8080/graph/v" + Facebook.DEFAULT_API_VERSION + "/me/videos"))
+			.andExpect(method(POST))
+			.andRespond(withSuccess("{\"id\":\"12345\"}", MediaType.APPLICATION_JSON));
+		Resource video = getUploadResource("video.mov", "VIDEO DATA");
+		assertEquals("12345", facebook.mediaOperations().postVideo(video));
+		mockServer.verify();
+	}
+
 	@Test
 	public void tagVideo() {
 		String requestBody = "tag_uid=12345";
@@ -230,6 +314,107 @@ public class MediaTemplateTest extends AbstractFacebookApiTest {
 		mockServer.verify();
 	}
 
+	@Test
+	public void postVideo_chunked() throws Exception {
+		mockServer.expect(requestTo("https://graph-video.facebook.com/v" + Facebook.DEFAULT_API_VERSION + "/me/videos"))
+			.andExpect(method(POST))
+			.andExpect(content().string("upload_phase=start&file_size=10"))
+			.andRespond(withSuccess("{\"video_id\":\"12345\",\"upload_session_id\":\"abc\",\"start_offset\":\"0\",\"end_offset\":\"4\"}", MediaType.APPLICATION_JSON));
+		expectChunk("0", "0123", "{\"start_offset\":\"4\",\"end_offset\":\"8\"}");
+		mockServer.expect(requestTo("https://graph-video.facebook.com/v" + Facebook.DEFAULT_API_VERSION + "/me/videos"))
+			.andExpect(method(POST))
+			.andRespond(withServerError().body("{\"error\":{\"message\":\"Service temporarily unavailable\",\"type\":\"FacebookApiException\",\"code\":2}}").contentType(MediaType.APPLICATION_JSON));
+		expectChunk("4", "4567", "{\"start_offset\":\"8\",\"end_offset\":\"10\"}");
+		expectChunk("8", "89", "{\"start_offset\":\"10\",\"end_offset\":\"10\"}");
+		facebook.setVideoChunkRetryInterval(0, TimeUnit.MILLISECONDS);
+		mockServer.expect(requestTo("https://graph-video.facebook.com/v" + Facebook.DEFAULT_API_VERSION + "/me/videos"))
+			.andExpect(method(POST))
+			.andExpect(content().string("upload_phase=finish&upload_session_id=abc&title=title&description=description"))
+			.andRespond(withSuccess("{\"success\":true}", MediaType.APPLICATION_JSON));
+
+		Path video = Files.createTempFile("video", ".mov");
+		try {
+			Files.write(video, "0123456789".getBytes(StandardCharsets.UTF_8));
+			final List<Long> progress = new ArrayList<Long>();
+			VideoUploadSession session = facebook.mediaOperations().startVideoUpload(video, 2);
+			assertEquals("12345", session.getVideoId());
+			assertEquals(10, session.getFileSize());
+			session = facebook.mediaOperations().transferVideo(session, video, new VideoUploadListener() {
+				public void chunkTransferred(VideoUploadSession session) {
+					progress.add(session.getStartOffset());
+				}
+			});
+			assertTrue(session.isTransferComplete());
+			assertEquals(Arrays.asList(4L, 8L, 10L), progress);
+			assertEquals("12345", facebook.mediaOperations().finishVideoUpload(session, "title", "description"));
+		} finally {
+			Files.delete(video);
+		}
+		mockServer.verify();
+	}
+
+	@Test
+	public void transferVideo_resumesFromPersistedOffset() throws Exception {
+		expectChunk("8", "89", "{\"start_offset\":\"10\",\"end_offset\":\"10\"}");
+		Path video = Files.createTempFile("video", ".mov");
+		try {
+			Files.write(video, "0123456789".getBytes(StandardCharsets.UTF_8));
+			VideoUploadSession session = new VideoUploadSession("12345", "abc", 10, 8, 10, 4);
+			session = facebook.mediaOperations().transferVideo(session, video, null);
+			assertTrue(session.isTransferComplete());
+		} finally {
+			Files.delete(video);
+		}
+		mockServer.verify();
+	}
+
+	@Test
+	public void transferVideo_withoutWindow_sendsChunksOfSessionChunkSize() throws Exception {
+		expectChunk("0", "0123", "{\"start_offset\":\"4\",\"end_offset\":\"4\"}");
+		expectChunk("4", "4567", "{\"start_offset\":\"8\",\"end_offset\":\"8\"}");
+		expectChunk("8", "89", "{\"start_offset\":\"10\",\"end_offset\":\"10\"}");
+		Path video = Files.createTempFile("video", ".mov");
+		try {
+			Files.write(video, "0123456789".getBytes(StandardCharsets.UTF_8));
+			VideoUploadSession session = new VideoUploadSession("12345", "abc", 10, 0, 0, 4);
+			session = facebook.mediaOperations().transferVideo(session, video, null);
+			assertTrue(session.isTransferComplete());
+		} finally {
+			Files.delete(video);
+		}
+		mockServer.verify();
+	}
+
+	@Test
+	public void transferVideo_failsWhenFacebookDoesNotMoveForward() throws Exception {
+		for (int i = 0; i < 3; i++) {
+			expectChunk("4", "4567", "{\"start_offset\":\"4\",\"end_offset\":\"8\"}");
+		}
+		Path video = Files.createTempFile("video", ".mov");
+		try {
+			Files.write(video, "0123456789".getBytes(StandardCharsets.UTF_8));
+			VideoUploadSession session = new VideoUploadSession("12345", "abc", 10, 4, 8, 4);
+			facebook.mediaOperations().transferVideo(session, video, null);
+			fail("Expected UncategorizedApiException");
+		} catch (UncategorizedApiException e) {
+			assertThat(e.getMessage(), containsString("offset 4"));
+		} finally {
+			Files.delete(video);
+		}
+		mockServer.verify();
+	}
+
+	private void expectChunk(String startOffset, String chunk, String response) {
+		mockServer.expect(requestTo("https://graph-video.facebook.com/v" + Facebook.DEFAULT_API_VERSION + "/me/videos"))
+			.andExpect(method(POST))
+			.andExpect(content().string(allOf(
+					containsString("name=\"upload_session_id\""),
+					containsString("\r\n\r\n" + startOffset + "\r\n"),
+					containsString("filename=\"video"),
+					containsString("\r\n\r\n" + chunk + "\r\n"))))
+			.andRespond(withSuccess(response, MediaType.APPLICATION_JSON));
+	}
+
 	private Resource getUploadResource(final String filename, String content) {
 		Resource video = new ByteArrayResource(content.getBytes()) {
 			public String getFilename() throws IllegalStateException {
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import static org.springframework.test.web.client.ExpectedCount.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.*;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.social.InvalidAuthorizationException;
+import org.springframework.social.RateLimitExceededException;
+import org.springframework.social.facebook.api.impl.FacebookClientFactory;
+import org.springframework.social.facebook.api.impl.FacebookTemplate;
+import org.springframework.social.facebook.api.impl.MetricsInterceptor;
+import org.springframework.social.facebook.api.impl.MicrometerGraphApiMetricsRecorder;
+import org.springframework.test.web.client.MockRestServiceServer;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class MetricsInterceptorTest {
+
+	private static final String VERSION = "v" + Facebook.DEFAULT_API_VERSION;
+
+	private static final String BASE_URL = "https://graph.facebook.com/" + VERSION + "/";
+
+	private SimpleMeterRegistry registry;
+
+	@Before
+	public void setup() {
+		registry = new SimpleMeterRegistry();
+	}
+
+	@Test
+	public void recordsRequestsByPathTemplate() {
+		FacebookTemplate facebook = facebook();
+		MockRestServiceServer mockServer = MockRestServiceServer.createServer(facebook.getRestTemplate());
+		mockServer.expect(once(), requestTo(BASE_URL + "me"))
+			.andRespond(withSuccess("{\"id\":\"123\"}", MediaType.APPLICATION_JSON));
+		mockServer.expect(times(2), requestTo(startsWith(BASE_URL)))
+			.andRespond(withSuccess("{\"data\":[]}", MediaType.APPLICATION_JSON));
+
+		facebook.fetchObject("me", User.class);
+		facebook.fetchConnections("1234", "feed", Post.class);
+		facebook.fetchConnections("5678", "feed", Post.class);
+
+		Timer me = registry.get(MicrometerGraphApiMetricsRecorder.REQUESTS).tags("method", "GET", "uri", "me", "version", VERSION, "outcome", MetricsInterceptor.SUCCESS, "exception", "none").timer();
+		assertEquals(1, me.count());
+		Timer feed = registry.get(MicrometerGraphApiMetricsRecorder.REQUESTS).tags("uri", "{id}/feed").timer();
+		assertEquals(2, feed.count());
+		DistributionSummary sizes = registry.get(MicrometerGraphApiMetricsRecorder.RESPONSE_SIZE).tags("uri", "{id}/feed").summary();
+		assertEquals(2, sizes.count());
+		assertEquals(22, sizes.totalAmount(), 0);
+		assertEquals("{\"id\":\"123\"}".length(), registry.get(MicrometerGraphApiMetricsRecorder.RESPONSE_SIZE).tags("uri", "me").summary().totalAmount(), 0);
+		mockServer.verify();
+	}
+
+	@Test
+	public void recordsRequestsBelowGraphApiUrlPrefix() {
+		FacebookClientFactory clientFactory = new FacebookClientFactory(null, null);
+		clientFactory.setGraphApiUrl("http://localhost:8080/graph");
+		clientFactory.setInterceptors(Arrays.<ClientHttpRequestInterceptor>asList(new MetricsInterceptor(new MicrometerGraphApiMetricsRecorder(registry))));
+		FacebookTemplate facebook = clientFactory.getFacebook("someAccessToken");
+		MockRestServiceServer mockServer = MockRestServiceServer.createServer(facebook.getRestTemplate());
+		mockServer.expect(once(), requestTo("http://localhost:8080/graph/" + VERSION + "/me"))
+			.andRespond(withSuccess("{\"id\":\"123\"}", MediaType.APPLICATION_JSON));
+		mockServer.expect(once(), requestTo("http://localhost:8080/graph/" + VERSION + "/1234/feed"))
+			.andRespond(withSuccess("{\"data\":[]}", MediaType.APPLICATION_JSON));
+
+		facebook.fetchObject("me", User.class);
+		facebook.fetchConnections("1234", "feed", Post.class);
+
+		assertEquals(1, registry.get(MicrometerGraphApiMetricsRecorder.REQUESTS).tags("uri", "me", "version", VERSION).timer().count());
+		assertEquals(1, registry.get(MicrometerGraphApiMetricsRecorder.REQUESTS).tags("uri", "{id}/feed", "version", VERSION).timer().count());
+		mockServer.verify();
+	}
+
+	@Test
+	public void countsFacebookErrorCodes() {
+		FacebookTemplate facebook = facebook();
+		MockRestServiceServer mockServer = MockRestServiceServer.createServer(facebook.getRestTemplate());
+		mockServer.expect(once(), requestTo(BASE_URL + "1234/comments"))
+			.andRespond(withBadRequest().body(jsonResource("error-190-bogusAccessToken")).contentType(MediaType.APPLICATION_JSON));
+
+		try {
+			facebook.fetchConnections("1234", "comments", Comment.class);
+			fail("Expected InvalidAuthorizationException");
+		} catch (InvalidAuthorizationException e) {
+			// the error body is still readable by the error handler
+		}
+		assertEquals(1, registry.get(MicrometerGraphApiMetricsRecorder.REQUESTS).tags("uri", "{id}/comments", "outcome", MetricsInterceptor.CLIENT_ERROR).timer().count());
+		assertEquals(1, registry.get(MicrometerGraphApiMetricsRecorder.ERRORS).tags("uri", "{id}/comments", "code", "190", "subcode", "0").counter().count(), 0);
+		mockServer.verify();
+	}
+
+	@Test
+	public void recordsRejectedRequests() {
+		FacebookClientFactory clientFactory = new FacebookClientFactory(null, null);
+		clientFactory.setInterceptors(Arrays.<ClientHttpRequestInterceptor>asList(new MetricsInterceptor(new MicrometerGraphApiMetricsRecorder(registry)), new ClientHttpRequestInterceptor() {
+			public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+				throw new RateLimitExceededException("facebook");
+			}
+		}));
+		FacebookTemplate facebook = clientFactory.getFacebook("someAccessToken");
+
+		try {
+			facebook.fetchObject("me", User.class);
+			fail("Expected RateLimitExceededException");
+		} catch (RateLimitExceededException e) {
+			// rejected before being sent
+		}
+		Timer rejected = registry.get(MicrometerGraphApiMetricsRecorder.REQUESTS).tags("outcome", MetricsInterceptor.REJECTED, "exception", "RateLimitExceededException").timer();
+		assertEquals(1, rejected.count());
+		assertTrue(rejected.totalTime(TimeUnit.NANOSECONDS) > 0);
+	}
+
+	private FacebookTemplate facebook() {
+		FacebookClientFactory clientFactory = new FacebookClientFactory(null, null);
+		clientFactory.setInterceptors(Arrays.<ClientHttpRequestInterceptor>asList(new MetricsInterceptor(new MicrometerGraphApiMetricsRecorder(registry))));
+		return clientFactory.getFacebook("someAccessToken");
+	}
+
+	private Resource jsonResource(String filename) {
+		return new ClassPathResource(filename + ".json", getClass());
+	}
+
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api;
+
+import static org.junit.Assert.*;
+import static org.springframework.http.HttpMethod.*;
+import static org.springframework.test.web.client.ExpectedCount.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.*;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.social.facebook.api.impl.PageAccountCache;
+import org.springframework.test.web.client.ResponseCreator;
+
+public class PageAccountCacheTest extends AbstractFacebookApiTest {
+
+	private static final String PAGE_1 = "{\"data\":[{\"id\":\"111\",\"name\":\"Page 1\",\"access_token\":\"page1Token\"}],"
+			+ "\"paging\":{\"cursors\":{\"after\":\"MTEx\"},\"next\":\"https://graph.facebook.com/v" + Facebook.DEFAULT_API_VERSION + "/me/accounts?limit=1&after=MTEx\"}}";
+
+	private static final String PAGE_2 = "{\"data\":[{\"id\":\"222\",\"name\":\"Page 2\",\"access_token\":\"page2Token\"}],\"paging\":{\"cursors\":{\"before\":\"MjIy\"}}}";
+
+	@Test
+	public void loadsAllPagesOfAccountsOnce() {
+		expectAccounts();
+
+		assertEquals("page2Token", facebook.pageOperations().getAccessToken("222"));
+		assertEquals("page1Token", facebook.pageOperations().getAccessToken("111"));
+		assertTrue(facebook.pageOperations().isPageAdmin("222"));
+		assertFalse(facebook.pageOperations().isPageAdmin("333"));
+		mockServer.verify();
+	}
+
+	@Test
+	public void reloadsForUnknownPageAfterMinReloadInterval() {
+		PageAccountCache cache = new PageAccountCache();
+		cache.setMinReloadInterval(0, TimeUnit.MILLISECONDS);
+		facebook.setPageAccountCache(cache);
+		expectAccounts();
+		expectAccounts();
+
+		assertTrue(facebook.pageOperations().isPageAdmin("111"));
+		assertFalse(facebook.pageOperations().isPageAdmin("333"));
+		assertEquals(2, cache.getLoadCount());
+		assertEquals(2, cache.getMissCount());
+		assertEquals(2, cache.size());
+		mockServer.verify();
+	}
+
+	@Test
+	public void refreshesAhead() {
+		PageAccountCache cache = new PageAccountCache(100, 1, TimeUnit.HOURS);
+		cache.setRefreshAfter(0, TimeUnit.MILLISECONDS);
+		cache.setRefreshExecutor(callerRuns());
+		facebook.setPageAccountCache(cache);
+		expectAccounts();
+		mockServer.expect(requestTo(fbUrl("me/accounts")))
+			.andExpect(method(GET))
+			.andRespond(withSuccess("{\"data\":[{\"id\":\"111\",\"name\":\"Page 1\",\"access_token\":\"refreshedToken\"}]}", MediaType.APPLICATION_JSON));
+
+		assertEquals("page1Token", facebook.pageOperations().getAccessToken("111"));
+		assertEquals("page1Token", facebook.pageOperations().getAccessToken("111"));
+		assertEquals(1, cache.getRefreshCount());
+		cache.setRefreshAfter(1, TimeUnit.HOURS);
+		assertEquals("refreshedToken", facebook.pageOperations().getAccount("111").getAccessToken());
+		mockServer.verify();
+	}
+
+	@Test
+	public void keepsServingWhenRefreshFails() {
+		PageAccountCache cache = new PageAccountCache(100, 1, TimeUnit.HOURS);
+		cache.setRefreshAfter(0, TimeUnit.MILLISECONDS);
+		cache.setRefreshExecutor(callerRuns());
+		facebook.setPageAccountCache(cache);
+		expectAccounts();
+		mockServer.expect(requestTo(fbUrl("me/accounts")))
+			.andRespond(withServerError().body("{\"error\":{\"message\":\"Service temporarily unavailable\",\"type\":\"FacebookApiException\",\"code\":2}}").contentType(MediaType.APPLICATION_JSON));
+
+		assertEquals("page1Token", facebook.pageOperations().getAccessToken("111"));
+		assertEquals("page1Token", facebook.pageOperations().getAccessToken("111"));
+		mockServer.verify();
+	}
+
+	@Test
+	public void refreshesInBackgroundByDefault() throws Exception {
+		PageAccountCache cache = new PageAccountCache(100, 1, TimeUnit.HOURS);
+		cache.setRefreshAfter(0, TimeUnit.MILLISECONDS);
+		facebook.setPageAccountCache(cache);
+		expectAccounts();
+		final CountDownLatch refreshed = new CountDownLatch(1);
+		final AtomicReference<String> refreshThread = new AtomicReference<String>();
+		mockServer.expect(requestTo(fbUrl("me/accounts")))
+			.andExpect(method(GET))
+			.andRespond(new ResponseCreator() {
+				public ClientHttpResponse createResponse(ClientHttpRequest request) throws IOException {
+					refreshThread.set(Thread.currentThread().getName());
+					refreshed.countDown();
+					return withSuccess(PAGE_2, MediaType.APPLICATION_JSON).createResponse(request);
+				}
+			});
+
+		assertEquals("page1Token", facebook.pageOperations().getAccessToken("111"));
+		assertEquals("page1Token", facebook.pageOperations().getAccessToken("111"));
+		assertTrue(refreshed.await(5, TimeUnit.SECONDS));
+		assertTrue(refreshThread.get().startsWith("facebook-page-accounts-refresh-"));
+		mockServer.verify();
+	}
+
+	@Test
+	public void backsOffAfterFailedRefresh() {
+		PageAccountCache cache = new PageAccountCache(100, 1, TimeUnit.HOURS);
+		cache.setRefreshAfter(0, TimeUnit.MILLISECONDS);
+		cache.setRefreshExecutor(callerRuns());
+		facebook.setPageAccountCache(cache);
+		expectAccounts();
+		mockServer.expect(once(), requestTo(fbUrl("me/accounts")))
+			.andRespond(withServerError().body("{\"error\":{\"message\":\"Service temporarily unavailable\",\"type\":\"FacebookApiException\",\"code\":2}}").contentType(MediaType.APPLICATION_JSON));
+
+		for (int i = 0; i < 5; i++) {
+			assertEquals("page1Token", facebook.pageOperations().getAccessToken("111"));
+		}
+		assertEquals(1, cache.getRefreshCount());
+		assertEquals(2, cache.getLoadCount());
+		mockServer.verify();
+	}
+
+	@Test
+	public void invalidateDuringLoadIsNotOverwritten() {
+		final PageAccountCache cache = new PageAccountCache();
+		facebook.setPageAccountCache(cache);
+		mockServer.expect(requestTo(fbUrl("me/accounts")))
+			.andExpect(method(GET))
+			.andRespond(new ResponseCreator() {
+				public ClientHttpResponse createResponse(ClientHttpRequest request) throws IOException {
+					cache.invalidate();
+					return withSuccess(PAGE_2, MediaType.APPLICATION_JSON).createResponse(request);
+				}
+			});
+
+		assertEquals("page2Token", facebook.pageOperations().getAccessToken("222"));
+		assertEquals(0, cache.size());
+		mockServer.verify();
+	}
+
+	@Test
+	public void collapsesConcurrentMisses() throws Exception {
+		PageAccountCache cache = new PageAccountCache();
+		facebook.setPageAccountCache(cache);
+		mockServer.expect(once(), requestTo(fbUrl("me/accounts")))
+			.andExpect(method(GET))
+			.andRespond(slowly(PAGE_2));
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<String>> tokens = new ArrayList<Future<String>>();
+		for (int i = 0; i < 4; i++) {
+			tokens.add(executor.submit(new Callable<String>() {
+				public String call() {
+					return facebook.pageOperations().getAccessToken("222");
+				}
+			}));
+		}
+		for (Future<String> token : tokens) {
+			assertEquals("page2Token", token.get(5, TimeUnit.SECONDS));
+		}
+		executor.shutdown();
+		assertEquals(1, cache.getLoadCount());
+		mockServer.verify();
+	}
+
+	private void expectAccounts() {
+		mockServer.expect(requestTo(fbUrl("me/accounts")))
+			.andExpect(method(GET))
+			.andRespond(withSuccess(PAGE_1, MediaType.APPLICATION_JSON));
+		mockServer.expect(requestTo(fbUrl("me/accounts?limit=1&after=MTEx")))
+			.andExpect(method(GET))
+			.andRespond(withSuccess(PAGE_2, MediaType.APPLICATION_JSON));
+	}
+
+	private Executor callerRuns() {
+		return new Executor() {
+			public void execute(Runnable command) {
+				command.run();
+			}
+		};
+	}
+
+	private ResponseCreator slowly(final String json) {
+		return new ResponseCreator() {
+			public ClientHttpResponse createResponse(ClientHttpRequest request) throws IOException {
+				try {
+					Thread.sleep(200);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return withSuccess(json, MediaType.APPLICATION_JSON).createResponse(request);
+			}
+		};
+	}
+
+}
@@ -15,11 +15,14 @@
  */
 package org.springframework.social.facebook.api;
 
+import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.*;
 import static org.springframework.http.HttpMethod.*;
+import static org.springframework.test.web.client.ExpectedCount.*;
 import static org.springframework.test.web.client.match.MockRestRequestMatchers.*;
 import static org.springframework.test.web.client.response.MockRestResponseCreators.*;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -28,6 +31,7 @@ import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.MediaType;
 import org.springframework.social.facebook.api.Page.PriceRange;
+import org.springframework.test.web.client.MockRestServiceServer;
 
 /**
  * @author Craig Walls
@@ -269,6 +273,62 @@ public class PageTemplateTest extends AbstractFacebookApiTest {
 		assertEquals("12345", photoId);
 	}
 	
+	@Test
+	public void postPhotos_concurrently() {
+		MockRestServiceServer server = MockRestServiceServer.bindTo(facebook.getRestTemplate()).ignoreExpectOrder(true).build();
+		server.expect(once(), requestTo(fbUrl("me/accounts")))
+			.andExpect(method(GET))
+			.andRespond(withSuccess(jsonResource("accounts"), MediaType.APPLICATION_JSON));
+		for (int i = 1; i <= 3; i++) {
+			server.expect(once(), requestTo(fbUrl("192837465/photos")))
+				.andExpect(method(POST))
+				.andExpect(content().string(containsString("Caption " + i)))
+				.andExpect(content().string(containsString("pageAccessToken")))
+				.andRespond(i == 2
+						? withBadRequest().body(jsonResource("error-100-badRequestUrl")).contentType(MediaType.APPLICATION_JSON)
+						: withSuccess("{\"id\":\"1234" + i + "\"}", MediaType.APPLICATION_JSON));
+		}
+		List<PhotoUpload> photos = new ArrayList<PhotoUpload>();
+		for (int i = 1; i <= 3; i++) {
+			photos.add(new PhotoUpload(getUploadResource("photo" + i + ".jpg", "PHOTO DATA"), "Caption " + i));
+		}
+		List<PhotoUploadResult> results = facebook.pageOperations().postPhotos("987654321", "192837465", photos, 3);
+		assertEquals(3, results.size());
+		assertEquals("12341", results.get(0).getPhotoId());
+		assertSame(photos.get(0), results.get(0).getUpload());
+		assertFalse(results.get(1).isSuccessful());
+		assertNull(results.get(1).getPhotoId());
+		assertNotNull(results.get(1).getFailure());
+		assertEquals("12343", results.get(2).getPhotoId());
+		server.verify();
+	}
+
+	@Test
+	public void stagePhotos_andPostThemTogether() {
+		expectFetchAccounts();
+		for (int i = 1; i <= 2; i++) {
+			mockServer.expect(requestTo(fbUrl("987654321/photos")))
+				.andExpect(method(POST))
+				.andExpect(content().string(containsString("name=\"published\"")))
+				.andRespond(withSuccess("{\"id\":\"1234" + i + "\"}", MediaType.APPLICATION_JSON));
+		}
+		mockServer.expect(requestTo(fbUrl("987654321/feed")))
+			.andExpect(method(POST))
+			.andExpect(content().string("message=Our+photos&attached_media%5B0%5D=%7B%22media_fbid%22%3A%2212341%22%7D&attached_media%5B1%5D=%7B%22media_fbid%22%3A%2212342%22%7D&access_token=pageAccessToken"))
+			.andRespond(withSuccess("{\"id\":\"987654321_111\"}", MediaType.APPLICATION_JSON));
+
+		List<PhotoUpload> photos = new ArrayList<PhotoUpload>();
+		photos.add(new PhotoUpload(getUploadResource("photo1.jpg", "PHOTO DATA")));
+		photos.add(new PhotoUpload(getUploadResource("photo2.jpg", "PHOTO DATA")));
+		List<PhotoUploadResult> staged = facebook.pageOperations().stagePhotos("987654321", photos, 1);
+		List<String> photoIds = new ArrayList<String>();
+		for (PhotoUploadResult result : staged) {
+			photoIds.add(result.getPhotoId());
+		}
+		assertEquals("987654321_111", facebook.pageOperations().postStagedPhotos("987654321", "Our photos", photoIds));
+		mockServer.verify();
+	}
+
 	@Test
 	public void search() {
 		mockServer.expect(requestTo(fbUrl("search?q=coffee&type=place&center=33.050278%2C-96.745833&distance=5280")))
@@ -16,11 +16,17 @@
 package org.springframework.social.facebook.api;
 
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.Test;
 
+import org.springframework.core.task.SyncTaskExecutor;
 import org.springframework.http.MediaType;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
 
+import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.assertEquals;
 import static org.springframework.http.HttpMethod.GET;
 import static org.springframework.test.web.client.match.MockRestRequestMatchers.*;
@@ -98,6 +104,108 @@ public class PagedListTest extends AbstractFacebookApiTest {
 		assertEquals(0, feedsPreviousPage1.size());
 	}
 
+	@Test
+	public void streamConnections() {
+		mockServer.expect(requestTo(fbUrl("me/feed?limit=2")))
+				.andExpect(method(GET))
+				.andRespond(withSuccess(jsonResource("feedPage1"), MediaType.APPLICATION_JSON));
+		final String uriFeeds = "100001387295207/feed?";
+		mockServer.expect(requestTo(fbUrl(uriFeeds +
+				"format=json&limit=2&access_token=fakeToken&__paging_token=fakePage2Token")))
+				.andExpect(method(GET))
+				.andRespond(withSuccess(jsonResource("feedPage2"), MediaType.APPLICATION_JSON));
+		mockServer.expect(requestTo(fbUrl(uriFeeds +
+				"format=json&limit=2&access_token=fakeToken&__paging_token=fakePage3Token")))
+				.andExpect(method(GET))
+				.andRespond(withSuccess(jsonResource("feedPage3"), MediaType.APPLICATION_JSON));
+		mockServer.expect(requestTo(fbUrl(uriFeeds +
+				"format=json&limit=2&access_token=fakeToken&__paging_token=fakePage4Token")))
+				.andExpect(method(GET))
+				.andRespond(withSuccess(jsonResource("emptyFeed"), MediaType.APPLICATION_JSON));
+
+		MultiValueMap<String, String> queryParameters = new LinkedMultiValueMap<String, String>();
+		queryParameters.set("limit", "2");
+		Stream<Post> feed = facebook.streamConnections("me", "feed", Post.class, queryParameters);
+
+		List<Post> posts = feed.collect(Collectors.<Post>toList());
+		assertEquals(5, posts.size());
+		assertFeedEntriesPage1(posts.subList(0, 2));
+		assertFeedEntriesPage2(posts.subList(2, 4));
+		assertFeedEntriesPage3(posts.subList(4, 5));
+		mockServer.verify();
+	}
+
+	@Test
+	public void streamConnections_stopsFetchingWhenShortCircuited() {
+		mockServer.expect(requestTo(fbUrl("me/feed?limit=2" + FIELDS_PARAM)))
+				.andExpect(method(GET))
+				.andRespond(withSuccess(jsonResource("feedPage1"), MediaType.APPLICATION_JSON));
+		mockServer.expect(requestTo(fbUrl("100001387295207/feed?" +
+				"format=json&limit=2&access_token=fakeToken&__paging_token=fakePage2Token")))
+				.andExpect(method(GET))
+				.andRespond(withSuccess(jsonResource("feedPage2"), MediaType.APPLICATION_JSON));
+
+		PagedList<Post> firstPage = facebook.feedOperations().getFeed(new PagingParameters(2, null, null, null));
+		List<Post> posts = facebook.streamConnections(firstPage, Post.class).limit(3).collect(Collectors.<Post>toList());
+		assertEquals(3, posts.size());
+		assertFeedEntriesPage1(posts.subList(0, 2));
+		assertEquals("100001387295207_153453231377586", posts.get(2).getId());
+		mockServer.verify();
+	}
+
+	@Test
+	public void streamConnections_withPrefetch() {
+		mockServer.expect(requestTo(fbUrl("me/feed?limit=2" + FIELDS_PARAM)))
+				.andExpect(method(GET))
+				.andRespond(withSuccess(jsonResource("feedPage1"), MediaType.APPLICATION_JSON));
+		mockServer.expect(requestTo(fbUrl("100001387295207/feed?" +
+				"format=json&limit=2&access_token=fakeToken&__paging_token=fakePage2Token")))
+				.andExpect(method(GET))
+				.andRespond(withSuccess(jsonResource("feedPage2"), MediaType.APPLICATION_JSON));
+
+		facebook.setConnectionPrefetchExecutor(new SyncTaskExecutor());
+		PagedList<Post> firstPage = facebook.feedOperations().getFeed(new PagingParameters(2, null, null, null));
+		Stream<Post> feed = facebook.streamConnections(firstPage, Post.class);
+		mockServer.verify(); // the second page has been fetched ahead of time
+
+		assertEquals("100001387295207_160065090716400", feed.findFirst().get().getId());
+	}
+
+	@Test
+	public void streamConnections_followsEmptyPagesWithCursor() {
+		mockServer.expect(requestTo(fbUrl("me/feed")))
+				.andExpect(method(GET))
+				.andRespond(withSuccess("{\"data\":[{\"id\":\"1\"}],\"paging\":{\"next\":\"" + fbUrl("me/feed?after=a") + "\"}}", MediaType.APPLICATION_JSON));
+		mockServer.expect(requestTo(fbUrl("me/feed?after=a")))
+				.andExpect(method(GET))
+				.andRespond(withSuccess("{\"data\":[],\"paging\":{\"next\":\"" + fbUrl("me/feed?after=b") + "\"}}", MediaType.APPLICATION_JSON));
+		mockServer.expect(requestTo(fbUrl("me/feed?after=b")))
+				.andExpect(method(GET))
+				.andRespond(withSuccess("{\"data\":[{\"id\":\"2\"}]}", MediaType.APPLICATION_JSON));
+
+		List<Post> posts = facebook.streamConnections("me", "feed", Post.class).collect(Collectors.<Post>toList());
+		assertEquals(2, posts.size());
+		assertEquals("2", posts.get(1).getId());
+		mockServer.verify();
+	}
+
+	@Test
+	public void streamConnections_keepsPostTypeOfConnection() {
+		mockServer.expect(requestTo(startsWith(fbUrl("me/statuses?"))))
+				.andExpect(method(GET))
+				.andRespond(withSuccess("{\"data\":[{\"id\":\"1\"}],\"paging\":{\"next\":\"" + fbUrl("me/statuses?after=a") + "\"}}", MediaType.APPLICATION_JSON));
+		mockServer.expect(requestTo(fbUrl("me/statuses?after=a")))
+				.andExpect(method(GET))
+				.andRespond(withSuccess("{\"data\":[{\"id\":\"2\"}]}", MediaType.APPLICATION_JSON));
+
+		PagedList<Post> firstPage = facebook.feedOperations().getStatuses();
+		List<Post> posts = facebook.streamConnections(firstPage, Post.class).collect(Collectors.<Post>toList());
+		assertEquals(2, posts.size());
+		assertEquals(Post.PostType.STATUS, posts.get(0).getType());
+		assertEquals(Post.PostType.STATUS, posts.get(1).getType());
+		mockServer.verify();
+	}
+
 	private void assertFeedEntriesPage1(List<Post> feed) {
 		assertEquals("100001387295207_160065090716400", feed.get(0).getId());
 		assertEquals("100001387295207_160064384049804", feed.get(1).getId());
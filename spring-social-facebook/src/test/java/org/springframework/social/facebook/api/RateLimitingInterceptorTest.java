@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api;
+
+import static org.junit.Assert.*;
+import static org.springframework.http.HttpMethod.*;
+import static org.springframework.test.web.client.ExpectedCount.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.*;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.*;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.social.RateLimitExceededException;
+import org.springframework.social.facebook.api.impl.FacebookClientFactory;
+import org.springframework.social.facebook.api.impl.FacebookTemplate;
+import org.springframework.social.facebook.api.impl.RateLimitingInterceptor;
+import org.springframework.test.web.client.MockRestServiceServer;
+
+public class RateLimitingInterceptorTest {
+
+	@Test
+	public void exposesReportedUsage() {
+		RateLimitingInterceptor rateLimiter = new RateLimitingInterceptor(100, 100, 10);
+		FacebookTemplate facebook = facebook(rateLimiter, "someAccessToken");
+		MockRestServiceServer mockServer = MockRestServiceServer.createServer(facebook.getRestTemplate());
+		HttpHeaders headers = new HttpHeaders();
+		headers.set("X-App-Usage", "{\"call_count\":28,\"total_time\":25,\"total_cputime\":12}");
+		headers.set("X-Business-Use-Case-Usage", "{\"112130216863063\":[{\"type\":\"pages\",\"call_count\":10,\"total_cputime\":41,\"total_time\":3,\"estimated_time_to_regain_access\":0}]}");
+		mockServer.expect(requestTo("https://graph.facebook.com/v" + Facebook.DEFAULT_API_VERSION + "/me"))
+			.andExpect(method(GET))
+			.andRespond(withSuccess("{\"id\":\"123\"}", MediaType.APPLICATION_JSON).headers(headers));
+
+		facebook.fetchObject("me", User.class);
+		assertEquals(28, rateLimiter.getAppUtilization());
+		assertEquals(25, rateLimiter.getAppUsage().getTotalTime());
+		assertEquals(41, rateLimiter.getUtilization("someAccessToken"));
+		assertEquals(0, rateLimiter.getUtilization("otherAccessToken"));
+		mockServer.verify();
+	}
+
+	@Test
+	public void rejectsOverThreshold() {
+		RateLimitingInterceptor rateLimiter = new RateLimitingInterceptor(100, 100, 10);
+		FacebookTemplate facebook = facebook(rateLimiter, "someAccessToken");
+		MockRestServiceServer mockServer = MockRestServiceServer.createServer(facebook.getRestTemplate());
+		HttpHeaders headers = new HttpHeaders();
+		headers.set("X-App-Usage", "{\"call_count\":96,\"total_time\":25,\"total_cputime\":12}");
+		mockServer.expect(once(), requestTo("https://graph.facebook.com/v" + Facebook.DEFAULT_API_VERSION + "/me"))
+			.andRespond(withSuccess("{\"id\":\"123\"}", MediaType.APPLICATION_JSON).headers(headers));
+
+		facebook.fetchObject("me", User.class);
+		try {
+			facebook.fetchObject("me", User.class);
+			fail("Expected RateLimitExceededException");
+		} catch (RateLimitExceededException e) {
+			// the request was not sent
+		}
+		mockServer.verify();
+	}
+
+	@Test
+	public void rejectsWhileAccessIsBlocked() {
+		RateLimitingInterceptor rateLimiter = new RateLimitingInterceptor(100, 100, 10);
+		rateLimiter.setMaxDelay(1, TimeUnit.SECONDS);
+		FacebookTemplate facebook = facebook(rateLimiter, "someAccessToken");
+		MockRestServiceServer mockServer = MockRestServiceServer.createServer(facebook.getRestTemplate());
+		HttpHeaders headers = new HttpHeaders();
+		headers.set("X-Business-Use-Case-Usage", "{\"112130216863063\":[{\"type\":\"pages\",\"call_count\":100,\"total_cputime\":10,\"total_time\":10,\"estimated_time_to_regain_access\":5}]}");
+		mockServer.expect(once(), requestTo("https://graph.facebook.com/v" + Facebook.DEFAULT_API_VERSION + "/me"))
+			.andRespond(withSuccess("{\"id\":\"123\"}", MediaType.APPLICATION_JSON).headers(headers));
+
+		facebook.fetchObject("me", User.class);
+		try {
+			facebook.fetchObject("me", User.class);
+			fail("Expected RateLimitExceededException");
+		} catch (RateLimitExceededException e) {
+			// the token is blocked for 5 minutes
+		}
+		assertEquals(5, rateLimiter.getUsage("someAccessToken").getEstimatedTimeToRegainAccess());
+		mockServer.verify();
+
+		// other access tokens are not affected
+		FacebookTemplate otherFacebook = facebook(rateLimiter, "otherAccessToken");
+		MockRestServiceServer otherMockServer = MockRestServiceServer.createServer(otherFacebook.getRestTemplate());
+		otherMockServer.expect(once(), requestTo("https://graph.facebook.com/v" + Facebook.DEFAULT_API_VERSION + "/me"))
+			.andRespond(withSuccess("{\"id\":\"456\"}", MediaType.APPLICATION_JSON));
+		otherFacebook.fetchObject("me", User.class);
+		otherMockServer.verify();
+	}
+
+	@Test
+	public void pacesRequests() {
+		RateLimitingInterceptor rateLimiter = new RateLimitingInterceptor(20, 100, 1);
+		FacebookTemplate facebook = facebook(rateLimiter, "someAccessToken");
+		MockRestServiceServer mockServer = MockRestServiceServer.createServer(facebook.getRestTemplate());
+		mockServer.expect(times(4), requestTo("https://graph.facebook.com/v" + Facebook.DEFAULT_API_VERSION + "/me"))
+			.andRespond(withSuccess("{\"id\":\"123\"}", MediaType.APPLICATION_JSON));
+
+		long start = System.nanoTime();
+		for (int i = 0; i < 4; i++) {
+			facebook.fetchObject("me", User.class);
+		}
+		// the first request goes through at once, each of the others waits for 50ms
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(140));
+		mockServer.verify();
+	}
+
+	private FacebookTemplate facebook(RateLimitingInterceptor rateLimiter, String accessToken) {
+		FacebookClientFactory clientFactory = new FacebookClientFactory(null, null);
+		clientFactory.setInterceptors(Collections.<ClientHttpRequestInterceptor>singletonList(rateLimiter));
+		return clientFactory.getFacebook(accessToken);
+	}
+
+}
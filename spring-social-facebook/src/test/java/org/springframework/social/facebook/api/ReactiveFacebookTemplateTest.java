@@ -0,0 +1,347 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.social.ResourceNotFoundException;
+import org.springframework.social.facebook.api.Post.PostType;
+import org.springframework.social.facebook.api.impl.FacebookClientFactory;
+import org.springframework.social.facebook.api.impl.ReactiveFacebookTemplate;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StreamUtils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class ReactiveFacebookTemplateTest {
+
+	private final Map<String, Response> responses = new ConcurrentHashMap<String, Response>();
+
+	private final List<Request> requests = new CopyOnWriteArrayList<Request>();
+
+	private HttpServer server;
+
+	private ReactiveFacebookTemplate facebook;
+
+	@Before
+	public void setup() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				respond(exchange);
+			}
+		});
+		server.start();
+		facebook = new ReactiveFacebookTemplate("someAccessToken");
+		facebook.setGraphApiUrl(graphApiUrl());
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		facebook.destroy();
+		server.stop(0);
+	}
+
+	@Test
+	public void fetchObject() throws Exception {
+		expect(fbUrl("me?fields=id%2Cname"), 200, jsonResource("minimal-profile"));
+		CompletableFuture<User> user = facebook.fetchObject("me", User.class, "id", "name");
+		assertEquals("123456789", get(user).getId());
+		assertEquals("Michael Craig Walls", get(user).getName());
+		assertEquals(1, requests.size());
+		assertEquals("GET", requests.get(0).method);
+		assertEquals("OAuth someAccessToken", requests.get(0).authorization);
+	}
+
+	@Test
+	public void fetchObject_translatesFacebookErrors() throws Exception {
+		expect(fbUrl("dummyalias"), 400, jsonResource("error-803-unknownAlias"));
+		CompletableFuture<User> user = facebook.fetchObject("dummyalias", User.class);
+		try {
+			get(user);
+			fail("Expected ResourceNotFoundException");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof ResourceNotFoundException);
+		}
+	}
+
+	@Test
+	public void fetchObject_withAppSecret() throws Exception {
+		facebook.destroy();
+		facebook = new ReactiveFacebookTemplate("someAccessToken", null, "APP_SECRET");
+		facebook.setGraphApiUrl(graphApiUrl());
+		expect(fbUrl("me?appsecret_proof=a0959f307ca864d7ad92a9505a30f6969605f9c8fc647b7bb9f8c1320fcbb945"), 200,
+				jsonResource("minimal-profile"));
+		assertEquals("123456789", get(facebook.fetchObject("me", User.class)).getId());
+		assertEquals("OAuth someAccessToken", requests.get(0).authorization);
+	}
+
+	@Test
+	public void fetchConnections_typesStatuses() throws Exception {
+		expect(fbUrl("me/statuses"), 200, jsonResource("user-statuses"));
+		PagedList<Post> statuses = get(facebook.fetchConnections("me", "statuses", Post.class));
+		assertEquals(3, statuses.size());
+		for (Post status : statuses) {
+			assertEquals(PostType.STATUS, status.getType());
+		}
+	}
+
+	@Test
+	public void forEachConnectionPage_requestsNextPageOnlyOnceHandled() throws Exception {
+		String uriFeeds = "100001387295207/feed?format=json&limit=2&access_token=fakeToken&__paging_token=";
+		expect(fbUrl("me/feed"), 200, jsonResource("feedPage1"));
+		expect(fbUrl(uriFeeds + "fakePage2Token"), 200, jsonResource("feedPage2"));
+		expect(fbUrl(uriFeeds + "fakePage3Token"), 200, jsonResource("feedPage3"));
+		expect(fbUrl(uriFeeds + "fakePage4Token"), 200, jsonResource("emptyFeed"));
+
+		PageRecorder pages = new PageRecorder();
+		CompletableFuture<Void> done = facebook.forEachConnectionPage("me", "feed", Post.class, pages);
+
+		assertEquals(2, pages.next().size());
+		assertEquals(1, requests.size());
+		pages.demand(true);
+		assertEquals(2, pages.next().size());
+		assertEquals(2, requests.size());
+		pages.demand(true);
+		assertEquals(1, pages.next().size());
+		assertEquals(3, requests.size());
+		assertFalse(done.isDone());
+		pages.demand(true);
+		get(done);
+		assertTrue(pages.pages.isEmpty());
+		assertEquals(4, requests.size());
+	}
+
+	@Test
+	public void forEachConnectionPage_continuesPastEmptyPages() throws Exception {
+		expect(fbUrl("me/feed"), 200, emptyPage(fbUrl("me/feed?after=1")));
+		expect(fbUrl("me/feed?after=1"), 200, emptyPage(fbUrl("me/feed?after=2")));
+		expect(fbUrl("me/feed?after=2"), 200, "{\"data\":[{\"id\":\"123_456\"}]}");
+
+		PageRecorder pages = new PageRecorder();
+		CompletableFuture<Void> done = facebook.forEachConnectionPage("me", "feed", Post.class, pages);
+
+		assertEquals(1, pages.next().size());
+		pages.demand(true);
+		get(done);
+		assertEquals(3, requests.size());
+	}
+
+	@Test
+	public void forEachConnectionPage_stopsOnEmptyPageRepeatingTheNextPage() throws Exception {
+		expect(fbUrl("me/feed"), 200, emptyPage(fbUrl("me/feed?after=1")));
+		expect(fbUrl("me/feed?after=1"), 200, emptyPage(fbUrl("me/feed?after=1")));
+
+		get(facebook.forEachConnectionPage("me", "feed", Post.class, new PageRecorder()));
+		assertEquals(2, requests.size());
+	}
+
+	@Test
+	public void forEachConnectionPage_stopsWhenHandlerDeclines() throws Exception {
+		expect(fbUrl("me/feed"), 200, jsonResource("feedPage1"));
+
+		CompletableFuture<Void> done = facebook.forEachConnectionPage("me", "feed", Post.class,
+				new Function<PagedList<Post>, CompletionStage<Boolean>>() {
+					public CompletionStage<Boolean> apply(PagedList<Post> page) {
+						return CompletableFuture.completedFuture(false);
+					}
+				});
+		get(done);
+		assertEquals(1, requests.size());
+	}
+
+	@Test
+	public void publish() throws Exception {
+		expect(fbUrl("me/feed"), 200, "{\"id\":\"123_456\"}");
+		MultiValueMap<String, Object> data = new LinkedMultiValueMap<String, Object>();
+		data.set("message", "Hello World!");
+		assertEquals("123_456", get(facebook.publish("me", "feed", data)));
+		assertEquals("POST", requests.get(0).method);
+		assertEquals("OAuth someAccessToken", requests.get(0).authorization);
+		assertEquals("message=Hello+World%21", requests.get(0).body);
+	}
+
+	@Test
+	public void delete() throws Exception {
+		expect(fbUrl("123_456"), 200, "{\"success\":true}");
+		get(facebook.delete("123_456"));
+		assertEquals("POST", requests.get(0).method);
+		assertEquals("method=delete", requests.get(0).body);
+	}
+
+	@Test
+	public void getReactiveFacebook_sharesHttpClientOfCaller() throws Exception {
+		FacebookClientFactory clientFactory = new FacebookClientFactory("APP_ID", null);
+		clientFactory.setApiVersion("2.12");
+		clientFactory.setGraphApiUrl(graphApiUrl());
+		CloseableHttpAsyncClient httpClient = HttpAsyncClients.createDefault();
+		try {
+			ReactiveFacebookTemplate facebook = clientFactory.getReactiveFacebook("someAccessToken", httpClient);
+			assertEquals(graphApiUrl() + "v2.12/", facebook.getBaseGraphApiUrl());
+			expect(graphApiUrl() + "v2.12/me", 200, jsonResource("minimal-profile"));
+			assertEquals("123456789", get(facebook.fetchObject("me", User.class)).getId());
+			assertEquals("OAuth someAccessToken", requests.get(0).authorization);
+
+			facebook.destroy();
+			assertTrue(httpClient.isRunning());
+		} finally {
+			httpClient.close();
+		}
+	}
+
+	@Test
+	public void destroy_closesDefaultHttpClient() throws Exception {
+		facebook.destroy();
+		try {
+			get(facebook.fetchObject("me", User.class));
+			fail("Expected the request to be rejected");
+		} catch (ExecutionException e) {
+			// the HTTP client is closed
+		}
+	}
+
+	private void expect(String url, int status, String body) {
+		responses.put(url, new Response(status, body));
+	}
+
+	private void respond(HttpExchange exchange) throws IOException {
+		String query = exchange.getRequestURI().getRawQuery();
+		String url = "http://" + exchange.getRequestHeaders().getFirst("Host") + exchange.getRequestURI().getRawPath()
+				+ (query != null ? "?" + query : "");
+		requests.add(new Request(exchange.getRequestMethod(), exchange.getRequestHeaders().getFirst("Authorization"),
+				StreamUtils.copyToString(exchange.getRequestBody(), StandardCharsets.UTF_8)));
+		Response response = responses.get(url);
+		if (response == null) {
+			response = new Response(404, "{\"error\":{\"message\":\"Unexpected request for " + url + "\"}}");
+		}
+		byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(response.status, body.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(body);
+		out.close();
+	}
+
+	private String graphApiUrl() {
+		return "http://localhost:" + server.getAddress().getPort() + "/graph/";
+	}
+
+	private String fbUrl(String path) {
+		return facebook.getBaseGraphApiUrl() + path;
+	}
+
+	private String emptyPage(String nextUrl) {
+		return "{\"data\":[],\"paging\":{\"next\":\"" + nextUrl + "\"}}";
+	}
+
+	/**
+	 * Reads a JSON fixture, pointing its paging links at the embedded server instead of Facebook.
+	 */
+	private String jsonResource(String filename) throws IOException {
+		String json = StreamUtils.copyToString(new ClassPathResource(filename + ".json", getClass()).getInputStream(),
+				StandardCharsets.UTF_8);
+		return json.replace("https:\\/\\/graph.facebook.com\\/v8.0\\/", fbUrl("").replace("/", "\\/"));
+	}
+
+	private static <T> T get(CompletableFuture<T> future) throws Exception {
+		return future.get(5, TimeUnit.SECONDS);
+	}
+
+	private static class Request {
+
+		final String method;
+
+		final String authorization;
+
+		final String body;
+
+		Request(String method, String authorization, String body) {
+			this.method = method;
+			this.authorization = authorization;
+			this.body = body;
+		}
+
+	}
+
+	private static class Response {
+
+		final int status;
+
+		final String body;
+
+		Response(int status, String body) {
+			this.status = status;
+			this.body = body;
+		}
+
+	}
+
+	/**
+	 * Collects the pages handed to it, leaving the demand for the next page to the test.
+	 */
+	private static class PageRecorder implements Function<PagedList<Post>, CompletionStage<Boolean>> {
+
+		final BlockingQueue<PagedList<Post>> pages = new LinkedBlockingQueue<PagedList<Post>>();
+
+		final BlockingQueue<CompletableFuture<Boolean>> demands = new LinkedBlockingQueue<CompletableFuture<Boolean>>();
+
+		public CompletionStage<Boolean> apply(PagedList<Post> page) {
+			CompletableFuture<Boolean> demand = new CompletableFuture<Boolean>();
+			demands.add(demand);
+			pages.add(page);
+			return demand;
+		}
+
+		PagedList<Post> next() throws InterruptedException {
+			PagedList<Post> page = pages.poll(5, TimeUnit.SECONDS);
+			assertNotNull("Expected a page", page);
+			return page;
+		}
+
+		void demand(boolean requestNext) {
+			demands.remove().complete(requestNext);
+		}
+
+	}
+
+}
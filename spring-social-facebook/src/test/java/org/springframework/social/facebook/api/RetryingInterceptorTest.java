@@ -0,0 +1,214 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.api;
+
+import static org.junit.Assert.*;
+import static org.springframework.http.HttpMethod.*;
+import static org.springframework.test.web.client.ExpectedCount.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.*;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.*;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.social.InvalidAuthorizationException;
+import org.springframework.social.ServerException;
+import org.springframework.social.UncategorizedApiException;
+import org.springframework.social.facebook.api.impl.FacebookClientFactory;
+import org.springframework.social.facebook.api.impl.FacebookTemplate;
+import org.springframework.social.facebook.api.impl.RetryingInterceptor;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+public class RetryingInterceptorTest {
+
+	private static final String ME_URL = "https://graph.facebook.com/v" + Facebook.DEFAULT_API_VERSION + "/me";
+
+	private static final String FEED_URL = ME_URL + "/feed";
+
+	@Test
+	public void retriesTransientError() {
+		RetryingInterceptor retrier = new RetryingInterceptor(3, 1, 10, TimeUnit.MILLISECONDS);
+		FacebookTemplate facebook = facebook(retrier);
+		MockRestServiceServer mockServer = MockRestServiceServer.createServer(facebook.getRestTemplate());
+		mockServer.expect(once(), requestTo(ME_URL))
+			.andExpect(method(GET))
+			.andRespond(withStatus(HttpStatus.INTERNAL_SERVER_ERROR).body(jsonResource("error-2-serviceUnavailable")).contentType(MediaType.APPLICATION_JSON));
+		mockServer.expect(once(), requestTo(ME_URL))
+			.andExpect(method(GET))
+			.andRespond(withSuccess("{\"id\":\"123\"}", MediaType.APPLICATION_JSON));
+
+		assertEquals("123", facebook.fetchObject("me", User.class).getId());
+		assertEquals(1, retrier.getCallCount());
+		assertEquals(1, retrier.getRetryCount());
+		assertEquals(0, retrier.getCallCount(1));
+		assertEquals(1, retrier.getCallCount(2));
+		mockServer.verify();
+	}
+
+	@Test
+	public void doesNotRetryPermanentError() {
+		RetryingInterceptor retrier = new RetryingInterceptor(3, 1, 10, TimeUnit.MILLISECONDS);
+		FacebookTemplate facebook = facebook(retrier);
+		MockRestServiceServer mockServer = MockRestServiceServer.createServer(facebook.getRestTemplate());
+		mockServer.expect(once(), requestTo(ME_URL))
+			.andRespond(withBadRequest().body(jsonResource("error-190-bogusAccessToken")).contentType(MediaType.APPLICATION_JSON));
+
+		try {
+			facebook.fetchObject("me", User.class);
+			fail("Expected InvalidAuthorizationException");
+		} catch (InvalidAuthorizationException e) {
+			// the error body is still readable by the error handler
+		}
+		assertEquals(0, retrier.getRetryCount());
+		assertEquals(1, retrier.getCallCount(1));
+		mockServer.verify();
+	}
+
+	@Test
+	public void givesUpAfterMaxAttempts() {
+		RetryingInterceptor retrier = new RetryingInterceptor(3, 1, 10, TimeUnit.MILLISECONDS);
+		FacebookTemplate facebook = facebook(retrier);
+		MockRestServiceServer mockServer = MockRestServiceServer.createServer(facebook.getRestTemplate());
+		mockServer.expect(times(3), requestTo(ME_URL))
+			.andRespond(withStatus(HttpStatus.INTERNAL_SERVER_ERROR).body(jsonResource("error-2-serviceUnavailable")).contentType(MediaType.APPLICATION_JSON));
+
+		try {
+			facebook.fetchObject("me", User.class);
+			fail("Expected ServerException");
+		} catch (ServerException e) {
+			// all 3 attempts failed
+		}
+		assertEquals(2, retrier.getRetryCount());
+		assertEquals(1, retrier.getExhaustedCount());
+		assertEquals(1, retrier.getCallCount(3));
+		mockServer.verify();
+	}
+
+	@Test
+	public void retriesPostOnlyWhenOptedIn() {
+		RetryingInterceptor retrier = new RetryingInterceptor(3, 1, 10, TimeUnit.MILLISECONDS);
+		FacebookTemplate facebook = facebook(retrier);
+		MockRestServiceServer mockServer = MockRestServiceServer.createServer(facebook.getRestTemplate());
+		mockServer.expect(once(), requestTo(FEED_URL))
+			.andExpect(method(POST))
+			.andRespond(withStatus(HttpStatus.INTERNAL_SERVER_ERROR).body("{\"error\":{\"message\":\"An unknown error has occurred.\",\"type\":\"OAuthException\",\"code\":1}}").contentType(MediaType.APPLICATION_JSON));
+		try {
+			facebook.publish("me", "feed", message());
+			fail("Expected UncategorizedApiException");
+		} catch (UncategorizedApiException e) {
+			// POSTs are not retried by default
+		}
+		mockServer.verify();
+
+		retrier.setRetryableMethods(EnumSet.of(GET, POST));
+		mockServer.reset();
+		mockServer.expect(once(), requestTo(FEED_URL))
+			.andExpect(method(POST))
+			.andRespond(withStatus(HttpStatus.INTERNAL_SERVER_ERROR).body("{\"error\":{\"message\":\"An unknown error has occurred.\",\"type\":\"OAuthException\",\"code\":1}}").contentType(MediaType.APPLICATION_JSON));
+		mockServer.expect(once(), requestTo(FEED_URL))
+			.andExpect(method(POST))
+			.andExpect(content().string("message=Hello"))
+			.andRespond(withSuccess("{\"id\":\"123_456\"}", MediaType.APPLICATION_JSON));
+		assertEquals("123_456", facebook.publish("me", "feed", message()));
+		assertEquals(1, retrier.getRetryCount());
+		mockServer.verify();
+	}
+
+	@Test
+	public void retryBudgetLimitsRetries() {
+		RetryingInterceptor retrier = new RetryingInterceptor(3, 1, 10, TimeUnit.MILLISECONDS, 0, 0);
+		FacebookTemplate facebook = facebook(retrier);
+		MockRestServiceServer mockServer = MockRestServiceServer.createServer(facebook.getRestTemplate());
+		mockServer.expect(times(3), requestTo(ME_URL))
+			.andRespond(withStatus(HttpStatus.SERVICE_UNAVAILABLE));
+		for (int i = 0; i < 2; i++) {
+			try {
+				facebook.fetchObject("me", User.class);
+				fail("Expected an exception");
+			} catch (RuntimeException e) {
+				// the first call is retried once, then the budget is spent
+			}
+		}
+		assertEquals(1, retrier.getRetryCount());
+		assertEquals(2, retrier.getBudgetExhaustedCount());
+		mockServer.verify();
+	}
+
+	@Test
+	public void honorsRetryAfter() {
+		RetryingInterceptor retrier = new RetryingInterceptor(3, 1, 2000, TimeUnit.MILLISECONDS);
+		FacebookTemplate facebook = facebook(retrier);
+		MockRestServiceServer mockServer = MockRestServiceServer.createServer(facebook.getRestTemplate());
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(HttpHeaders.RETRY_AFTER, "1");
+		mockServer.expect(once(), requestTo(ME_URL))
+			.andRespond(withStatus(HttpStatus.SERVICE_UNAVAILABLE).headers(headers));
+		mockServer.expect(once(), requestTo(ME_URL))
+			.andRespond(withSuccess("{\"id\":\"123\"}", MediaType.APPLICATION_JSON));
+
+		long start = System.nanoTime();
+		facebook.fetchObject("me", User.class);
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(1000));
+		mockServer.verify();
+	}
+
+	@Test
+	public void doesNotWaitLongerThanMaxBackoff() {
+		RetryingInterceptor retrier = new RetryingInterceptor(3, 1, 10, TimeUnit.MILLISECONDS);
+		FacebookTemplate facebook = facebook(retrier);
+		MockRestServiceServer mockServer = MockRestServiceServer.createServer(facebook.getRestTemplate());
+		HttpHeaders headers = new HttpHeaders();
+		headers.set("X-Business-Use-Case-Usage", "{\"112130216863063\":[{\"type\":\"pages\",\"call_count\":100,\"total_cputime\":10,\"total_time\":10,\"estimated_time_to_regain_access\":5}]}");
+		mockServer.expect(once(), requestTo(ME_URL))
+			.andRespond(withBadRequest().body("{\"error\":{\"message\":\"(#32) Page request limit reached\",\"type\":\"OAuthException\",\"code\":32}}").contentType(MediaType.APPLICATION_JSON).headers(headers));
+
+		try {
+			facebook.fetchObject("me", User.class);
+			fail("Expected an exception");
+		} catch (RuntimeException e) {
+			// access is blocked for 5 minutes
+		}
+		assertEquals(0, retrier.getRetryCount());
+		mockServer.verify();
+	}
+
+	private MultiValueMap<String, Object> message() {
+		MultiValueMap<String, Object> data = new LinkedMultiValueMap<String, Object>();
+		data.set("message", "Hello");
+		return data;
+	}
+
+	private FacebookTemplate facebook(RetryingInterceptor retrier) {
+		FacebookClientFactory clientFactory = new FacebookClientFactory(null, null);
+		clientFactory.setInterceptors(Collections.<ClientHttpRequestInterceptor>singletonList(retrier));
+		return clientFactory.getFacebook("someAccessToken");
+	}
+
+	private Resource jsonResource(String filename) {
+		return new ClassPathResource(filename + ".json", getClass());
+	}
+
+}
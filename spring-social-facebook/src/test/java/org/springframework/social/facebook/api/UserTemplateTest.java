@@ -15,6 +15,7 @@
  */
 package org.springframework.social.facebook.api;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -22,8 +23,13 @@ import static org.springframework.http.HttpMethod.GET;
 import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
 import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
 import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withBadRequest;
 import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
 
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -31,7 +37,9 @@ import java.util.Map;
 import org.junit.Test;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.http.MediaType;
+import org.springframework.social.InvalidAuthorizationException;
 import org.springframework.social.facebook.field.UserProfile;
+import org.springframework.util.StreamUtils;
 
 /**
  * @author Craig Walls
@@ -214,6 +222,69 @@ public class UserTemplateTest extends AbstractFacebookApiTest {
 		mockServer.verify();
 	}
 
+	@Test
+	public void getUserProfileImage_toOutputStream() throws Exception {
+		mockServer.expect(requestTo(fbUrl("1234567/picture?type=large"))).andExpect(method(GET))
+				.andExpect(header("Authorization", "OAuth someAccessToken")).andRespond(withSuccess(
+						new ClassPathResource("tinyrod.jpg", getClass()), MediaType.IMAGE_JPEG));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		long written = facebook.userOperations().getUserProfileImage("1234567", ImageType.LARGE, out);
+		byte[] expected = StreamUtils.copyToByteArray(new ClassPathResource("tinyrod.jpg", getClass()).getInputStream());
+		assertEquals(expected.length, written);
+		assertArrayEquals(expected, out.toByteArray());
+		mockServer.verify();
+	}
+
+	@Test
+	public void getUserProfileImage_toFile() throws Exception {
+		mockServer.expect(requestTo(fbUrl("1234567/picture?type=large"))).andExpect(method(GET))
+				.andExpect(header("Authorization", "OAuth someAccessToken")).andRespond(withSuccess(
+						new ClassPathResource("tinyrod.jpg", getClass()), MediaType.IMAGE_JPEG));
+		Path file = Files.createTempFile("tinyrod", ".jpg");
+		try {
+			Files.write(file, new byte[100000]);
+			long written = facebook.userOperations().getUserProfileImage("1234567", ImageType.LARGE, file);
+			byte[] expected = StreamUtils.copyToByteArray(new ClassPathResource("tinyrod.jpg", getClass()).getInputStream());
+			assertEquals(expected.length, written);
+			assertArrayEquals(expected, Files.readAllBytes(file));
+		} finally {
+			Files.delete(file);
+		}
+		mockServer.verify();
+	}
+
+	@Test
+	public void openUserProfileImage() throws Exception {
+		mockServer.expect(requestTo(fbUrl("1234567/picture?type=square"))).andExpect(method(GET))
+				.andExpect(header("Authorization", "OAuth someAccessToken")).andRespond(withSuccess(
+						new ClassPathResource("tinyrod.jpg", getClass()), MediaType.IMAGE_JPEG));
+		InputStream image = facebook.userOperations().openUserProfileImage("1234567", ImageType.SQUARE);
+		try {
+			byte[] expected = StreamUtils.copyToByteArray(new ClassPathResource("tinyrod.jpg", getClass()).getInputStream());
+			assertArrayEquals(expected, StreamUtils.copyToByteArray(image));
+		} finally {
+			image.close();
+		}
+		mockServer.verify();
+	}
+
+	@Test(expected = InvalidAuthorizationException.class)
+	public void openUserProfileImage_error() throws Exception {
+		mockServer.expect(requestTo(fbUrl("1234567/picture?type=square"))).andExpect(method(GET))
+				.andRespond(withBadRequest().body(jsonResource("error-190-bogusAccessToken")).contentType(MediaType.APPLICATION_JSON));
+		facebook.userOperations().openUserProfileImage("1234567", ImageType.SQUARE);
+	}
+
+	@Test
+	public void getUserProfileImageUrl() {
+		mockServer.expect(requestTo(fbUrl("1234567/picture?width=100&height=100&redirect=false"))).andExpect(method(GET))
+				.andExpect(header("Authorization", "OAuth someAccessToken")).andRespond(
+						withSuccess(jsonResource("picture-url"), MediaType.APPLICATION_JSON));
+		String url = facebook.userOperations().getUserProfileImageUrl("1234567", 100, 100);
+		assertEquals("https://scontent.xx.fbcdn.net/v/t1.0-1/p100x100/10354686_10150004552801856_220367501106153455_n.jpg", url);
+		mockServer.verify();
+	}
+
 	@Test
 	public void getUserPermissions() {
 		mockServer.expect(requestTo(fbUrl("me/permissions"))).andExpect(method(GET))
@@ -59,6 +59,20 @@ public class VersionedApiTest extends AbstractFacebookApiTest {
 		assertEquals(5, feed.size());
 	}
 
+	@Test
+	public void testFacebookTemplateWithGraphApiUrl() {
+
+		facebook.setGraphApiUrl("http://localhost:8080/graph");
+		assertEquals("http://localhost:8080/graph/v" + Facebook.DEFAULT_API_VERSION + "/", facebook.getBaseGraphApiUrl());
+		mockServer.expect(requestTo("http://localhost:8080/graph/v" + Facebook.DEFAULT_API_VERSION + "/me/feed?limit=25&fields=" + ALL_POST_FIELDS_STR))
+				  .andExpect(method(GET))
+				  .andExpect(header("Authorization", "OAuth someAccessToken"))
+				  .andRespond(withSuccess(jsonResource("feed"), MediaType.APPLICATION_JSON));
+
+		List<Post> feed = facebook.feedOperations().getFeed();
+		assertEquals(5, feed.size());
+	}
+
 	
 	private static final String[] ALL_POST_FIELDS = {
 			"id", "actions", "admin_creator", "application", "caption", "created_time", "description", "from", "icon",
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.facebook.security;
+
+import static org.junit.Assert.*;
+import static org.springframework.http.HttpMethod.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.*;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.*;
+
+import java.util.Collections;
+
+import org.junit.Test;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+public class AppSecretProofCalculatorTest {
+
+	private static final String PROOF = "a0959f307ca864d7ad92a9505a30f6969605f9c8fc647b7bb9f8c1320fcbb945";
+
+	@Test
+	public void calculate() {
+		AppSecretProofCalculator calculator = new AppSecretProofCalculator("APP_SECRET");
+		assertEquals(PROOF, calculator.calculate("someAccessToken"));
+		assertSame(calculator.calculate("someAccessToken"), calculator.calculate("someAccessToken"));
+		assertNotEquals(PROOF, calculator.calculate("otherAccessToken"));
+	}
+
+	@Test
+	public void calculate_evictsLeastRecentlyUsedTokens() {
+		AppSecretProofCalculator calculator = new AppSecretProofCalculator("APP_SECRET", 1);
+		String proof = calculator.calculate("someAccessToken");
+		calculator.calculate("otherAccessToken");
+		String recalculated = calculator.calculate("someAccessToken");
+		assertEquals(proof, recalculated);
+		assertNotSame(proof, recalculated);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void nullAppSecret() {
+		new AppSecretProofCalculator(null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void emptyAppSecret() {
+		new FacebookAppSecretProofInterceptor("someAccessToken", "");
+	}
+
+	@Test
+	public void interceptor_appendsProofToQuery() {
+		RestTemplate restTemplate = new RestTemplate();
+		restTemplate.setInterceptors(Collections.singletonList(new FacebookAppSecretProofInterceptor("someAccessToken", "APP_SECRET")));
+		MockRestServiceServer mockServer = MockRestServiceServer.createServer(restTemplate);
+		mockServer.expect(requestTo("https://graph.facebook.com/me?fields=id,name&appsecret_proof=" + PROOF))
+			.andExpect(method(GET))
+			.andRespond(withSuccess());
+		restTemplate.getForObject("https://graph.facebook.com/me?fields=id,name", String.class);
+		mockServer.verify();
+	}
+
+}